@@ -0,0 +1,132 @@
+package generator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Emits {@code ApiMessageType}, the enum of every api that has both a request and a response
+ * definition, with factories for their bodies and the header versions they use.
+ */
+final class ApiMessageTypeGenerator {
+    private final CodeBuffer out = new CodeBuffer();
+
+    String generate(String packageName, List<MessageSpec> specs) {
+        Map<Short, MessageSpec> requests = new TreeMap<>();
+        Map<Short, MessageSpec> responses = new TreeMap<>();
+        for (MessageSpec spec : specs) {
+            Map<Short, MessageSpec> byKey = spec.isRequest() ? requests : responses;
+            if (byKey.put(spec.apiKey, spec) != null) {
+                throw new IllegalArgumentException("Two " + spec.type + " definitions for api key " + spec.apiKey);
+            }
+        }
+        if (!requests.keySet().equals(responses.keySet())) {
+            throw new IllegalArgumentException("Every api needs a request and a response definition: requests "
+                    + requests.keySet() + ", responses " + responses.keySet());
+        }
+        short maxApiKey = requests.isEmpty() ? 0 : ((TreeMap<Short, MessageSpec>) requests).lastKey();
+
+        out.line("package %s;", packageName);
+        out.blank();
+        out.line("import protocol.ApiMessage;");
+        out.blank();
+        out.line("/**");
+        out.line(" * Every api with generated request and response bodies. Generated from the message definitions; do not edit.");
+        out.line(" */");
+        out.open("public enum ApiMessageType");
+        int i = 0;
+        for (MessageSpec request : requests.values()) {
+            MessageSpec response = responses.get(request.apiKey);
+            if (!request.validVersions.equals(response.validVersions)) {
+                throw new IllegalArgumentException(request.apiName() + ": request and response versions differ");
+            }
+            out.line("%s(\"%s\", (short) %d, (short) %d, (short) %d)%s", constantName(request.apiName()), request.apiName(),
+                    request.apiKey, request.validVersions.lowest(), request.validVersions.highest(),
+                    ++i == requests.size() ? ";" : ",");
+        }
+        out.blank();
+        out.line("private static final ApiMessageType[] BY_API_KEY = new ApiMessageType[%d];", maxApiKey + 1);
+        out.blank();
+        out.open("static");
+        out.line("for (ApiMessageType type : values()) BY_API_KEY[type.apiKey] = type;");
+        out.close();
+        out.blank();
+        out.line("private final String apiName;");
+        out.line("private final short apiKey;");
+        out.line("private final short lowestSupportedVersion;");
+        out.line("private final short highestSupportedVersion;");
+        out.blank();
+        out.open("ApiMessageType(String apiName, short apiKey, short lowestSupportedVersion, short highestSupportedVersion)");
+        out.line("this.apiName = apiName;");
+        out.line("this.apiKey = apiKey;");
+        out.line("this.lowestSupportedVersion = lowestSupportedVersion;");
+        out.line("this.highestSupportedVersion = highestSupportedVersion;");
+        out.close();
+        out.blank();
+        out.line("/** Returns the api for {@code apiKey}, or null if it has no message definitions. */");
+        out.open("public static ApiMessageType fromApiKey(short apiKey)");
+        out.line("return apiKey >= 0 && apiKey < BY_API_KEY.length ? BY_API_KEY[apiKey] : null;");
+        out.close();
+        out.blank();
+        out.open("public String apiName()").line("return apiName;").close();
+        out.blank();
+        out.open("public short apiKey()").line("return apiKey;").close();
+        out.blank();
+        out.open("public short lowestSupportedVersion()").line("return lowestSupportedVersion;").close();
+        out.blank();
+        out.open("public short highestSupportedVersion()").line("return highestSupportedVersion;").close();
+        out.blank();
+        out.open("public boolean isVersionSupported(short version)");
+        out.line("return version >= lowestSupportedVersion && version <= highestSupportedVersion;");
+        out.close();
+        out.blank();
+        out.open("public ApiMessage newRequest()");
+        factory(requests);
+        out.close();
+        out.blank();
+        out.open("public ApiMessage newResponse()");
+        factory(responses);
+        out.close();
+        out.blank();
+        out.open("public boolean isFlexible(short version)");
+        out.open("return switch (this)");
+        for (MessageSpec request : requests.values()) {
+            out.line("case %s -> %s;", constantName(request.apiName()), request.flexibleVersions.condition(Versions.ALL));
+        }
+        out.close(";");
+        out.close();
+        out.blank();
+        out.open("public short requestHeaderVersion(short version)");
+        out.line("return isFlexible(version) ? (short) 2 : (short) 1;");
+        out.close();
+        out.blank();
+        out.line("/**");
+        out.line(" * ApiVersions responses always use header v0, so a client that does not yet know which");
+        out.line(" * versions the broker supports can still parse them.");
+        out.line(" */");
+        out.open("public short responseHeaderVersion(short version)");
+        out.line("return apiKey != 18 && isFlexible(version) ? (short) 1 : (short) 0;");
+        out.close();
+        out.close();
+        return out.toString();
+    }
+
+    private void factory(Map<Short, MessageSpec> specs) {
+        out.open("return switch (this)");
+        for (MessageSpec spec : specs.values()) {
+            out.line("case %s -> new %s();", constantName(spec.apiName()), spec.className());
+        }
+        out.close(";");
+    }
+
+    /** {@code DescribeTopicPartitions} becomes {@code DESCRIBE_TOPIC_PARTITIONS}. */
+    static String constantName(String apiName) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < apiName.length(); i++) {
+            char c = apiName.charAt(i);
+            if (i > 0 && Character.isUpperCase(c) && !Character.isUpperCase(apiName.charAt(i - 1))) sb.append('_');
+            sb.append(Character.toUpperCase(c));
+        }
+        return sb.toString();
+    }
+}
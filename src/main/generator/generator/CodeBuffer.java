@@ -0,0 +1,51 @@
+package generator;
+
+/**
+ * Indentation-aware line buffer for the generated sources.
+ */
+final class CodeBuffer {
+    private final StringBuilder sb = new StringBuilder(8192);
+    private int indent;
+
+    CodeBuffer line(String format, Object... args) {
+        if (!format.isEmpty()) sb.append("    ".repeat(indent)).append(args.length == 0 ? format : String.format(format, args));
+        sb.append('\n');
+        return this;
+    }
+
+    CodeBuffer blank() {
+        sb.append('\n');
+        return this;
+    }
+
+    /** Emits {@code header {} and indents. */
+    CodeBuffer open(String format, Object... args) {
+        line(format.isEmpty() ? "{" : format + " {", args);
+        indent++;
+        return this;
+    }
+
+    /** Closes the innermost block with {@code }} followed by {@code suffix}. */
+    CodeBuffer close(String suffix) {
+        indent--;
+        line("}" + suffix);
+        return this;
+    }
+
+    CodeBuffer close() {
+        return close("");
+    }
+
+    /** Closes the innermost block and opens a continuation, e.g. {@code } else {}. */
+    CodeBuffer reopen(String format, Object... args) {
+        indent--;
+        line("} " + format + " {", args);
+        indent++;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+}
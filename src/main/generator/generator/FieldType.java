@@ -0,0 +1,98 @@
+package generator;
+
+/**
+ * The wire type of a field: a primitive, a struct, or an array ({@code []T}) of either.
+ */
+record FieldType(Kind kind, FieldType element, String structName) {
+    enum Kind { BOOL, INT8, INT16, UINT16, INT32, INT64, FLOAT64, STRING, UUID, BYTES, RECORDS, STRUCT, ARRAY }
+
+    static FieldType parse(String type) {
+        if (type.startsWith("[]")) {
+            FieldType element = parse(type.substring(2));
+            if (element.kind == Kind.ARRAY || element.kind == Kind.RECORDS || element.kind == Kind.BYTES) {
+                throw new IllegalArgumentException("Unsupported array element type " + type);
+            }
+            return new FieldType(Kind.ARRAY, element, element.structName);
+        }
+        return switch (type) {
+            case "bool" -> new FieldType(Kind.BOOL, null, null);
+            case "int8" -> new FieldType(Kind.INT8, null, null);
+            case "int16" -> new FieldType(Kind.INT16, null, null);
+            case "uint16" -> new FieldType(Kind.UINT16, null, null);
+            case "int32" -> new FieldType(Kind.INT32, null, null);
+            case "int64" -> new FieldType(Kind.INT64, null, null);
+            case "float64" -> new FieldType(Kind.FLOAT64, null, null);
+            case "string" -> new FieldType(Kind.STRING, null, null);
+            case "uuid" -> new FieldType(Kind.UUID, null, null);
+            case "bytes" -> new FieldType(Kind.BYTES, null, null);
+            case "records" -> new FieldType(Kind.RECORDS, null, null);
+            default -> {
+                if (type.isEmpty() || !Character.isUpperCase(type.charAt(0))) {
+                    throw new IllegalArgumentException("Unknown field type " + type);
+                }
+                yield new FieldType(Kind.STRUCT, null, type);
+            }
+        };
+    }
+
+    boolean nullable() {
+        return switch (kind) {
+            case STRING, BYTES, RECORDS, STRUCT, ARRAY -> true;
+            default -> false;
+        };
+    }
+
+    boolean primitive() {
+        return switch (kind) {
+            case BOOL, INT8, INT16, UINT16, INT32, INT64, FLOAT64 -> true;
+            default -> false;
+        };
+    }
+
+    /** True for {@code []int32}, which is held in an {@code int[]} so it is never boxed. */
+    boolean intArray() {
+        return kind == Kind.ARRAY && element.kind == Kind.INT32;
+    }
+
+    /**
+     * The Java type of the field. Record data is copied into a heap buffer when a request is read
+     * and sent from the segment file when a response is written.
+     */
+    String javaType(boolean request) {
+        return switch (kind) {
+            case BOOL -> "boolean";
+            case INT8 -> "byte";
+            case INT16 -> "short";
+            case UINT16, INT32 -> "int";
+            case INT64 -> "long";
+            case FLOAT64 -> "double";
+            case STRING -> "String";
+            case UUID -> "UUID";
+            case BYTES -> "byte[]";
+            case RECORDS -> request ? "ByteBuffer" : "FileRegion";
+            case STRUCT -> structName;
+            case ARRAY -> intArray() ? "int[]" : "List<" + element.boxedType(request) + ">";
+        };
+    }
+
+    String boxedType(boolean request) {
+        return switch (kind) {
+            case BOOL -> "Boolean";
+            case INT8 -> "Byte";
+            case INT16 -> "Short";
+            case UINT16, INT32 -> "Integer";
+            case INT64 -> "Long";
+            case FLOAT64 -> "Double";
+            default -> javaType(request);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case ARRAY -> "[]" + element;
+            case STRUCT -> structName;
+            default -> kind.name().toLowerCase();
+        };
+    }
+}
@@ -0,0 +1,470 @@
+package generator;
+
+import generator.FieldType.Kind;
+import generator.MessageSpec.FieldSpec;
+import generator.MessageSpec.StructSpec;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Emits the {@code <Name>Data} class for one message definition: fields with their defaults,
+ * a version-aware {@code read} from a {@link java.nio.ByteBuffer}, a single-pass {@code write}
+ * into a {@code MessageWriter}, fluent accessors, and a nested class per struct type.
+ *
+ * <p>Version checks are resolved at generation time where possible, so a field present in every
+ * version the enclosing struct can appear in is read and written without a branch.
+ *
+ * <p>A struct can also carry bytes it was encoded to earlier ({@code setEncoded}), which its
+ * {@code write} appends instead of encoding the fields, so data that rarely changes is encoded once.
+ */
+final class MessageDataGenerator {
+    private final MessageSpec spec;
+    private final CodeBuffer out = new CodeBuffer();
+    private int temp;
+
+    MessageDataGenerator(MessageSpec spec) {
+        this.spec = spec;
+    }
+
+    String generate(String packageName, String sourceFile) {
+        out.line("package %s;", packageName);
+        out.blank();
+        if (!spec.isRequest()) out.line("import network.FileRegion;");
+        out.line("import protocol.ApiMessage;");
+        out.line("import protocol.MessageWriter;");
+        out.blank();
+        out.line("import java.nio.ByteBuffer;");
+        out.line("import java.util.ArrayList;");
+        out.line("import java.util.List;");
+        out.line("import java.util.Objects;");
+        out.line("import java.util.UUID;");
+        out.blank();
+        out.line("import static protocol.MessageReader.*;");
+        out.line("import static utils.ByteUtils.readUnsignedVarInt;");
+        out.blank();
+        out.line("/**");
+        out.line(" * %s body, versions %s. Generated from {@code %s}; do not edit.", spec.name, spec.validVersions, sourceFile);
+        out.line(" */");
+        out.open("public final class %s implements ApiMessage", spec.className());
+        out.line("public static final short API_KEY = %d;", spec.apiKey);
+        out.line("public static final short LOWEST_SUPPORTED_VERSION = %d;", spec.validVersions.lowest());
+        out.line("public static final short HIGHEST_SUPPORTED_VERSION = %d;", spec.validVersions.highest());
+        out.blank();
+        generateMembers(spec.className(), spec.fields, spec.validVersions, true);
+        for (StructSpec struct : spec.structs.values()) {
+            out.blank();
+            out.open("public static final class %s", struct.name());
+            generateMembers(struct.name(), struct.fields(), struct.versions(), false);
+            out.close();
+        }
+        out.close();
+        return out.toString();
+    }
+
+    private void generateMembers(String className, List<FieldSpec> fields, Versions context, boolean top) {
+        for (FieldSpec field : fields) {
+            out.line("private %s %s = %s;", javaType(field), field.camelName(), defaultValue(field));
+        }
+        if (!top) {
+            out.line("private ByteBuffer encoded;");
+            out.line("private short encodedVersion;");
+        }
+        if (!fields.isEmpty() || !top) out.blank();
+
+        out.line("public %s() {", className).line("}");
+        out.blank();
+        out.open("public %s(ByteBuffer buf, short version)", className);
+        out.line("read(buf, version);");
+        out.close();
+
+        if (top) {
+            out.blank();
+            out.line("@Override");
+            out.open("public short apiKey()").line("return API_KEY;").close();
+            out.blank();
+            out.line("@Override");
+            out.open("public short lowestSupportedVersion()").line("return LOWEST_SUPPORTED_VERSION;").close();
+            out.blank();
+            out.line("@Override");
+            out.open("public short highestSupportedVersion()").line("return HIGHEST_SUPPORTED_VERSION;").close();
+            out.blank();
+            out.line("@Override");
+            out.open("public boolean isFlexible(short version)");
+            out.line("return %s;", spec.flexibleVersions.condition(Versions.ALL));
+            out.close();
+        }
+
+        out.blank();
+        if (top) out.line("@Override");
+        out.open("public void read(ByteBuffer buf, short version)");
+        generateRead(fields, context);
+        out.close();
+
+        out.blank();
+        if (top) out.line("@Override");
+        out.open("public void write(MessageWriter w, short version)");
+        if (!top) {
+            out.open("if (encoded != null)");
+            out.open("if (version != encodedVersion)");
+            out.line("throw new IllegalStateException(\"%s encoded at version \" + encodedVersion + \" written at \" + version);", className);
+            out.close();
+            out.line("w.putFragment(encoded).field(\"%s\");", className);
+            out.line("return;");
+            out.close();
+        }
+        generateWrite(fields, context);
+        out.close();
+
+        if (!top) {
+            out.blank();
+            out.line("/**");
+            out.line(" * Writes {@code bytes}, this struct encoded earlier at {@code version} with");
+            out.line(" * {@code MessageWriter.encodeFragment}, in place of the fields. The bytes must not change.");
+            out.line(" */");
+            out.open("public %s setEncoded(ByteBuffer bytes, short version)", className);
+            out.line("this.encoded = bytes;");
+            out.line("this.encodedVersion = version;");
+            out.line("return this;");
+            out.close();
+        }
+
+        for (FieldSpec field : fields) {
+            out.blank();
+            if (field.about != null) out.line("/** %s */", field.about.replace("*/", "* /"));
+            out.open("public %s %s()", javaType(field), field.camelName());
+            out.line("return %s;", field.camelName());
+            out.close();
+            out.blank();
+            out.open("public %s set%s(%s v)", className, field.name, javaType(field));
+            out.line("this.%s = v;", field.camelName());
+            out.line("return this;");
+            out.close();
+        }
+
+        out.blank();
+        out.line("@Override");
+        out.open("public String toString()");
+        out.line("return \"%s(\"", className);
+        for (int i = 0; i < fields.size(); i++) {
+            FieldSpec field = fields.get(i);
+            out.line("        + \"%s%s=\" + %s", i == 0 ? "" : ", ", field.camelName(), describe(field));
+        }
+        out.line("        + \")\";");
+        out.close();
+    }
+
+    // ---------------------------------------------------------------- read
+
+    private void generateRead(List<FieldSpec> fields, Versions context) {
+        String flexible = spec.flexibleVersions.condition(context);
+        for (FieldSpec field : fields) {
+            if (field.tagged()) continue;
+            String present = field.versions.condition(context);
+            switch (present) {
+                case "true" -> readField(field, context, flexible);
+                case "false" -> out.line("this.%s = %s;", field.camelName(), defaultValue(field));
+                default -> {
+                    out.open("if (%s)", present);
+                    readField(field, context, flexible);
+                    out.reopen("else");
+                    out.line("this.%s = %s;", field.camelName(), defaultValue(field));
+                    out.close();
+                }
+            }
+        }
+        List<FieldSpec> tagged = taggedFields(fields);
+        if (flexible.equals("false")) return;
+        for (FieldSpec field : tagged) {
+            out.line("this.%s = %s;", field.camelName(), defaultValue(field));
+        }
+        if (!flexible.equals("true")) out.open("if (%s)", flexible);
+        Versions taggedContext = context.intersect(spec.flexibleVersions);
+        out.line("int taggedFields = readUnsignedVarInt(buf);");
+        out.open("for (int i = 0; i < taggedFields; i++)");
+        out.line("int tag = readUnsignedVarInt(buf);");
+        out.line("int size = readUnsignedVarInt(buf);");
+        out.open("switch (tag)");
+        for (FieldSpec field : tagged) {
+            String present = field.taggedVersions.intersect(field.versions).condition(taggedContext);
+            if (present.equals("false")) continue;
+            out.open("case %d ->", field.tag);
+            if (present.equals("true")) {
+                readField(field, taggedContext, "true");
+            } else {
+                out.open("if (%s)", present);
+                readField(field, taggedContext, "true");
+                out.reopen("else");
+                out.line("skip(buf, size);");
+                out.close();
+            }
+            out.close();
+        }
+        out.line("default -> skip(buf, size);");
+        out.close();
+        out.close();
+        if (!flexible.equals("true")) out.close();
+    }
+
+    private void readField(FieldSpec field, Versions context, String compact) {
+        String name = field.camelName();
+        FieldType type = field.type;
+        String nullable = field.nullableVersions.condition(context);
+        switch (type.kind()) {
+            case STRING, BYTES -> {
+                out.line("this.%s = %s(buf, %s);", name, type.kind() == Kind.STRING ? "readString" : "readBytes", compact);
+                rejectNull(field, nullable);
+            }
+            case RECORDS -> {
+                if (spec.isRequest()) {
+                    out.line("this.%s = readRecords(buf, %s);", name, compact);
+                    rejectNull(field, nullable);
+                } else {
+                    out.line("readBytes(buf, %s); // record data is only ever sent as a file region", compact);
+                    out.line("this.%s = null;", name);
+                }
+            }
+            case STRUCT -> {
+                String create = "new " + type.structName() + "(buf, version)";
+                switch (nullable) {
+                    case "false" -> out.line("this.%s = %s;", name, create);
+                    case "true" -> out.line("this.%s = buf.get() < 0 ? null : %s;", name, create);
+                    default -> out.line("this.%s = (%s) && buf.get() < 0 ? null : %s;", name, nullable, create);
+                }
+            }
+            case ARRAY -> {
+                int n = temp++;
+                out.open("");
+                out.line("int length%d = readArrayLength(buf, %s);", n, compact);
+                out.open("if (length%d < 0)", n);
+                switch (nullable) {
+                    case "true" -> out.line("this.%s = null;", name);
+                    case "false" -> out.line("throw nonNullable(\"%s\");", field.name);
+                    default -> out.line("if (!(%s)) throw nonNullable(\"%s\");", nullable, field.name).line("this.%s = null;", name);
+                }
+                out.reopen("else");
+                if (type.intArray()) {
+                    out.line("int[] array%d = new int[length%d];", n, n);
+                    out.open("for (int i%d = 0; i%d < length%d; i%d++)", n, n, n, n);
+                    out.line("array%d[i%d] = buf.getInt();", n, n);
+                    out.close();
+                    out.line("this.%s = array%d;", name, n);
+                } else {
+                    out.line("%s list%d = new ArrayList<>(length%d);", javaType(field), n, n);
+                    out.open("for (int i%d = 0; i%d < length%d; i%d++)", n, n, n, n);
+                    out.line("list%d.add(%s);", n, readElement(type.element(), compact));
+                    out.close();
+                    out.line("this.%s = list%d;", name, n);
+                }
+                out.close();
+                out.close();
+            }
+            default -> out.line("this.%s = %s;", name, readPrimitive(type.kind()));
+        }
+    }
+
+    private void rejectNull(FieldSpec field, String nullable) {
+        if (nullable.equals("true")) return;
+        String condition = "this." + field.camelName() + " == null" + (nullable.equals("false") ? "" : " && !(" + nullable + ")");
+        out.line("if (%s) throw nonNullable(\"%s\");", condition, field.name);
+    }
+
+    private String readElement(FieldType element, String compact) {
+        return switch (element.kind()) {
+            case STRUCT -> "new " + element.structName() + "(buf, version)";
+            case STRING -> "readString(buf, " + compact + ")";
+            default -> readPrimitive(element.kind());
+        };
+    }
+
+    private static String readPrimitive(Kind kind) {
+        return switch (kind) {
+            case BOOL -> "buf.get() != 0";
+            case INT8 -> "buf.get()";
+            case INT16 -> "buf.getShort()";
+            case UINT16 -> "Short.toUnsignedInt(buf.getShort())";
+            case INT32 -> "buf.getInt()";
+            case INT64 -> "buf.getLong()";
+            case FLOAT64 -> "buf.getDouble()";
+            case UUID -> "readUuid(buf)";
+            default -> throw new IllegalArgumentException("Not a primitive: " + kind);
+        };
+    }
+
+    // ---------------------------------------------------------------- write
+
+    private void generateWrite(List<FieldSpec> fields, Versions context) {
+        String flexible = spec.flexibleVersions.condition(context);
+        for (FieldSpec field : fields) {
+            if (field.tagged()) continue;
+            String present = field.versions.condition(context);
+            if (present.equals("false")) continue;
+            if (!present.equals("true")) out.open("if (%s)", present);
+            writeField(field, context, flexible);
+            if (!present.equals("true")) out.close();
+        }
+        if (flexible.equals("false")) return;
+        if (!flexible.equals("true")) out.open("if (%s)", flexible);
+        Versions taggedContext = context.intersect(spec.flexibleVersions);
+        List<FieldSpec> tagged = taggedFields(fields);
+        out.line("int taggedFields = 0;");
+        for (FieldSpec field : tagged) {
+            String condition = taggedCondition(field, taggedContext);
+            if (condition != null) out.line("if (%s) taggedFields++;", condition);
+        }
+        out.line("w.putUnsignedVarInt(taggedFields).field(\"Tagged Fields\");");
+        for (FieldSpec field : tagged) {
+            String condition = taggedCondition(field, taggedContext);
+            if (condition == null) continue;
+            int n = temp++;
+            out.open("if (%s)", condition);
+            out.line("w.putUnsignedVarInt(%d);", field.tag);
+            out.line("int mark%d = w.beginLengthPrefix();", n);
+            writeField(field, taggedContext, "true");
+            out.line("w.endLengthPrefix(mark%d);", n);
+            out.close();
+        }
+        if (!flexible.equals("true")) out.close();
+    }
+
+    private String taggedCondition(FieldSpec field, Versions taggedContext) {
+        String versions = field.taggedVersions.intersect(field.versions).condition(taggedContext);
+        if (versions.equals("false")) return null;
+        String present = isNonDefault(field);
+        return versions.equals("true") ? present : "(" + versions + ") && " + present;
+    }
+
+    private void writeField(FieldSpec field, Versions context, String compact) {
+        String value = "this." + field.camelName();
+        String trace = ".field(\"" + field.name + "\")";
+        FieldType type = field.type;
+        switch (type.kind()) {
+            case STRING -> out.line("w.putString(%s, %s)%s;", value, compact, trace);
+            case BYTES -> out.line("w.putByteArray(%s, %s)%s;", value, compact, trace);
+            case RECORDS -> {
+                out.open("if (%s == null)", value);
+                out.line("w.putArrayLength(-1, %s)%s;", compact, trace);
+                out.reopen("else");
+                if (spec.isRequest()) {
+                    out.line("w.putArrayLength(%s.remaining(), %s).field(\"%s Length\");", value, compact, field.name);
+                    out.line("w.putBuffer(%s)%s;", value, trace);
+                } else {
+                    out.line("w.putArrayLength((int) %s.count(), %s).field(\"%s Length\");", value, compact, field.name);
+                    out.line("w.putRegion(%s)%s;", value, trace);
+                }
+                out.close();
+            }
+            case STRUCT -> {
+                String nullable = field.nullableVersions.condition(context);
+                if (nullable.equals("false")) {
+                    out.line("%s.write(w, version);", value);
+                } else {
+                    if (!nullable.equals("true")) out.open("if (%s)", nullable);
+                    out.line("w.putByte(%s == null ? (byte) -1 : (byte) 1)%s;", value, trace);
+                    if (!nullable.equals("true")) out.close();
+                    out.line("if (%s != null) %s.write(w, version);", value, value);
+                }
+            }
+            case ARRAY -> {
+                out.open("if (%s == null)", value);
+                out.line("w.putArrayLength(-1, %s)%s;", compact, trace);
+                out.reopen("else");
+                out.line("w.putArrayLength(%s.%s, %s)%s;", value, type.intArray() ? "length" : "size()", compact, trace);
+                FieldType element = type.element();
+                int n = temp++;
+                out.open("for (%s e%d : %s)", element.javaType(spec.isRequest()), n, value);
+                if (element.kind() == Kind.STRUCT) {
+                    out.line("e%d.write(w, version);", n);
+                } else {
+                    out.line("%s%s;", writePrimitive(element.kind(), "e" + n, compact), trace);
+                }
+                out.close();
+                out.close();
+            }
+            default -> out.line("%s%s;", writePrimitive(type.kind(), value, compact), trace);
+        }
+    }
+
+    private static String writePrimitive(Kind kind, String value, String compact) {
+        return switch (kind) {
+            case BOOL -> "w.putByte(" + value + " ? (byte) 1 : (byte) 0)";
+            case INT8 -> "w.putByte(" + value + ")";
+            case INT16 -> "w.putShort(" + value + ")";
+            case UINT16 -> "w.putShort((short) " + value + ")";
+            case INT32 -> "w.putInt(" + value + ")";
+            case INT64 -> "w.putLong(" + value + ")";
+            case FLOAT64 -> "w.putDouble(" + value + ")";
+            case UUID -> "w.putUuid(" + value + ")";
+            case STRING -> "w.putString(" + value + ", " + compact + ")";
+            default -> throw new IllegalArgumentException("Not a primitive: " + kind);
+        };
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private String javaType(FieldSpec field) {
+        return field.type.javaType(spec.isRequest());
+    }
+
+    private static List<FieldSpec> taggedFields(List<FieldSpec> fields) {
+        return fields.stream().filter(FieldSpec::tagged).sorted(Comparator.comparingInt(f -> f.tag)).toList();
+    }
+
+    private String isNonDefault(FieldSpec field) {
+        String value = "this." + field.camelName();
+        return switch (field.type.kind()) {
+            case STRING -> "!Objects.equals(" + value + ", " + defaultValue(field) + ")";
+            case UUID -> value + " != null && !ApiMessage.ZERO_UUID.equals(" + value + ")";
+            case ARRAY -> value + " != null && " + (field.type.intArray() ? value + ".length != 0" : "!" + value + ".isEmpty()");
+            case STRUCT, BYTES -> value + " != null";
+            default -> value + " != " + defaultValue(field);
+        };
+    }
+
+    private String defaultValue(FieldSpec field) {
+        Object raw = field.defaultValue;
+        String text = raw == null ? null : raw.toString().trim();
+        boolean isNull = "null".equals(text);
+        if (isNull && field.nullableVersions.empty() && !field.tagged()) {
+            throw new IllegalArgumentException(spec.name + "." + field.name + ": default is null but the field is not nullable");
+        }
+        return switch (field.type.kind()) {
+            case BOOL -> text == null ? "false" : String.valueOf(Boolean.parseBoolean(text));
+            case INT8 -> "(byte) " + integerDefault(field, text, Byte.MIN_VALUE, Byte.MAX_VALUE);
+            case INT16 -> "(short) " + integerDefault(field, text, Short.MIN_VALUE, Short.MAX_VALUE);
+            case UINT16 -> Long.toString(integerDefault(field, text, 0, 65535));
+            case INT32 -> Long.toString(integerDefault(field, text, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            case INT64 -> integerDefault(field, text, Long.MIN_VALUE, Long.MAX_VALUE) + "L";
+            case FLOAT64 -> text == null ? "0.0" : Double.toString(Double.parseDouble(text));
+            case STRING -> isNull ? "null" : "\"" + (text == null ? "" : text.replace("\\", "\\\\").replace("\"", "\\\"")) + "\"";
+            case UUID -> "ApiMessage.ZERO_UUID";
+            case BYTES -> isNull ? "null" : "new byte[0]";
+            case RECORDS -> "null";
+            case STRUCT -> isNull || field.tagged() ? "null" : "new " + field.type.structName() + "()";
+            case ARRAY -> isNull ? "null" : field.type.intArray() ? "new int[0]" : "new ArrayList<>(0)";
+        };
+    }
+
+    private long integerDefault(FieldSpec field, String text, long min, long max) {
+        if (text == null) return 0;
+        boolean negative = text.startsWith("-");
+        String digits = negative ? text.substring(1) : text;
+        long value = digits.startsWith("0x") ? Long.parseLong(digits.substring(2), 16) : Long.parseLong(digits);
+        if (negative) value = -value;
+        if (value < min || value > max) {
+            throw new IllegalArgumentException(spec.name + "." + field.name + ": default " + text + " is out of range for " + field.type);
+        }
+        return value;
+    }
+
+    private String describe(FieldSpec field) {
+        String name = field.camelName();
+        return switch (field.type.kind()) {
+            case STRING -> "(" + name + " == null ? \"null\" : \"'\" + " + name + " + \"'\")";
+            case BYTES -> "(" + name + " == null ? \"null\" : " + name + ".length + \" bytes\")";
+            case RECORDS -> "(" + name + " == null ? \"null\" : " + name + (spec.isRequest() ? ".remaining()" : ".count()") + " + \" bytes\")";
+            case ARRAY -> field.type.intArray() ? "java.util.Arrays.toString(" + name + ")" : name;
+            default -> name;
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package generator;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Generates the protocol codecs from the Kafka-style JSON message definitions in
+ * {@code src/main/message}. It runs as an annotation processor inside the regular compile, so
+ * the generated {@code protocol.message} sources are compiled together with the code that uses
+ * them and no build plugin beyond the compiler is needed; see the two compiler executions in
+ * {@code pom.xml}.
+ *
+ * <p>Definitions follow Kafka's format: {@code validVersions}, {@code flexibleVersions} and, per
+ * field, {@code versions}, {@code nullableVersions}, {@code taggedVersions}, {@code tag} and
+ * {@code default}. Adding an api means adding its request and response definitions.
+ */
+public class MessageGenerator extends AbstractProcessor {
+    static final String SPEC_DIR_OPTION = "message.spec.dir";
+    static final String PACKAGE = "protocol.message";
+
+    private boolean generated;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of("*");
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Set.of(SPEC_DIR_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (generated) return false;
+        generated = true;
+        String dir = processingEnv.getOptions().get(SPEC_DIR_OPTION);
+        if (dir == null) {
+            error("Missing -A" + SPEC_DIR_OPTION + "=<directory of message definitions>");
+            return false;
+        }
+        try {
+            generate(Path.of(dir), processingEnv.getFiler());
+        } catch (IOException | RuntimeException e) {
+            error("Message generation failed: " + e.getMessage());
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void generate(Path dir, Filer filer) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".json")).sorted().toList();
+        }
+        List<MessageSpec> specs = new ArrayList<>();
+        for (Path file : files) {
+            MessageSpec spec;
+            try {
+                spec = new MessageSpec((Map<String, Object>) Json.parse(Files.readString(file)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(file.getFileName() + ": " + e.getMessage(), e);
+            }
+            String source = new MessageDataGenerator(spec).generate(PACKAGE, file.getFileName().toString());
+            write(filer, PACKAGE + "." + spec.className(), source);
+            specs.add(spec);
+        }
+        write(filer, PACKAGE + ".ApiMessageType", new ApiMessageTypeGenerator().generate(PACKAGE, specs));
+    }
+
+    private static void write(Filer filer, String className, String source) throws IOException {
+        try (Writer writer = filer.createSourceFile(className).openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private void error(String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message);
+    }
+}
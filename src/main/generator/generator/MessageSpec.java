@@ -0,0 +1,151 @@
+package generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One message definition file: a request or response body for an api key, with its top-level
+ * fields and any nested or common struct types.
+ */
+final class MessageSpec {
+    final String name;
+    final String type;
+    final short apiKey;
+    final Versions validVersions;
+    final Versions flexibleVersions;
+    final List<FieldSpec> fields;
+    final Map<String, StructSpec> structs = new LinkedHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    MessageSpec(Map<String, Object> json) {
+        this.name = (String) require(json, "name");
+        this.type = (String) require(json, "type");
+        this.apiKey = ((Long) require(json, "apiKey")).shortValue();
+        this.validVersions = Versions.parse(require(json, "validVersions"), null);
+        this.flexibleVersions = Versions.parse(json.get("flexibleVersions"), Versions.NONE);
+        if (!type.equals("request") && !type.equals("response")) {
+            throw new IllegalArgumentException(name + ": type must be request or response, not " + type);
+        }
+        for (Object common : (List<Object>) json.getOrDefault("commonStructs", List.of())) {
+            Map<String, Object> struct = (Map<String, Object>) common;
+            String structName = (String) require(struct, "name");
+            structs.put(structName, new StructSpec(structName, validVersions, FieldSpec.parseAll(struct.get("fields"))));
+        }
+        this.fields = FieldSpec.parseAll(require(json, "fields"));
+        collectStructs(fields, validVersions);
+        for (StructSpec struct : structs.values()) {
+            validate(struct.name(), struct.fields(), struct.versions());
+        }
+        validate(name, fields, validVersions);
+    }
+
+    boolean isRequest() {
+        return type.equals("request");
+    }
+
+    /** The api name shared by the request and response, e.g. {@code Fetch}. */
+    String apiName() {
+        return name.substring(0, name.length() - (isRequest() ? "Request".length() : "Response".length()));
+    }
+
+    String className() {
+        return name + "Data";
+    }
+
+    StructSpec struct(String structName) {
+        StructSpec struct = structs.get(structName);
+        if (struct == null) throw new IllegalArgumentException(name + ": unknown struct type " + structName);
+        return struct;
+    }
+
+    private void collectStructs(List<FieldSpec> fields, Versions context) {
+        for (FieldSpec field : fields) {
+            if (field.fields.isEmpty()) continue;
+            String structName = field.type.structName();
+            if (structName == null) throw new IllegalArgumentException(name + ": field " + field.name + " has fields but is not a struct");
+            if (structs.containsKey(structName)) throw new IllegalArgumentException(name + ": duplicate struct " + structName);
+            Versions versions = field.versions.intersect(context);
+            structs.put(structName, new StructSpec(structName, versions, field.fields));
+            collectStructs(field.fields, versions);
+        }
+    }
+
+    private void validate(String owner, List<FieldSpec> fields, Versions context) {
+        Set<Integer> tags = new HashSet<>();
+        for (FieldSpec field : fields) {
+            if (field.type.structName() != null) struct(field.type.structName());
+            if (field.tag == null) {
+                if (!field.taggedVersions.empty()) throw new IllegalArgumentException(owner + "." + field.name + ": taggedVersions without a tag");
+                continue;
+            }
+            if (!tags.add(field.tag)) throw new IllegalArgumentException(owner + "." + field.name + ": duplicate tag " + field.tag);
+            if (!flexibleVersions.contains(field.taggedVersions.intersect(context))) {
+                throw new IllegalArgumentException(owner + "." + field.name + ": tagged in versions that are not flexible");
+            }
+            if (field.type.kind() == FieldType.Kind.RECORDS) {
+                throw new IllegalArgumentException(owner + "." + field.name + ": records cannot be tagged");
+            }
+        }
+    }
+
+    static Object require(Map<String, Object> json, String key) {
+        Object value = json.get(key);
+        if (value == null) throw new IllegalArgumentException("Missing \"" + key + "\" in " + json.getOrDefault("name", "definition"));
+        return value;
+    }
+
+    record StructSpec(String name, Versions versions, List<FieldSpec> fields) {
+    }
+
+    static final class FieldSpec {
+        final String name;
+        final FieldType type;
+        final Versions versions;
+        final Versions nullableVersions;
+        final Versions taggedVersions;
+        final Integer tag;
+        final Object defaultValue;
+        final String about;
+        final List<FieldSpec> fields;
+
+        @SuppressWarnings("unchecked")
+        FieldSpec(Map<String, Object> json) {
+            this.name = (String) require(json, "name");
+            this.type = FieldType.parse((String) require(json, "type"));
+            this.taggedVersions = Versions.parse(json.get("taggedVersions"), Versions.NONE);
+            this.versions = Versions.parse(json.get("versions"), taggedVersions.empty() ? null : taggedVersions);
+            if (versions == null) throw new IllegalArgumentException("Missing \"versions\" in " + name);
+            this.nullableVersions = Versions.parse(json.get("nullableVersions"), Versions.NONE);
+            this.tag = json.get("tag") == null ? null : ((Long) json.get("tag")).intValue();
+            this.defaultValue = json.get("default");
+            this.about = (String) json.get("about");
+            this.fields = parseAll(json.get("fields"));
+            if (!nullableVersions.empty() && !type.nullable()) {
+                throw new IllegalArgumentException(name + ": " + type + " fields cannot be nullable");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static List<FieldSpec> parseAll(Object json) {
+            List<FieldSpec> fields = new ArrayList<>();
+            if (json == null) return fields;
+            for (Object field : (List<Object>) json) {
+                fields.add(new FieldSpec((Map<String, Object>) field));
+            }
+            return fields;
+        }
+
+        boolean tagged() {
+            return tag != null;
+        }
+
+        /** Java field and accessor name: {@code ThrottleTimeMs} becomes {@code throttleTimeMs}. */
+        String camelName() {
+            return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package generator;
+
+/**
+ * An inclusive version range as written in the message definitions: {@code "3"}, {@code "3+"},
+ * {@code "0-12"} or {@code "none"}.
+ */
+record Versions(short lowest, short highest) {
+    static final Versions NONE = new Versions((short) 0, (short) -1);
+    static final Versions ALL = new Versions((short) 0, Short.MAX_VALUE);
+
+    static Versions parse(Object spec, Versions fallback) {
+        if (spec == null) return fallback;
+        String s = spec.toString().trim();
+        if (s.equals("none")) return NONE;
+        if (s.endsWith("+")) return new Versions(Short.parseShort(s.substring(0, s.length() - 1)), Short.MAX_VALUE);
+        int dash = s.indexOf('-');
+        if (dash > 0) return new Versions(Short.parseShort(s.substring(0, dash)), Short.parseShort(s.substring(dash + 1)));
+        short v = Short.parseShort(s);
+        return new Versions(v, v);
+    }
+
+    boolean empty() {
+        return lowest > highest;
+    }
+
+    boolean contains(Versions other) {
+        return other.empty() || (!empty() && lowest <= other.lowest && highest >= other.highest);
+    }
+
+    Versions intersect(Versions other) {
+        short lo = (short) Math.max(lowest, other.lowest);
+        short hi = (short) Math.min(highest, other.highest);
+        return lo > hi ? NONE : new Versions(lo, hi);
+    }
+
+    /**
+     * A Java condition on {@code version} that is true for versions in this range, given that
+     * {@code version} is already known to lie in {@code context}. Returns {@code "true"} or
+     * {@code "false"} when the answer does not depend on the version.
+     */
+    String condition(Versions context) {
+        Versions live = intersect(context);
+        if (live.empty()) return "false";
+        if (live.equals(context)) return "true";
+        String lower = live.lowest > context.lowest ? "version >= " + live.lowest : null;
+        String upper = live.highest < context.highest ? "version <= " + live.highest : null;
+        if (lower != null && upper != null) return lower + " && " + upper;
+        return lower != null ? lower : upper;
+    }
+
+    @Override
+    public String toString() {
+        if (empty()) return "none";
+        if (highest == Short.MAX_VALUE) return lowest + "+";
+        return lowest == highest ? Short.toString(lowest) : lowest + "-" + highest;
+    }
+}
@@ -1,54 +1,58 @@
-import dto.KafkaResponse;
-import dto.MetadataCache;
-import dto.TopicClusterMetadata;
-import handlers.ClientHandler;
+import handlers.ApiHandler;
+import handlers.DescribeTopicPartitionsHandler;
+import handlers.FetchHandler;
+import handlers.ListOffsetsHandler;
+import handlers.ProduceHandler;
+import logging.Logger;
+import network.SocketServer;
 import processors.ClusterMetadataProcessor;
+import processors.MetadataTailer;
 import processors.RequestProcessor;
 import processors.ResponseProcessor;
+import storage.LogConfig;
+import storage.LogManager;
+import utils.BufferPool;
+import utils.Config;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class Main {
-  static final List<KafkaResponse.ApiVersionDTO> supportedApis = List.of(
-          new KafkaResponse.ApiVersionDTO((short)18, (short)0, (short)4),    // ApiVersions
-          new KafkaResponse.ApiVersionDTO((short)1, (short)4, (short)16),    // Fetch
-          new KafkaResponse.ApiVersionDTO((short)75, (short)0, (short)0)    // DescribeTopicPartitions
-  );
+  private static final Logger log = Logger.get(Main.class);
 
   public static void main(String[] args){
     System.err.println("Logs from your program will appear here!");
 
-     String metadataFilePath = "/tmp/kraft-combined-logs/__cluster_metadata-0/00000000000000000000.log";
-     Path path = Paths.get(metadataFilePath);
-     MetadataCache metadataCache = null;
-     if(Files.exists(path)) {
-         ClusterMetadataProcessor metadataService = new ClusterMetadataProcessor();
-         TopicClusterMetadata clusterMetadata = metadataService.loadMetadata(metadataFilePath);
-         metadataCache = metadataService.parseMetadata(clusterMetadata);
-         System.out.println("Metadata parsed and cached. Ready for requests. \n\n" + metadataCache.toString());
-     }
-     ServerSocket serverSocket = null;
-     Socket clientSocket = null;
+     Path metadataLog = Path.of(Config.LOG_DIR, "__cluster_metadata-0", "00000000000000000000.log");
+     MetadataTailer metadata = new MetadataTailer(metadataLog, new ClusterMetadataProcessor(),
+             Config.METADATA_POLL_INTERVAL_MS);
+     metadata.start();
+     log.info("Metadata parsed and cached. Ready for requests.");
      RequestProcessor requestProcessor = new RequestProcessor();
-     ResponseProcessor responseProcessor = new ResponseProcessor(supportedApis, metadataCache);
-     int port = 9092;
-     try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()){
-       serverSocket = new ServerSocket(port);
-       serverSocket.setReuseAddress(true);
-       while (true) {
-           clientSocket = serverSocket.accept();
-           executor.submit(new ClientHandler(clientSocket, requestProcessor, responseProcessor));
-       }
+     BufferPool bufferPool = BufferPool.fromConfig();
+     bufferPool.reportEvery(Config.BUFFER_POOL_STATS_INTERVAL_MS);
+     LogManager logManager = new LogManager(Path.of(Config.LOG_DIR), LogConfig.fromConfig());
+     // ApiVersions is always served and advertises exactly these apis and their version ranges.
+     List<ApiHandler> apiHandlers = List.of(
+             new ProduceHandler(metadata, logManager, bufferPool),
+             new FetchHandler(metadata, logManager, bufferPool),
+             new ListOffsetsHandler(metadata, logManager, bufferPool),
+             new DescribeTopicPartitionsHandler(metadata, bufferPool)
+     );
+     ResponseProcessor responseProcessor = new ResponseProcessor(bufferPool, apiHandlers);
+     try {
+       SocketServer socketServer = new SocketServer(Config.PORT, Config.NUM_NETWORK_THREADS, Config.ACCEPT_BACKLOG,
+               Config.MAX_INFLIGHT_REQUESTS_PER_CONNECTION, requestProcessor, responseProcessor);
+       socketServer.startup();
+       socketServer.awaitShutdown();
      } catch (IOException e) {
-       System.out.println("IOException: " + e.getMessage());
+       log.error("IOException: {}", e.getMessage(), e);
+     } catch (InterruptedException e) {
+       Thread.currentThread().interrupt();
+     } finally {
+       metadata.close();
+       logManager.close();
      }
   }
 }
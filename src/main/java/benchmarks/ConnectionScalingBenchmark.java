@@ -0,0 +1,176 @@
+package benchmarks;
+
+import handlers.ClientHandler;
+import network.SocketServer;
+import processors.RequestProcessor;
+import processors.ResponseProcessor;
+import utils.BufferPool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares the thread-per-connection model ({@link ClientHandler} on a blocking {@link ServerSocket})
+ * with the selector-based {@link SocketServer} while holding N mostly idle client connections open.
+ * For each N it reports the time to open the connections, the retained heap, the number of live
+ * platform threads and the ApiVersions round-trip latency seen by one active client.
+ *
+ * <p>Usage: {@code java -cp codecrafters-kafka.jar benchmarks.ConnectionScalingBenchmark [N ...]}.
+ * Every connection costs two file descriptors in this process, so keep N below {@code ulimit -n / 2}.
+ */
+public class ConnectionScalingBenchmark {
+    private static final int ROUND_TRIPS = 2_000;
+    private static final int BACKLOG = 4096;
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 2_500, 5_000};
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));  // handlers log every request
+
+        out.printf("%-22s %8s %12s %12s %10s %10s %10s%n",
+                "model", "conns", "connect ms", "heap MB", "threads", "p50 us", "p99 us");
+        for (int n : counts) {
+            out.println(run("thread-per-connection", n, ConnectionScalingBenchmark::startBlocking));
+            out.println(run("nio-reactor", n, ConnectionScalingBenchmark::startReactor));
+        }
+    }
+
+    private static String run(String model, int connections, ServerFactory factory) throws Exception {
+        try (RunningServer server = factory.start()) {
+            long heapBefore = settledHeap();
+
+            long start = System.nanoTime();
+            List<SocketChannel> idle = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                idle.add(SocketChannel.open(new InetSocketAddress("127.0.0.1", server.port())));
+            }
+            long connectMs = (System.nanoTime() - start) / 1_000_000;
+
+            long[] latencies = measureRoundTrips(server.port());
+            long heapMb = (settledHeap() - heapBefore) / (1024 * 1024);
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            for (SocketChannel channel : idle) channel.close();
+            Arrays.sort(latencies);
+            return String.format("%-22s %8d %12d %12d %10d %10d %10d", model, connections, connectMs, heapMb, threads,
+                    latencies[latencies.length / 2] / 1000, latencies[latencies.length * 99 / 100] / 1000);
+        }
+    }
+
+    private static long[] measureRoundTrips(int port) throws IOException {
+        long[] latencies = new long[ROUND_TRIPS];
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port))) {
+            // ApiVersions v4: header v2 (client id "bmk", no tagged fields), then the client software
+            // name "bmk" and version "1" as compact strings and no tagged fields.
+            ByteBuffer request = ByteBuffer.allocate(4 + 14 + 7);
+            request.putInt(21).putShort((short) 18).putShort((short) 4).putInt(0).putShort((short) 3).put("bmk".getBytes())
+                    .put((byte) 0).put((byte) 4).put("bmk".getBytes()).put((byte) 2).put("1".getBytes()).put((byte) 0);
+            ByteBuffer size = ByteBuffer.allocate(4);
+            ByteBuffer body = ByteBuffer.allocate(1024);
+            for (int i = 0; i < ROUND_TRIPS; i++) {
+                long t0 = System.nanoTime();
+                request.putInt(8, i).rewind();
+                while (request.hasRemaining()) channel.write(request);
+                size.clear();
+                while (size.hasRemaining()) if (channel.read(size) < 0) throw new IOException("closed");
+                body.clear().limit(size.getInt(0));
+                while (body.hasRemaining()) if (channel.read(body) < 0) throw new IOException("closed");
+                latencies[i] = System.nanoTime() - t0;
+            }
+        }
+        return latencies;
+    }
+
+    private static long settledHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static RunningServer startBlocking() throws IOException {
+        ServerSocket serverSocket = new ServerSocket(0, BACKLOG);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        RequestProcessor requestProcessor = new RequestProcessor();
+        ResponseProcessor responseProcessor = new ResponseProcessor(BufferPool.fromConfig(), List.of());
+        Thread acceptor = Thread.ofPlatform().start(() -> {
+            try {
+                while (true) {
+                    Socket clientSocket = serverSocket.accept();
+                    executor.submit(new ClientHandler(clientSocket, requestProcessor, responseProcessor));
+                }
+            } catch (IOException ignored) {
+                // server socket closed
+            }
+        });
+        return new RunningServer() {
+            public int port() {
+                return serverSocket.getLocalPort();
+            }
+
+            public void close() throws IOException {
+                serverSocket.close();
+                join(acceptor::join);
+                executor.shutdownNow();
+            }
+        };
+    }
+
+    private static RunningServer startReactor() throws IOException {
+        SocketServer socketServer = new SocketServer(0, 1, BACKLOG, 5,
+                new RequestProcessor(), new ResponseProcessor(BufferPool.fromConfig(), List.of()));
+        socketServer.startup();
+        int port = socketServer.boundPort();
+        return new RunningServer() {
+            public int port() {
+                return port;
+            }
+
+            public void close() {
+                socketServer.shutdown();
+                join(socketServer::awaitShutdown);
+            }
+        };
+    }
+
+    /** Waits for server threads to exit; an interrupt stops waiting and is passed on to the caller's thread. */
+    private static void join(Joiner joiner) {
+        try {
+            joiner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface Joiner {
+        void join() throws InterruptedException;
+    }
+
+    private interface RunningServer extends AutoCloseable {
+        int port();
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private interface ServerFactory {
+        RunningServer start() throws IOException;
+    }
+}
@@ -0,0 +1,153 @@
+package benchmarks;
+
+import dto.MetadataCache;
+import dto.OffHeapMetadata;
+import dto.PartitionChange;
+import dto.PartitionData;
+import handlers.DescribeTopicPartitionsHandler;
+import processors.MetadataCacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Compares the {@link MetadataCache} on the heap with one backed by {@link OffHeapMetadata}: heap
+ * retained, off-heap bytes, the time of a full collection while the cache is alive, the time to
+ * apply a leader change to one partition, and the latency of the lookups requests make (a topic by
+ * name, a topic by id, and one partition of it). The retained bytes include the encoded
+ * DescribeTopicPartitions fragments, which are on the heap in one store and off-heap in the other;
+ * the fragments column shows how much of it they are.
+ *
+ * <p>The cluster has N topics of {@value #PARTITIONS_PER_TOPIC} partitions, each with three
+ * replicas and directories. Heap numbers come from {@link Runtime} after collections, so run with
+ * a fixed heap and nothing else going on, e.g. {@code -Xms4g -Xmx4g}.
+ *
+ * <p>Usage: {@code java -cp codecrafters-kafka.jar benchmarks.MetadataFootprintBenchmark [N ...]}.
+ */
+public class MetadataFootprintBenchmark {
+    private static final int PARTITIONS_PER_TOPIC = 50;
+    private static final int LOOKUPS = 2_000_000;
+    private static final int RUNS = 3;
+    private static final int CHANGES = 10;
+
+    public static void main(String[] args) {
+        int[] counts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{1_000, 10_000, 40_000};
+
+        System.out.printf("%8s %10s %8s %10s %12s %12s %10s %10s %12s %12s %12s%n", "topics", "partitions",
+                "store", "heap MB", "off-heap MB", "fragments MB", "full GC ms", "change ms", "byName ns",
+                "byUuid ns", "partition ns");
+        for (int topics : counts) {
+            MetadataCache heap = cluster(topics);
+            long fragmentBytes = heap.describeFragments().values().stream().mapToLong(ByteBuffer::remaining).sum();
+            long heapChangeNs = Long.MAX_VALUE;
+            for (int i = 0; i < CHANGES; i++) {
+                long start = System.nanoTime();
+                MetadataCacheBuilder builder = new MetadataCacheBuilder(heap);
+                builder.visitPartitionChange(leaderChange(i));
+                builder.build(i);
+                heapChangeNs = Math.min(heapChangeNs, System.nanoTime() - start);
+            }
+            System.out.println(measure(topics, "heap", heap, 0, fragmentBytes, heapChangeNs));
+
+            OffHeapMetadata store = OffHeapMetadata.copyOf(heap);
+            heap = null;
+            long offHeapChangeNs = Long.MAX_VALUE;
+            for (int i = 0; i < CHANGES; i++) {
+                // What the builder does with kafka.metadata.off.heap for one changed topic.
+                long start = System.nanoTime();
+                List<PartitionData> partitions = new ArrayList<>(store.cache().byUuid().get(topicId(0)));
+                PartitionData p = partitions.getFirst();
+                partitions.set(0, new PartitionData(0, p.topicId(), p.replicas(), p.inSyncReplicas(),
+                        p.removingReplicas(), p.addingReplicas(), p.directories(), i % 3 + 1, p.leaderEpoch() + 1,
+                        p.partitionEpoch() + 1));
+                String name = store.cache().topicName(topicId(0));
+                store.update(List.of(new OffHeapMetadata.Topic(topicId(0), name, partitions,
+                        DescribeTopicPartitionsHandler.encodeTopic(name, partitions))), Set.of(), i);
+                offHeapChangeNs = Math.min(offHeapChangeNs, System.nanoTime() - start);
+            }
+            System.out.println(measure(topics, "off-heap", store.cache(), store.byteSize(), store.fragmentBytes(),
+                    offHeapChangeNs));
+        }
+    }
+
+    private static PartitionChange leaderChange(int run) {
+        return new PartitionChange(0, topicId(0), null, run % 3 + 1, null, null, null, null);
+    }
+
+    private static MetadataCache cluster(int topics) {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        for (int t = 0; t < topics; t++) {
+            UUID topicId = topicId(t);
+            builder.visitTopic(String.format("topic-%06d", t), topicId);
+            for (int p = 0; p < PARTITIONS_PER_TOPIC; p++) {
+                int leader = p % 3 + 1;
+                builder.visitPartition(new PartitionData(p, topicId, new int[]{1, 2, 3},
+                        new int[]{leader, leader % 3 + 1}, PartitionData.NO_REPLICAS, PartitionData.NO_REPLICAS,
+                        new long[]{1, 1, 2, 2, 3, 3}, leader, p, p));
+            }
+        }
+        return builder.build(-1);
+    }
+
+    private static String measure(int topics, String store, MetadataCache cache, long offHeapBytes,
+                                  long fragmentBytes, long changeNs) {
+        long heapBytes = Long.MAX_VALUE;
+        long gcMs = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            System.gc();
+            gcMs = Math.min(gcMs, (System.nanoTime() - start) / 1_000_000);
+            heapBytes = Math.min(heapBytes, Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        }
+
+        String[] names = new String[topics];
+        UUID[] ids = new UUID[topics];
+        for (int t = 0; t < topics; t++) {
+            names[t] = String.format("topic-%06d", t);
+            ids[t] = topicId(t);
+        }
+        long byNameNs = Long.MAX_VALUE;
+        long byUuidNs = Long.MAX_VALUE;
+        long partitionNs = Long.MAX_VALUE;
+        long sink = 0;
+        for (int i = 0; i < RUNS; i++) {
+            SplittableRandom random = new SplittableRandom(i);
+            long start = System.nanoTime();
+            for (int n = 0; n < LOOKUPS; n++) {
+                sink += cache.byName().get(names[random.nextInt(topics)]).size();
+            }
+            byNameNs = Math.min(byNameNs, (System.nanoTime() - start) / LOOKUPS);
+
+            start = System.nanoTime();
+            for (int n = 0; n < LOOKUPS; n++) {
+                sink += cache.byUuid().get(ids[random.nextInt(topics)]).size();
+            }
+            byUuidNs = Math.min(byUuidNs, (System.nanoTime() - start) / LOOKUPS);
+
+            start = System.nanoTime();
+            for (int n = 0; n < LOOKUPS; n++) {
+                List<PartitionData> partitions = cache.byName().get(names[random.nextInt(topics)]);
+                int partitionId = random.nextInt(PARTITIONS_PER_TOPIC);
+                sink += partitions.get(MetadataCache.indexOf(partitions, partitionId)).leader();
+            }
+            partitionNs = Math.min(partitionNs, (System.nanoTime() - start) / LOOKUPS);
+        }
+        if (sink == 42) System.err.print("");  // keeps the lookups from being optimized away
+
+        return String.format("%8d %10d %8s %10d %12d %12d %10d %10.1f %12d %12d %12d", topics,
+                (long) topics * PARTITIONS_PER_TOPIC, store, heapBytes / (1024 * 1024),
+                offHeapBytes / (1024 * 1024), fragmentBytes / (1024 * 1024), gcMs, changeNs / 1e6, byNameNs,
+                byUuidNs, partitionNs);
+    }
+
+    private static UUID topicId(int topic) {
+        return new UUID(0x4000L << 48 | topic, 0x8000_0000_0000_0000L | topic);
+    }
+}
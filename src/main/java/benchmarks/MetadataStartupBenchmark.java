@@ -0,0 +1,225 @@
+package benchmarks;
+
+import dto.MetadataCache;
+import processors.ClusterMetadataProcessor;
+import processors.MetadataCacheBuilder;
+import processors.MetadataSnapshot;
+import utils.ByteUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Measures broker startup against the size of the metadata log: replaying the whole log versus
+ * loading the newest {@link MetadataSnapshot} and replaying only the records after it.
+ *
+ * <p>Each run writes a log for a fixed cluster of {@value #TOPICS} topics with
+ * {@value #PARTITIONS_PER_TOPIC} partitions each, followed by leadership changes (re-recorded
+ * partitions) until the log holds N records, as a long-lived cluster's log does. The snapshot is
+ * taken {@value #TAIL_RECORDS} records before the end. The cluster state, and so the snapshot,
+ * stays the same size while the log grows.
+ *
+ * <p>Usage: {@code java -cp codecrafters-kafka.jar benchmarks.MetadataStartupBenchmark [N ...]}.
+ */
+public class MetadataStartupBenchmark {
+    private static final int TOPICS = 1_000;
+    private static final int PARTITIONS_PER_TOPIC = 10;
+    private static final int TAIL_RECORDS = 10_000;
+    private static final int RECORDS_PER_BATCH = 100;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int[] counts = args.length > 0
+                ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray()
+                : new int[]{100_000, 500_000, 2_000_000};
+
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));  // the loader logs every load
+
+        out.printf("%10s %10s %12s %14s %16s%n", "records", "log MB", "snapshot KB", "full replay ms", "snapshot+tail ms");
+        for (int n : counts) {
+            out.println(run(Math.max(n, TOPICS * (PARTITIONS_PER_TOPIC + 1) + TAIL_RECORDS)));
+        }
+    }
+
+    private static String run(int records) throws IOException {
+        Path dir = Files.createTempDirectory("metadata-startup");
+        try {
+            Path logFile = dir.resolve("00000000000000000000.log");
+            ClusterMetadataProcessor processor = new ClusterMetadataProcessor(1, Integer.MAX_VALUE);
+            try (MetadataLogWriter writer = new MetadataLogWriter(logFile)) {
+                writer.writeCluster();
+                writer.writeLeaderChanges(records - TAIL_RECORDS - writer.nextOffset());
+            }
+            MetadataCache beforeTail = processor.loadMetadataCache(logFile.toString()).cache();
+            Path snapshot;
+            try (MetadataLogWriter writer = new MetadataLogWriter(logFile)) {
+                snapshot = MetadataSnapshot.write(dir, beforeTail, writer.nextOffset() - 1);
+                writer.writeLeaderChanges(TAIL_RECORDS);
+            }
+
+            long fullMs = Long.MAX_VALUE;
+            long snapshotMs = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                MetadataCacheBuilder builder = new MetadataCacheBuilder();
+                processor.replay(logFile.toString(), builder, 0);
+                MetadataCache full = builder.build(-1);
+                fullMs = Math.min(fullMs, (System.nanoTime() - start) / 1_000_000);
+
+                start = System.nanoTime();
+                MetadataCache fromSnapshot = processor.loadMetadataCache(logFile.toString()).cache();
+                snapshotMs = Math.min(snapshotMs, (System.nanoTime() - start) / 1_000_000);
+                if (!full.byName().equals(fromSnapshot.byName())) {
+                    throw new IllegalStateException("Snapshot and full replay disagree");
+                }
+            }
+            return String.format("%10d %10d %12d %14d %16d", records, Files.size(logFile) / (1024 * 1024),
+                    Files.size(snapshot) / 1024, fullMs, snapshotMs);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path path : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+            }
+        }
+    }
+
+    /** Appends v2 record batches of TopicRecords and PartitionRecords to a metadata log. */
+    private static final class MetadataLogWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer batch = ByteBuffer.allocate(1024 * 1024);
+        private final ByteBuffer value = ByteBuffer.allocate(1024);
+        private final CRC32C crc = new CRC32C();
+        private long nextOffset;
+        private int batchRecords;
+        private int churn;
+
+        MetadataLogWriter(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            this.nextOffset = countRecords(path);
+            startBatch();
+        }
+
+        long nextOffset() {
+            return nextOffset + batchRecords;
+        }
+
+        void writeCluster() throws IOException {
+            for (int t = 0; t < TOPICS; t++) {
+                value.clear();
+                value.put((byte) 1).put((byte) 2).put((byte) 0);
+                byte[] name = String.format("topic-%05d", t).getBytes(StandardCharsets.UTF_8);
+                ByteUtils.writeUnsignedVarInt(name.length + 1, value);
+                value.put(name).putLong(topicId(t).getMostSignificantBits()).putLong(topicId(t).getLeastSignificantBits());
+                ByteUtils.writeUnsignedVarInt(0, value);
+                append();
+                for (int p = 0; p < PARTITIONS_PER_TOPIC; p++) {
+                    writePartition(t, p, p % 3 + 1, 0);
+                }
+            }
+        }
+
+        void writeLeaderChanges(long records) throws IOException {
+            for (long i = 0; i < records; i++, churn++) {
+                int t = churn % TOPICS;
+                int p = (churn / TOPICS) % PARTITIONS_PER_TOPIC;
+                writePartition(t, p, (churn + p) % 3 + 1, churn / (TOPICS * PARTITIONS_PER_TOPIC) + 1);
+            }
+        }
+
+        private void writePartition(int topic, int partition, int leader, int leaderEpoch) throws IOException {
+            value.clear();
+            value.put((byte) 1).put((byte) 3).put((byte) 0);
+            value.putInt(partition).putLong(topicId(topic).getMostSignificantBits()).putLong(topicId(topic).getLeastSignificantBits());
+            ByteUtils.writeUnsignedVarInt(4, value); // replicas 1, 2, 3
+            value.putInt(1).putInt(2).putInt(3);
+            ByteUtils.writeUnsignedVarInt(3, value); // isr: leader and the next replica
+            value.putInt(leader).putInt(leader % 3 + 1);
+            ByteUtils.writeUnsignedVarInt(1, value); // removing replicas
+            ByteUtils.writeUnsignedVarInt(1, value); // adding replicas
+            value.putInt(leader).putInt(leaderEpoch).putInt(leaderEpoch);
+            ByteUtils.writeUnsignedVarInt(0, value);
+            append();
+        }
+
+        private static UUID topicId(int topic) {
+            return new UUID(0x4000L << 48 | topic, 0x8000_0000_0000_0000L | topic);
+        }
+
+        private void append() throws IOException {
+            value.flip();
+            int valueLength = value.remaining();
+            int bodyLength = 1 + 1 + sizeOfVarint(batchRecords) + 1 + sizeOfVarint(valueLength) + valueLength + 1;
+            writeVarint(bodyLength);
+            batch.put((byte) 0); // attributes
+            writeVarint(0); // timestamp delta
+            writeVarint(batchRecords);
+            writeVarint(-1); // null key
+            writeVarint(valueLength);
+            batch.put(value);
+            writeVarint(0); // headers
+            if (++batchRecords == RECORDS_PER_BATCH) flushBatch();
+        }
+
+        private void startBatch() {
+            batch.clear();
+            batch.position(61);
+            batchRecords = 0;
+        }
+
+        private void flushBatch() throws IOException {
+            if (batchRecords == 0) return;
+            long now = System.currentTimeMillis();
+            batch.putLong(0, nextOffset).putInt(8, batch.position() - 12).putInt(12, 0).put(16, (byte) 2)
+                    .putShort(21, (short) 0).putInt(23, batchRecords - 1).putLong(27, now).putLong(35, now)
+                    .putLong(43, -1L).putShort(51, (short) -1).putInt(53, -1).putInt(57, batchRecords);
+            crc.reset();
+            crc.update(batch.slice(21, batch.position() - 21));
+            batch.putInt(17, (int) crc.getValue());
+            batch.flip();
+            while (batch.hasRemaining()) channel.write(batch);
+            nextOffset += batchRecords;
+            startBatch();
+        }
+
+        private void writeVarint(int v) {
+            ByteUtils.writeUnsignedVarInt((v << 1) ^ (v >> 31), batch);
+        }
+
+        private static int sizeOfVarint(int v) {
+            return ByteUtils.sizeOfUnsignedVarInt((v << 1) ^ (v >> 31));
+        }
+
+        private static long countRecords(Path path) throws IOException {
+            long records = 0;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(61);
+                for (long position = 0; position < channel.size(); ) {
+                    header.clear();
+                    channel.read(header, position);
+                    records += header.getInt(57);
+                    position += 12 + header.getInt(8);
+                }
+            }
+            return records;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushBatch();
+            channel.close();
+        }
+    }
+}
@@ -1,14 +1,16 @@
 package dto;
 
+import protocol.ApiMessage;
+
 public class KafkaRequest {
     private int messageSize;
     private int correlationId;
     private short apiKey;
     private short apiVersion;
     private String clientId;
-    private KafkaRequestBody body;
+    private ApiMessage body;
 
-    public KafkaRequest(int messageSize, int correlationId, short apiKey, short apiVersion, String clientId, KafkaRequestBody body) {
+    public KafkaRequest(int messageSize, int correlationId, short apiKey, short apiVersion, String clientId, ApiMessage body) {
         this.messageSize = messageSize;
         this.correlationId = correlationId;
         this.apiKey = apiKey;
@@ -85,11 +87,11 @@ public class KafkaRequest {
         this.clientId = clientId;
     }
 
-    public KafkaRequestBody getBody() {
+    public ApiMessage getBody() {
         return body;
     }
 
-    public void setBody(KafkaRequestBody body) {
+    public void setBody(ApiMessage body) {
         this.body = body;
     }
 }
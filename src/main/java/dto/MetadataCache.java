@@ -1,14 +1,69 @@
 package dto;
 
+import utils.UuidIndex;
+import utils.UuidMap;
+
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 /**
  * Holds the processed metadata, indexed for fast lookups
- * by topic name and topic UUID.
+ * by topic name and topic UUID. Topic ids are looked up by their two longs in a {@link UuidMap},
+ * without parsing or allocating. The same maps can also be views of an {@link OffHeapMetadata}
+ * store.
+ *
+ * <p>A cache is immutable once published: metadata changes produce a new cache, so a request
+ * that reads the current cache once sees one consistent version throughout. Each topic's
+ * partitions are sorted by partition id; see {@link #indexOf}.
+ *
+ * @param describeFragments the DescribeTopicPartitions response entry of each topic with
+ *                          partitions, encoded when the topic last changed; read-only.
+ * @param lastOffset        the offset of the last metadata log record applied, or -1 if none.
  */
 public record MetadataCache(
         Map<String, List<PartitionData>> byName,
-        Map<String, List<PartitionData>> byUuid
-) {}
\ No newline at end of file
+        UuidIndex<List<PartitionData>> byUuid,
+        UuidIndex<String> topicNames,
+        Map<String, ByteBuffer> describeFragments,
+        long lastOffset
+) {
+    public static final MetadataCache EMPTY = new MetadataCache(Map.of(), new UuidMap<>(), new UuidMap<>(), Map.of(), -1);
+
+    /** The name of the topic with this id, or null if it is unknown. */
+    public String topicName(UUID topicId) {
+        return topicNames.get(topicId);
+    }
+
+    /**
+     * Finds a partition in a topic's sorted partitions. Partition ids are usually dense, so the
+     * position equal to the id is tried before a binary search.
+     *
+     * @return the partition's position, or {@code -(insertion point) - 1} if it is not there.
+     */
+    public static int indexOf(List<PartitionData> partitions, int partitionId) {
+        if (partitionId >= 0 && partitionId < partitions.size() && partitionId(partitions, partitionId) == partitionId) {
+            return partitionId;
+        }
+        int low = 0;
+        int high = partitions.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = partitionId(partitions, mid);
+            if (id < partitionId) {
+                low = mid + 1;
+            } else if (id > partitionId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int partitionId(List<PartitionData> partitions, int index) {
+        return partitions instanceof OffHeapMetadata.Partitions offHeap
+                ? offHeap.partitionId(index) : partitions.get(index).partitionId();
+    }
+}
@@ -0,0 +1,892 @@
+package dto;
+
+import utils.UuidIndex;
+import utils.UuidMap;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemoryLayout.PathElement;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+
+/**
+ * The topics and partitions of a {@link MetadataCache}, held off-heap in memory segments with
+ * fixed layouts, so that a cluster of hundreds of thousands of partitions is a few thousand
+ * segments to the collector instead of millions of objects. Enabled with
+ * {@code kafka.metadata.off.heap}; see {@link #copyOf} and {@link #update}.
+ *
+ * <p>Topics are spread over tables by the hash of their name, about {@value #TOPICS_PER_TABLE}
+ * to a table. In a table, every topic is a {@code TOPIC} entry pointing at its name bytes, at its
+ * encoded DescribeTopicPartitions entry in a fragment segment, and at a run of {@code PARTITION}
+ * entries, which point at their replica, ISR, removing and adding lists and directories in the
+ * topic's part of a data segment. A table finds its topics through two open-addressing tables of
+ * topic numbers, one hashed on the name and one on the id; route tables, spread by the hash of the
+ * id, say which table holds each id. The cache's maps are views: a lookup probes the tables without
+ * allocating, and returns a list that decodes a {@link PartitionData} each time it is read. Binary
+ * searches by {@link MetadataCache#indexOf} read partition ids in place.
+ *
+ * <p>Stores and tables are immutable. {@link #update} shares the tables of unchanged topics with
+ * the store it starts from and rebuilds only the tables and routes the changed topics are in,
+ * copying their other topics as raw bytes, since all offsets inside a topic's entries are relative
+ * to the topic. A change so costs time in proportion to the tables it touches, not to the cluster;
+ * a store that has outgrown its number of tables is rebuilt whole. Every table has its own
+ * automatic arena, freed once no cache, partition list or fragment that reads it is reachable, so
+ * requests still reading an old cache stay safe; tables no store shares any more are only freed by
+ * a collection.
+ */
+public final class OffHeapMetadata {
+    private static final StructLayout TOPIC = MemoryLayout.structLayout(
+            JAVA_LONG.withName("idMostSignificantBits"),
+            JAVA_LONG.withName("idLeastSignificantBits"),
+            JAVA_LONG.withName("nameOffset"),
+            JAVA_LONG.withName("dataOffset"),
+            JAVA_LONG.withName("fragmentOffset"),
+            JAVA_INT.withName("nameLength"),
+            JAVA_INT.withName("nameHash"),
+            JAVA_INT.withName("firstPartition"),
+            JAVA_INT.withName("partitionCount"),
+            JAVA_INT.withName("dataLength"),
+            JAVA_INT.withName("fragmentLength"));
+    private static final long TOPIC_ID_MSB = TOPIC.byteOffset(PathElement.groupElement("idMostSignificantBits"));
+    private static final long TOPIC_ID_LSB = TOPIC.byteOffset(PathElement.groupElement("idLeastSignificantBits"));
+    private static final long TOPIC_NAME_OFFSET = TOPIC.byteOffset(PathElement.groupElement("nameOffset"));
+    private static final long TOPIC_DATA_OFFSET = TOPIC.byteOffset(PathElement.groupElement("dataOffset"));
+    private static final long TOPIC_FRAGMENT_OFFSET = TOPIC.byteOffset(PathElement.groupElement("fragmentOffset"));
+    private static final long TOPIC_NAME_LENGTH = TOPIC.byteOffset(PathElement.groupElement("nameLength"));
+    private static final long TOPIC_NAME_HASH = TOPIC.byteOffset(PathElement.groupElement("nameHash"));
+    private static final long TOPIC_FIRST_PARTITION = TOPIC.byteOffset(PathElement.groupElement("firstPartition"));
+    private static final long TOPIC_PARTITION_COUNT = TOPIC.byteOffset(PathElement.groupElement("partitionCount"));
+    private static final long TOPIC_DATA_LENGTH = TOPIC.byteOffset(PathElement.groupElement("dataLength"));
+    private static final long TOPIC_FRAGMENT_LENGTH = TOPIC.byteOffset(PathElement.groupElement("fragmentLength"));
+
+    // The lists of a partition follow each other at dataOffset, counted from the topic's dataOffset:
+    // four int lists, then directories as longs.
+    private static final StructLayout PARTITION = MemoryLayout.structLayout(
+            JAVA_INT.withName("partitionId"),
+            JAVA_INT.withName("leader"),
+            JAVA_INT.withName("leaderEpoch"),
+            JAVA_INT.withName("partitionEpoch"),
+            JAVA_INT.withName("replicaCount"),
+            JAVA_INT.withName("isrCount"),
+            JAVA_INT.withName("removingCount"),
+            JAVA_INT.withName("addingCount"),
+            JAVA_INT.withName("directoryCount"),
+            MemoryLayout.paddingLayout(4),
+            JAVA_LONG.withName("dataOffset"));
+    private static final long PARTITION_ID = PARTITION.byteOffset(PathElement.groupElement("partitionId"));
+    private static final long PARTITION_LEADER = PARTITION.byteOffset(PathElement.groupElement("leader"));
+    private static final long PARTITION_LEADER_EPOCH = PARTITION.byteOffset(PathElement.groupElement("leaderEpoch"));
+    private static final long PARTITION_EPOCH = PARTITION.byteOffset(PathElement.groupElement("partitionEpoch"));
+    private static final long PARTITION_REPLICA_COUNT = PARTITION.byteOffset(PathElement.groupElement("replicaCount"));
+    private static final long PARTITION_ISR_COUNT = PARTITION.byteOffset(PathElement.groupElement("isrCount"));
+    private static final long PARTITION_REMOVING_COUNT = PARTITION.byteOffset(PathElement.groupElement("removingCount"));
+    private static final long PARTITION_ADDING_COUNT = PARTITION.byteOffset(PathElement.groupElement("addingCount"));
+    private static final long PARTITION_DIRECTORY_COUNT = PARTITION.byteOffset(PathElement.groupElement("directoryCount"));
+    private static final long PARTITION_DATA_OFFSET = PARTITION.byteOffset(PathElement.groupElement("dataOffset"));
+
+    // A slot of a route table; table is the table number + 1, or 0 if the slot is empty.
+    private static final StructLayout ROUTE = MemoryLayout.structLayout(
+            JAVA_LONG.withName("idMostSignificantBits"),
+            JAVA_LONG.withName("idLeastSignificantBits"),
+            JAVA_INT.withName("table"),
+            MemoryLayout.paddingLayout(4));
+    private static final long ROUTE_ID_MSB = ROUTE.byteOffset(PathElement.groupElement("idMostSignificantBits"));
+    private static final long ROUTE_ID_LSB = ROUTE.byteOffset(PathElement.groupElement("idLeastSignificantBits"));
+    private static final long ROUTE_TABLE = ROUTE.byteOffset(PathElement.groupElement("table"));
+
+    private static final int TOPICS_PER_TABLE = 64;
+    private static final int MAX_TABLE_BITS = 12;
+    private static final int MIN_INDEX_CAPACITY = 16;
+    // The partitionCount of a topic that has a name but no partition list, as in a heap cache.
+    private static final int NO_PARTITION_LIST = -1;
+
+    // There are 1 << tableBits tables, and as many route tables.
+    private final int tableBits;
+    private final Table[] tables;
+    private final Routes[] routes;
+    private final int topicCount;
+    private final int listCount;
+    private final int fragmentCount;
+    private final MetadataCache cache;
+
+    /**
+     * A topic to write into a store.
+     *
+     * @param partitions sorted by partition id, or null if the topic has none yet; a list of
+     *                   another store is copied as raw bytes.
+     * @param fragment   the topic's DescribeTopicPartitions response entry, or null if it has none.
+     */
+    public record Topic(UUID id, String name, List<PartitionData> partitions, ByteBuffer fragment) {
+    }
+
+    /** Copies the topics, partitions and DescribeTopicPartitions fragments of {@code source} into a new store. */
+    public static OffHeapMetadata copyOf(MetadataCache source) {
+        List<Topic> topics = new ArrayList<>(source.topicNames().size());
+        source.topicNames().forEach((mostSignificantBits, leastSignificantBits, name) -> {
+            List<PartitionData> partitions = source.byUuid().get(mostSignificantBits, leastSignificantBits);
+            topics.add(new Topic(new UUID(mostSignificantBits, leastSignificantBits), name, partitions,
+                    source.describeFragments().get(name)));
+        });
+        return new OffHeapMetadata(null, topics, List.of(), source.lastOffset());
+    }
+
+    /** The store whose views {@code cache} holds, or null if it is a cache on the heap. */
+    public static OffHeapMetadata of(MetadataCache cache) {
+        return cache.byName() instanceof TopicsByName topicsByName ? topicsByName.store() : null;
+    }
+
+    /**
+     * A new store with the topics of this one except the removed and changed ones, plus the
+     * changed ones as given. Tables without any of them are shared with this store; the other
+     * topics of the tables that have some are copied without being decoded.
+     */
+    public OffHeapMetadata update(Collection<Topic> changed, Collection<UUID> removed, long lastOffset) {
+        return new OffHeapMetadata(this, changed, removed, lastOffset);
+    }
+
+    private OffHeapMetadata(OffHeapMetadata previous, Collection<Topic> changed, Collection<UUID> removed,
+                            long lastOffset) {
+        int bits = tableBits((previous != null ? previous.topicCount : 0) + changed.size());
+        boolean incremental = previous != null && Math.abs(bits - previous.tableBits) < 2;
+        tableBits = incremental ? previous.tableBits : bits;
+
+        // The table each removed or changed topic goes to, or -1 if it is removed.
+        UuidMap<Integer> moves = new UuidMap<>(changed.size() + removed.size());
+        for (UUID topicId : removed) moves.put(topicId, -1);
+        Map<Integer, List<Topic>> added = new HashMap<>();
+        for (Topic topic : changed) {
+            int table = slice(mix(topic.name().hashCode()), tableBits);
+            moves.put(topic.id(), table);
+            added.computeIfAbsent(table, t -> new ArrayList<>()).add(topic);
+        }
+
+        Map<Integer, List<Route>> routeChanges = new HashMap<>();
+        if (incremental) {
+            tables = previous.tables.clone();
+            routes = previous.routes.clone();
+            Set<Integer> dirty = new HashSet<>(added.keySet());
+            moves.forEach((mostSignificantBits, leastSignificantBits, table) -> {
+                int from = previous.tableOf(mostSignificantBits, leastSignificantBits);
+                if (from >= 0) dirty.add(from);
+                if (from != table) {
+                    routeChanges.computeIfAbsent(slice(UuidMap.hash(mostSignificantBits, leastSignificantBits), tableBits),
+                            r -> new ArrayList<>()).add(new Route(mostSignificantBits, leastSignificantBits, table));
+                }
+            });
+            for (int t : dirty) {
+                tables[t] = new Table(List.of(previous.tables[t]), moves, added.getOrDefault(t, List.of()), t, tableBits);
+            }
+            routeChanges.forEach((r, changes) -> routes[r] = new Routes(previous.routes[r], changes));
+        } else {
+            tables = new Table[1 << tableBits];
+            routes = new Routes[1 << tableBits];
+            for (int t = 0; t < tables.length; t++) {
+                Table table = new Table(sources(previous, t, tableBits), moves, added.getOrDefault(t, List.of()), t,
+                        tableBits);
+                for (int topic = 0; topic < table.topicCount; topic++) {
+                    long mostSignificantBits = table.idMostSignificantBits(topic);
+                    long leastSignificantBits = table.idLeastSignificantBits(topic);
+                    routeChanges.computeIfAbsent(slice(UuidMap.hash(mostSignificantBits, leastSignificantBits), tableBits),
+                            r -> new ArrayList<>()).add(new Route(mostSignificantBits, leastSignificantBits, t));
+                }
+                tables[t] = table;
+            }
+            for (int r = 0; r < routes.length; r++) {
+                routes[r] = new Routes(null, routeChanges.getOrDefault(r, List.of()));
+            }
+        }
+
+        int topics = 0;
+        int lists = 0;
+        int withFragments = 0;
+        for (Table table : tables) {
+            topics += table.topicCount;
+            lists += table.listCount;
+            withFragments += table.fragmentCount;
+        }
+        topicCount = topics;
+        listCount = lists;
+        fragmentCount = withFragments;
+        cache = new MetadataCache(new TopicsByName(), new ById<>(listCount, Table::partitionsOf),
+                new ById<>(topicCount, Table::name), new FragmentsByName(), lastOffset);
+    }
+
+    /** A cache that reads its topics, partitions and fragments from this store. */
+    public MetadataCache cache() {
+        return cache;
+    }
+
+    /** The off-heap memory this store reads, including the tables it shares with the stores before it. */
+    public long byteSize() {
+        long size = 0;
+        for (Table table : tables) size += table.byteSize();
+        for (Routes route : routes) size += route.slots.byteSize();
+        return size;
+    }
+
+    /** The part of {@link #byteSize} that holds DescribeTopicPartitions fragments. */
+    public long fragmentBytes() {
+        long size = 0;
+        for (Table table : tables) size += table.fragments.byteSize();
+        return size;
+    }
+
+    /** The number of table bits for a cluster of {@code topics} topics. */
+    private static int tableBits(int topics) {
+        int tables = Integer.highestOneBit(Math.max(1, topics / TOPICS_PER_TABLE));
+        return Math.min(MAX_TABLE_BITS, Integer.numberOfTrailingZeros(tables));
+    }
+
+    /** The tables of {@code previous} that may hold topics of table {@code t} of {@code bits} bits. */
+    private static List<Table> sources(OffHeapMetadata previous, int t, int bits) {
+        if (previous == null) return List.of();
+        int shift = bits - previous.tableBits;
+        if (shift >= 0) return List.of(previous.tables[t >>> shift]);
+        int first = t << -shift;
+        return List.of(previous.tables).subList(first, first + (1 << -shift));
+    }
+
+    /** The top {@code bits} bits of a hash; slots within a table use its low bits. */
+    private static int slice(int hash, int bits) {
+        return bits == 0 ? 0 : hash >>> (Integer.SIZE - bits);
+    }
+
+    /** The table that holds the id, or -1 if none does. */
+    private int tableOf(long mostSignificantBits, long leastSignificantBits) {
+        return routes[slice(UuidMap.hash(mostSignificantBits, leastSignificantBits), tableBits)]
+                .get(mostSignificantBits, leastSignificantBits);
+    }
+
+    private Table tableOf(String name) {
+        return tables[slice(mix(name.hashCode()), tableBits)];
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int indexCapacity(int entries) {
+        return Math.max(MIN_INDEX_CAPACITY, Integer.highestOneBit(Math.max(entries, 1) * 2 - 1) << 1);
+    }
+
+    /** A new table for an id; -1 removes it. */
+    private record Route(long mostSignificantBits, long leastSignificantBits, int table) {
+    }
+
+    /** The table of each id whose hash falls in this route table. */
+    private static final class Routes {
+        private final MemorySegment slots;
+        private final int mask;
+
+        /** The routes of {@code previous}, or none, with {@code changes} applied. */
+        private Routes(Routes previous, List<Route> changes) {
+            UuidMap<Route> changed = new UuidMap<>(changes.size());
+            for (Route change : changes) changed.put(change.mostSignificantBits(), change.leastSignificantBits(), change);
+            int count = 0;
+            for (int slot = 0; previous != null && slot <= previous.mask; slot++) {
+                if (previous.table(slot) >= 0 && changed.get(previous.mostSignificantBits(slot),
+                        previous.leastSignificantBits(slot)) == null) {
+                    count++;
+                }
+            }
+            for (Route change : changes) {
+                if (change.table() >= 0) count++;
+            }
+            int capacity = indexCapacity(count);
+            slots = Arena.ofAuto().allocate(capacity * ROUTE.byteSize(), ROUTE.byteAlignment());
+            mask = capacity - 1;
+            for (int slot = 0; previous != null && slot <= previous.mask; slot++) {
+                long mostSignificantBits = previous.mostSignificantBits(slot);
+                long leastSignificantBits = previous.leastSignificantBits(slot);
+                int table = previous.table(slot);
+                if (table >= 0 && changed.get(mostSignificantBits, leastSignificantBits) == null) {
+                    put(mostSignificantBits, leastSignificantBits, table);
+                }
+            }
+            for (Route change : changes) {
+                if (change.table() >= 0) put(change.mostSignificantBits(), change.leastSignificantBits(), change.table());
+            }
+        }
+
+        private void put(long mostSignificantBits, long leastSignificantBits, int table) {
+            int slot = UuidMap.hash(mostSignificantBits, leastSignificantBits) & mask;
+            while (table(slot) >= 0) slot = (slot + 1) & mask;
+            long at = slot * ROUTE.byteSize();
+            slots.set(JAVA_LONG, at + ROUTE_ID_MSB, mostSignificantBits);
+            slots.set(JAVA_LONG, at + ROUTE_ID_LSB, leastSignificantBits);
+            slots.set(JAVA_INT, at + ROUTE_TABLE, table + 1);
+        }
+
+        /** The table of the id, or -1 if it has none. */
+        private int get(long mostSignificantBits, long leastSignificantBits) {
+            for (int slot = UuidMap.hash(mostSignificantBits, leastSignificantBits) & mask; ; slot = (slot + 1) & mask) {
+                int table = table(slot);
+                if (table < 0 || (mostSignificantBits(slot) == mostSignificantBits
+                        && leastSignificantBits(slot) == leastSignificantBits)) {
+                    return table;
+                }
+            }
+        }
+
+        private int table(int slot) {
+            return slots.get(JAVA_INT, slot * ROUTE.byteSize() + ROUTE_TABLE) - 1;
+        }
+
+        private long mostSignificantBits(int slot) {
+            return slots.get(JAVA_LONG, slot * ROUTE.byteSize() + ROUTE_ID_MSB);
+        }
+
+        private long leastSignificantBits(int slot) {
+            return slots.get(JAVA_LONG, slot * ROUTE.byteSize() + ROUTE_ID_LSB);
+        }
+    }
+
+    /** The topics whose name hash falls in one table, in the segments of one arena. */
+    private static final class Table {
+        private final int topicCount;
+        private final int listCount;
+        private final int fragmentCount;
+        private final MemorySegment topics;
+        private final MemorySegment names;
+        private final MemorySegment partitions;
+        private final MemorySegment data;
+        private final MemorySegment fragments;
+        // Slots hold topic number + 1, or 0 if empty.
+        private final MemorySegment nameIndex;
+        private final MemorySegment idIndex;
+        private final int indexMask;
+
+        /**
+         * Copies the topics of {@code sources} that are not in {@code dropped} and belong to table
+         * {@code table} of {@code bits} bits, then writes {@code added}.
+         */
+        private Table(List<Table> sources, UuidIndex<Integer> dropped, List<Topic> added, int table, int bits) {
+            int kept = 0;
+            int lists = 0;
+            int withFragments = 0;
+            long nameBytes = 0;
+            long partitionCount = 0;
+            long dataBytes = 0;
+            long fragmentBytes = 0;
+            for (Table source : sources) {
+                for (int t = 0; t < source.topicCount; t++) {
+                    if (!source.keeps(t, dropped, table, bits)) continue;
+                    long at = t * TOPIC.byteSize();
+                    kept++;
+                    nameBytes += source.topics.get(JAVA_INT, at + TOPIC_NAME_LENGTH);
+                    int count = source.topics.get(JAVA_INT, at + TOPIC_PARTITION_COUNT);
+                    if (count != NO_PARTITION_LIST) {
+                        lists++;
+                        partitionCount += count;
+                    }
+                    dataBytes += source.topics.get(JAVA_INT, at + TOPIC_DATA_LENGTH);
+                    int fragmentLength = source.topics.get(JAVA_INT, at + TOPIC_FRAGMENT_LENGTH);
+                    fragmentBytes += fragmentLength;
+                    if (fragmentLength > 0) withFragments++;
+                }
+            }
+            byte[][] addedNames = new byte[added.size()][];
+            for (int i = 0; i < added.size(); i++) {
+                Topic topic = added.get(i);
+                addedNames[i] = topic.name().getBytes(StandardCharsets.UTF_8);
+                nameBytes += addedNames[i].length;
+                if (topic.partitions() != null) {
+                    lists++;
+                    partitionCount += topic.partitions().size();
+                    dataBytes += dataSize(topic.partitions());
+                }
+                if (topic.fragment() != null) {
+                    fragmentBytes += topic.fragment().remaining();
+                    withFragments++;
+                }
+            }
+            topicCount = kept + added.size();
+            listCount = lists;
+            fragmentCount = withFragments;
+
+            int indexCapacity = indexCapacity(topicCount);
+            Arena arena = Arena.ofAuto();
+            topics = arena.allocate(topicCount * TOPIC.byteSize(), TOPIC.byteAlignment());
+            names = arena.allocate(nameBytes, 1);
+            partitions = arena.allocate(partitionCount * PARTITION.byteSize(), PARTITION.byteAlignment());
+            data = arena.allocate(dataBytes, Long.BYTES);
+            fragments = arena.allocate(fragmentBytes, 1);
+            nameIndex = arena.allocate((long) indexCapacity * Integer.BYTES, Integer.BYTES);
+            idIndex = arena.allocate((long) indexCapacity * Integer.BYTES, Integer.BYTES);
+            indexMask = indexCapacity - 1;
+
+            int t = 0;
+            long nameOffset = 0;
+            int firstPartition = 0;
+            long dataOffset = 0;
+            long fragmentOffset = 0;
+            for (Table source : sources) {
+                for (int from = 0; from < source.topicCount; from++) {
+                    if (!source.keeps(from, dropped, table, bits)) continue;
+                    long at = t * TOPIC.byteSize();
+                    MemorySegment.copy(source.topics, from * TOPIC.byteSize(), topics, at, TOPIC.byteSize());
+                    int nameLength = topics.get(JAVA_INT, at + TOPIC_NAME_LENGTH);
+                    int count = Math.max(0, topics.get(JAVA_INT, at + TOPIC_PARTITION_COUNT));
+                    int dataLength = topics.get(JAVA_INT, at + TOPIC_DATA_LENGTH);
+                    int fragmentLength = topics.get(JAVA_INT, at + TOPIC_FRAGMENT_LENGTH);
+                    MemorySegment.copy(source.names, topics.get(JAVA_LONG, at + TOPIC_NAME_OFFSET), names, nameOffset,
+                            nameLength);
+                    MemorySegment.copy(source.partitions,
+                            topics.get(JAVA_INT, at + TOPIC_FIRST_PARTITION) * PARTITION.byteSize(),
+                            partitions, firstPartition * PARTITION.byteSize(), count * PARTITION.byteSize());
+                    MemorySegment.copy(source.data, topics.get(JAVA_LONG, at + TOPIC_DATA_OFFSET), data, dataOffset,
+                            dataLength);
+                    MemorySegment.copy(source.fragments, topics.get(JAVA_LONG, at + TOPIC_FRAGMENT_OFFSET), fragments,
+                            fragmentOffset, fragmentLength);
+                    topics.set(JAVA_LONG, at + TOPIC_NAME_OFFSET, nameOffset);
+                    topics.set(JAVA_INT, at + TOPIC_FIRST_PARTITION, firstPartition);
+                    topics.set(JAVA_LONG, at + TOPIC_DATA_OFFSET, dataOffset);
+                    topics.set(JAVA_LONG, at + TOPIC_FRAGMENT_OFFSET, fragmentOffset);
+                    nameOffset += nameLength;
+                    firstPartition += count;
+                    dataOffset += dataLength;
+                    fragmentOffset += fragmentLength;
+                    index(t++);
+                }
+            }
+            for (int i = 0; i < added.size(); i++) {
+                Topic topic = added.get(i);
+                long at = t * TOPIC.byteSize();
+                byte[] name = addedNames[i];
+                List<PartitionData> list = topic.partitions();
+                long dataLength = list == null ? 0 : list instanceof Partitions stored
+                        ? copyPartitions(stored, firstPartition, dataOffset)
+                        : writePartitions(list, firstPartition, dataOffset);
+                int count = list != null ? list.size() : 0;
+                int fragmentLength = 0;
+                if (topic.fragment() != null) {
+                    fragmentLength = topic.fragment().remaining();
+                    MemorySegment.copy(MemorySegment.ofBuffer(topic.fragment()), 0, fragments, fragmentOffset,
+                            fragmentLength);
+                }
+                topics.set(JAVA_LONG, at + TOPIC_ID_MSB, topic.id().getMostSignificantBits());
+                topics.set(JAVA_LONG, at + TOPIC_ID_LSB, topic.id().getLeastSignificantBits());
+                topics.set(JAVA_LONG, at + TOPIC_NAME_OFFSET, nameOffset);
+                topics.set(JAVA_LONG, at + TOPIC_DATA_OFFSET, dataOffset);
+                topics.set(JAVA_LONG, at + TOPIC_FRAGMENT_OFFSET, fragmentOffset);
+                topics.set(JAVA_INT, at + TOPIC_NAME_LENGTH, name.length);
+                topics.set(JAVA_INT, at + TOPIC_NAME_HASH, topic.name().hashCode());
+                topics.set(JAVA_INT, at + TOPIC_FIRST_PARTITION, firstPartition);
+                topics.set(JAVA_INT, at + TOPIC_PARTITION_COUNT, list != null ? count : NO_PARTITION_LIST);
+                topics.set(JAVA_INT, at + TOPIC_DATA_LENGTH, Math.toIntExact(dataLength));
+                topics.set(JAVA_INT, at + TOPIC_FRAGMENT_LENGTH, fragmentLength);
+                MemorySegment.copy(name, 0, names, JAVA_BYTE, nameOffset, name.length);
+                nameOffset += name.length;
+                firstPartition += count;
+                dataOffset += dataLength;
+                fragmentOffset += fragmentLength;
+                index(t++);
+            }
+        }
+
+        private long byteSize() {
+            return topics.byteSize() + names.byteSize() + partitions.byteSize() + data.byteSize()
+                    + fragments.byteSize() + nameIndex.byteSize() + idIndex.byteSize();
+        }
+
+        private boolean keeps(int topic, UuidIndex<Integer> dropped, int table, int bits) {
+            long at = topic * TOPIC.byteSize();
+            return dropped.get(topics.get(JAVA_LONG, at + TOPIC_ID_MSB), topics.get(JAVA_LONG, at + TOPIC_ID_LSB)) == null
+                    && slice(mix(topics.get(JAVA_INT, at + TOPIC_NAME_HASH)), bits) == table;
+        }
+
+        private static long dataSize(List<PartitionData> list) {
+            if (list instanceof Partitions stored) return stored.dataLength();
+            long size = 0;
+            for (PartitionData partition : list) {
+                size += (long) Integer.BYTES * (partition.replicas().length + partition.inSyncReplicas().length
+                        + partition.removingReplicas().length + partition.addingReplicas().length)
+                        + (long) Long.BYTES * partition.directories().length;
+            }
+            return size;
+        }
+
+        /** Writes a topic's partitions and their lists from {@code topicData} on; returns the bytes of lists written. */
+        private long writePartitions(List<PartitionData> list, int firstPartition, long topicData) {
+            long dataOffset = topicData;
+            for (int i = 0; i < list.size(); i++) {
+                PartitionData partition = list.get(i);
+                long at = (firstPartition + i) * PARTITION.byteSize();
+                partitions.set(JAVA_INT, at + PARTITION_ID, partition.partitionId());
+                partitions.set(JAVA_INT, at + PARTITION_LEADER, partition.leader());
+                partitions.set(JAVA_INT, at + PARTITION_LEADER_EPOCH, partition.leaderEpoch());
+                partitions.set(JAVA_INT, at + PARTITION_EPOCH, partition.partitionEpoch());
+                partitions.set(JAVA_INT, at + PARTITION_REPLICA_COUNT, partition.replicas().length);
+                partitions.set(JAVA_INT, at + PARTITION_ISR_COUNT, partition.inSyncReplicas().length);
+                partitions.set(JAVA_INT, at + PARTITION_REMOVING_COUNT, partition.removingReplicas().length);
+                partitions.set(JAVA_INT, at + PARTITION_ADDING_COUNT, partition.addingReplicas().length);
+                partitions.set(JAVA_INT, at + PARTITION_DIRECTORY_COUNT, partition.directories().length);
+                partitions.set(JAVA_LONG, at + PARTITION_DATA_OFFSET, dataOffset - topicData);
+                dataOffset = putInts(partition.replicas(), dataOffset);
+                dataOffset = putInts(partition.inSyncReplicas(), dataOffset);
+                dataOffset = putInts(partition.removingReplicas(), dataOffset);
+                dataOffset = putInts(partition.addingReplicas(), dataOffset);
+                long[] directories = partition.directories();
+                MemorySegment.copy(directories, 0, data, JAVA_LONG_UNALIGNED, dataOffset, directories.length);
+                dataOffset += (long) Long.BYTES * directories.length;
+            }
+            return dataOffset - topicData;
+        }
+
+        private long putInts(int[] values, long dataOffset) {
+            MemorySegment.copy(values, 0, data, JAVA_INT, dataOffset, values.length);
+            return dataOffset + (long) Integer.BYTES * values.length;
+        }
+
+        /** Copies a topic's entries and lists from another table; returns the bytes of lists copied. */
+        private long copyPartitions(Partitions stored, int firstPartition, long topicData) {
+            Table from = stored.table();
+            long size = PARTITION.byteSize();
+            MemorySegment.copy(from.partitions, stored.first() * size, partitions, firstPartition * size,
+                    stored.size() * size);
+            MemorySegment.copy(from.data, stored.dataOffset(), data, topicData, stored.dataLength());
+            return stored.dataLength();
+        }
+
+        private void index(int topic) {
+            long at = topic * TOPIC.byteSize();
+            insert(nameIndex, mix(topics.get(JAVA_INT, at + TOPIC_NAME_HASH)), topic);
+            insert(idIndex, UuidMap.hash(topics.get(JAVA_LONG, at + TOPIC_ID_MSB), topics.get(JAVA_LONG, at + TOPIC_ID_LSB)),
+                    topic);
+        }
+
+        private void insert(MemorySegment index, int hash, int topic) {
+            int slot = hash & indexMask;
+            while (index.getAtIndex(JAVA_INT, slot) != 0) slot = (slot + 1) & indexMask;
+            index.setAtIndex(JAVA_INT, slot, topic + 1);
+        }
+
+        private int findName(String name) {
+            int hash = name.hashCode();
+            for (int slot = mix(hash) & indexMask; ; slot = (slot + 1) & indexMask) {
+                int entry = nameIndex.getAtIndex(JAVA_INT, slot);
+                if (entry == 0) return -1;
+                int topic = entry - 1;
+                if (topics.get(JAVA_INT, topic * TOPIC.byteSize() + TOPIC_NAME_HASH) == hash && nameEquals(topic, name)) {
+                    return topic;
+                }
+            }
+        }
+
+        private int findId(long mostSignificantBits, long leastSignificantBits) {
+            for (int slot = UuidMap.hash(mostSignificantBits, leastSignificantBits) & indexMask; ;
+                 slot = (slot + 1) & indexMask) {
+                int entry = idIndex.getAtIndex(JAVA_INT, slot);
+                if (entry == 0) return -1;
+                if (idMostSignificantBits(entry - 1) == mostSignificantBits
+                        && idLeastSignificantBits(entry - 1) == leastSignificantBits) {
+                    return entry - 1;
+                }
+            }
+        }
+
+        /** Topic names are ASCII in practice, so they are compared char by char without encoding. */
+        private boolean nameEquals(int topic, String name) {
+            long at = topic * TOPIC.byteSize();
+            long offset = topics.get(JAVA_LONG, at + TOPIC_NAME_OFFSET);
+            int length = topics.get(JAVA_INT, at + TOPIC_NAME_LENGTH);
+            if (length == name.length()) {
+                for (int i = 0; i < length; i++) {
+                    char c = name.charAt(i);
+                    // A non-ASCII char takes more than one byte, so the lengths cannot match.
+                    if (c >= 0x80 || names.get(JAVA_BYTE, offset + i) != (byte) c) return false;
+                }
+                return true;
+            }
+            if (length < name.length()) return false;
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            return bytes.length == length
+                    && MemorySegment.mismatch(names, offset, offset + length, MemorySegment.ofArray(bytes), 0, length) == -1;
+        }
+
+        private long idMostSignificantBits(int topic) {
+            return topics.get(JAVA_LONG, topic * TOPIC.byteSize() + TOPIC_ID_MSB);
+        }
+
+        private long idLeastSignificantBits(int topic) {
+            return topics.get(JAVA_LONG, topic * TOPIC.byteSize() + TOPIC_ID_LSB);
+        }
+
+        private String name(int topic) {
+            long at = topic * TOPIC.byteSize();
+            byte[] bytes = new byte[topics.get(JAVA_INT, at + TOPIC_NAME_LENGTH)];
+            MemorySegment.copy(names, JAVA_BYTE, topics.get(JAVA_LONG, at + TOPIC_NAME_OFFSET), bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** The topic's partitions, or null if it has no partition list. */
+        private List<PartitionData> partitionsOf(int topic) {
+            long at = topic * TOPIC.byteSize();
+            int count = topics.get(JAVA_INT, at + TOPIC_PARTITION_COUNT);
+            if (count == NO_PARTITION_LIST) return null;
+            UUID topicId = new UUID(idMostSignificantBits(topic), idLeastSignificantBits(topic));
+            return new Partitions(this, topicId, topics.get(JAVA_INT, at + TOPIC_FIRST_PARTITION), count,
+                    topics.get(JAVA_LONG, at + TOPIC_DATA_OFFSET), topics.get(JAVA_INT, at + TOPIC_DATA_LENGTH));
+        }
+
+        /** A read-only view of the topic's fragment bytes, or null if it has none. */
+        private ByteBuffer fragment(int topic) {
+            long at = topic * TOPIC.byteSize();
+            int length = topics.get(JAVA_INT, at + TOPIC_FRAGMENT_LENGTH);
+            if (length == 0) return null;
+            return fragments.asSlice(topics.get(JAVA_LONG, at + TOPIC_FRAGMENT_OFFSET), length).asByteBuffer()
+                    .asReadOnlyBuffer();
+        }
+
+        private PartitionData partition(int index, UUID topicId, long topicData) {
+            long at = index * PARTITION.byteSize();
+            long offset = topicData + partitions.get(JAVA_LONG, at + PARTITION_DATA_OFFSET);
+            int[] replicas = ints(offset, partitions.get(JAVA_INT, at + PARTITION_REPLICA_COUNT));
+            offset += (long) Integer.BYTES * replicas.length;
+            int[] isr = ints(offset, partitions.get(JAVA_INT, at + PARTITION_ISR_COUNT));
+            offset += (long) Integer.BYTES * isr.length;
+            int[] removing = ints(offset, partitions.get(JAVA_INT, at + PARTITION_REMOVING_COUNT));
+            offset += (long) Integer.BYTES * removing.length;
+            int[] adding = ints(offset, partitions.get(JAVA_INT, at + PARTITION_ADDING_COUNT));
+            offset += (long) Integer.BYTES * adding.length;
+            int directoryCount = partitions.get(JAVA_INT, at + PARTITION_DIRECTORY_COUNT);
+            long[] directories = PartitionData.NO_DIRECTORIES;
+            if (directoryCount > 0) {
+                directories = new long[directoryCount];
+                MemorySegment.copy(data, JAVA_LONG_UNALIGNED, offset, directories, 0, directoryCount);
+            }
+            return new PartitionData(partitions.get(JAVA_INT, at + PARTITION_ID), topicId, replicas, isr, removing,
+                    adding, directories, partitions.get(JAVA_INT, at + PARTITION_LEADER),
+                    partitions.get(JAVA_INT, at + PARTITION_LEADER_EPOCH), partitions.get(JAVA_INT, at + PARTITION_EPOCH));
+        }
+
+        private int[] ints(long offset, int count) {
+            if (count == 0) return PartitionData.NO_REPLICAS;
+            int[] values = new int[count];
+            MemorySegment.copy(data, JAVA_INT, offset, values, 0, count);
+            return values;
+        }
+    }
+
+    /** A topic's partitions, decoded from its table each time one is read. */
+    static final class Partitions extends AbstractList<PartitionData> implements RandomAccess {
+        private final Table table;
+        private final UUID topicId;
+        private final int first;
+        private final int count;
+        private final long dataOffset;
+        private final int dataLength;
+
+        private Partitions(Table table, UUID topicId, int first, int count, long dataOffset, int dataLength) {
+            this.table = table;
+            this.topicId = topicId;
+            this.first = first;
+            this.count = count;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+        @Override
+        public PartitionData get(int index) {
+            Objects.checkIndex(index, count);
+            return table.partition(first + index, topicId, dataOffset);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        /** The id of the partition at {@code index}, read without decoding the partition. */
+        int partitionId(int index) {
+            Objects.checkIndex(index, count);
+            return table.partitions.get(JAVA_INT, (first + index) * PARTITION.byteSize() + PARTITION_ID);
+        }
+
+        private Table table() {
+            return table;
+        }
+
+        private int first() {
+            return first;
+        }
+
+        private long dataOffset() {
+            return dataOffset;
+        }
+
+        private int dataLength() {
+            return dataLength;
+        }
+    }
+
+    /** Reads a value of a topic from its table, or null if the topic has none. */
+    @FunctionalInterface
+    private interface TopicValue<V> {
+        V get(Table table, int topic);
+    }
+
+    /** {@link MetadataCache#byName} of the store; read-only. */
+    private final class TopicsByName extends AbstractMap<String, List<PartitionData>> {
+        @Override
+        public List<PartitionData> get(Object key) {
+            if (!(key instanceof String name)) return null;
+            Table table = tableOf(name);
+            int topic = table.findName(name);
+            return topic < 0 ? null : table.partitionsOf(topic);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return listCount;
+        }
+
+        @Override
+        public Set<Entry<String, List<PartitionData>>> entrySet() {
+            return new TopicEntries<>(listCount, Table::partitionsOf);
+        }
+
+        private OffHeapMetadata store() {
+            return OffHeapMetadata.this;
+        }
+    }
+
+    /** {@link MetadataCache#describeFragments} of the store; read-only. */
+    private final class FragmentsByName extends AbstractMap<String, ByteBuffer> {
+        @Override
+        public ByteBuffer get(Object key) {
+            if (!(key instanceof String name)) return null;
+            Table table = tableOf(name);
+            int topic = table.findName(name);
+            return topic < 0 ? null : table.fragment(topic);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return fragmentCount;
+        }
+
+        @Override
+        public Set<Entry<String, ByteBuffer>> entrySet() {
+            return new TopicEntries<>(fragmentCount, Table::fragment);
+        }
+    }
+
+    /** The entries of a view, table by table: topics whose value is null are left out. */
+    private final class TopicEntries<V> extends AbstractSet<Map.Entry<String, V>> {
+        private final int size;
+        private final TopicValue<V> value;
+
+        private TopicEntries(int size, TopicValue<V> value) {
+            this.size = size;
+            this.value = value;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, V>> iterator() {
+            return new Iterator<>() {
+                private int table;
+                private int topic;
+                private int returned;
+
+                @Override
+                public boolean hasNext() {
+                    return returned < size;
+                }
+
+                @Override
+                public Map.Entry<String, V> next() {
+                    if (returned >= size) throw new NoSuchElementException();
+                    while (true) {
+                        if (topic == tables[table].topicCount) {
+                            table++;
+                            topic = 0;
+                            continue;
+                        }
+                        V next = value.get(tables[table], topic++);
+                        if (next != null) {
+                            returned++;
+                            return Map.entry(tables[table].name(topic - 1), next);
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * {@link MetadataCache#byUuid} and {@link MetadataCache#topicNames} of the store, holding the
+     * {@code size} topics whose value is not null.
+     */
+    private final class ById<V> implements UuidIndex<V> {
+        private final int size;
+        private final TopicValue<V> value;
+
+        private ById(int size, TopicValue<V> value) {
+            this.size = size;
+            this.value = value;
+        }
+
+        @Override
+        public V get(long mostSignificantBits, long leastSignificantBits) {
+            int table = tableOf(mostSignificantBits, leastSignificantBits);
+            if (table < 0) return null;
+            int topic = tables[table].findId(mostSignificantBits, leastSignificantBits);
+            return topic < 0 ? null : value.get(tables[table], topic);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void forEach(EntryConsumer<? super V> action) {
+            for (Table table : tables) {
+                for (int topic = 0; topic < table.topicCount; topic++) {
+                    V v = value.get(table, topic);
+                    if (v == null) continue;
+                    action.accept(table.idMostSignificantBits(topic), table.idLeastSignificantBits(topic), v);
+                }
+            }
+        }
+    }
+}
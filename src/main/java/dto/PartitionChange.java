@@ -0,0 +1,22 @@
+package dto;
+
+import java.util.UUID;
+
+/**
+ * The fields a PartitionChangeRecord sets on an existing partition. Every list is null when the
+ * record leaves it unchanged.
+ *
+ * @param leader the new leader, or {@link #NO_LEADER_CHANGE}.
+ */
+public record PartitionChange(
+        int partitionId,
+        UUID topicId,
+        int[] inSyncReplicas,
+        int leader,
+        int[] replicas,
+        int[] removingReplicas,
+        int[] addingReplicas,
+        long[] directories
+) {
+    public static final int NO_LEADER_CHANGE = -2;
+}
@@ -1,17 +1,64 @@
 package dto;
 
-import java.util.List;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
  * A clean DTO to hold final, parsed partition information.
+ *
+ * <p>Replica lists are primitive arrays so that hundreds of thousands of partitions stay compact
+ * and encoders read them without unboxing. The topic id is the topic's one shared instance,
+ * written to responses as its two longs. They are shared between cache versions and must not
+ * be modified; a change produces a new PartitionData.
+ *
+ * @param directories the log directory id of each replica, in replica order, as pairs of most and
+ *                    least significant bits; empty if the controller does not assign directories.
  */
 public record PartitionData(
         int partitionId,
-        String topicUuid,
-        List<Integer> replicas,
-        List<Integer> inSyncReplicas,
+        UUID topicId,
+        int[] replicas,
+        int[] inSyncReplicas,
+        int[] removingReplicas,
+        int[] addingReplicas,
+        long[] directories,
         int leader,
         int leaderEpoch,
         int partitionEpoch
-) {}
\ No newline at end of file
+) {
+    public static final int[] NO_REPLICAS = new int[0];
+    public static final long[] NO_DIRECTORIES = new long[0];
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PartitionData other
+                && partitionId == other.partitionId
+                && leader == other.leader
+                && leaderEpoch == other.leaderEpoch
+                && partitionEpoch == other.partitionEpoch
+                && topicId.equals(other.topicId)
+                && Arrays.equals(replicas, other.replicas)
+                && Arrays.equals(inSyncReplicas, other.inSyncReplicas)
+                && Arrays.equals(removingReplicas, other.removingReplicas)
+                && Arrays.equals(addingReplicas, other.addingReplicas)
+                && Arrays.equals(directories, other.directories);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 31 * partitionId + topicId.hashCode();
+        result = 31 * result + Arrays.hashCode(replicas);
+        result = 31 * result + Arrays.hashCode(inSyncReplicas);
+        return 31 * result + leaderEpoch;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionData[partitionId=" + partitionId + ", topicId=" + topicId
+                + ", replicas=" + Arrays.toString(replicas) + ", inSyncReplicas=" + Arrays.toString(inSyncReplicas)
+                + ", removingReplicas=" + Arrays.toString(removingReplicas)
+                + ", addingReplicas=" + Arrays.toString(addingReplicas)
+                + ", directories=" + directories.length / 2 + ", leader=" + leader + ", leaderEpoch=" + leaderEpoch
+                + ", partitionEpoch=" + partitionEpoch + "]";
+    }
+}
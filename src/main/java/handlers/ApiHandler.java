@@ -0,0 +1,41 @@
+package handlers;
+
+import dto.KafkaRequest;
+import network.Send;
+import protocol.ApiMessage;
+import protocol.message.ApiMessageType;
+
+/**
+ * Produces the responses for one api. Handlers are registered with
+ * {@link processors.ResponseProcessor}, which looks them up by api key and only calls
+ * {@link #handle} for versions inside {@link #apiType()}'s supported range.
+ */
+public interface ApiHandler {
+
+    /** The api this handler serves; its version range is what ApiVersions advertises. */
+    ApiMessageType apiType();
+
+    /**
+     * Encodes the response to a request whose body has already been decoded. Runs on a request
+     * thread unless {@link #inline()} is true.
+     */
+    Send handle(KafkaRequest request);
+
+    /**
+     * True if {@link #handle} only copies pre-encoded bytes or does similarly little work, so it
+     * runs on the network thread that read the request instead of being handed to the request
+     * executor. Anything that touches the disk or encodes a large response must stay offloaded.
+     */
+    default boolean inline() {
+        return false;
+    }
+
+    /**
+     * The body sent when a client asks for a version outside the supported range. It is encoded at
+     * version 0 with the v0 response header, the only format such a client is sure to parse;
+     * {@code null} sends just the error code.
+     */
+    default ApiMessage errorResponse(short errorCode) {
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.KafkaResponse;
+import network.Send;
+import protocol.ApiMessage;
+import protocol.message.ApiMessageType;
+import protocol.message.ApiVersionsResponseData;
+import utils.BufferPool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The api keys array never changes, so the response is encoded once per wire format and every
+ * request only costs the size and correlation id. Cheap enough to answer on the network thread.
+ */
+public final class ApiVersionsHandler implements ApiHandler {
+    private final List<KafkaResponse.ApiVersionDTO> supportedApis;
+    private final BufferPool bufferPool;
+    private final ResponseTemplate responseV0;
+    private final ResponseTemplate response;
+    private final ResponseTemplate flexibleResponse;
+
+    public ApiVersionsHandler(List<KafkaResponse.ApiVersionDTO> supportedApis, BufferPool bufferPool) {
+        this.supportedApis = supportedApis;
+        this.bufferPool = bufferPool;
+        this.responseV0 = template((short) 0);
+        this.response = template((short) 1);
+        this.flexibleResponse = template((short) 3);
+    }
+
+    @Override
+    public ApiMessageType apiType() {
+        return ApiMessageType.API_VERSIONS;
+    }
+
+    @Override
+    public boolean inline() {
+        return true;
+    }
+
+    @Override
+    public Send handle(KafkaRequest request) {
+        short apiVersion = request.getApiVersion();
+        ResponseTemplate template = apiVersion >= 3 ? flexibleResponse : apiVersion >= 1 ? response : responseV0;
+        return template.send(bufferPool, request.getCorrelationId());
+    }
+
+    /** Clients retry with a version from the advertised ranges, so the error carries them too. */
+    @Override
+    public ApiMessage errorResponse(short errorCode) {
+        return body(errorCode);
+    }
+
+    private ResponseTemplate template(short apiVersion) {
+        return ResponseTemplate.of(bufferPool, body((short) 0), apiVersion, apiType().responseHeaderVersion(apiVersion));
+    }
+
+    private ApiVersionsResponseData body(short errorCode) {
+        List<ApiVersionsResponseData.ApiVersion> apiKeys = new ArrayList<>(supportedApis.size());
+        for (KafkaResponse.ApiVersionDTO api : supportedApis) {
+            apiKeys.add(new ApiVersionsResponseData.ApiVersion()
+                    .setApiKey(api.getApiKey())
+                    .setMinVersion(api.getMinVersion())
+                    .setMaxVersion(api.getMaxVersion()));
+        }
+        return new ApiVersionsResponseData().setErrorCode(errorCode).setApiKeys(apiKeys);
+    }
+}
@@ -1,17 +1,19 @@
 package handlers;
 
 import dto.KafkaRequest;
+import logging.Logger;
+import network.FrameDecoder;
+import network.Send;
 import processors.RequestProcessor;
 import processors.ResponseProcessor;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
-import java.text.MessageFormat;
 
 public class ClientHandler implements Runnable {
+    private static final Logger log = Logger.get(ClientHandler.class);
     private final Socket clientSocket;
     private final RequestProcessor requestProcessor;
     private final ResponseProcessor responseProcessor;
@@ -24,30 +26,27 @@ public class ClientHandler implements Runnable {
 
     @Override
     public void run() {
-        long threadId = Thread.currentThread().threadId();
-        try(BufferedInputStream inputStream = new BufferedInputStream(clientSocket.getInputStream())) {
+        FrameDecoder frameDecoder = new FrameDecoder();
+        try(InputStream inputStream = clientSocket.getInputStream()) {
             while(!clientSocket.isClosed()) {
-                DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream));
-                KafkaRequest kafkaRequest = requestProcessor.processRequest(dataInputStream);
-                System.out.println(MessageFormat.format(">>> Kafka Message {0}", kafkaRequest.toString()));
-                System.out.println("[Thread " + threadId + "] Successfully processed request. Corr ID: " + kafkaRequest.getCorrelationId());
-                byte[] res = responseProcessor.generateResponse(kafkaRequest);
+                KafkaRequest kafkaRequest = requestProcessor.processRequest(frameDecoder.read(inputStream));
+                log.debug("Kafka message {}", kafkaRequest);
+                Send res = responseProcessor.generateResponse(kafkaRequest);
                 responseProcessor.writeToOutputStream(clientSocket, res);
             }
         } catch (EOFException e) {
-            System.out.println("Client Disconnected.");
+            log.debug("Client disconnected.");
         } catch (IOException e) {
-            System.out.println("Client " + clientSocket.getInetAddress() + " disconnected.");
+            log.debug("Client {} disconnected.", clientSocket.getInetAddress());
         } catch (Exception e) {
-            System.err.println(MessageFormat.format("[Thread {0}] A critical error occurred, crashing handler!", Thread.currentThread().getId()));
-            e.printStackTrace(System.err);
+            log.error("A critical error occurred, crashing handler!", e);
         } finally {
             try {
                 if (clientSocket != null) {
                     clientSocket.close();
                 }
             } catch (IOException e) {
-                System.out.println("IOException: " + e.getMessage());
+                log.warn("IOException: {}", e.getMessage());
             }
         }
     }
@@ -0,0 +1,137 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import network.Send;
+import protocol.MessageWriter;
+import protocol.message.ApiMessageType;
+import protocol.message.DescribeTopicPartitionsRequestData;
+import protocol.message.DescribeTopicPartitionsResponseData;
+import protocol.message.DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponsePartition;
+import protocol.message.DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic;
+import utils.BufferPool;
+import utils.Config;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static utils.Constants.UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE;
+
+/**
+ * Answers DescribeTopicPartitions (ApiKey 75) from the metadata cache. Topics that are not in
+ * the cache are answered with UNKNOWN_TOPIC_OR_PARTITION.
+ *
+ * <p>Responses are paged like Kafka's: topics are described in name order, starting at the
+ * request's cursor, until the response holds {@code ResponsePartitionLimit} partitions (at most
+ * {@link Config#MAX_REQUEST_PARTITION_SIZE_LIMIT}). The next cursor then names the first topic
+ * and partition left out. A cursor's partition is found by binary search, as partitions are
+ * kept sorted in the cache.
+ *
+ * <p>The entry for each known topic is encoded once per metadata change, see {@link #encodeTopic},
+ * and kept in the cache, so a response is mostly copied or gathered from those fragments. Only
+ * the topics a page splits are encoded field by field.
+ */
+public class DescribeTopicPartitionsHandler implements ApiHandler {
+    // The version cached fragments are encoded at; other versions encode topics field by field.
+    private static final short FRAGMENT_VERSION = DescribeTopicPartitionsResponseData.HIGHEST_SUPPORTED_VERSION;
+
+    private final Supplier<MetadataCache> metadata;
+    private final BufferPool bufferPool;
+
+    public DescribeTopicPartitionsHandler(Supplier<MetadataCache> metadata, BufferPool bufferPool) {
+        this.metadata = metadata;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public ApiMessageType apiType() {
+        return ApiMessageType.DESCRIBE_TOPIC_PARTITIONS;
+    }
+
+    @Override
+    public Send handle(KafkaRequest kafkaRequest) {
+        DescribeTopicPartitionsRequestData request = (DescribeTopicPartitionsRequestData) kafkaRequest.getBody();
+        MetadataCache metadataCache = metadata.get();
+        boolean useFragments = kafkaRequest.getApiVersion() == FRAGMENT_VERSION;
+        DescribeTopicPartitionsRequestData.Cursor cursor = request.cursor();
+        List<String> topicNames = request.topics().stream()
+                .map(DescribeTopicPartitionsRequestData.TopicRequest::name)
+                .filter(name -> cursor == null || name.compareTo(cursor.topicName()) >= 0)
+                .sorted()
+                .toList();
+        // At least one partition, so a client paging with a zero limit still makes progress.
+        int remaining = Math.max(1, Math.min(request.responsePartitionLimit(), Config.MAX_REQUEST_PARTITION_SIZE_LIMIT));
+        DescribeTopicPartitionsResponseData.Cursor nextCursor = null;
+        List<DescribeTopicPartitionsResponseTopic> topics = new ArrayList<>(topicNames.size());
+        int sizeHint = 32;
+        for (String topicName : topicNames) {
+            if (remaining == 0) {
+                nextCursor = new DescribeTopicPartitionsResponseData.Cursor().setTopicName(topicName).setPartitionIndex(0);
+                break;
+            }
+            List<PartitionData> partitions = metadataCache.byName().get(topicName);
+            if (partitions == null || partitions.isEmpty()) {
+                topics.add(new DescribeTopicPartitionsResponseTopic()
+                        .setName(topicName)
+                        .setTopicAuthorizedOperations(0)
+                        .setErrorCode(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE));
+                sizeHint += 32 + topicName.length();
+                continue;
+            }
+            int start = 0;
+            if (cursor != null && topicName.equals(cursor.topicName())) {
+                int found = MetadataCache.indexOf(partitions, cursor.partitionIndex());
+                start = found >= 0 ? found : -found - 1;
+            }
+            int end = start + Math.min(remaining, partitions.size() - start);
+            remaining -= end - start;
+            ByteBuffer fragment = useFragments && start == 0 && end == partitions.size()
+                    ? metadataCache.describeFragments().get(topicName) : null;
+            if (fragment != null) {
+                topics.add(new DescribeTopicPartitionsResponseTopic().setEncoded(fragment, FRAGMENT_VERSION));
+                sizeHint += fragment.remaining();
+            } else {
+                topics.add(describe(topicName, partitions.getFirst().topicId(), partitions.subList(start, end)));
+                sizeHint += 64 + topicName.length() + (end - start) * 32;
+            }
+            if (end < partitions.size()) {
+                nextCursor = new DescribeTopicPartitionsResponseData.Cursor()
+                        .setTopicName(topicName)
+                        .setPartitionIndex(partitions.get(end).partitionId());
+                break;
+            }
+        }
+        DescribeTopicPartitionsResponseData response = new DescribeTopicPartitionsResponseData()
+                .setTopics(topics)
+                .setNextCursor(nextCursor);
+        return Responses.encode(bufferPool, kafkaRequest, response, sizeHint);
+    }
+
+    /** Encodes the response entry of a topic with partitions, as kept in {@link MetadataCache#describeFragments}. */
+    public static ByteBuffer encodeTopic(String topicName, List<PartitionData> partitions) {
+        DescribeTopicPartitionsResponseTopic topic = describe(topicName, partitions.getFirst().topicId(), partitions);
+        return MessageWriter.encodeFragment(w -> topic.write(w, FRAGMENT_VERSION));
+    }
+
+    private static DescribeTopicPartitionsResponseTopic describe(String topicName, UUID topicId,
+                                                                 List<PartitionData> partitions) {
+        List<DescribeTopicPartitionsResponsePartition> responsePartitions = new ArrayList<>(partitions.size());
+        for (PartitionData partition : partitions) {
+            responsePartitions.add(new DescribeTopicPartitionsResponsePartition()
+                    .setPartitionIndex(partition.partitionId())
+                    .setLeaderId(partition.leader())
+                    .setLeaderEpoch(partition.leaderEpoch())
+                    .setReplicaNodes(partition.replicas())
+                    .setIsrNodes(partition.inSyncReplicas()));
+        }
+        return new DescribeTopicPartitionsResponseTopic()
+                .setName(topicName)
+                .setTopicId(topicId)
+                .setTopicAuthorizedOperations(0)
+                .setPartitions(responsePartitions);
+    }
+}
@@ -0,0 +1,131 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import logging.Logger;
+import network.FileRegion;
+import network.Send;
+import protocol.ApiMessage;
+import protocol.message.ApiMessageType;
+import protocol.message.FetchRequestData;
+import protocol.message.FetchRequestData.FetchPartition;
+import protocol.message.FetchRequestData.FetchTopic;
+import protocol.message.FetchResponseData;
+import protocol.message.FetchResponseData.FetchableTopicResponse;
+import storage.LogManager;
+import storage.PartitionLog;
+import utils.BufferPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static utils.Constants.*;
+
+/**
+ * Answers Fetch (ApiKey 1) with record batches from the partition logs. Topics are identified by
+ * name before v13 and by id from v13 on. Record data is attached as file regions, so it goes from
+ * the page cache to the socket without being copied.
+ *
+ * <p>Batches are never split. Each partition returns at most its {@code PartitionMaxBytes}, and the
+ * whole response at most {@code MaxBytes}, except that the first batch of the first partition with
+ * data is always returned (KIP-74), so a batch larger than the limits cannot stall a consumer.
+ * Offloaded to the request executor because locating the fetch offset reads the segment files.
+ */
+public class FetchHandler implements ApiHandler {
+    private static final Logger log = Logger.get(FetchHandler.class);
+
+    // Header, error code and session id, plus the fixed part of each partition.
+    private static final int RESPONSE_SIZE_HINT = 32;
+    private static final int PARTITION_SIZE_HINT = 64;
+
+    private final Supplier<MetadataCache> metadata;
+    private final LogManager logManager;
+    private final BufferPool bufferPool;
+
+    public FetchHandler(Supplier<MetadataCache> metadata, LogManager logManager, BufferPool bufferPool) {
+        this.metadata = metadata;
+        this.logManager = logManager;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public ApiMessageType apiType() {
+        return ApiMessageType.FETCH;
+    }
+
+    @Override
+    public Send handle(KafkaRequest kafkaRequest) {
+        FetchRequestData request = (FetchRequestData) kafkaRequest.getBody();
+        MetadataCache metadataCache = metadata.get();
+        boolean byTopicId = kafkaRequest.getApiVersion() >= 13;
+        long remaining = request.maxBytes();
+        int partitionCount = 0;
+        List<FetchableTopicResponse> responses = new ArrayList<>(request.topics().size());
+        for (FetchTopic topic : request.topics()) {
+            String topicName = byTopicId ? metadataCache.topicName(topic.topicId()) : topic.topic();
+            List<PartitionData> partitions = topicName == null ? null : metadataCache.byName().get(topicName);
+            List<FetchResponseData.PartitionData> responsePartitions = new ArrayList<>(topic.partitions().size());
+            for (FetchPartition fetchPartition : topic.partitions()) {
+                FetchResponseData.PartitionData response = new FetchResponseData.PartitionData()
+                        .setPartitionIndex(fetchPartition.partition())
+                        .setRecords(FileRegion.EMPTY);
+                if (partitions == null) {
+                    response.setErrorCode(byTopicId ? UNKNOWN_TOPIC_ID_ERROR_CODE : UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE);
+                } else if (MetadataCache.indexOf(partitions, fetchPartition.partition()) < 0) {
+                    response.setErrorCode(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE);
+                } else {
+                    boolean minOneBatch = remaining == request.maxBytes();
+                    remaining -= read(topicName, fetchPartition, response, remaining, minOneBatch);
+                }
+                responsePartitions.add(response);
+            }
+            partitionCount += responsePartitions.size();
+            responses.add(new FetchableTopicResponse()
+                    .setTopic(topic.topic())
+                    .setTopicId(topic.topicId())
+                    .setPartitions(responsePartitions));
+        }
+        FetchResponseData response = new FetchResponseData().setResponses(responses);
+        return Responses.encode(bufferPool, kafkaRequest, response,
+                RESPONSE_SIZE_HINT + responses.size() * 32 + partitionCount * PARTITION_SIZE_HINT);
+    }
+
+    /**
+     * Fills in the offsets and records of one partition.
+     *
+     * @return the number of record bytes added to the response.
+     */
+    private long read(String topicName, FetchPartition fetchPartition, FetchResponseData.PartitionData response,
+                      long maxBytes, boolean minOneBatch) {
+        try {
+            PartitionLog partitionLog = logManager.log(topicName, fetchPartition.partition());
+            long logStartOffset = partitionLog == null ? 0 : partitionLog.logStartOffset();
+            long logEndOffset = partitionLog == null ? 0 : partitionLog.logEndOffset();
+            response.setHighWatermark(logEndOffset)
+                    .setLastStableOffset(logEndOffset)
+                    .setLogStartOffset(logStartOffset);
+            long fetchOffset = fetchPartition.fetchOffset();
+            if (fetchOffset < logStartOffset || fetchOffset > logEndOffset) {
+                response.setErrorCode(OFFSET_OUT_OF_RANGE_ERROR_CODE);
+                return 0;
+            }
+            if (partitionLog == null || fetchOffset == logEndOffset) return 0;
+            int limit = (int) Math.max(0, Math.min(fetchPartition.partitionMaxBytes(), maxBytes));
+            FileRegion records = partitionLog.read(fetchOffset, limit, minOneBatch);
+            response.setRecords(records);
+            return records.count();
+        } catch (IOException e) {
+            log.error("Failed to read {}-{}", topicName, fetchPartition.partition(), e);
+            response.setErrorCode(KAFKA_STORAGE_ERROR_CODE);
+            return 0;
+        }
+    }
+
+    @Override
+    public ApiMessage errorResponse(short errorCode) {
+        return new FetchResponseData().setErrorCode(errorCode);
+    }
+}
@@ -0,0 +1,120 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import logging.Logger;
+import network.Send;
+import protocol.message.ApiMessageType;
+import protocol.message.ListOffsetsRequestData;
+import protocol.message.ListOffsetsRequestData.ListOffsetsPartition;
+import protocol.message.ListOffsetsRequestData.ListOffsetsTopic;
+import protocol.message.ListOffsetsResponseData;
+import protocol.message.ListOffsetsResponseData.ListOffsetsPartitionResponse;
+import protocol.message.ListOffsetsResponseData.ListOffsetsTopicResponse;
+import storage.LogManager;
+import storage.PartitionLog;
+import storage.TimestampOffset;
+import utils.BufferPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static utils.Constants.*;
+
+/**
+ * Answers ListOffsets (ApiKey 2), which consumers use to reset to the earliest or latest offset or
+ * to seek by timestamp. Timestamp lookups go through the segments' time indexes; see
+ * {@link PartitionLog#offsetForTimestamp}. Offloaded to the request executor because a lookup
+ * reads the segment files.
+ *
+ * <p>A partition without a log directory has not been produced to yet and is answered as an empty
+ * log. Leader epochs are not tracked, so every offset is returned with epoch -1.
+ */
+public class ListOffsetsHandler implements ApiHandler {
+    private static final Logger log = Logger.get(ListOffsetsHandler.class);
+
+    private static final long LATEST_TIMESTAMP = -1L;
+    private static final long EARLIEST_TIMESTAMP = -2L;
+    private static final long MAX_TIMESTAMP = -3L;
+    private static final long EARLIEST_LOCAL_TIMESTAMP = -4L;
+
+    // Header and throttle time, plus the fixed part of each partition.
+    private static final int RESPONSE_SIZE_HINT = 16;
+    private static final int PARTITION_SIZE_HINT = 32;
+
+    private final Supplier<MetadataCache> metadata;
+    private final LogManager logManager;
+    private final BufferPool bufferPool;
+
+    public ListOffsetsHandler(Supplier<MetadataCache> metadata, LogManager logManager, BufferPool bufferPool) {
+        this.metadata = metadata;
+        this.logManager = logManager;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public ApiMessageType apiType() {
+        return ApiMessageType.LIST_OFFSETS;
+    }
+
+    @Override
+    public Send handle(KafkaRequest kafkaRequest) {
+        ListOffsetsRequestData request = (ListOffsetsRequestData) kafkaRequest.getBody();
+        MetadataCache metadataCache = metadata.get();
+        int partitionCount = 0;
+        List<ListOffsetsTopicResponse> responses = new ArrayList<>(request.topics().size());
+        for (ListOffsetsTopic topic : request.topics()) {
+            List<PartitionData> partitions = metadataCache.byName().get(topic.name());
+            List<ListOffsetsPartitionResponse> responsePartitions = new ArrayList<>(topic.partitions().size());
+            for (ListOffsetsPartition partition : topic.partitions()) {
+                ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse()
+                        .setPartitionIndex(partition.partitionIndex());
+                if (partitions == null || MetadataCache.indexOf(partitions, partition.partitionIndex()) < 0) {
+                    response.setErrorCode(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE);
+                } else {
+                    lookup(topic.name(), partition, response);
+                }
+                responsePartitions.add(response);
+            }
+            partitionCount += responsePartitions.size();
+            responses.add(new ListOffsetsTopicResponse()
+                    .setName(topic.name())
+                    .setPartitions(responsePartitions));
+        }
+        ListOffsetsResponseData response = new ListOffsetsResponseData().setTopics(responses);
+        return Responses.encode(bufferPool, kafkaRequest, response,
+                RESPONSE_SIZE_HINT + responses.size() * 32 + partitionCount * PARTITION_SIZE_HINT);
+    }
+
+    private void lookup(String topicName, ListOffsetsPartition partition, ListOffsetsPartitionResponse response) {
+        try {
+            PartitionLog partitionLog = logManager.log(topicName, partition.partitionIndex());
+            TimestampOffset found = resolve(partitionLog, partition.timestamp());
+            response.setTimestamp(found.timestamp()).setOffset(found.offset());
+        } catch (IOException e) {
+            log.error("Failed to look up offsets in {}-{}", topicName, partition.partitionIndex(), e);
+            response.setErrorCode(KAFKA_STORAGE_ERROR_CODE);
+        }
+    }
+
+    private static TimestampOffset resolve(PartitionLog partitionLog, long timestamp) throws IOException {
+        if (timestamp == EARLIEST_TIMESTAMP || timestamp == EARLIEST_LOCAL_TIMESTAMP) {
+            return new TimestampOffset(-1L, partitionLog == null ? 0 : partitionLog.logStartOffset());
+        }
+        if (timestamp == LATEST_TIMESTAMP) {
+            return new TimestampOffset(-1L, partitionLog == null ? 0 : partitionLog.logEndOffset());
+        }
+        if (timestamp == MAX_TIMESTAMP) {
+            return partitionLog == null ? TimestampOffset.UNKNOWN : partitionLog.maxTimestamp();
+        }
+        if (timestamp < 0 || partitionLog == null) {
+            // -5 asks for the latest tiered offset; nothing is tiered, so there is none.
+            return TimestampOffset.UNKNOWN;
+        }
+        TimestampOffset found = partitionLog.offsetForTimestamp(timestamp);
+        return found == null ? TimestampOffset.UNKNOWN : found;
+    }
+}
@@ -0,0 +1,130 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import logging.Logger;
+import network.Send;
+import protocol.message.ApiMessageType;
+import protocol.message.ProduceRequestData;
+import protocol.message.ProduceRequestData.PartitionProduceData;
+import protocol.message.ProduceRequestData.TopicProduceData;
+import protocol.message.ProduceResponseData;
+import protocol.message.ProduceResponseData.PartitionProduceResponse;
+import protocol.message.ProduceResponseData.TopicProduceResponse;
+import storage.LogManager;
+import storage.PartitionLog;
+import utils.BufferPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static utils.Constants.*;
+
+/**
+ * Answers Produce (ApiKey 0) by appending each partition's record batches to its log.
+ * Acknowledgement follows {@code acks}: {@code 0} sends no response at all, {@code 1} answers once
+ * the batches are written, and {@code -1} also waits until they are on disk. This broker is the only
+ * replica, so the ISR is just us. Requests waiting on {@code -1} share fsyncs through
+ * {@link PartitionLog#flush}. Offloaded to the request executor because it writes to disk.
+ */
+public class ProduceHandler implements ApiHandler {
+    private static final Logger log = Logger.get(ProduceHandler.class);
+
+    private final Supplier<MetadataCache> metadata;
+    private final LogManager logManager;
+    private final BufferPool bufferPool;
+
+    public ProduceHandler(Supplier<MetadataCache> metadata, LogManager logManager, BufferPool bufferPool) {
+        this.metadata = metadata;
+        this.logManager = logManager;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public ApiMessageType apiType() {
+        return ApiMessageType.PRODUCE;
+    }
+
+    @Override
+    public Send handle(KafkaRequest kafkaRequest) {
+        ProduceRequestData request = (ProduceRequestData) kafkaRequest.getBody();
+        MetadataCache metadataCache = metadata.get();
+        short acks = request.acks();
+        boolean validAcks = acks == 0 || acks == 1 || acks == -1;
+        List<PendingFlush> toFlush = acks == -1 ? new ArrayList<>() : List.of();
+        List<TopicProduceResponse> responses = new ArrayList<>(request.topicData().size());
+        int partitionCount = 0;
+        for (TopicProduceData topic : request.topicData()) {
+            List<PartitionData> partitions = metadataCache.byName().get(topic.name());
+            List<PartitionProduceResponse> partitionResponses = new ArrayList<>(topic.partitionData().size());
+            for (PartitionProduceData partitionData : topic.partitionData()) {
+                PartitionProduceResponse response = new PartitionProduceResponse()
+                        .setIndex(partitionData.index())
+                        .setBaseOffset(-1);
+                int index = partitions == null ? -1 : MetadataCache.indexOf(partitions, partitionData.index());
+                PartitionData partition = index < 0 ? null : partitions.get(index);
+                if (!validAcks) {
+                    response.setErrorCode(INVALID_REQUIRED_ACKS_ERROR_CODE);
+                } else if (partition == null) {
+                    response.setErrorCode(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE);
+                } else {
+                    PartitionLog partitionLog = append(topic.name(), partition, partitionData, response);
+                    if (partitionLog != null && acks == -1) {
+                        toFlush.add(new PendingFlush(partitionLog, partitionLog.logEndOffset(), response));
+                    }
+                }
+                partitionResponses.add(response);
+            }
+            partitionCount += partitionResponses.size();
+            responses.add(new TopicProduceResponse().setName(topic.name()).setPartitionResponses(partitionResponses));
+        }
+        if (acks == 0) return Send.NONE;
+        flush(toFlush);
+        ProduceResponseData response = new ProduceResponseData().setResponses(responses);
+        return Responses.encode(bufferPool, kafkaRequest, response, 16 + responses.size() * 32 + partitionCount * 48);
+    }
+
+    /** Appends one partition's batches and fills in the response; returns the log, or null on error. */
+    private PartitionLog append(String topicName, PartitionData partition, PartitionProduceData partitionData,
+                                PartitionProduceResponse response) {
+        if (partitionData.records() == null) {
+            response.setErrorCode(CORRUPT_MESSAGE_ERROR_CODE);
+            return null;
+        }
+        try {
+            PartitionLog partitionLog = logManager.getOrCreateLog(topicName, partition.partitionId());
+            long baseOffset = partitionLog.append(partitionData.records(), partition.leaderEpoch());
+            response.setBaseOffset(baseOffset).setLogStartOffset(partitionLog.logStartOffset());
+            return partitionLog;
+        } catch (IllegalArgumentException e) {
+            log.debug("Rejected batches for {}-{}: {}", topicName, partition.partitionId(), e.getMessage());
+            response.setErrorCode(CORRUPT_MESSAGE_ERROR_CODE).setErrorMessage(e.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to append to {}-{}", topicName, partition.partitionId(), e);
+            response.setErrorCode(KAFKA_STORAGE_ERROR_CODE);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the acks=-1 fsyncs; a partition whose fsync fails reports a storage error instead.
+     * Partitions of the same log after the first are usually covered already and return at once.
+     */
+    private static void flush(List<PendingFlush> toFlush) {
+        for (PendingFlush pending : toFlush) {
+            try {
+                pending.log().flush(pending.offset());
+            } catch (IOException e) {
+                log.error("Failed to flush {}", pending.log(), e);
+                pending.response().setErrorCode(KAFKA_STORAGE_ERROR_CODE);
+            }
+        }
+    }
+
+    /** A successful append that acks=-1 has to make durable before answering. */
+    private record PendingFlush(PartitionLog log, long offset, PartitionProduceResponse response) {
+    }
+}
@@ -0,0 +1,58 @@
+package handlers;
+
+import logging.WireTracer;
+import network.Send;
+import protocol.ApiMessage;
+import protocol.MessageWriter;
+import utils.BufferPool;
+import utils.PooledBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import static utils.Constants.correlationIdSize;
+import static utils.Constants.messageSize;
+
+/**
+ * A response that is the same for every request, encoded once. Sending it only encodes the size
+ * and correlation id into a small pooled buffer; the header tagged fields and body follow as a
+ * read-only view of the shared bytes.
+ */
+public final class ResponseTemplate {
+    private final ByteBuffer body;
+
+    private ResponseTemplate(ByteBuffer body) {
+        this.body = body.asReadOnlyBuffer();
+    }
+
+    public static ResponseTemplate of(BufferPool pool, ApiMessage message, short version, short headerVersion) {
+        return encode(pool, headerVersion, w -> message.write(w, version));
+    }
+
+    /** A response whose body is just an error code, for requests we cannot decode at all. */
+    public static ResponseTemplate errorCode(BufferPool pool, short errorCode) {
+        return encode(pool, (short) 0, w -> w.putShort(errorCode));
+    }
+
+    private static ResponseTemplate encode(BufferPool pool, short headerVersion, Consumer<MessageWriter> body) {
+        MessageWriter w = new MessageWriter(pool, 128, WireTracer.OFF);
+        w.putInt(0); // correlation id, written per send
+        if (headerVersion >= 1) w.putUnsignedVarInt(0);
+        body.accept(w);
+        PooledBuffer encoded = w.completeBuffer();
+        ByteBuffer src = encoded.buffer().position(messageSize + correlationIdSize);
+        ByteBuffer copy = ByteBuffer.allocate(src.remaining()).put(src).flip();
+        encoded.release();
+        return new ResponseTemplate(copy);
+    }
+
+    public Send send(BufferPool pool, int correlationId) {
+        ByteBuffer view = body.duplicate();
+        PooledBuffer pooled = pool.acquire(messageSize + correlationIdSize);
+        ByteBuffer header = pooled.buffer();
+        header.putInt(correlationIdSize + view.remaining());
+        header.putInt(correlationId);
+        header.flip();
+        return Send.builder().add(pooled).add(view).build();
+    }
+}
@@ -0,0 +1,31 @@
+package handlers;
+
+import dto.KafkaRequest;
+import logging.WireTracer;
+import network.Send;
+import protocol.ApiMessage;
+import protocol.MessageWriter;
+import protocol.message.ApiMessageType;
+import utils.BufferPool;
+
+/** Encoding shared by the {@link ApiHandler}s. */
+final class Responses {
+    private Responses() {
+    }
+
+    /** Encodes the response header and {@code body} at the request's version in one pass. */
+    static Send encode(BufferPool pool, KafkaRequest request, ApiMessage body, int sizeHint) {
+        short version = request.getApiVersion();
+        MessageWriter w = new MessageWriter(pool, sizeHint, traceFor(request));
+        w.putInt(request.getCorrelationId()).field("Correlation ID");
+        if (ApiMessageType.fromApiKey(body.apiKey()).responseHeaderVersion(version) >= 1) {
+            w.putUnsignedVarInt(0).field("Tagged Buffer");
+        }
+        body.write(w, version);
+        return w.complete();
+    }
+
+    static WireTracer traceFor(KafkaRequest request) {
+        return WireTracer.forRequest(request.getApiKey(), request.getCorrelationId(), request.getClientId());
+    }
+}
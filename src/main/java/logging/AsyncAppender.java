@@ -0,0 +1,132 @@
+package logging;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer, single-consumer ring buffer of log events. Request threads claim a slot with one
+ * CAS and return; a single daemon thread formats the events and writes them out in batches.
+ * When the ring is full new events are dropped and counted rather than blocking the caller.
+ *
+ * <p>The capacity is a power of two, set with {@code -Dkafka.log.ring.size} (default 8192).
+ */
+final class AsyncAppender implements Runnable {
+    static final AsyncAppender INSTANCE = new AsyncAppender(Integer.getInteger("kafka.log.ring.size", 8192));
+
+    private final Event[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile boolean sleeping;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread consumer;
+
+    private AsyncAppender(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.ring = new Event[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+        this.consumer = Thread.ofPlatform().daemon().name("kafka-log-appender").start(this);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "kafka-log-flush"));
+    }
+
+    void append(Level level, String logger, String message, Object[] args) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Event event = ring[(int) (sequence & mask)];
+        event.timestamp = System.currentTimeMillis();
+        event.level = level;
+        event.logger = logger;
+        Thread thread = Thread.currentThread();
+        event.thread = thread.isVirtual() ? "virtual-" + thread.threadId() : thread.getName();
+        event.message = message;
+        event.args = args;
+        event.sequence = sequence; // publishes the slot
+        if (sleeping) LockSupport.unpark(consumer);
+    }
+
+    @Override
+    public void run() {
+        StringBuilder sb = new StringBuilder(4096);
+        while (true) {
+            if (!drainTo(sb)) {
+                sleeping = true;
+                if (!isPublished(consumed)) LockSupport.parkNanos(100_000_000L);
+                sleeping = false;
+            }
+        }
+    }
+
+    private synchronized void drain() {
+        drainTo(new StringBuilder());
+    }
+
+    /** Formats and prints every published event; returns false if there was none. */
+    private synchronized boolean drainTo(StringBuilder sb) {
+        long next = consumed;
+        if (!isPublished(next)) return false;
+        PrintStream out = System.out;
+        while (isPublished(next)) {
+            Event event = ring[(int) (next & mask)];
+            sb.setLength(0);
+            Throwable thrown = event.format(sb);
+            (event.level.ordinal() >= Level.WARN.ordinal() ? System.err : out).println(sb);
+            if (thrown != null) thrown.printStackTrace(System.err);
+            event.clear();
+            consumed = ++next;
+        }
+        long lost = dropped.sumThenReset();
+        if (lost > 0) System.err.println("WARN log ring buffer full, dropped " + lost + " events");
+        out.flush();
+        return true;
+    }
+
+    private boolean isPublished(long sequence) {
+        return ring[(int) (sequence & mask)].sequence == sequence;
+    }
+
+    private static final class Event {
+        volatile long sequence = -1;
+        long timestamp;
+        Level level;
+        String logger;
+        String thread;
+        String message;
+        Object[] args;
+
+        Throwable format(StringBuilder sb) {
+            sb.append('[').append(Instant.ofEpochMilli(timestamp)).append("] ")
+                    .append(level).append(" [").append(thread).append("] ")
+                    .append(logger, logger.lastIndexOf('.') + 1, logger.length()).append(" - ");
+            int argIndex = 0;
+            int from = 0;
+            int at;
+            while ((at = message.indexOf("{}", from)) >= 0 && argIndex < args.length) {
+                sb.append(message, from, at).append(args[argIndex++]);
+                from = at + 2;
+            }
+            sb.append(message, from, message.length());
+            if (argIndex < args.length && args[args.length - 1] instanceof Throwable t) return t;
+            return null;
+        }
+
+        void clear() {
+            logger = null;
+            thread = null;
+            message = null;
+            args = null;
+        }
+    }
+}
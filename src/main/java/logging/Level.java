@@ -0,0 +1,14 @@
+package logging;
+
+public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+
+    public static Level parse(String name, Level fallback) {
+        if (name == null || name.isBlank()) return fallback;
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return fallback;
+        }
+    }
+}
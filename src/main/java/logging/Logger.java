@@ -0,0 +1,129 @@
+package logging;
+
+/**
+ * Leveled logger that hands events to the shared {@link AsyncAppender}. Messages use {@code {}}
+ * placeholders and are formatted on the appender thread. Every level has fixed-arity overloads for
+ * up to two arguments, so a call whose level is disabled costs a field read and a branch; with three
+ * or more the caller allocates the varargs array whether or not the level is enabled, so guard such
+ * calls on hot paths with {@link #isEnabled}. Pass only arguments that are not mutated after the call;
+ * a trailing {@link Throwable} that no placeholder consumes is printed with its stack trace.
+ *
+ * <p>The level comes from {@code -Dkafka.log.level} (default INFO) and can be overridden per logger,
+ * e.g. {@code -Dkafka.log.level.network.Processor=DEBUG}.
+ */
+public final class Logger {
+    private static final Level ROOT_LEVEL = Level.parse(System.getProperty("kafka.log.level"), Level.INFO);
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final String name;
+    private final int threshold;
+
+    private Logger(String name, Level level) {
+        this.name = name;
+        this.threshold = level.ordinal();
+    }
+
+    public static Logger get(Class<?> type) {
+        return get(type.getName());
+    }
+
+    public static Logger get(String name) {
+        return new Logger(name, Level.parse(System.getProperty("kafka.log.level." + name), ROOT_LEVEL));
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isTraceEnabled() {
+        return threshold <= Level.TRACE.ordinal();
+    }
+
+    public boolean isDebugEnabled() {
+        return threshold <= Level.DEBUG.ordinal();
+    }
+
+    public void trace(String message) {
+        if (isTraceEnabled()) log(Level.TRACE, message, NO_ARGS);
+    }
+
+    public void trace(String message, Object arg) {
+        if (isTraceEnabled()) log(Level.TRACE, message, new Object[]{arg});
+    }
+
+    public void trace(String message, Object arg1, Object arg2) {
+        if (isTraceEnabled()) log(Level.TRACE, message, new Object[]{arg1, arg2});
+    }
+
+    public void trace(String message, Object... args) {
+        if (isTraceEnabled()) log(Level.TRACE, message, args);
+    }
+
+    public void debug(String message) {
+        if (isDebugEnabled()) log(Level.DEBUG, message, NO_ARGS);
+    }
+
+    public void debug(String message, Object arg) {
+        if (isDebugEnabled()) log(Level.DEBUG, message, new Object[]{arg});
+    }
+
+    public void debug(String message, Object arg1, Object arg2) {
+        if (isDebugEnabled()) log(Level.DEBUG, message, new Object[]{arg1, arg2});
+    }
+
+    public void debug(String message, Object... args) {
+        if (isDebugEnabled()) log(Level.DEBUG, message, args);
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) log(Level.INFO, message, NO_ARGS);
+    }
+
+    public void info(String message, Object arg) {
+        if (isEnabled(Level.INFO)) log(Level.INFO, message, new Object[]{arg});
+    }
+
+    public void info(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) log(Level.INFO, message, new Object[]{arg1, arg2});
+    }
+
+    public void info(String message, Object... args) {
+        if (isEnabled(Level.INFO)) log(Level.INFO, message, args);
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) log(Level.WARN, message, NO_ARGS);
+    }
+
+    public void warn(String message, Object arg) {
+        if (isEnabled(Level.WARN)) log(Level.WARN, message, new Object[]{arg});
+    }
+
+    public void warn(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) log(Level.WARN, message, new Object[]{arg1, arg2});
+    }
+
+    public void warn(String message, Object... args) {
+        if (isEnabled(Level.WARN)) log(Level.WARN, message, args);
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) log(Level.ERROR, message, NO_ARGS);
+    }
+
+    public void error(String message, Object arg) {
+        if (isEnabled(Level.ERROR)) log(Level.ERROR, message, new Object[]{arg});
+    }
+
+    public void error(String message, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) log(Level.ERROR, message, new Object[]{arg1, arg2});
+    }
+
+    public void error(String message, Object... args) {
+        if (isEnabled(Level.ERROR)) log(Level.ERROR, message, args);
+    }
+
+    private void log(Level level, String message, Object[] args) {
+        AsyncAppender.INSTANCE.append(level, name, message, args);
+    }
+}
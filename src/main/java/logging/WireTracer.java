@@ -0,0 +1,90 @@
+package logging;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Field-level dump of an encoded response, enabled per api key ({@code -Dkafka.trace.api.keys=75,1})
+ * or per client id ({@code -Dkafka.trace.client.ids=my-client}); {@code *} traces everything.
+ *
+ * <p>Encoders call {@link #field} after writing each field. For requests that are not traced they get
+ * the shared {@link #OFF} instance, whose methods return on the first branch, so the encoders pay no
+ * allocation, copying or formatting for tracing they did not ask for.
+ */
+public final class WireTracer {
+    public static final WireTracer OFF = new WireTracer(false, null);
+
+    private static final Logger log = Logger.get("wire");
+    private static final Set<String> API_KEYS = parse(System.getProperty("kafka.trace.api.keys"));
+    private static final Set<String> CLIENT_IDS = parse(System.getProperty("kafka.trace.client.ids"));
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final boolean enabled;
+    private final StringBuilder out;
+    private int mark;
+
+    private WireTracer(boolean enabled, StringBuilder out) {
+        this.enabled = enabled;
+        this.out = out;
+    }
+
+    /** Returns a tracer for one response, or {@link #OFF} if this request is not traced. */
+    public static WireTracer forRequest(short apiKey, int correlationId, String clientId) {
+        if (API_KEYS.isEmpty() && CLIENT_IDS.isEmpty()) return OFF;
+        if (!(API_KEYS.contains("*") || API_KEYS.contains(Short.toString(apiKey))
+                || CLIENT_IDS.contains("*") || (clientId != null && CLIENT_IDS.contains(clientId)))) {
+            return OFF;
+        }
+        StringBuilder out = new StringBuilder(1024).append("--- api key ").append(apiKey)
+                .append(", correlation id ").append(correlationId).append(", client '").append(clientId).append("' ---");
+        return new WireTracer(true, out);
+    }
+
+    /** Starts tracing at the buffer's current position. */
+    public void begin(ByteBuffer buf) {
+        if (!enabled) return;
+        mark = buf.position();
+    }
+
+    /** Records the bytes written since the previous field under {@code name}. */
+    public void field(String name, ByteBuffer buf) {
+        if (!enabled) return;
+        int end = buf.position();
+        out.append("\n[WRITE] ").append(name);
+        for (int pad = name.length(); pad < 35; pad++) out.append(' ');
+        out.append(" | pos: ").append(end).append(" | hex:");
+        for (int i = mark; i < end; i++) {
+            byte b = buf.get(i);
+            out.append(' ').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        switch (end - mark) {
+            case 1 -> out.append(" | dec: ").append(buf.get(mark));
+            case 2 -> out.append(" | dec: ").append(buf.getShort(mark));
+            case 4 -> out.append(" | dec: ").append(buf.getInt(mark));
+            case 8 -> out.append(" | dec: ").append(buf.getLong(mark));
+            default -> { }
+        }
+        mark = end;
+    }
+
+    /** Records a field that is sent from a file rather than from the buffer. */
+    public void region(String name, long bytes) {
+        if (!enabled) return;
+        out.append("\n[WRITE] ").append(name);
+        for (int pad = name.length(); pad < 35; pad++) out.append(' ');
+        out.append(" | file region: ").append(bytes).append(" bytes");
+    }
+
+    /** Emits everything recorded for this response as one log line. */
+    public void finish() {
+        if (!enabled) return;
+        log.info("{}", out.toString());
+    }
+
+    private static Set<String> parse(String csv) {
+        if (csv == null || csv.isBlank()) return Set.of();
+        return Arrays.stream(csv.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toUnmodifiableSet());
+    }
+}
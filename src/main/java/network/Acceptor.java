@@ -0,0 +1,74 @@
+package network;
+
+import logging.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Accepts new connections and hands them to the processors in round-robin order.
+ */
+public class Acceptor implements Runnable {
+    private static final Logger log = Logger.get(Acceptor.class);
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Processor[] processors;
+    private int nextProcessor;
+    private volatile boolean running = true;
+
+    public Acceptor(int port, int backlog, Processor[] processors) throws IOException {
+        this.processors = processors;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port), backlog);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int localPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (selector.select(500) == 0) continue;
+                selector.selectedKeys().clear();
+                SocketChannel socketChannel;
+                while ((socketChannel = serverChannel.accept()) != null) {
+                    try {
+                        socketChannel.configureBlocking(false);
+                        socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                        processors[nextProcessor].accept(socketChannel);
+                        nextProcessor = (nextProcessor + 1) % processors.length;
+                    } catch (IOException e) {
+                        log.warn("Failed to accept connection: {}", e.getMessage());
+                        socketChannel.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) log.error("Acceptor failed", e);
+        } finally {
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                log.warn("IOException: {}", e.getMessage());
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+}
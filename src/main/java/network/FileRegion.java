@@ -0,0 +1,48 @@
+package network;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A byte range of a log segment file that is sent with {@link FileChannel#transferTo},
+ * so record data goes from the page cache to the socket without being copied into the heap.
+ * The file channel belongs to the segment and is not closed here.
+ */
+public class FileRegion {
+    /** No record data; never reaches the socket. */
+    public static final FileRegion EMPTY = new FileRegion(null, 0, 0);
+
+    private final FileChannel fileChannel;
+    private final long position;
+    private final long count;
+    private long transferred;
+
+    public FileRegion(FileChannel fileChannel, long position, long count) {
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * Transfers as much of the remaining range as the target accepts.
+     *
+     * @return the number of bytes transferred by this call.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long written = fileChannel.transferTo(position + transferred, count - transferred, target);
+        if (written == 0 && fileChannel.size() < position + count) {
+            throw new IOException("Segment was truncated below " + (position + count) + " while sending");
+        }
+        transferred += written;
+        return written;
+    }
+
+    public boolean completed() {
+        return transferred >= count;
+    }
+
+    public long count() {
+        return count;
+    }
+}
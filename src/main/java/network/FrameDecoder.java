@@ -0,0 +1,85 @@
+package network;
+
+import utils.Config;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Assembles length-prefixed request frames into one buffer that is reused for every
+ * request on the connection. The returned frame is a view over that buffer, so it is
+ * only valid until the next call to {@code read}. A buffer grown past
+ * {@link Config#FRAME_BUFFER_RETAIN_BYTES} for a large request is dropped once that request
+ * has been decoded, so an idle connection does not keep its largest request alive.
+ */
+public class FrameDecoder {
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+    private ByteBuffer buffer;
+    private boolean readingPayload;
+
+    /**
+     * Non-blocking read from a socket channel.
+     *
+     * @return the next complete frame (without its size prefix), or {@code null} if more bytes are needed.
+     * @throws EOFException if the peer closed the connection.
+     */
+    public ByteBuffer read(ReadableByteChannel channel) throws IOException {
+        if (!readingPayload) {
+            trim();
+            if (channel.read(sizeBuffer) < 0) throw new EOFException();
+            if (sizeBuffer.hasRemaining()) return null;
+            prepare(sizeBuffer.getInt(0));
+        }
+        if (buffer.hasRemaining() && channel.read(buffer) < 0) throw new EOFException();
+        if (buffer.hasRemaining()) return null;
+        return complete();
+    }
+
+    /**
+     * Blocking read of one whole frame from a stream.
+     *
+     * @throws EOFException if the stream ends before a frame is complete.
+     */
+    public ByteBuffer read(InputStream in) throws IOException {
+        trim();
+        if (in.readNBytes(sizeBuffer.array(), 0, 4) < 4) throw new EOFException();
+        prepare(sizeBuffer.getInt(0));
+        int size = buffer.limit();
+        if (in.readNBytes(buffer.array(), 0, size) < size) throw new EOFException();
+        buffer.position(size);
+        return complete();
+    }
+
+    /**
+     * Drops a buffer that grew past the retained size, unless a frame is still being read into it.
+     * Invalidates the last returned frame.
+     */
+    public void trim() {
+        if (!readingPayload && buffer != null && buffer.capacity() > Config.FRAME_BUFFER_RETAIN_BYTES) {
+            buffer = null;
+        }
+    }
+
+    private void prepare(int size) throws IOException {
+        if (size < 0 || size > Config.MAX_REQUEST_SIZE) {
+            throw new IOException("Invalid request size " + size);
+        }
+        if (buffer == null || buffer.capacity() < size) {
+            int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+            buffer = ByteBuffer.allocate(Math.min(capacity, Config.MAX_REQUEST_SIZE));
+        }
+        buffer.clear().limit(size);
+        readingPayload = true;
+    }
+
+    private ByteBuffer complete() {
+        readingPayload = false;
+        sizeBuffer.clear();
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,36 @@
+package network;
+
+/**
+ * A request that has been read from a connection but whose response has not been fully written.
+ * Slots are kept in arrival order by {@link KafkaChannel}; a request thread fills the response
+ * in, and the processor thread only writes responses from the head of the queue.
+ */
+public class InFlightRequest {
+    private final int correlationId;
+    private volatile Send response;
+    private volatile boolean failed;
+
+    public InFlightRequest(int correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public void complete(Send response) {
+        this.response = response;
+    }
+
+    public void fail() {
+        this.failed = true;
+    }
+
+    public Send response() {
+        return response;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public int correlationId() {
+        return correlationId;
+    }
+}
@@ -0,0 +1,166 @@
+package network;
+
+import logging.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * State of a single client connection owned by a {@link Processor}.
+ * Assembles request frames without blocking and keeps the requests that are in flight in
+ * arrival order, so pipelined responses are written back in the order the client sent them
+ * even though they may finish out of order. Only the owning processor thread touches this object.
+ */
+public class KafkaChannel {
+    private static final Logger log = Logger.get(KafkaChannel.class);
+    private static final int MAX_GATHER = 64;
+
+    private final String id;
+    private final SocketChannel socketChannel;
+    private final SelectionKey key;
+
+    private final FrameDecoder frameDecoder = new FrameDecoder();
+
+    private final Deque<InFlightRequest> inFlight = new ArrayDeque<>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private boolean muted;
+
+    public KafkaChannel(String id, SocketChannel socketChannel, SelectionKey key) {
+        this.id = id;
+        this.socketChannel = socketChannel;
+        this.key = key;
+    }
+
+    /**
+     * Reads as much of the current frame as the socket has available.
+     *
+     * @return the complete frame, a view over this connection's reusable receive buffer that stays
+     *         valid until the next call, or {@code null} if more bytes are needed.
+     * @throws EOFException if the client closed the connection.
+     */
+    public ByteBuffer read() throws IOException {
+        return frameDecoder.read(socketChannel);
+    }
+
+    /** Reserves the response slot for a request that was just read. */
+    public InFlightRequest track(int correlationId) {
+        InFlightRequest request = new InFlightRequest(correlationId);
+        inFlight.addLast(request);
+        return request;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /** True if any in-flight request failed; the connection has to be dropped. */
+    public boolean hasFailedRequest() {
+        for (InFlightRequest request : inFlight) {
+            if (request.isFailed()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the responses that are ready at the head of the in-flight queue, stopping at the first
+     * request that is still being handled or when the socket buffer fills up. The heap buffers of
+     * all ready responses are coalesced into one gathering write; file regions are transferred
+     * separately, in order.
+     *
+     * @return {@code true} unless the socket could not take all ready bytes.
+     */
+    public boolean write() throws IOException {
+        while (!inFlight.isEmpty()) {
+            int sends = 0;
+            int count = 0;
+            for (InFlightRequest request : inFlight) {
+                Send send = request.response();
+                if (send == null || count == gather.length) break;
+                count = send.gatherBuffers(gather, count);
+                sends++;
+                if (send.hasPendingRegion()) break;
+            }
+            if (sends == 0) return true;
+
+            if (count > 0) {
+                socketChannel.write(gather, 0, count);
+                boolean socketFull = gather[count - 1].hasRemaining();
+                Arrays.fill(gather, 0, count, null);
+                if (socketFull) return false;
+            }
+            // The gathered bytes are out; finish file regions and retire the completed sends.
+            for (int i = 0; i < sends; i++) {
+                Send head = inFlight.peekFirst().response();
+                head.writeTo(socketChannel);
+                if (!head.completed()) return false;
+                head.release();
+                inFlight.pollFirst();
+            }
+        }
+        return true;
+    }
+
+    /** Stops reading from this connection until some in-flight requests have been answered. */
+    public void mute() {
+        muted = true;
+        // The last frame has been decoded and no read follows until unmute.
+        frameDecoder.trim();
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    public void unmute() {
+        muted = false;
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    public void interestInWrite(boolean enabled) {
+        if (enabled) key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        else key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Returns the buffers of every response that is ready but will never be written. Called when the
+     * connection closes, and again for each request that completes after that.
+     */
+    public void releaseResponses() {
+        inFlight.removeIf(request -> {
+            Send response = request.response();
+            if (response == null) return false;
+            response.release();
+            return true;
+        });
+    }
+
+    public void close() {
+        releaseResponses();
+        key.cancel();
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            log.warn("IOException while closing {}: {}", id, e.getMessage());
+        }
+    }
+
+    public boolean isOpen() {
+        return key.isValid();
+    }
+
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaChannel{" + id + "}";
+    }
+}
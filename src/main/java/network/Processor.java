@@ -0,0 +1,188 @@
+package network;
+
+import dto.KafkaRequest;
+import logging.Logger;
+import processors.RequestProcessor;
+import processors.ResponseProcessor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A selector thread that owns a subset of the client connections. It reads request frames,
+ * hands them to the request executor and writes the responses back once they are ready.
+ * Up to {@code maxInFlight} pipelined requests per connection are handled concurrently;
+ * beyond that the connection is muted until responses have been written. Requests whose handler
+ * is {@linkplain handlers.ApiHandler#inline() inline} are answered on this thread instead.
+ */
+public class Processor implements Runnable {
+    private static final Logger log = Logger.get(Processor.class);
+    private final int id;
+    private final Selector selector;
+    private final RequestProcessor requestProcessor;
+    private final ResponseProcessor responseProcessor;
+    private final ExecutorService requestExecutor;
+    private final int maxInFlight;
+
+    private final Queue<SocketChannel> newConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<KafkaChannel> completions = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    public Processor(int id, RequestProcessor requestProcessor, ResponseProcessor responseProcessor,
+                     ExecutorService requestExecutor, int maxInFlight) throws IOException {
+        this.id = id;
+        this.selector = Selector.open();
+        this.requestProcessor = requestProcessor;
+        this.responseProcessor = responseProcessor;
+        this.requestExecutor = requestExecutor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /** Called by the acceptor thread. The channel is registered on the next loop iteration. */
+    public void accept(SocketChannel socketChannel) {
+        newConnections.add(socketChannel);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                configureNewConnections();
+                processCompletions();
+                selector.select(300);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    KafkaChannel channel = (KafkaChannel) key.attachment();
+                    try {
+                        if (key.isReadable()) read(channel);
+                        if (key.isValid() && key.isWritable()) write(channel);
+                    } catch (EOFException e) {
+                        log.debug("Client {} disconnected.", channel.id());
+                        channel.close();
+                    } catch (IOException e) {
+                        log.debug("Client {} disconnected: {}", channel.id(), e.getMessage());
+                        channel.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) log.error("Processor {} failed", id, e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void configureNewConnections() {
+        SocketChannel socketChannel;
+        while ((socketChannel = newConnections.poll()) != null) {
+            try {
+                SocketAddress remote = socketChannel.getRemoteAddress();
+                SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+                key.attach(new KafkaChannel(String.valueOf(remote), socketChannel, key));
+            } catch (IOException e) {
+                log.warn("Failed to register connection: {}", e.getMessage());
+                try {
+                    socketChannel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void read(KafkaChannel channel) throws IOException {
+        boolean completedInline = false;
+        while (channel.inFlightCount() < maxInFlight) {
+            ByteBuffer frame = channel.read();
+            if (frame == null) break;
+            // Decode while the frame still owns the receive buffer; the request copies what it keeps.
+            KafkaRequest kafkaRequest;
+            try {
+                kafkaRequest = requestProcessor.processRequest(frame);
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed request: " + e, e);
+            }
+            InFlightRequest slot = channel.track(kafkaRequest.getCorrelationId());
+            if (responseProcessor.isInline(kafkaRequest)) {
+                respond(channel, slot, kafkaRequest);
+                completedInline = true;
+            } else {
+                requestExecutor.execute(() -> handle(channel, slot, kafkaRequest));
+            }
+        }
+        // Picked up by processCompletions before the next select, so no wakeup is needed.
+        if (completedInline) completions.add(channel);
+        if (channel.inFlightCount() >= maxInFlight && !channel.isMuted()) channel.mute();
+    }
+
+    /** Runs on a request thread; never touches the channel directly. */
+    private void handle(KafkaChannel channel, InFlightRequest slot, KafkaRequest kafkaRequest) {
+        respond(channel, slot, kafkaRequest);
+        completions.add(channel);
+        selector.wakeup();
+    }
+
+    private void respond(KafkaChannel channel, InFlightRequest slot, KafkaRequest kafkaRequest) {
+        try {
+            log.debug("Kafka message {}", kafkaRequest);
+            slot.complete(responseProcessor.generateResponse(kafkaRequest));
+        } catch (Exception e) {
+            log.error("[Processor {}] Failed to handle request from {}, closing connection!", id, channel.id(), e);
+            slot.fail();
+        }
+    }
+
+    private void processCompletions() {
+        KafkaChannel channel;
+        while ((channel = completions.poll()) != null) {
+            if (!channel.isOpen()) {
+                channel.releaseResponses();
+                continue;
+            }
+            if (channel.hasFailedRequest()) {
+                channel.close();
+                continue;
+            }
+            try {
+                write(channel);
+            } catch (IOException e) {
+                log.debug("Client {} disconnected: {}", channel.id(), e.getMessage());
+                channel.close();
+            }
+        }
+    }
+
+    private void write(KafkaChannel channel) throws IOException {
+        boolean done = channel.write();
+        channel.interestInWrite(!done);
+        if (channel.isMuted() && channel.inFlightCount() < maxInFlight) channel.unmute();
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof KafkaChannel channel) channel.close();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            log.warn("IOException: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package network;
+
+import utils.PooledBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An encoded response: heap buffers for the header and metadata, interleaved with file regions
+ * for record data. {@code regions[i]}, when present, is sent right after {@code buffers[i]}.
+ * Sends are written incrementally, so a partially written send resumes where it left off.
+ * Pooled buffers are returned to their pool by {@link #release()} once the send is done with.
+ */
+public class Send {
+    private static final PooledBuffer[] NO_POOLED_BUFFERS = new PooledBuffer[0];
+
+    /** Nothing goes on the wire, e.g. for a Produce with {@code acks=0}; the request still takes its slot. */
+    public static final Send NONE = new Send(new ByteBuffer[0], new FileRegion[0], NO_POOLED_BUFFERS);
+
+    private final ByteBuffer[] buffers;
+    private final FileRegion[] regions;
+    private final PooledBuffer[] pooled;
+    private final long size;
+    private int current;
+    private boolean released;
+
+    private Send(ByteBuffer[] buffers, FileRegion[] regions, PooledBuffer[] pooled) {
+        this.buffers = buffers;
+        this.regions = regions;
+        this.pooled = pooled;
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            total += buffers[i].remaining();
+            if (regions[i] != null) total += regions[i].count();
+        }
+        this.size = total;
+    }
+
+    public static Send of(ByteBuffer buffer) {
+        return new Send(new ByteBuffer[]{buffer}, new FileRegion[1], NO_POOLED_BUFFERS);
+    }
+
+    /** A send of a pooled buffer's contents from position to limit. */
+    public static Send of(PooledBuffer buffer) {
+        return new Send(new ByteBuffer[]{buffer.buffer()}, new FileRegion[1], new PooledBuffer[]{buffer});
+    }
+
+    public static Send of(byte[] bytes) {
+        return of(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Writes as much as the channel accepts without blocking.
+     *
+     * @return the number of bytes written by this call.
+     */
+    public long writeTo(WritableByteChannel channel) throws IOException {
+        long written = 0;
+        while (current < buffers.length) {
+            ByteBuffer buffer = buffers[current];
+            if (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+                if (buffer.hasRemaining()) return written;
+            }
+            FileRegion region = regions[current];
+            if (region != null && !region.completed()) {
+                written += region.transferTo(channel);
+                if (!region.completed()) return written;
+            }
+            current++;
+        }
+        return written;
+    }
+
+    /**
+     * Appends the buffers that can be written next to {@code dst}, stopping at the first file region
+     * that has not been sent yet or when {@code dst} is full.
+     *
+     * @return the new number of buffers in {@code dst}.
+     */
+    public int gatherBuffers(ByteBuffer[] dst, int count) {
+        for (int i = current; i < buffers.length && count < dst.length; i++) {
+            if (buffers[i].hasRemaining()) dst[count++] = buffers[i];
+            if (regions[i] != null && !regions[i].completed()) break;
+        }
+        return count;
+    }
+
+    /** True if a file region still has to go out, so nothing queued behind this send can be gathered. */
+    public boolean hasPendingRegion() {
+        for (int i = current; i < regions.length; i++) {
+            if (regions[i] != null && !regions[i].completed()) return true;
+        }
+        return false;
+    }
+
+    public boolean completed() {
+        return current >= buffers.length;
+    }
+
+    /** Returns the pooled buffers; safe to call more than once, e.g. when a connection closes mid-write. */
+    public void release() {
+        if (released) return;
+        released = true;
+        for (PooledBuffer buffer : pooled) {
+            buffer.release();
+        }
+    }
+
+    /** Total bytes on the wire, size prefix included. */
+    public long size() {
+        return size;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final List<FileRegion> regions = new ArrayList<>();
+        private final List<PooledBuffer> pooled = new ArrayList<>();
+
+        /** Appends a heap buffer; it is sent from its position to its limit. */
+        public Builder add(ByteBuffer buffer) {
+            buffers.add(buffer);
+            regions.add(null);
+            return this;
+        }
+
+        /** Appends a pooled buffer's contents; the send releases it. */
+        public Builder add(PooledBuffer buffer) {
+            pooled.add(buffer);
+            return add(buffer.buffer());
+        }
+
+        /** Appends a file region after everything added so far. */
+        public Builder add(FileRegion region) {
+            if (buffers.isEmpty() || regions.getLast() != null) add(ByteBuffer.allocate(0));
+            regions.set(regions.size() - 1, region);
+            return this;
+        }
+
+        public Send build() {
+            return new Send(buffers.toArray(new ByteBuffer[0]), regions.toArray(new FileRegion[0]),
+                    pooled.isEmpty() ? NO_POOLED_BUFFERS : pooled.toArray(new PooledBuffer[0]));
+        }
+    }
+}
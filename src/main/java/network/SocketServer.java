@@ -0,0 +1,57 @@
+package network;
+
+import processors.RequestProcessor;
+import processors.ResponseProcessor;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Event-driven network layer: one acceptor thread plus a small, fixed set of selector
+ * threads ({@link Processor}s) that multiplex all client connections. Requests are handled
+ * on virtual threads, so a slow request never blocks a selector, and pipelined requests from
+ * the same connection run concurrently.
+ */
+public class SocketServer {
+    private final Acceptor acceptor;
+    private final Processor[] processors;
+    private final Thread[] threads;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SocketServer(int port, int numProcessors, int backlog, int maxInFlightPerConnection,
+                        RequestProcessor requestProcessor, ResponseProcessor responseProcessor) throws IOException {
+        this.processors = new Processor[numProcessors];
+        for (int i = 0; i < numProcessors; i++) {
+            processors[i] = new Processor(i, requestProcessor, responseProcessor, requestExecutor,
+                    maxInFlightPerConnection);
+        }
+        this.acceptor = new Acceptor(port, backlog, processors);
+        this.threads = new Thread[numProcessors + 1];
+    }
+
+    public void startup() {
+        for (int i = 0; i < processors.length; i++) {
+            threads[i] = Thread.ofPlatform().name("kafka-network-processor-" + i).start(processors[i]);
+        }
+        threads[processors.length] = Thread.ofPlatform().name("kafka-network-acceptor").start(acceptor);
+    }
+
+    public int boundPort() throws IOException {
+        return acceptor.localPort();
+    }
+
+    public void awaitShutdown() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    public void shutdown() {
+        acceptor.shutdown();
+        for (Processor processor : processors) {
+            processor.shutdown();
+        }
+        requestExecutor.shutdown();
+    }
+}
@@ -1,18 +1,57 @@
 package processors;
 
-import dto.*;
-import dto.Record;
+import dto.MetadataCache;
+import dto.PartitionChange;
+import dto.PartitionData;
+import logging.Logger;
+import utils.Config;
 import utils.RecordType;
 
 import java.io.*;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.net.*;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 
 public class ClusterMetadataProcessor {
+    private static final Logger log = Logger.get(ClusterMetadataProcessor.class);
+
+    // baseOffset and batchLength precede every batch; batchLength counts the rest of the header
+    // (partitionLeaderEpoch through the record count) and the records.
+    static final int LOG_OVERHEAD = 12;
+    private static final int BATCH_HEADER_SIZE = 49;
+    // Relative to the partitionLeaderEpoch, where the batch header continues after batchLength.
+    private static final int ATTRIBUTES_OFFSET = 9;
+    private static final int LAST_OFFSET_DELTA_OFFSET = 11;
+    private static final int RECORDS_COUNT_OFFSET = 45;
+    // Control batches (leader changes, snapshot headers and footers) hold no metadata records.
+    private static final short CONTROL_FLAG = 0x20;
+    // Batches decoded by one fork/join task, and tasks per thread decoded before their records are
+    // applied; together they bound how many decoded records wait in memory.
+    private static final int BATCHES_PER_TASK = 256;
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final int loadThreads;
+    private final int snapshotIntervalRecords;
+
+    public ClusterMetadataProcessor() {
+        this(Config.METADATA_LOAD_THREADS, Config.METADATA_SNAPSHOT_INTERVAL_RECORDS);
+    }
+
+    /**
+     * @param loadThreads             threads decoding batches in {@link #replay}; 1 decodes on the calling thread.
+     * @param snapshotIntervalRecords log records replayed after the newest snapshot that make
+     *                                {@link #loadMetadataCache} write a new one.
+     */
+    public ClusterMetadataProcessor(int loadThreads, int snapshotIntervalRecords) {
+        this.loadThreads = loadThreads;
+        this.snapshotIntervalRecords = snapshotIntervalRecords;
+    }
 
     /**
      * Downloads the Kafka cluster metadata file from a given source path or URL
@@ -48,351 +87,296 @@ public class ClusterMetadataProcessor {
             Files.copy(sourcePath, targetFile, StandardCopyOption.REPLACE_EXISTING);
         }
 
-        System.out.println("✅ Metadata file downloaded to: " + targetFile.toAbsolutePath());
+        log.info("Metadata file downloaded to: {}", targetFile.toAbsolutePath());
         return targetFile;
     }
 
-    public TopicClusterMetadata loadMetadata(String filePath) {
-        System.out.println("Loading cluster metadata from: " + filePath);
-        try(DataInputStream dataInputStream = new DataInputStream(new FileInputStream(filePath))) {
-            List<RecordBatch> recordBatches = new ArrayList<>();
+    /**
+     * Builds the cache from the newest valid {@link MetadataSnapshot} next to the metadata log and
+     * the log records after it, or from the whole log if there is no snapshot. Records go straight
+     * from the mapped file to a {@link MetadataCacheBuilder}; no batches or records are kept along
+     * the way, so peak memory stays close to the size of the finished cache.
+     *
+     * <p>If more than the snapshot interval of records had to be replayed, a new snapshot of the
+     * result is written, so the next startup starts from there.
+     */
+    public LoadedMetadata loadMetadataCache(String filePath) {
+        Path dir = Path.of(filePath).toAbsolutePath().getParent();
+        ByteBuffer buf = map(filePath);
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        long snapshotEnd = MetadataSnapshot.loadLatest(dir, builder, scanBatches(buf, Long.MAX_VALUE).lastOffset());
+        BatchPositions batches = replay(filePath, buf, builder, snapshotEnd);
+        MetadataCache cache = builder.build(Math.max(batches.lastOffset(), snapshotEnd - 1));
+        maybeWriteSnapshot(dir, cache, snapshotEnd);
+        return new LoadedMetadata(cache, resumePosition(buf, batches, cache.lastOffset()));
+    }
 
-            while (dataInputStream.available() > 0) {
-                long baseOffset;
-                int batchLength;
-                try {
-                    baseOffset = dataInputStream.readLong();
-                    batchLength = dataInputStream.readInt();
-                } catch (EOFException e) {
-                    System.out.println("Reached end of metadata file.");
-                    break;
-                }
-                if (batchLength <= 0) {
-                    System.out.println("Invalid batch length (" + batchLength + "), skipping.");
-                    continue;
-                }
-                byte[] batchBytes = new byte[batchLength];
-                dataInputStream.readFully(batchBytes);
-                try (DataInputStream batchStream = new DataInputStream(new ByteArrayInputStream(batchBytes))) {
-                    RecordBatch recordBatch = getRecordBatch(batchStream);
-                    recordBatch.setBaseOffset(baseOffset);
-                    recordBatch.setBatchLength(batchLength);
-                    int recordsCount = recordBatch.getRecordsLength();
-                    if (recordsCount < 0) {
-                        System.out.println("[DEBUG::loadMetadata] Batch has " + recordsCount + " records, skipping record read.");
-                    } else {
-                        List<Record> records = new ArrayList<>();
-                        while(recordsCount > 0) {
-                            Record record = getRecord(batchStream);
-                            records.add(record);
-                            recordsCount --;
-                        }
-                        recordBatch.setRecords(records);
-                    }
-                    recordBatches.add(recordBatch);
-                }
-            }
+    /**
+     * A cache loaded from the metadata log and the byte position in the log where following it
+     * continues, see {@link #resumePosition}.
+     */
+    public record LoadedMetadata(MetadataCache cache, long position) {}
 
-            System.out.println("Successfully loaded cluster metadata.");
-            return new TopicClusterMetadata(recordBatches);
-        } catch (FileNotFoundException e) {
-            System.err.println("FATAL: Metadata file not found! " + filePath);
-            throw new RuntimeException(e);
+    /**
+     * Writes a snapshot of {@code cache} if it is at least the snapshot interval past the previous
+     * snapshot. A failed write only costs a longer replay on the next startup, so it is logged.
+     *
+     * @param snapshotEnd the end offset of the previous snapshot, 0 if there is none.
+     * @return the end offset of the newest snapshot afterwards.
+     */
+    long maybeWriteSnapshot(Path dir, MetadataCache cache, long snapshotEnd) {
+        if (cache.lastOffset() + 1 - snapshotEnd < snapshotIntervalRecords) return snapshotEnd;
+        try {
+            MetadataSnapshot.write(dir, cache, cache.lastOffset());
+            return cache.lastOffset() + 1;
         } catch (IOException e) {
-            System.err.println("FATAL: Failed to read metadata file.");
-            throw new RuntimeException(e);
+            log.warn("Failed to write a metadata snapshot to {}: {}", dir, e.getMessage());
+            return snapshotEnd;
         }
     }
 
-    public MetadataCache parseMetadata(TopicClusterMetadata metadata) {
-        Map<String, String> topicUuidToName = new HashMap<>();
-        List<Record> partitionRecords = new ArrayList<>();
+    /**
+     * Decodes the metadata log in place, see {@link MetadataLogReader}, and hands each record to
+     * {@code visitor} in log order. A truncated batch at the end of the file, left by a crash
+     * during a write or still being written, ends the replay.
+     *
+     * <p>Batches are self-delimiting, so a first pass only collects their positions. With more than
+     * one load thread the batches are then decoded in parallel on a fork/join pool, a window at a
+     * time, and each window's records are applied to the visitor in offset order on the calling
+     * thread, so visitors never see concurrent calls.
+     *
+     * @param fromOffset records before this offset, already applied from a snapshot, are skipped.
+     * @return the offset of the last record in the log, or -1 if it is empty.
+     */
+    public long replay(String filePath, MetadataRecordVisitor visitor, long fromOffset) {
+        return replay(filePath, map(filePath), visitor, fromOffset).lastOffset();
+    }
 
-        // 1. First Pass: Get all topic names and partition records
-        for (RecordBatch batch : metadata.getRecordBatches()) {
-            for (Record record : batch.getRecords()) {
-                if (record.getType() == RecordType.TOPIC_RECORD.getType()) {
-                    topicUuidToName.put(
-                            record.getTopicUuid(),
-                            record.getTopicName()
-                    );
-                } else if (record.getType() == RecordType.PARTITION_RECORD.getType()) {
-                    partitionRecords.add(record);
-                }
+    private BatchPositions replay(String filePath, ByteBuffer buf, MetadataRecordVisitor visitor, long fromOffset) {
+        log.info("Loading cluster metadata from: {} at offset {}", filePath, fromOffset);
+        try {
+            BatchPositions batches = replay(buf, visitor, fromOffset);
+            if (batches.end() < buf.limit()) {
+                log.warn("Ignoring a truncated batch at byte {} of {}", batches.end(), filePath);
             }
+            log.info("Successfully loaded cluster metadata.");
+            return batches;
+        } catch (RuntimeException e) {
+            log.error("Failed to read metadata file {}", filePath, e);
+            throw e;
         }
+    }
 
-        // 2. Second Pass: Build the partition maps
-        Map<String, List<PartitionData>> byName = new HashMap<>();
-        Map<String, List<PartitionData>> byUuid = new HashMap<>();
-
-        for (Record record : partitionRecords) {
-            String topicUuid = record.getTopicUuid();
-            String topicName = topicUuidToName.get(topicUuid);
+    private static ByteBuffer map(String filePath) {
+        try {
+            return MetadataLogReader.map(Path.of(filePath));
+        } catch (NoSuchFileException e) {
+            log.error("Metadata file not found! {}", filePath);
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            log.error("Failed to read metadata file {}", filePath, e);
+            throw new RuntimeException(e);
+        }
+    }
 
-            if (topicName == null) {
-                continue;
+    /**
+     * Replays the complete batches in {@code buf}, which starts at a batch boundary. An incomplete
+     * batch at the end is left for a later call, once the rest of it has been written.
+     */
+    BatchPositions replay(ByteBuffer buf, MetadataRecordVisitor visitor, long fromOffset) {
+        BatchPositions batches = scanBatches(buf, fromOffset);
+        if (loadThreads <= 1 || batches.count() <= BATCHES_PER_TASK) {
+            MetadataLogReader reader = new MetadataLogReader(buf, 0);
+            for (int i = 0; i < batches.count(); i++) {
+                replayBatch(reader, batches.positions()[i], fromOffset, visitor);
             }
-
-            PartitionData pData = getPartitionData(record, topicUuid);
-
-            byName.computeIfAbsent(topicName, k -> new ArrayList<>()).add(pData);
-            System.out.println("By Name :: " + byName);
-            byUuid.computeIfAbsent(topicUuid, k -> new ArrayList<>()).add(pData);
-            System.out.println("By UUID :: " + byUuid);
+        } else {
+            replayParallel(buf, batches, fromOffset, visitor);
         }
-
-        return new MetadataCache(byName, byUuid);
+        return batches;
     }
 
-    private static PartitionData getPartitionData(Record record, String topicUuid) {
-        System.out.println("Record to partition data :: " + record.toString());
-        List<Integer> replicas = (record.getReplicaArrayLength() > 0)
-                ? List.of(record.getReplicaId())
-                : List.of();
-        List<Integer> isr = (record.getSyncReplicaArrayLength() > 0)
-                ? List.of(record.getInSyncReplicaIds())
-                : List.of();
+    /**
+     * Positions of the complete data batches in a buffer that hold records at or after the
+     * replay's first offset, the offset of the last record in the buffer (-1 if there is none)
+     * and the position after the last complete batch.
+     */
+    record BatchPositions(int[] positions, int count, long lastOffset, int end) {}
 
-        PartitionData pData = new PartitionData(
-                record.getPartitionId(),
-                topicUuid,
-                replicas,
-                isr,
-                record.getLeader(),
-                record.getLeaderEpoch(),
-                record.getPartitionEpoch()
-        );
-        System.out.println("Partition Data :: " + pData);
-        return pData;
+    /**
+     * The position in {@code buf} after which nothing is reflected in a cache that was built from
+     * {@code batches} and ends at {@code cacheLastOffset}: the end of the last complete batch, or,
+     * while a transaction is still open, the start of the batch it began in, so that it is
+     * replayed again once it ends.
+     */
+    static int resumePosition(ByteBuffer buf, BatchPositions batches, long cacheLastOffset) {
+        if (cacheLastOffset >= batches.lastOffset()) return batches.end();
+        int found = 0;
+        for (int i = 0; i < batches.count() && buf.getLong(batches.positions()[i]) <= cacheLastOffset + 1; i++) {
+            found = batches.positions()[i];
+        }
+        return found;
     }
 
-    private Record getRecord(DataInputStream dataInputStream) throws IOException {
-        System.out.println("[DEBUG::getRecord] --- Reading New Record ---");
-        Record record = new Record();
-
-        System.out.println("[DEBUG::getRecord] Reading Length...");
-        record.setLength(readVarInt(dataInputStream));
-        System.out.println("[DEBUG::getRecord] - Length: " + record.getLength());
-
-        System.out.println("[DEBUG::getRecord] Reading Attributes (byte)...");
-        record.setAttributes(dataInputStream.readByte());
-        System.out.println("[DEBUG::getRecord] - Attributes: " + record.getAttributes());
-
-        System.out.println("[DEBUG::getRecord] Reading TimeStampDelta (varint)...");
-        record.setTimeStampDelta(readVarInt(dataInputStream));
-        System.out.println("[DEBUG::getRecord] - TimeStampDelta: " + record.getTimeStampDelta());
-
-        System.out.println("[DEBUG::getRecord] Reading OffsetData (varint)...");
-        record.setOffsetData(readVarInt(dataInputStream));
-        System.out.println("[DEBUG::getRecord] - OffsetData: " + record.getOffsetData());
-
-        System.out.println("[DEBUG::getRecord] Reading KeyLength...");
-        record.setKeyLength(readVarInt(dataInputStream));
-        System.out.println("[DEBUG::getRecord] - KeyLength: " + record.getKeyLength());
-
-        if (record.getKeyLength() > 0) {
-            System.out.println("[DEBUG::getRecord] Reading Key (" + record.getKeyLength() + " bytes)...");
-            record.setKey(dataInputStream.readNBytes(record.getKeyLength()));
-            System.out.println("[DEBUG::getRecord] - Key: " + new String(record.getKey(), StandardCharsets.UTF_8));
-        } else {
-            System.out.println("[DEBUG::getRecord] - KeyLength is 0, skipping key read.");
+    private static BatchPositions scanBatches(ByteBuffer buf, long fromOffset) {
+        int[] positions = new int[64];
+        int count = 0;
+        long lastOffset = -1;
+        int position = 0;
+        while (buf.limit() - position >= LOG_OVERHEAD) {
+            long baseOffset = buf.getLong(position);
+            int batchLength = buf.getInt(position + 8);
+            if (batchLength < BATCH_HEADER_SIZE) {
+                log.warn("Invalid batch at offset {} (length {}), stopping.", baseOffset, batchLength);
+                break;
+            }
+            if (batchLength > buf.limit() - position - LOG_OVERHEAD) break;
+            lastOffset = baseOffset + buf.getInt(position + LOG_OVERHEAD + LAST_OFFSET_DELTA_OFFSET);
+            boolean control = (buf.getShort(position + LOG_OVERHEAD + ATTRIBUTES_OFFSET) & CONTROL_FLAG) != 0;
+            if (lastOffset >= fromOffset && !control) {
+                if (count == positions.length) positions = Arrays.copyOf(positions, count * 2);
+                positions[count++] = position;
+            }
+            position += LOG_OVERHEAD + batchLength;
         }
+        return new BatchPositions(positions, count, lastOffset, position);
+    }
 
-        System.out.println("[DEBUG::getRecord] Reading ValueLength...");
-        record.setValueLength(readVarInt(dataInputStream));
-        System.out.println("[DEBUG::getRecord] - ValueLength: " + record.getValueLength());
-
-        if (record.getValueLength() > 0) {
-            System.out.println("[DEBUG::getRecord] Reading Value (" + record.getValueLength() + " bytes)...");
-            byte[] valueBytes = dataInputStream.readNBytes(record.getValueLength());
-            DataInputStream valueStream = new DataInputStream(new ByteArrayInputStream(valueBytes));
-
-            record.setFrameVersion(valueStream.readByte());
-            System.out.println("[DEBUG::getRecord]   - Value.FrameVersion: " + record.getFrameVersion());
-
-            record.setType(valueStream.readByte());
-            System.out.println("[DEBUG::getRecord]   - Value.Type: " + record.getType());
-
-            record.setVersion(valueStream.readByte());
-            System.out.println("[DEBUG::getRecord]   - Value.Version: " + record.getVersion());
-
-            // This switch will now get the *correct* type
-            RecordType type = RecordType.fromType(record.getType());
-            System.out.println("[DEBUG::getRecord]   - Value.RecordType: " + type);
-            switch (type) {
-                case FEATURE_LEVEL_RECORD:
-                    record.setNameLength(valueStream.readUnsignedByte());
-                    System.out.println("[DEBUG::getRecord]   - Value.NameLength: " + record.getNameLength());
-                    record.setName(readString(valueStream, record.getNameLength() - 1));
-                    System.out.println("[DEBUG::getRecord]   - Value.Name: " + record.getName());
-                    record.setFeatureLevel(valueStream.readShort());
-                    System.out.println("[DEBUG::getRecord]   - Value.FeatureLevel: " + record.getFeatureLevel());
-                    break;
-
-                case TOPIC_RECORD:
-                    record.setNameLength(valueStream.readUnsignedByte());
-                    System.out.println("[DEBUG::getRecord]   - Value.NameLength: " + record.getNameLength());
-                    record.setTopicName(readString(valueStream, record.getNameLength() - 1));
-                    System.out.println("[DEBUG::getRecord]   - Value.TopicName: " + record.getTopicName());
-                    record.setTopicUuid(readUUID(valueStream).toString());
-                    System.out.println("[DEBUG::getRecord]   - Value.TopicUUID: " + record.getTopicUuid());
-                    break;
-
-                case PARTITION_RECORD:
-                    record.setPartitionId(valueStream.readInt());
-                    System.out.println("[DEBUG::getRecord]   - Value.PartitionId: " + record.getPartitionId());
-                    record.setTopicUuid(readUUID(valueStream).toString());
-                    System.out.println("[DEBUG::getRecord]   - Value.TopicUUID: " + record.getTopicUuid());
-                    record.setReplicaArrayLength(valueStream.readUnsignedByte());
-                    System.out.println("[DEBUG::getRecord]   - Value.ReplicaArrayLength: " + record.getReplicaArrayLength());
-                    if (record.getReplicaArrayLength() > 0) {
-                        record.setReplicaId(valueStream.readInt());
-                        System.out.println("[DEBUG::getRecord]   - Value.ReplicaId: " + record.getReplicaId());
-                    }
-                    record.setSyncReplicaArrayLength(valueStream.readUnsignedByte());
-                    System.out.println("[DEBUG::getRecord]   - Value.SyncReplicaArrayLength: " + record.getSyncReplicaArrayLength());
-                    if (record.getSyncReplicaArrayLength() > 0) {
-                        record.setInSyncReplicaIds(valueStream.readInt());
-                        System.out.println("[DEBUG::getRecord]   - Value.InSyncReplicaIds: " + record.getInSyncReplicaIds());
-                    }
-                    record.setRemovingReplicaArrayLength(valueStream.readUnsignedByte());
-                    record.setAddingReplicaArrayLength(valueStream.readUnsignedByte());
-                    record.setLeader(valueStream.readInt());
-                    System.out.println("[DEBUG::getRecord]   - Value.Leader: " + record.getLeader());
-                    record.setLeaderEpoch(valueStream.readInt());
-                    System.out.println("[DEBUG::getRecord]   - Value.LeaderEpoch: " + record.getLeaderEpoch());
-                    record.setPartitionEpoch(valueStream.readInt());
-                    System.out.println("[DEBUG::getRecord]   - Value.PartitionEpoch: " + record.getPartitionEpoch());
-                    record.setDirArrayLength(valueStream.readUnsignedByte());
-                    System.out.println("[DEBUG::getRecord]   - Value.DirArrayLength: " + record.getDirArrayLength());
-                    record.setDirUuid(readUUID(valueStream).toString());
-                    System.out.println("[DEBUG::getRecord]   - Value.DirArrayUUID: " + record.getDirUuid());
-                    break;
-
-                default:
-                    System.out.println("[DEBUG::getRecord]   - Unknown record type, skipping value parse.");
-                    break;
+    private void replayParallel(ByteBuffer buf, BatchPositions batches, long fromOffset,
+                                MetadataRecordVisitor visitor) {
+        ForkJoinPool pool = new ForkJoinPool(loadThreads);
+        try {
+            int window = loadThreads * TASKS_PER_THREAD * BATCHES_PER_TASK;
+            for (int start = 0; start < batches.count(); start += window) {
+                List<Callable<MetadataRecordBuffer>> tasks = new ArrayList<>();
+                for (int from = start; from < Math.min(start + window, batches.count()); from += BATCHES_PER_TASK) {
+                    int first = from;
+                    int last = Math.min(from + BATCHES_PER_TASK, batches.count());
+                    tasks.add(() -> {
+                        MetadataLogReader reader = new MetadataLogReader(buf, 0);
+                        MetadataRecordBuffer records = new MetadataRecordBuffer();
+                        for (int i = first; i < last; i++) {
+                            replayBatch(reader, batches.positions()[i], fromOffset, records);
+                        }
+                        return records;
+                    });
+                }
+                for (Future<MetadataRecordBuffer> decoded : pool.invokeAll(tasks)) {
+                    decoded.get().replayTo(visitor);
+                }
             }
-            valueStream.close();
-        } else {
-            System.out.println("[DEBUG::getRecord] - ValueLength is 0, skipping value read.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading metadata", e);
+        } finally {
+            pool.shutdownNow();
         }
-
-        System.out.println("[DEBUG::getRecord] Reading TaggedFieldsCount (ubyte)...");
-        record.setTaggedFieldsCount(dataInputStream.readUnsignedByte());
-        System.out.println("[DEBUG::getRecord] - TaggedFieldsCount: " + record.getTaggedFieldsCount());
-
-//        System.out.println("[DEBUG::getRecord] Reading HeadersArrayCount (ubyte)...");
-//        record.setHeadersArrayCount(dataInputStream.readUnsignedByte());
-//        System.out.println("[DEBUG::getRecord] - HeadersArrayCount: " + record.getHeadersArrayCount());
-
-        System.out.println("[DEBUG::getRecord] --- Finished Record ---");
-        return record;
     }
 
-    private RecordBatch getRecordBatch(DataInputStream dataInputStream) throws IOException {
-        System.out.println("\n[DEBUG::getRecordBatch] === Reading New Record Batch ===");
-        RecordBatch recordBatch = new RecordBatch();
-
-//        long baseOffset = dataInputStream.readLong();
-//        recordBatch.setBaseOffset(baseOffset);
-//        System.out.println("[DEBUG::getRecordBatch] - BaseOffset: " + baseOffset);
-//
-//        int batchLength = dataInputStream.readInt();
-//        recordBatch.setBatchLength(batchLength);
-//        System.out.println("[DEBUG::getRecordBatch] - BatchLength: " + batchLength);
-
-        int leaderEpoch = dataInputStream.readInt();
-        recordBatch.setPartitionLeaderEpoch(leaderEpoch);
-        System.out.println("[DEBUG::getRecordBatch] - PartitionLeaderEpoch: " + leaderEpoch);
-
-        byte magicByte = dataInputStream.readByte();
-        recordBatch.setMagicByte(magicByte);
-        System.out.println("[DEBUG::getRecordBatch] - MagicByte: " + magicByte);
-
-        int crc = dataInputStream.readInt();
-        recordBatch.setCrc(crc);
-        System.out.println("[DEBUG::getRecordBatch] - CRC: " + crc);
-
-        short attributes = dataInputStream.readShort();
-        recordBatch.setAttributes(attributes);
-        System.out.println("[DEBUG::getRecordBatch] - Attributes: " + attributes);
-
-        int lastOffsetData = dataInputStream.readInt();
-        recordBatch.setLastOffsetData(lastOffsetData);
-        System.out.println("[DEBUG::getRecordBatch] - LastOffsetData: " + lastOffsetData);
-
-        long baseTimeStamp = dataInputStream.readLong();
-        recordBatch.setBaseTimeStamp(baseTimeStamp);
-        System.out.println("[DEBUG::getRecordBatch] - BaseTimeStamp: " + baseTimeStamp);
-
-        long maxTimeStamp = dataInputStream.readLong();
-        recordBatch.setMaxTimeStamp(maxTimeStamp);
-        System.out.println("[DEBUG::getRecordBatch] - MaxTimeStamp: " + maxTimeStamp);
-
-        long producerId = dataInputStream.readLong();
-        recordBatch.setProducerId(producerId);
-        System.out.println("[DEBUG::getRecordBatch] - ProducerId: " + producerId);
-
-        short producerEpoch = dataInputStream.readShort();
-        recordBatch.setProducerEpoch(producerEpoch);
-        System.out.println("[DEBUG::getRecordBatch] - ProducerEpoch: " + producerEpoch);
-
-        int baseSequence = dataInputStream.readInt();
-        recordBatch.setBaseSequence(baseSequence);
-        System.out.println("[DEBUG::getRecordBatch] - RecordsLength (Count): " + baseSequence);
-
-        int recordsLength = dataInputStream.readInt();
-        recordBatch.setRecordsLength(recordsLength);
-        System.out.println("[DEBUG::getRecordBatch] - RecordsLength (Count): " + recordsLength);
-
-        System.out.println("[DEBUG::getRecordBatch] === Finished Record Batch Header ===\n");
-        return recordBatch;
+    private static void replayBatch(MetadataLogReader reader, int position, long fromOffset,
+                                    MetadataRecordVisitor visitor) {
+        reader.position(position);
+        long baseOffset = reader.readLong();
+        int batchEnd = position + LOG_OVERHEAD + reader.readInt();
+        reader.skip(RECORDS_COUNT_OFFSET);
+        int recordsCount = reader.readInt();
+        for (int i = 0; i < recordsCount && reader.position() < batchEnd; i++) {
+            replayRecord(reader, baseOffset, fromOffset, visitor);
+        }
     }
 
-    private String readString(DataInputStream dataInputStream, int length) throws IOException {
-        if (length <= 0) {
-            return "";
+    private static void replayRecord(MetadataLogReader reader, long baseOffset, long fromOffset,
+                                     MetadataRecordVisitor visitor) {
+        int length = reader.readVarint();
+        int recordEnd = reader.position() + length;
+        reader.skip(1); // attributes
+        reader.readVarlong(); // timestamp delta
+        long offset = baseOffset + reader.readVarint();
+        if (offset < fromOffset) {
+            reader.position(recordEnd);
+            return;
         }
-        byte[] buffer = new byte[length];
-        int bytesRead = dataInputStream.read(buffer);
-        if (bytesRead != length) {
-            throw new IOException("Expected " + length + " bytes, but only read " + bytesRead);
+        int keyLength = reader.readVarint();
+        if (keyLength > 0) reader.skip(keyLength);
+        int valueLength = reader.readVarint();
+        if (valueLength > 0) {
+            reader.readUnsignedVarint(); // frame version
+            RecordType type = RecordType.forType(reader.readUnsignedVarint());
+            int version = reader.readUnsignedVarint();
+            // Broker, config, ACL, quota, credential and producer id records do not affect the
+            // topics and partitions the cache serves; they and unknown types are skipped.
+            if (type != null) {
+                switch (type) {
+                    case FEATURE_LEVEL_RECORD -> visitor.visitFeatureLevel(reader.readCompactString(), reader.readShort());
+                    case TOPIC_RECORD -> visitor.visitTopic(reader.readCompactString(), reader.readUuid());
+                    case REMOVE_TOPIC_RECORD -> visitor.visitRemoveTopic(reader.readUuid());
+                    case PARTITION_RECORD -> visitor.visitPartition(readPartition(reader, version));
+                    case PARTITION_CHANGE_RECORD -> readPartitionChange(reader, visitor);
+                    case BEGIN_TRANSACTION_RECORD -> visitor.visitBeginTransaction(offset);
+                    case END_TRANSACTION_RECORD -> visitor.visitEndTransaction();
+                    case ABORT_TRANSACTION_RECORD -> visitor.visitAbortTransaction();
+                    default -> {
+                    }
+                }
+            }
         }
-        return new String(buffer, StandardCharsets.UTF_8);
+        reader.position(recordEnd);
+    }
+
+    /** Directories were added in version 1. */
+    private static PartitionData readPartition(MetadataLogReader reader, int version) {
+        int partitionId = reader.readInt();
+        UUID topicId = reader.readUuid();
+        int[] replicas = nonNull(reader.readCompactIntArray());
+        int[] isr = nonNull(reader.readCompactIntArray());
+        int[] removingReplicas = nonNull(reader.readCompactIntArray());
+        int[] addingReplicas = nonNull(reader.readCompactIntArray());
+        int leader = reader.readInt();
+        int leaderEpoch = reader.readInt();
+        int partitionEpoch = reader.readInt();
+        long[] directories = version >= 1 ? reader.readCompactUuidArray() : null;
+        return new PartitionData(partitionId, topicId, replicas, isr, removingReplicas, addingReplicas,
+                directories != null ? directories : PartitionData.NO_DIRECTORIES, leader, leaderEpoch, partitionEpoch);
     }
 
     /**
-     * Reads a signed varint from the input stream.
-     * USES ZigZag decoding.
-     * Used for timestamps, offsets, etc.
+     * Everything but the ids is an optional tagged field: ISR (tag 0), leader (1), replicas (2),
+     * removing (3) and adding replicas (4) and directories (8) are read; the recovery state and
+     * the ELR fields are skipped.
      */
-    private int readVarInt(DataInputStream input) throws IOException {
-        int value = 0;
-        int position = 0;
-        while (true) {
-            int b = input.readByte();
-            value |= (b & 0x7F) << position;
-            if ((b & 0x80) == 0) break;
-            position += 7;
-            if (position > 28) throw new IOException("Varint too long (signed)");
+    private static void readPartitionChange(MetadataLogReader reader, MetadataRecordVisitor visitor) {
+        int partitionId = reader.readInt();
+        UUID topicId = reader.readUuid();
+        int[] isr = null;
+        int leader = PartitionChange.NO_LEADER_CHANGE;
+        int[] replicas = null;
+        int[] removingReplicas = null;
+        int[] addingReplicas = null;
+        long[] directories = null;
+        int taggedFields = reader.readUnsignedVarint();
+        for (int i = 0; i < taggedFields; i++) {
+            int tag = reader.readUnsignedVarint();
+            int size = reader.readUnsignedVarint();
+            int fieldEnd = reader.position() + size;
+            switch (tag) {
+                case 0 -> isr = reader.readCompactIntArray();
+                case 1 -> leader = reader.readInt();
+                case 2 -> replicas = reader.readCompactIntArray();
+                case 3 -> removingReplicas = reader.readCompactIntArray();
+                case 4 -> addingReplicas = reader.readCompactIntArray();
+                case 8 -> directories = reader.readCompactUuidArray();
+                default -> {
+                }
+            }
+            reader.position(fieldEnd);
         }
-        // Zigzag decode
-        return (value >>> 1) ^ -(value & 1);
+        visitor.visitPartitionChange(new PartitionChange(partitionId, topicId, isr, leader, replicas,
+                removingReplicas, addingReplicas, directories));
     }
 
-    private UUID readUUID(DataInputStream dataInputStream) throws IOException {
-        byte[] buffer = new byte[16];
-        int bytesRead = dataInputStream.read(buffer);
-        if (bytesRead != 16) {
-            throw new IOException("Expected 16 bytes for UUID, but got " + bytesRead);
-        }
-
-        ByteBuffer bb = ByteBuffer.wrap(buffer);
-        long mostSigBits = bb.getLong();
-        long leastSigBits = bb.getLong();
-        return new UUID(mostSigBits, leastSigBits);
+    private static int[] nonNull(int[] replicas) {
+        return replicas != null ? replicas : PartitionData.NO_REPLICAS;
     }
-
-}
\ No newline at end of file
+}
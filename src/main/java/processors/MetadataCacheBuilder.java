@@ -0,0 +1,242 @@
+package processors;
+
+import dto.MetadataCache;
+import dto.OffHeapMetadata;
+import dto.PartitionChange;
+import dto.PartitionData;
+import handlers.DescribeTopicPartitionsHandler;
+import utils.Config;
+import utils.UuidMap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Builds a {@link MetadataCache} while metadata records are replayed, as a delta on top of a base
+ * cache: {@link MetadataCache#EMPTY} at startup, the current cache when the log is tailed. Only
+ * topics that records touch are copied and changed, and the base is never modified. The maps of
+ * the new cache are copies of the base's maps, not shared structures, so {@link #build} costs
+ * time in proportion to the number of topics even when a single one changed; the partition lists
+ * and DescribeTopicPartitions fragments of unchanged topics are shared with the base.
+ *
+ * <p>A partition record for a partition that is already known replaces it in place, so the cache
+ * reflects the last record, and a partition change rewrites only the fields it carries. New
+ * partitions are inserted in partition id order, which keeps every topic's list sorted. Partitions
+ * may arrive before their topic; topics without a name when the cache is built are left out.
+ *
+ * <p>Records of a metadata transaction are held back until it ends and dropped if it is aborted.
+ * While one is open, {@link #build} leaves it out and reports the offset before it.
+ */
+public class MetadataCacheBuilder implements MetadataRecordVisitor {
+    private final MetadataCache base;
+    private final Map<UUID, String> topicNames = new HashMap<>();
+    private final Map<UUID, List<PartitionData>> partitionsByTopicId = new HashMap<>();
+    private final Set<UUID> removedTopicIds = new HashSet<>();
+    private MetadataRecordBuffer transaction;
+    private long transactionStart;
+
+    public MetadataCacheBuilder() {
+        this(MetadataCache.EMPTY);
+    }
+
+    public MetadataCacheBuilder(MetadataCache base) {
+        this.base = base;
+    }
+
+    @Override
+    public void visitTopic(String name, UUID topicId) {
+        if (transaction != null) {
+            transaction.visitTopic(name, topicId);
+            return;
+        }
+        topicNames.put(topicId, name);
+    }
+
+    @Override
+    public void visitRemoveTopic(UUID topicId) {
+        if (transaction != null) {
+            transaction.visitRemoveTopic(topicId);
+            return;
+        }
+        topicNames.remove(topicId);
+        partitionsByTopicId.remove(topicId);
+        removedTopicIds.add(topicId);
+    }
+
+    @Override
+    public void visitPartition(PartitionData partition) {
+        if (transaction != null) {
+            transaction.visitPartition(partition);
+            return;
+        }
+        List<PartitionData> partitions = partitions(partition.topicId());
+        int existing = MetadataCache.indexOf(partitions, partition.partitionId());
+        if (existing < 0) {
+            partitions.add(-existing - 1, partition);
+        } else {
+            partitions.set(existing, partition);
+        }
+    }
+
+    /**
+     * A new leader starts a new leader epoch; every change starts a new partition epoch. New
+     * replicas without directories keep the directories of the replicas that stay, and new ones
+     * are unassigned. The partition is replaced by a new PartitionData in the topic's copied list
+     * rather than updated in place, because published caches still hold the old one.
+     */
+    @Override
+    public void visitPartitionChange(PartitionChange change) {
+        if (transaction != null) {
+            transaction.visitPartitionChange(change);
+            return;
+        }
+        List<PartitionData> partitions = partitions(change.topicId());
+        int existing = MetadataCache.indexOf(partitions, change.partitionId());
+        if (existing < 0) return;
+        PartitionData partition = partitions.get(existing);
+        boolean leaderChanged = change.leader() != PartitionChange.NO_LEADER_CHANGE;
+        int[] replicas = change.replicas() != null ? change.replicas() : partition.replicas();
+        long[] directories = change.directories() != null ? change.directories()
+                : change.replicas() != null ? remapDirectories(partition, replicas) : partition.directories();
+        partitions.set(existing, new PartitionData(change.partitionId(), partition.topicId(), replicas,
+                change.inSyncReplicas() != null ? change.inSyncReplicas() : partition.inSyncReplicas(),
+                change.removingReplicas() != null ? change.removingReplicas() : partition.removingReplicas(),
+                change.addingReplicas() != null ? change.addingReplicas() : partition.addingReplicas(),
+                directories,
+                leaderChanged ? change.leader() : partition.leader(),
+                leaderChanged ? partition.leaderEpoch() + 1 : partition.leaderEpoch(),
+                partition.partitionEpoch() + 1));
+    }
+
+    @Override
+    public void visitBeginTransaction(long offset) {
+        if (transaction != null) return;
+        transaction = new MetadataRecordBuffer();
+        transactionStart = offset;
+    }
+
+    @Override
+    public void visitEndTransaction() {
+        MetadataRecordBuffer records = transaction;
+        transaction = null;
+        if (records != null) records.replayTo(this);
+    }
+
+    @Override
+    public void visitAbortTransaction() {
+        transaction = null;
+    }
+
+    /** True if no record changed anything since the builder was created. */
+    public boolean isEmpty() {
+        return topicNames.isEmpty() && partitionsByTopicId.isEmpty() && removedTopicIds.isEmpty();
+    }
+
+    /**
+     * Returns a new cache with the changes applied to the base. Caches are copy-on-write rather
+     * than patched in place, since requests read published caches without locking. The cost is a
+     * shallow copy of the base's four topic maps, which is O(topics) however small the change,
+     * plus, for each changed topic, a copy of its partition list and a new encoding of its whole
+     * DescribeTopicPartitions entry. So a PartitionChange that only moves a leader costs this whole
+     * build, not just the bytes of its partition.
+     *
+     * <p>With {@link Config#METADATA_OFF_HEAP}, the changed topics are written into a new
+     * {@link OffHeapMetadata} store together with the raw bytes of the base store's other topics,
+     * without heap maps of the whole cluster. If nothing changed, the new cache shares the base's
+     * maps and only moves the last offset.
+     *
+     * @param lastOffset the offset of the last record replayed. If a transaction is still open,
+     *                   the cache's last offset is the one before it began instead.
+     */
+    public MetadataCache build(long lastOffset) {
+        long offset = transaction != null ? transactionStart - 1 : lastOffset;
+        if (isEmpty()) {
+            return new MetadataCache(base.byName(), base.byUuid(), base.topicNames(), base.describeFragments(), offset);
+        }
+        if (Config.METADATA_OFF_HEAP) return buildOffHeap(offset);
+        UuidMap<String> names = UuidMap.copyOf(base.topicNames());
+        Map<String, List<PartitionData>> byName = new HashMap<>(base.byName());
+        UuidMap<List<PartitionData>> byUuid = UuidMap.copyOf(base.byUuid());
+        Map<String, ByteBuffer> describeFragments = new HashMap<>(base.describeFragments());
+        for (UUID topicId : removedTopicIds) {
+            String topicName = names.remove(topicId);
+            if (topicName != null) {
+                byName.remove(topicName);
+                describeFragments.remove(topicName);
+            }
+            byUuid.remove(topicId);
+        }
+        topicNames.forEach(names::put);
+        for (UUID topicId : changedTopicIds()) {
+            String topicName = names.get(topicId);
+            if (topicName == null) continue;
+            List<PartitionData> updated = partitionsByTopicId.get(topicId);
+            List<PartitionData> partitions = updated != null
+                    ? List.copyOf(updated) : base.byUuid().get(topicId);
+            if (partitions == null) continue;
+            byName.put(topicName, partitions);
+            byUuid.put(topicId, partitions);
+            if (!partitions.isEmpty()) {
+                describeFragments.put(topicName, DescribeTopicPartitionsHandler.encodeTopic(topicName, partitions));
+            }
+        }
+        return new MetadataCache(Collections.unmodifiableMap(byName), byUuid, names,
+                Collections.unmodifiableMap(describeFragments), offset);
+    }
+
+    /** Builds the next store from the base's store and the changed and removed topics. */
+    private MetadataCache buildOffHeap(long lastOffset) {
+        OffHeapMetadata store = OffHeapMetadata.of(base);
+        if (store == null) store = OffHeapMetadata.copyOf(base);
+        List<OffHeapMetadata.Topic> changed = new ArrayList<>();
+        for (UUID topicId : changedTopicIds()) {
+            String topicName = topicNames.get(topicId);
+            if (topicName == null && !removedTopicIds.contains(topicId)) topicName = base.topicName(topicId);
+            if (topicName == null) continue;
+            List<PartitionData> partitions = partitionsByTopicId.get(topicId);
+            if (partitions == null) partitions = base.byUuid().get(topicId);
+            ByteBuffer fragment = partitions == null || partitions.isEmpty()
+                    ? null : DescribeTopicPartitionsHandler.encodeTopic(topicName, partitions);
+            changed.add(new OffHeapMetadata.Topic(topicId, topicName, partitions, fragment));
+        }
+        return store.update(changed, removedTopicIds, lastOffset).cache();
+    }
+
+    private Set<UUID> changedTopicIds() {
+        Set<UUID> changed = new HashSet<>(partitionsByTopicId.keySet());
+        changed.addAll(topicNames.keySet());
+        return changed;
+    }
+
+    /** The topic's partitions, copied from the base the first time the topic is changed. */
+    private List<PartitionData> partitions(UUID topicId) {
+        return partitionsByTopicId.computeIfAbsent(topicId, id -> {
+            List<PartitionData> partitions = base.byUuid().get(id);
+            return partitions != null ? new ArrayList<>(partitions) : new ArrayList<>();
+        });
+    }
+
+    private static long[] remapDirectories(PartitionData partition, int[] replicas) {
+        long[] previous = partition.directories();
+        if (previous.length == 0) return PartitionData.NO_DIRECTORIES;
+        int[] oldReplicas = partition.replicas();
+        long[] directories = new long[replicas.length * 2];
+        for (int i = 0; i < replicas.length; i++) {
+            for (int j = 0; j < oldReplicas.length && 2 * j + 1 < previous.length; j++) {
+                if (oldReplicas[j] == replicas[i]) {
+                    directories[2 * i] = previous[2 * j];
+                    directories[2 * i + 1] = previous[2 * j + 1];
+                    break;
+                }
+            }
+        }
+        return directories;
+    }
+}
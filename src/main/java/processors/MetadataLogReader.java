@@ -0,0 +1,179 @@
+package processors;
+
+import dto.PartitionData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * A cursor over a memory-mapped metadata log. Every read is an absolute-index read of the mapping
+ * followed by advancing {@link #position}, so batches and records are decoded in place: nothing
+ * is copied into intermediate arrays or streams, and the shared mapping's own position is never
+ * touched.
+ *
+ * <p>Varints follow the record format: {@link #readVarint} is zigzag-encoded, the lengths inside
+ * record values are unsigned. Reads past the end throw {@link IndexOutOfBoundsException}.
+ */
+final class MetadataLogReader {
+    private final ByteBuffer buf;
+    private byte[] scratch = new byte[64];
+    private UUID lastUuid;
+    private int position;
+
+    MetadataLogReader(ByteBuffer buf, int position) {
+        this.buf = buf;
+        this.position = position;
+    }
+
+    /** Maps the whole file read-only. Metadata segments are far below the 2 GiB a mapping can hold. */
+    static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException(path + " is too large to map: " + size + " bytes");
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    int position() {
+        return position;
+    }
+
+    void position(int position) {
+        this.position = position;
+    }
+
+    int limit() {
+        return buf.limit();
+    }
+
+    void skip(int bytes) {
+        position += bytes;
+    }
+
+    byte readByte() {
+        return buf.get(position++);
+    }
+
+    short readShort() {
+        short value = buf.getShort(position);
+        position += 2;
+        return value;
+    }
+
+    int readInt() {
+        int value = buf.getInt(position);
+        position += 4;
+        return value;
+    }
+
+    long readLong() {
+        long value = buf.getLong(position);
+        position += 8;
+        return value;
+    }
+
+    int readUnsignedVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) throw new IllegalArgumentException("Varint is too long at " + position);
+            b = buf.get(position++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    int readVarint() {
+        int value = readUnsignedVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readVarlong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) throw new IllegalArgumentException("Varlong is too long at " + position);
+            b = buf.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reading the same id as the previous call returns the same instance, so the consecutive
+     * partition records of a topic share one id object instead of allocating one each.
+     */
+    UUID readUuid() {
+        long mostSignificantBits = buf.getLong(position);
+        long leastSignificantBits = buf.getLong(position + 8);
+        position += 16;
+        UUID last = lastUuid;
+        if (last != null && last.getMostSignificantBits() == mostSignificantBits
+                && last.getLeastSignificantBits() == leastSignificantBits) {
+            return last;
+        }
+        return lastUuid = new UUID(mostSignificantBits, leastSignificantBits);
+    }
+
+    /** Decodes {@code length} UTF-8 bytes through a scratch array that is reused across calls. */
+    String readString(int length) {
+        if (length <= 0) return "";
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        buf.get(position, scratch, 0, length);
+        position += length;
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /** Reads a compact string (unsigned varint length + 1); null is returned as the empty string. */
+    String readCompactString() {
+        return readString(readUnsignedVarint() - 1);
+    }
+
+    /**
+     * Reads a compact array of int32 (unsigned varint length + 1); a null array is returned as
+     * null, an empty one as the shared {@link PartitionData#NO_REPLICAS}.
+     */
+    int[] readCompactIntArray() {
+        int length = readUnsignedVarint() - 1;
+        if (length < 0) return null;
+        if (length == 0) return PartitionData.NO_REPLICAS;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buf.getInt(position);
+            position += 4;
+        }
+        return values;
+    }
+
+    /** Reads a compact array of uuids as pairs of most and least significant bits. */
+    long[] readCompactUuidArray() {
+        int length = readUnsignedVarint() - 1;
+        if (length < 0) return null;
+        if (length == 0) return PartitionData.NO_DIRECTORIES;
+        long[] values = new long[2 * length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buf.getLong(position);
+            position += 8;
+        }
+        return values;
+    }
+
+    /** Skips the tagged-field section of a flexible-version struct. */
+    void skipTaggedFields() {
+        int count = readUnsignedVarint();
+        for (int i = 0; i < count; i++) {
+            readUnsignedVarint(); // tag
+            skip(readUnsignedVarint());
+        }
+    }
+}
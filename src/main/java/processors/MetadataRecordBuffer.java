@@ -0,0 +1,64 @@
+package processors;
+
+import dto.PartitionChange;
+import dto.PartitionData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Holds decoded records until they can be applied in order: batches decoded in parallel, and the
+ * records of a metadata transaction until it ends. Every visitor method must be overridden here,
+ * or that record type would be silently dropped.
+ */
+final class MetadataRecordBuffer implements MetadataRecordVisitor {
+    private final List<Consumer<MetadataRecordVisitor>> records = new ArrayList<>();
+
+    @Override
+    public void visitFeatureLevel(String name, short featureLevel) {
+        records.add(visitor -> visitor.visitFeatureLevel(name, featureLevel));
+    }
+
+    @Override
+    public void visitTopic(String name, UUID topicId) {
+        records.add(visitor -> visitor.visitTopic(name, topicId));
+    }
+
+    @Override
+    public void visitRemoveTopic(UUID topicId) {
+        records.add(visitor -> visitor.visitRemoveTopic(topicId));
+    }
+
+    @Override
+    public void visitPartition(PartitionData partition) {
+        records.add(visitor -> visitor.visitPartition(partition));
+    }
+
+    @Override
+    public void visitPartitionChange(PartitionChange change) {
+        records.add(visitor -> visitor.visitPartitionChange(change));
+    }
+
+    @Override
+    public void visitBeginTransaction(long offset) {
+        records.add(visitor -> visitor.visitBeginTransaction(offset));
+    }
+
+    @Override
+    public void visitEndTransaction() {
+        records.add(MetadataRecordVisitor::visitEndTransaction);
+    }
+
+    @Override
+    public void visitAbortTransaction() {
+        records.add(MetadataRecordVisitor::visitAbortTransaction);
+    }
+
+    void replayTo(MetadataRecordVisitor visitor) {
+        for (Consumer<MetadataRecordVisitor> record : records) {
+            record.accept(visitor);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package processors;
+
+import dto.PartitionChange;
+import dto.PartitionData;
+
+import java.util.UUID;
+
+/**
+ * Receives the records of the metadata log in log order as they are decoded, see
+ * {@link ClusterMetadataProcessor#replay}. Nothing is buffered between the decoder and the
+ * visitor, so a visitor keeps only the state it builds.
+ *
+ * <p>Records between {@link #visitBeginTransaction} and {@link #visitEndTransaction} take effect
+ * together; after {@link #visitAbortTransaction} they must be discarded.
+ */
+public interface MetadataRecordVisitor {
+    default void visitFeatureLevel(String name, short featureLevel) {
+    }
+
+    default void visitTopic(String name, UUID topicId) {
+    }
+
+    /** Removes the topic and all its partitions. */
+    default void visitRemoveTopic(UUID topicId) {
+    }
+
+    default void visitPartition(PartitionData partition) {
+    }
+
+    /** Changes some fields of an existing partition. */
+    default void visitPartitionChange(PartitionChange change) {
+    }
+
+    /** @param offset the offset of the BeginTransactionRecord. */
+    default void visitBeginTransaction(long offset) {
+    }
+
+    default void visitEndTransaction() {
+    }
+
+    default void visitAbortTransaction() {
+    }
+}
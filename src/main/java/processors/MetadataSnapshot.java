@@ -0,0 +1,242 @@
+package processors;
+
+import dto.MetadataCache;
+import dto.PartitionData;
+import logging.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshots of the {@link MetadataCache} state, written next to the metadata log so startup
+ * replays only the log after the newest one. A snapshot is named after the first offset it does
+ * not contain, {@code <lastOffset + 1>.kms} zero-padded to 20 digits. The suffix is the broker's
+ * own: KRaft keeps its {@code <offset>-<epoch>.checkpoint} files in the same directory, and only
+ * files matching the exact snapshot name are ever read or deleted here.
+ *
+ * <p>The format is a fixed header (magic, version, last offset, topic count), then for every topic
+ * its name, id and partitions with their replica, ISR, removing, adding and directory lists, and a CRC32C of everything before
+ * it. Files are written under a temporary name and moved into place, and a snapshot is only
+ * applied after its checksum matched, so a torn or corrupt file is skipped for an older one.
+ */
+public final class MetadataSnapshot {
+    private static final Logger log = Logger.get(MetadataSnapshot.class);
+
+    private static final int MAGIC = 0x4B4D5331; // "KMS1"
+    // Version 1 added removing and adding replicas and directories; older snapshots are skipped.
+    private static final short VERSION = 1;
+    private static final String SUFFIX = ".kms";
+    private static final Pattern FILE_NAME = Pattern.compile("\\d{20}\\.kms");
+    // Older snapshots are deleted once this many newer ones exist.
+    private static final int SNAPSHOTS_RETAINED = 2;
+
+    private MetadataSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of {@code cache}, which holds the state up to and including
+     * {@code lastOffset}, and deletes snapshots beyond the retained ones.
+     */
+    public static Path write(Path dir, MetadataCache cache, long lastOffset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(lastOffset);
+        out.writeInt(cache.topicNames().size());
+        try {
+            cache.topicNames().forEach((mostSignificantBits, leastSignificantBits, topicName) -> {
+                List<PartitionData> partitions = cache.byUuid().get(mostSignificantBits, leastSignificantBits);
+                writeTopic(out, topicName, mostSignificantBits, leastSignificantBits,
+                        partitions != null ? partitions : List.of());
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.toByteArray(), 0, bytes.size());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        Path path = dir.resolve(String.format("%020d", lastOffset + 1) + SUFFIX);
+        Path tmp = dir.resolve(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+            while (buf.hasRemaining()) channel.write(buf);
+            channel.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Wrote metadata snapshot {} ({} topics, {} bytes)", path, cache.topicNames().size(), bytes.size());
+        deleteOldSnapshots(dir);
+        return path;
+    }
+
+    private static void writeTopic(DataOutputStream out, String topicName, long mostSignificantBits,
+                                   long leastSignificantBits, List<PartitionData> partitions) {
+        try {
+            byte[] name = topicName.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(name.length);
+            out.write(name);
+            out.writeLong(mostSignificantBits);
+            out.writeLong(leastSignificantBits);
+            out.writeInt(partitions.size());
+            for (PartitionData partition : partitions) {
+                out.writeInt(partition.partitionId());
+                out.writeInt(partition.leader());
+                out.writeInt(partition.leaderEpoch());
+                out.writeInt(partition.partitionEpoch());
+                writeIntArray(out, partition.replicas());
+                writeIntArray(out, partition.inSyncReplicas());
+                writeIntArray(out, partition.removingReplicas());
+                writeIntArray(out, partition.addingReplicas());
+                out.writeInt(partition.directories().length);
+                for (long bits : partition.directories()) {
+                    out.writeLong(bits);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replays the newest valid snapshot in {@code dir} into {@code visitor}. Snapshots that end past
+     * {@code logLastOffset} belong to a log that has since been replaced or truncated; they are
+     * deleted, so neither this nor a later startup applies state the log no longer has.
+     *
+     * @param logLastOffset the offset of the last record in the metadata log, -1 if it is empty.
+     * @return the first offset not covered by the snapshot, i.e. where log replay continues, or 0
+     * if there is no valid snapshot.
+     */
+    public static long loadLatest(Path dir, MetadataRecordVisitor visitor, long logLastOffset) {
+        for (Path path : snapshots(dir).reversed()) {
+            if (endOffset(path) - 1 > logLastOffset) {
+                log.warn("Deleting metadata snapshot {}, which ends past the last log offset {}", path, logLastOffset);
+                delete(path);
+                continue;
+            }
+            try {
+                long lastOffset = read(path, visitor);
+                log.info("Loaded metadata snapshot {}", path);
+                return lastOffset + 1;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Skipping unreadable metadata snapshot {}: {}", path, e.getMessage());
+            }
+        }
+        return 0;
+    }
+
+    /** Verifies the snapshot's checksum and only then hands its topics and partitions to {@code visitor}. */
+    private static long read(Path path, MetadataRecordVisitor visitor) throws IOException {
+        ByteBuffer buf = MetadataLogReader.map(path);
+        int bodySize = buf.limit() - 4;
+        if (bodySize < 18) throw new IOException("Truncated snapshot of " + buf.limit() + " bytes");
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(0, bodySize));
+        if ((int) crc.getValue() != buf.getInt(bodySize)) throw new IOException("Checksum mismatch");
+
+        MetadataLogReader reader = new MetadataLogReader(buf, 0);
+        if (reader.readInt() != MAGIC) throw new IOException("Not a metadata snapshot");
+        short version = reader.readShort();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        long lastOffset = reader.readLong();
+        int topicCount = reader.readInt();
+        for (int t = 0; t < topicCount; t++) {
+            String name = reader.readString(reader.readShort());
+            UUID topicId = reader.readUuid();
+            visitor.visitTopic(name, topicId);
+            int partitionCount = reader.readInt();
+            for (int p = 0; p < partitionCount; p++) {
+                int partitionId = reader.readInt();
+                int leader = reader.readInt();
+                int leaderEpoch = reader.readInt();
+                int partitionEpoch = reader.readInt();
+                int[] replicas = readIntArray(reader);
+                int[] isr = readIntArray(reader);
+                int[] removingReplicas = readIntArray(reader);
+                int[] addingReplicas = readIntArray(reader);
+                long[] directories = readLongArray(reader);
+                visitor.visitPartition(new PartitionData(partitionId, topicId, replicas, isr, removingReplicas,
+                        addingReplicas, directories, leader, leaderEpoch, partitionEpoch));
+            }
+        }
+        return lastOffset;
+    }
+
+    /** The snapshots in {@code dir}, oldest first. */
+    private static List<Path> snapshots(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> FILE_NAME.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to list metadata snapshots in {}: {}", dir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /** The first offset a snapshot does not contain, from its file name. */
+    private static long endOffset(Path snapshot) {
+        String fileName = snapshot.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+    }
+
+    private static void deleteOldSnapshots(Path dir) {
+        List<Path> snapshots = snapshots(dir);
+        for (int i = 0; i < snapshots.size() - SNAPSHOTS_RETAINED; i++) {
+            delete(snapshots.get(i));
+        }
+    }
+
+    private static void delete(Path snapshot) {
+        try {
+            Files.deleteIfExists(snapshot);
+        } catch (IOException e) {
+            log.warn("Failed to delete metadata snapshot {}: {}", snapshot, e.getMessage());
+        }
+    }
+
+    private static void writeIntArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readIntArray(MetadataLogReader reader) {
+        int length = reader.readInt();
+        if (length <= 0) return PartitionData.NO_REPLICAS;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = reader.readInt();
+        }
+        return values;
+    }
+
+    private static long[] readLongArray(MetadataLogReader reader) {
+        int length = reader.readInt();
+        if (length <= 0) return PartitionData.NO_DIRECTORIES;
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = reader.readLong();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,129 @@
+package processors;
+
+import dto.MetadataCache;
+import logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+/**
+ * Follows the metadata log as the controller appends to it and publishes a new
+ * {@link MetadataCache} after every change. Handlers call {@link #get()} once per request: the
+ * cache is swapped through a volatile reference and never modified, so reads take no lock and a
+ * request sees one consistent version even while the next one is being built.
+ *
+ * <p>A single daemon thread polls the file size. New complete batches are mapped and replayed
+ * into a {@link MetadataCacheBuilder} on top of the current cache. Only the topics they touch
+ * are rebuilt; the others keep their partition lists, but the topic maps that hold them are
+ * copied on every change. A batch that is still being written is picked up on a later poll.
+ * Snapshots are written as the log grows, as they are at startup.
+ */
+public class MetadataTailer implements Supplier<MetadataCache>, Closeable {
+    private static final Logger log = Logger.get(MetadataTailer.class);
+
+    private final Path logFile;
+    private final Path dir;
+    private final ClusterMetadataProcessor processor;
+    private final long pollIntervalMs;
+    private volatile MetadataCache current = MetadataCache.EMPTY;
+    private volatile boolean running;
+    private Thread thread;
+    // Only touched by the polling thread once it has started.
+    private long position;
+    private long snapshotEnd;
+
+    public MetadataTailer(Path logFile, ClusterMetadataProcessor processor, long pollIntervalMs) {
+        this.logFile = logFile.toAbsolutePath();
+        this.dir = this.logFile.getParent();
+        this.processor = processor;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Loads the log from the newest snapshot if the file exists, then starts following it. The log
+     * may also appear later; until then the cache is {@link MetadataCache#EMPTY}.
+     */
+    public void start() {
+        try {
+            if (Files.exists(logFile)) load();
+            poll();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to load metadata from {}", logFile, e);
+        }
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("kafka-metadata-tailer").start(this::run);
+    }
+
+    @Override
+    public MetadataCache get() {
+        return current;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(pollIntervalMs);
+                poll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to apply metadata from {}", logFile, e);
+            }
+        }
+    }
+
+    /** Applies the batches appended since the last poll and publishes the result. */
+    void poll() throws IOException {
+        ByteBuffer tail;
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < position) {
+                log.warn("Metadata log {} shrank from {} to {} bytes, reloading it", logFile, position, size);
+                load();
+                return;
+            }
+            if (size - position < ClusterMetadataProcessor.LOG_OVERHEAD) return;
+            tail = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Integer.MAX_VALUE));
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        MetadataCache base = current;
+        MetadataCacheBuilder builder = new MetadataCacheBuilder(base);
+        ClusterMetadataProcessor.BatchPositions batches = processor.replay(tail, builder, base.lastOffset() + 1);
+        if (batches.lastOffset() <= base.lastOffset()) {
+            position += batches.end();
+            return;
+        }
+        MetadataCache next = builder.build(batches.lastOffset());
+        // A transaction that is still open is replayed again, from the batch it began in, once it ends.
+        position += ClusterMetadataProcessor.resumePosition(tail, batches, next.lastOffset());
+        if (next.lastOffset() == base.lastOffset()) return;
+        current = next;
+        log.debug("Applied metadata up to offset {}", next.lastOffset());
+        snapshotEnd = processor.maybeWriteSnapshot(dir, next, snapshotEnd);
+    }
+
+    /**
+     * Loads the whole log, from the newest snapshot, and continues polling after the last batch
+     * it covers. Loading wrote a snapshot if one was due, so the next one is an interval from here.
+     */
+    private void load() {
+        ClusterMetadataProcessor.LoadedMetadata loaded = processor.loadMetadataCache(logFile.toString());
+        current = loaded.cache();
+        position = loaded.position();
+        snapshotEnd = loaded.cache().lastOffset() + 1;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+}
@@ -1,91 +1,49 @@
 package processors;
 
 import dto.KafkaRequest;
-import dto.KafkaRequestBody;
+import logging.Logger;
+import protocol.ApiMessage;
+import protocol.message.ApiMessageType;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
-public class RequestProcessor {
-    public KafkaRequest processRequest(DataInputStream dataInputStream) throws IOException {
-        long threadId = Thread.currentThread().threadId();
-        int messageSize = dataInputStream.readInt();
-        int bytesConsumed = 0;
-
-        short apiKey = dataInputStream.readShort();
-        bytesConsumed += 2;
-
-        short apiVersion = dataInputStream.readShort();
-        bytesConsumed += 2;
-
-        int correlationId = dataInputStream.readInt();
-        bytesConsumed += 4;
-
-        short clientIdLength = dataInputStream.readShort();
-        bytesConsumed += 2;
+import static utils.ByteUtils.*;
 
+public class RequestProcessor {
+    private static final Logger log = Logger.get(RequestProcessor.class);
+
+    /**
+     * Decodes one request frame in place. The frame is a view over the connection's reusable
+     * receive buffer, so everything the handlers need later is copied out before returning.
+     *
+     * @param frame The request bytes after the 4-byte size prefix, positioned at the api key.
+     */
+    public KafkaRequest processRequest(ByteBuffer frame) {
+        int messageSize = frame.remaining();
+
+        short apiKey = frame.getShort();
+        short apiVersion = frame.getShort();
+        int correlationId = frame.getInt();
+
+        short clientIdLength = frame.getShort();
         String clientId = "";
         if (clientIdLength > 0) {
-            byte[] clientIdBytes = new byte[clientIdLength];
-            dataInputStream.readFully(clientIdBytes);
-            clientId = new String(clientIdBytes, StandardCharsets.UTF_8);
-            bytesConsumed += clientIdLength;
+            clientId = readUtf8(frame, clientIdLength);
         }
 
-        System.out.println(MessageFormat.format(">>> Thread here line 40: {0}", bytesConsumed));
-
-        int remainingBytes = messageSize - bytesConsumed;
-        Result result = null;
-        if (remainingBytes > 0) {
-            if(apiKey == 75) result = getResult(dataInputStream, bytesConsumed, messageSize);
-            else if (apiKey == 18) {
-                result = new Result(null, remainingBytes);
-            }
-            if (result != null && result.remainingBytes() > 0) {
-                byte[] junk = new byte[result.remainingBytes()];
-                dataInputStream.readFully(junk);
-            }
+        // Bodies are decoded by the generated codecs; unknown apis and versions are left to the handlers.
+        ApiMessage body = null;
+        ApiMessageType type = ApiMessageType.fromApiKey(apiKey);
+        if (type != null && type.isVersionSupported(apiVersion)) {
+            if (type.requestHeaderVersion(apiVersion) >= 2) skipTaggedFields(frame);
+            body = type.newRequest();
+            body.read(frame, apiVersion);
         }
+        // Whatever we do not understand is skipped, not copied.
+        frame.position(frame.limit());
 
-        System.out.println("[Thread " + threadId + "] -> processRequest: Finished parsing. Returning request object.");
-        if(result != null && result.body() != null) return new KafkaRequest(messageSize, correlationId, apiKey, apiVersion, clientId, result.body());
+        log.debug("Decoded api key {} v{}, correlation id {}", apiKey, apiVersion, correlationId);
+        if (body != null) return new KafkaRequest(messageSize, correlationId, apiKey, apiVersion, clientId, body);
         return new KafkaRequest(messageSize, correlationId, apiKey, apiVersion, clientId);
     }
-
-    private Result getResult(DataInputStream dataInputStream, int bytesConsumed, int messageSize) throws IOException {
-        KafkaRequestBody body;
-        int remainingBytes;
-        dataInputStream.readByte(); // tag buffer
-        bytesConsumed += 1;
-        int topicsArrayLength = dataInputStream.readByte();
-        bytesConsumed += 1;
-
-        List<String> topics = new ArrayList<>();
-        for (int i = 0; i < topicsArrayLength - 1; i++) {
-            int topicNameLength = dataInputStream.readByte();
-            bytesConsumed += 1;
-            String topicName = new String(dataInputStream.readNBytes(topicNameLength - 1), StandardCharsets.UTF_8);
-            topics.add(topicName);
-            bytesConsumed += topicNameLength;
-            dataInputStream.readByte();
-            bytesConsumed += 1;
-        }
-
-        int responsePartitionLimit = dataInputStream.readInt();
-        bytesConsumed += 4;
-
-        byte cursor = dataInputStream.readByte();
-        bytesConsumed += 1;
-
-        body = new KafkaRequestBody(topics, responsePartitionLimit, cursor);
-
-        remainingBytes = messageSize - bytesConsumed;
-        return new Result(body, remainingBytes);
-    }
-
-    private record Result(KafkaRequestBody body, int remainingBytes) {
-    }
 }
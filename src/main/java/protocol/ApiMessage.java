@@ -0,0 +1,29 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * A request or response body. Implementations are generated from the JSON message definitions in
+ * {@code src/main/message} and live in {@code protocol.message}.
+ */
+public interface ApiMessage {
+    UUID ZERO_UUID = new UUID(0L, 0L);
+
+    short apiKey();
+
+    short lowestSupportedVersion();
+
+    short highestSupportedVersion();
+
+    /** True if {@code version} uses compact strings and arrays and carries tagged fields. */
+    boolean isFlexible(short version);
+
+    /**
+     * Decodes the body at the buffer's position. Variable-length values are copied out, so the
+     * buffer can be reused once this returns.
+     */
+    void read(ByteBuffer buf, short version);
+
+    void write(MessageWriter writer, short version);
+}
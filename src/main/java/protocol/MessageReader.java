@@ -0,0 +1,62 @@
+package protocol;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static utils.ByteUtils.readUnsignedVarInt;
+import static utils.ByteUtils.readUtf8;
+
+/**
+ * Decoding helpers for the generated message classes. {@code compact} selects the
+ * flexible-version encoding (unsigned varint length + 1) over the fixed-width one.
+ * Lengths are checked against the bytes left in the frame before anything is allocated.
+ */
+public final class MessageReader {
+    private MessageReader() {
+    }
+
+    /** Returns the element count, or -1 for a null array. */
+    public static int readArrayLength(ByteBuffer buf, boolean compact) {
+        int length = compact ? readUnsignedVarInt(buf) - 1 : buf.getInt();
+        return checkLength(buf, length);
+    }
+
+    public static String readString(ByteBuffer buf, boolean compact) {
+        int length = checkLength(buf, compact ? readUnsignedVarInt(buf) - 1 : buf.getShort());
+        return length < 0 ? null : readUtf8(buf, length);
+    }
+
+    public static byte[] readBytes(ByteBuffer buf, boolean compact) {
+        int length = checkLength(buf, compact ? readUnsignedVarInt(buf) - 1 : buf.getInt());
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+
+    /** Copies record data out of the frame, which is reused for the next request. */
+    public static ByteBuffer readRecords(ByteBuffer buf, boolean compact) {
+        byte[] bytes = readBytes(buf, compact);
+        return bytes == null ? null : ByteBuffer.wrap(bytes);
+    }
+
+    public static UUID readUuid(ByteBuffer buf) {
+        long mostSignificantBits = buf.getLong();
+        return new UUID(mostSignificantBits, buf.getLong());
+    }
+
+    public static void skip(ByteBuffer buf, int bytes) {
+        buf.position(buf.position() + checkLength(buf, bytes));
+    }
+
+    public static IllegalArgumentException nonNullable(String field) {
+        return new IllegalArgumentException("Non-nullable field " + field + " was serialized as null");
+    }
+
+    private static int checkLength(ByteBuffer buf, int length) {
+        if (length > buf.remaining()) {
+            throw new IllegalArgumentException("Length " + length + " exceeds the " + buf.remaining() + " bytes left");
+        }
+        return length;
+    }
+}
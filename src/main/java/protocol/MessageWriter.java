@@ -0,0 +1,317 @@
+package protocol;
+
+import logging.WireTracer;
+import network.FileRegion;
+import network.Send;
+import utils.BufferPool;
+import utils.ByteUtils;
+import utils.Constants;
+import utils.PooledBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Encodes one response in a single pass. The writer reserves the 4-byte size prefix, grows by
+ * moving to a larger pooled buffer when a write does not fit, and back-patches the size in
+ * {@link #complete()}, so encoders no longer need a separate sizing pass that can drift from
+ * what they actually write.
+ *
+ * <p>Record data is appended as {@link FileRegion}s: the bytes written so far are sealed into
+ * the send and encoding continues in a fresh buffer after the region. Large pre-encoded
+ * fragments, see {@link #encodeFragment}, are gathered the same way instead of being copied.
+ *
+ * <p>{@link #field} marks the end of a named field for the request's {@link WireTracer}; it is a
+ * no-op unless tracing is enabled for that request.
+ */
+public final class MessageWriter {
+    private static final int BUFFER_AFTER_REGION = 256;
+    // Smaller fragments are copied; a gathered buffer costs a pooled buffer and an iovec entry.
+    private static final int GATHER_THRESHOLD = 1024;
+    // Heap buffers for encoding fragments, which are copied out and kept by their owner.
+    private static final BufferPool FRAGMENT_POOL = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+
+    private final BufferPool pool;
+    private final WireTracer trace;
+    private final List<PooledBuffer> sealed = new ArrayList<>(0);
+    // The file region or fragment view that follows each sealed buffer.
+    private final List<Object> appended = new ArrayList<>(0);
+    private PooledBuffer pooled;
+    private ByteBuffer buf;
+    private long sealedBytes;
+    private long pendingRegion = -1;
+
+    public MessageWriter(BufferPool pool, int sizeHint, WireTracer trace) {
+        this.pool = pool;
+        this.trace = trace;
+        this.pooled = acquire(Constants.messageSize + Math.max(sizeHint, 0));
+        this.buf = pooled.buffer();
+        trace.begin(buf);
+        buf.putInt(0); // message size, patched in complete()
+        trace.field("Message Size", buf);
+    }
+
+    public MessageWriter putByte(byte value) {
+        ensureRemaining(1);
+        buf.put(value);
+        return this;
+    }
+
+    public MessageWriter putShort(short value) {
+        ensureRemaining(2);
+        buf.putShort(value);
+        return this;
+    }
+
+    public MessageWriter putInt(int value) {
+        ensureRemaining(4);
+        buf.putInt(value);
+        return this;
+    }
+
+    public MessageWriter putLong(long value) {
+        ensureRemaining(8);
+        buf.putLong(value);
+        return this;
+    }
+
+    public MessageWriter putDouble(double value) {
+        ensureRemaining(8);
+        buf.putDouble(value);
+        return this;
+    }
+
+    public MessageWriter putUnsignedVarInt(int value) {
+        ensureRemaining(5);
+        ByteUtils.writeUnsignedVarInt(value, buf);
+        return this;
+    }
+
+    /** Writes a compact array length: {@code -1} for null, otherwise {@code length + 1}. */
+    public MessageWriter putCompactArrayLength(int length) {
+        return putUnsignedVarInt(length + 1);
+    }
+
+    /** Writes an array or bytes length; {@code -1} is null. */
+    public MessageWriter putArrayLength(int length, boolean compact) {
+        return compact ? putUnsignedVarInt(length + 1) : putInt(length);
+    }
+
+    /** Writes a nullable string, compact or with an int16 length prefix. */
+    public MessageWriter putString(String s, boolean compact) {
+        if (compact) return s == null ? putUnsignedVarInt(0) : putCompactString(s);
+        if (s == null) return putShort((short) -1);
+        if (!isAscii(s)) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            putShort((short) utf8.length);
+            return putBytes(utf8);
+        }
+        putShort((short) s.length());
+        return putAscii(s);
+    }
+
+    /**
+     * Writes a compact (flexible-version) string. ASCII strings are written char by char without
+     * an intermediate byte array; anything else goes through the UTF-8 encoder.
+     */
+    public MessageWriter putCompactString(String s) {
+        if (!isAscii(s)) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            putUnsignedVarInt(utf8.length + 1);
+            return putBytes(utf8);
+        }
+        putUnsignedVarInt(s.length() + 1);
+        return putAscii(s);
+    }
+
+    public MessageWriter putBytes(byte[] bytes) {
+        ensureRemaining(bytes.length);
+        buf.put(bytes);
+        return this;
+    }
+
+    /** Writes nullable bytes with their length prefix. */
+    public MessageWriter putByteArray(byte[] bytes, boolean compact) {
+        if (bytes == null) return putArrayLength(-1, compact);
+        putArrayLength(bytes.length, compact);
+        return putBytes(bytes);
+    }
+
+    /** Copies the buffer's remaining bytes without moving its position. */
+    public MessageWriter putBuffer(ByteBuffer bytes) {
+        ensureRemaining(bytes.remaining());
+        buf.put(bytes.duplicate());
+        return this;
+    }
+
+    /** Writes a UUID as two big-endian longs; {@code null} is written as the all-zero UUID. */
+    public MessageWriter putUuid(UUID uuid) {
+        ensureRemaining(16);
+        buf.putLong(uuid == null ? 0L : uuid.getMostSignificantBits());
+        buf.putLong(uuid == null ? 0L : uuid.getLeastSignificantBits());
+        return this;
+    }
+
+    /** Appends record data that is sent straight from the segment file. */
+    public MessageWriter putRegion(FileRegion region) {
+        if (region.count() == 0) {
+            pendingRegion = 0;
+            return this;
+        }
+        seal(region, region.count());
+        return this;
+    }
+
+    /**
+     * Appends bytes encoded earlier by {@link #encodeFragment}, without moving the fragment's
+     * position. Large fragments are sent as a view of the shared bytes, so they must not change
+     * once encoded. Like a region, a gathered fragment may not be inside a length prefix.
+     */
+    public MessageWriter putFragment(ByteBuffer fragment) {
+        if (fragment.remaining() < GATHER_THRESHOLD) return putBuffer(fragment);
+        seal(fragment.duplicate(), fragment.remaining());
+        return this;
+    }
+
+    /** Encodes part of a message, such as one struct, into a read-only heap buffer of its exact size. */
+    public static ByteBuffer encodeFragment(Consumer<MessageWriter> body) {
+        MessageWriter w = new MessageWriter(FRAGMENT_POOL, 0, WireTracer.OFF);
+        body.accept(w);
+        PooledBuffer encoded = w.completeBuffer();
+        ByteBuffer src = encoded.buffer().position(Constants.messageSize);
+        ByteBuffer copy = ByteBuffer.allocate(src.remaining()).put(src).flip();
+        encoded.release();
+        return copy.asReadOnlyBuffer();
+    }
+
+    /** Seals the bytes written so far into the send, followed by {@code next}. */
+    private void seal(Object next, long bytes) {
+        buf.flip();
+        sealedBytes += buf.remaining() + bytes;
+        sealed.add(pooled);
+        appended.add(next);
+        pooled = acquire(BUFFER_AFTER_REGION);
+        buf = pooled.buffer();
+        trace.begin(buf);
+        pendingRegion = bytes;
+    }
+
+    /**
+     * Reserves one byte for an unsigned varint length and returns its position; pass it to
+     * {@link #endLengthPrefix} once the prefixed value has been written. Used for tagged fields,
+     * whose size precedes the value. No region may be added in between.
+     */
+    public int beginLengthPrefix() {
+        ensureRemaining(1);
+        int mark = buf.position();
+        buf.put((byte) 0);
+        return mark;
+    }
+
+    /** Patches the length reserved at {@code mark}, shifting the value if it needs a longer varint. */
+    public void endLengthPrefix(int mark) {
+        int length = buf.position() - mark - 1;
+        int prefixSize = ByteUtils.sizeOfUnsignedVarInt(length);
+        if (prefixSize == 1) {
+            buf.put(mark, (byte) length);
+            return;
+        }
+        ensureRemaining(prefixSize - 1);
+        byte[] value = new byte[length];
+        buf.get(mark + 1, value);
+        buf.position(mark);
+        ByteUtils.writeUnsignedVarInt(length, buf);
+        buf.put(value);
+    }
+
+    /** Records the bytes written since the previous field for the wire trace. */
+    public MessageWriter field(String name) {
+        if (pendingRegion >= 0) {
+            trace.region(name, pendingRegion);
+            pendingRegion = -1;
+        } else {
+            trace.field(name, buf);
+        }
+        return this;
+    }
+
+    /**
+     * Patches the message size and returns the encoded message as a send that owns the pooled
+     * buffers. The writer must not be used afterwards.
+     */
+    public Send complete() {
+        patchSize();
+        buf.flip();
+        Send.Builder send = Send.builder();
+        for (int i = 0; i < sealed.size(); i++) {
+            send.add(sealed.get(i));
+            if (appended.get(i) instanceof FileRegion region) {
+                send.add(region);
+            } else {
+                send.add((ByteBuffer) appended.get(i));
+            }
+        }
+        send.add(pooled);
+        pooled = null;
+        buf = null;
+        return send.build();
+    }
+
+    /**
+     * Like {@link #complete()} for messages without file regions, returning the single pooled
+     * buffer flipped for reading.
+     */
+    public PooledBuffer completeBuffer() {
+        if (!sealed.isEmpty()) throw new IllegalStateException("Message has file regions or gathered fragments");
+        patchSize();
+        buf.flip();
+        PooledBuffer done = pooled;
+        pooled = null;
+        buf = null;
+        return done;
+    }
+
+    private void patchSize() {
+        long size = sealedBytes + buf.position() - Constants.messageSize;
+        if (size > Integer.MAX_VALUE) throw new IllegalStateException("Message of " + size + " bytes is too large");
+        ByteBuffer first = sealed.isEmpty() ? buf : sealed.getFirst().buffer();
+        first.putInt(0, (int) size);
+        trace.finish();
+    }
+
+    private MessageWriter putAscii(String s) {
+        int length = s.length();
+        ensureRemaining(length);
+        for (int i = 0; i < length; i++) {
+            buf.put((byte) s.charAt(i));
+        }
+        return this;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    private PooledBuffer acquire(int size) {
+        PooledBuffer acquired = pool.acquire(size);
+        acquired.buffer().limit(acquired.buffer().capacity());
+        return acquired;
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buf.remaining() >= bytes) return;
+        PooledBuffer grown = acquire(Math.max(buf.position() + bytes, buf.capacity() * 2));
+        ByteBuffer next = grown.buffer();
+        next.put(buf.flip());
+        pooled.release();
+        pooled = grown;
+        buf = next;
+    }
+}
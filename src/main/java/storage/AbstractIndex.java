@@ -0,0 +1,151 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped index file of fixed-size entries kept in increasing key order. The file is
+ * mapped at its maximum size while the segment is active and trimmed to its entries when the
+ * segment rolls or closes. A sealed segment's index is mapped read-only at just its entries, so
+ * opening a log does not grow every index file back to the maximum size.
+ *
+ * <p>Entries are only added under the partition's append lock. Lookups do not lock: an entry is
+ * fully written to the mapping before the entry count that makes it visible is published.
+ */
+abstract class AbstractIndex implements Closeable {
+    protected final Path path;
+    protected final long baseOffset;
+    private final int entrySize;
+    private final int maxIndexSize;
+    private FileChannel channel;
+    private boolean readOnly;
+    protected volatile MappedByteBuffer mmap;
+    protected volatile int entries;
+    private int maxEntries;
+
+    /** Opens the index of the active segment; see {@link #AbstractIndex(Path, long, int, int, boolean)}. */
+    protected AbstractIndex(Path path, long baseOffset, int maxIndexSize, int entrySize) throws IOException {
+        this(path, baseOffset, maxIndexSize, entrySize, false);
+    }
+
+    /**
+     * Opens the index at {@code path}, creating it if needed. The existing entries are kept only if
+     * they look sane; otherwise the index comes back empty and the segment rebuilds it.
+     *
+     * @param maxIndexSize bytes to map so entries can be appended.
+     * @param sealed       the segment takes no more appends: a sane index is mapped read-only as it is.
+     */
+    protected AbstractIndex(Path path, long baseOffset, int maxIndexSize, int entrySize, boolean sealed)
+            throws IOException {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        this.entrySize = entrySize;
+        this.maxIndexSize = maxIndexSize - maxIndexSize % entrySize;
+        if (sealed && Files.exists(path)) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            long length = channel.size();
+            int existing = (int) (length / entrySize);
+            mmap = channel.map(FileChannel.MapMode.READ_ONLY, 0, (long) existing * entrySize);
+            if (length % entrySize == 0 && isSorted(existing)) {
+                readOnly = true;
+                maxEntries = existing;
+                entries = existing;
+                return;
+            }
+            channel.close();
+        }
+        boolean existed = Files.exists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        int existing = (int) (length / entrySize);
+        int mapSize = Math.max(this.maxIndexSize, existing * entrySize);
+        mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+        maxEntries = mapSize / entrySize;
+        entries = existed && length % entrySize == 0 && isSorted(existing) ? existing : 0;
+    }
+
+    /** The key of entry {@code n}; keys increase strictly. */
+    protected abstract long keyAt(MappedByteBuffer mmap, int n);
+
+    /** True if the index has no entries, e.g. because it is new or failed the sanity check on open. */
+    boolean isEmpty() {
+        return entries == 0;
+    }
+
+    boolean isFull() {
+        return entries >= maxEntries;
+    }
+
+    protected int maxEntries() {
+        return maxEntries;
+    }
+
+    /** Drops all entries, before a rebuild. A read-only index is mapped writable at its maximum size again. */
+    void truncate() throws IOException {
+        entries = 0;
+        if (readOnly) {
+            channel.close();
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, maxIndexSize);
+            maxEntries = maxIndexSize / entrySize;
+            readOnly = false;
+        }
+    }
+
+    /**
+     * Index of the last entry whose key is at most {@code key}, or -1 if there is none, searched
+     * in {@code mmap} with {@code count} entries read once by the caller.
+     */
+    protected int floorEntry(MappedByteBuffer mmap, int count, long key) {
+        int low = 0;
+        int high = count - 1;
+        int floor = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mmap, mid) <= key) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return floor;
+    }
+
+    /** Shrinks the file to its entries once no more will be added, and maps just those. */
+    void trimToValidSize() throws IOException {
+        if (readOnly) return;
+        int size = entries * entrySize;
+        mmap.force();
+        channel.truncate(size);
+        mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        maxEntries = entries;
+    }
+
+    void flush() {
+        if (!readOnly) mmap.force();
+    }
+
+    private boolean isSorted(int count) {
+        for (int i = 1; i < count; i++) {
+            if (keyAt(mmap, i) <= keyAt(mmap, i - 1)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        trimToValidSize();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" + path + ", " + entries + " entries}";
+    }
+}
@@ -0,0 +1,17 @@
+package storage;
+
+import utils.Config;
+
+/**
+ * Per-partition log settings.
+ *
+ * @param segmentBytes       size at which the active segment rolls.
+ * @param indexIntervalBytes log bytes between two offset index entries.
+ * @param maxIndexSize       bytes mapped for a segment's offset index; a full index rolls the segment.
+ */
+public record LogConfig(int segmentBytes, int indexIntervalBytes, int maxIndexSize) {
+
+    public static LogConfig fromConfig() {
+        return new LogConfig(Config.LOG_SEGMENT_BYTES, Config.LOG_INDEX_INTERVAL_BYTES, Config.LOG_INDEX_SIZE_MAX_BYTES);
+    }
+}
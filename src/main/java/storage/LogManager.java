@@ -0,0 +1,75 @@
+package storage;
+
+import logging.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens partition logs under the log directory on first use and keeps their segment files open.
+ */
+public class LogManager implements Closeable {
+    private static final Logger log = Logger.get(LogManager.class);
+
+    private final Path logDir;
+    private final LogConfig config;
+    private final Map<String, PartitionLog> logs = new ConcurrentHashMap<>();
+
+    public LogManager(Path logDir, LogConfig config) {
+        this.logDir = logDir;
+        this.config = config;
+    }
+
+    /**
+     * Returns the log of {@code topic}-{@code partition}, or {@code null} if the partition has no
+     * directory on disk yet.
+     */
+    public PartitionLog log(String topic, int partition) throws IOException {
+        return open(topic, partition, false);
+    }
+
+    /** Returns the log of {@code topic}-{@code partition}, creating its directory for the first append. */
+    public PartitionLog getOrCreateLog(String topic, int partition) throws IOException {
+        return open(topic, partition, true);
+    }
+
+    private PartitionLog open(String topic, int partition, boolean create) throws IOException {
+        PartitionLog existing = logs.get(topic + "-" + partition);
+        if (existing != null) return existing;
+        try {
+            return logs.computeIfAbsent(topic + "-" + partition, key -> {
+                Path dir = logDir.resolve(key);
+                try {
+                    if (!Files.isDirectory(dir)) {
+                        if (!create) return null;
+                        Files.createDirectories(dir);
+                    }
+                    PartitionLog partitionLog = PartitionLog.open(dir, config);
+                    log.debug("Opened {}", partitionLog);
+                    return partitionLog;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (PartitionLog partitionLog : logs.values()) {
+            try {
+                partitionLog.close();
+            } catch (IOException e) {
+                log.warn("Failed to close {}: {}", partitionLog, e.getMessage());
+            }
+        }
+        logs.clear();
+    }
+}
@@ -0,0 +1,324 @@
+package storage;
+
+import network.FileRegion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static utils.ByteUtils.readVarint;
+import static utils.ByteUtils.readVarlong;
+
+/**
+ * One {@code <baseOffset>.log} file of a partition: record batches laid out back to back, each
+ * starting with its base offset and length, plus its sparse {@link OffsetIndex} and
+ * {@link TimeIndex}. Reads are
+ * positional, so a segment is shared by all request threads without locking. Appends come from
+ * the owning {@link PartitionLog}, one at a time; readers only see bytes up to
+ * {@link #sizeInBytes()}, which is published after the write.
+ */
+public class LogSegment implements Closeable {
+    // baseOffset (8) + batchLength (4): the batch length counts the bytes after this prefix.
+    static final int LOG_OVERHEAD = 12;
+    // ... partitionLeaderEpoch (4) + magic (1) + crc (4) + attributes (2), then lastOffsetDelta (4).
+    static final int LAST_OFFSET_DELTA_OFFSET = 23;
+    static final int BATCH_HEADER_SIZE = 27;
+    private static final int ATTRIBUTES_OFFSET = 21;
+    // ... baseTimestamp (8), maxTimestamp (8), producerId (8), producerEpoch (2), baseSequence (4), then the record count.
+    private static final int BASE_TIMESTAMP_OFFSET = 27;
+    private static final int MAX_TIMESTAMP_OFFSET = 35;
+    private static final int BATCH_HEADER_WITH_TIMESTAMPS_SIZE = 43;
+    private static final int RECORDS_COUNT_OFFSET = 57;
+    static final int RECORD_BATCH_OVERHEAD = 61;
+    private static final int COMPRESSION_CODEC_MASK = 0x07;
+    private static final int TIMESTAMP_TYPE_MASK = 0x08;
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final OffsetIndex offsetIndex;
+    private final TimeIndex timeIndex;
+    private final int indexIntervalBytes;
+    private volatile long size;
+    private volatile TimestampOffset maxTimestampSoFar = TimestampOffset.UNKNOWN;
+    private volatile long cumulativeMaxTimestamp = Long.MAX_VALUE;
+    private int bytesSinceLastIndexEntry;
+
+    private LogSegment(long baseOffset, Path path, FileChannel channel, LogConfig config, boolean sealed)
+            throws IOException {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        Path dir = path.getParent();
+        this.offsetIndex = new OffsetIndex(dir.resolve(String.format("%020d.index", baseOffset)), baseOffset,
+                config.maxIndexSize(), sealed);
+        this.timeIndex = new TimeIndex(dir.resolve(String.format("%020d.timeindex", baseOffset)), baseOffset,
+                config.maxIndexSize(), sealed);
+        this.indexIntervalBytes = config.indexIntervalBytes();
+        this.size = channel.size();
+    }
+
+    /** Opens the active segment at {@code path}; see {@link #open(Path, LogConfig, boolean)}. */
+    public static LogSegment open(Path path, LogConfig config) throws IOException {
+        return open(path, config, false);
+    }
+
+    /**
+     * Opens {@code path}, whose file name is the zero-padded base offset of the segment. A missing
+     * or damaged index is rebuilt from the log; the active segment's index is rebuilt anyway by
+     * {@link #recover()}.
+     *
+     * @param sealed the segment has rolled, so its indexes are mapped read-only at their entries.
+     */
+    public static LogSegment open(Path path, LogConfig config, boolean sealed) throws IOException {
+        String fileName = path.getFileName().toString();
+        long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - ".log".length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(baseOffset, path, channel, config, sealed);
+        if (segment.size > 0 && (segment.offsetIndex.isEmpty() || segment.timeIndex.isEmpty())) {
+            segment.recover();
+        } else {
+            segment.maxTimestampSoFar = segment.timeIndex.lastEntry();
+        }
+        return segment;
+    }
+
+    /** Creates an empty segment in {@code dir} starting at {@code baseOffset}. */
+    public static LogSegment create(Path dir, long baseOffset, LogConfig config) throws IOException {
+        Path path = dir.resolve(String.format("%020d.log", baseOffset));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(baseOffset, path, channel, config, false);
+        segment.offsetIndex.truncate();
+        segment.timeIndex.truncate();
+        return segment;
+    }
+
+    public long baseOffset() {
+        return baseOffset;
+    }
+
+    public long sizeInBytes() {
+        return size;
+    }
+
+    /** True once an index has no room left; the segment has to roll. */
+    boolean isIndexFull() {
+        return offsetIndex.isFull() || timeIndex.isFull();
+    }
+
+    /** The largest batch max timestamp and the base offset of the batch that first reached it. */
+    TimestampOffset maxTimestampSoFar() {
+        return maxTimestampSoFar;
+    }
+
+    /** The largest timestamp in this and all earlier segments; only known once the segment is inactive. */
+    long cumulativeMaxTimestamp() {
+        return cumulativeMaxTimestamp;
+    }
+
+    /**
+     * Writes {@code records}, complete batches with their offsets assigned, at the end of the segment
+     * in one go and indexes them. Callers serialize appends.
+     */
+    void append(ByteBuffer records) throws IOException {
+        long start = size;
+        int first = records.position();
+        int limit = records.limit();
+        long position = start;
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+        for (int batch = first; batch < limit; ) {
+            int batchSize = LOG_OVERHEAD + records.getInt(batch + 8);
+            maybeIndex(records.getLong(batch), start + batch - first, batchSize,
+                    records.getLong(batch + MAX_TIMESTAMP_OFFSET));
+            batch += batchSize;
+        }
+        size = position;
+    }
+
+    /** Forces the appended bytes to disk. */
+    void flush() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Called when the segment rolls: no more appends, so the indexes get their final entry and
+     * shrink to their entries.
+     *
+     * @param previousCumulativeMaxTimestamp the previous segment's {@link #cumulativeMaxTimestamp()},
+     *                                       or -1 for the first segment.
+     */
+    void onBecomeInactive(long previousCumulativeMaxTimestamp) throws IOException {
+        TimestampOffset max = maxTimestampSoFar;
+        timeIndex.appendFinal(max.timestamp(), max.offset());
+        offsetIndex.trimToValidSize();
+        timeIndex.trimToValidSize();
+        cumulativeMaxTimestamp = Math.max(previousCumulativeMaxTimestamp, max.timestamp());
+    }
+
+    /**
+     * Finds the first batch that contains {@code offset} or anything after it, scanning from the
+     * closest indexed batch at or before it.
+     *
+     * @return its file position, or -1 if every batch in this segment ends before {@code offset}.
+     */
+    public long search(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        long size = this.size;
+        long position = offsetIndex.lookup(offset);
+        while (position + BATCH_HEADER_SIZE <= size) {
+            if (!readHeader(header, position)) return -1;
+            long batchEnd = position + LOG_OVERHEAD + header.getInt(8);
+            if (batchEnd > size) return -1; // partially written batch
+            long lastOffset = header.getLong(0) + header.getInt(LAST_OFFSET_DELTA_OFFSET);
+            if (lastOffset >= offset) return position;
+            position = batchEnd;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the whole batches from {@code position} on that fit in {@code maxBytes}. A batch is never
+     * split; if {@code minOneBatch} is set the first batch is returned even when it is larger than
+     * {@code maxBytes}, so a consumer cannot get stuck behind a batch bigger than its fetch size.
+     */
+    public FileRegion read(long position, int maxBytes, boolean minOneBatch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_OVERHEAD);
+        long size = this.size;
+        long end = position;
+        while (end + LOG_OVERHEAD <= size) {
+            if (!readHeader(header, end)) break;
+            long batchEnd = end + LOG_OVERHEAD + header.getInt(8);
+            if (batchEnd > size) break;
+            boolean first = end == position;
+            if (batchEnd - position > maxBytes && !(first && minOneBatch)) break;
+            end = batchEnd;
+        }
+        return end == position ? FileRegion.EMPTY : new FileRegion(channel, position, end - position);
+    }
+
+    /**
+     * Finds the first record with a timestamp of at least {@code timestamp}, starting from the batch
+     * the time index points at rather than from the start of the segment.
+     *
+     * <p>Uncompressed batches are walked record by record for the exact offset. For a compressed batch
+     * the batch's base offset and max timestamp are returned instead of decompressing it; the
+     * consumer then skips the few earlier records in that batch itself.
+     *
+     * @return the timestamp and offset, or {@code null} if every record in this segment is older.
+     */
+    TimestampOffset findOffsetByTimestamp(long timestamp) throws IOException {
+        long position = search(timeIndex.lookup(timestamp));
+        if (position < 0) return null;
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_WITH_TIMESTAMPS_SIZE);
+        long size = this.size;
+        while (position + BATCH_HEADER_WITH_TIMESTAMPS_SIZE <= size) {
+            if (!readHeader(header, position)) return null;
+            int batchSize = LOG_OVERHEAD + header.getInt(8);
+            if (position + batchSize > size) return null;
+            if (header.getLong(MAX_TIMESTAMP_OFFSET) >= timestamp) {
+                return firstRecordAtOrAfter(position, batchSize, timestamp);
+            }
+            position += batchSize;
+        }
+        return null;
+    }
+
+    private TimestampOffset firstRecordAtOrAfter(long position, int batchSize, long timestamp) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(batchSize);
+        if (!readHeader(batch, position)) return null;
+        long batchBaseOffset = batch.getLong(0);
+        long maxTimestamp = batch.getLong(MAX_TIMESTAMP_OFFSET);
+        short attributes = batch.getShort(ATTRIBUTES_OFFSET);
+        // With LogAppendTime every record carries the batch's max timestamp.
+        if ((attributes & (COMPRESSION_CODEC_MASK | TIMESTAMP_TYPE_MASK)) != 0) {
+            return new TimestampOffset(maxTimestamp, batchBaseOffset);
+        }
+        long baseTimestamp = batch.getLong(BASE_TIMESTAMP_OFFSET);
+        int count = batch.getInt(RECORDS_COUNT_OFFSET);
+        batch.position(RECORD_BATCH_OVERHEAD);
+        for (int i = 0; i < count; i++) {
+            int length = readVarint(batch);
+            int next = batch.position() + length;
+            batch.get(); // attributes
+            long recordTimestamp = baseTimestamp + readVarlong(batch);
+            int offsetDelta = readVarint(batch);
+            if (recordTimestamp >= timestamp) return new TimestampOffset(recordTimestamp, batchBaseOffset + offsetDelta);
+            batch.position(next);
+        }
+        return new TimestampOffset(maxTimestamp, batchBaseOffset);
+    }
+
+    /**
+     * Rebuilds the indexes and drops a partially written batch left at the end by a crash mid-append,
+     * so the next append starts on a batch boundary. Called on the active segment when the log opens.
+     *
+     * @return the last offset of the last complete batch, or {@code baseOffset - 1} if there is none.
+     */
+    long recover() throws IOException {
+        offsetIndex.truncate();
+        timeIndex.truncate();
+        maxTimestampSoFar = TimestampOffset.UNKNOWN;
+        return scan();
+    }
+
+    /** Walks and indexes the complete batches, truncating anything after the last one. */
+    private long scan() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_WITH_TIMESTAMPS_SIZE);
+        long size = this.size;
+        long position = 0;
+        long lastOffset = baseOffset - 1;
+        bytesSinceLastIndexEntry = 0;
+        while (position + BATCH_HEADER_WITH_TIMESTAMPS_SIZE <= size) {
+            if (!readHeader(header, position)) break;
+            int batchSize = LOG_OVERHEAD + header.getInt(8);
+            if (position + batchSize > size) break;
+            maybeIndex(header.getLong(0), position, batchSize, header.getLong(MAX_TIMESTAMP_OFFSET));
+            lastOffset = header.getLong(0) + header.getInt(LAST_OFFSET_DELTA_OFFSET);
+            position += batchSize;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            this.size = position;
+        }
+        return lastOffset;
+    }
+
+    private void maybeIndex(long batchBaseOffset, long position, int batchSize, long batchMaxTimestamp) {
+        if (batchMaxTimestamp > maxTimestampSoFar.timestamp()) {
+            maxTimestampSoFar = new TimestampOffset(batchMaxTimestamp, batchBaseOffset);
+        }
+        if (bytesSinceLastIndexEntry >= indexIntervalBytes) {
+            offsetIndex.append(batchBaseOffset, position);
+            TimestampOffset max = maxTimestampSoFar;
+            timeIndex.maybeAppend(max.timestamp(), max.offset());
+            bytesSinceLastIndexEntry = 0;
+        }
+        bytesSinceLastIndexEntry += batchSize;
+    }
+
+    private boolean readHeader(ByteBuffer header, long position) throws IOException {
+        header.clear();
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        offsetIndex.close();
+        timeIndex.close();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "LogSegment{" + path + "}";
+    }
+}
@@ -0,0 +1,48 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * The sparse {@code <baseOffset>.index} of a segment: 8-byte entries of offset relative to the
+ * segment's base offset and file position of the batch with that base offset, roughly one per
+ * {@link LogConfig#indexIntervalBytes()} of log.
+ */
+class OffsetIndex extends AbstractIndex {
+    private static final int ENTRY_SIZE = 8;
+
+    OffsetIndex(Path path, long baseOffset, int maxIndexSize) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE);
+    }
+
+    OffsetIndex(Path path, long baseOffset, int maxIndexSize, boolean sealed) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE, sealed);
+    }
+
+    @Override
+    protected long keyAt(MappedByteBuffer mmap, int n) {
+        return mmap.getInt(n * ENTRY_SIZE);
+    }
+
+    /** Adds an entry; offsets must increase. Callers hold the append lock. */
+    void append(long offset, long position) {
+        if (isFull()) return;
+        int relativeOffset = (int) (offset - baseOffset);
+        int count = entries;
+        if (count > 0 && relativeOffset <= keyAt(mmap, count - 1)) return;
+        mmap.putInt(count * ENTRY_SIZE, relativeOffset);
+        mmap.putInt(count * ENTRY_SIZE + 4, (int) position);
+        entries = count + 1;
+    }
+
+    /**
+     * Returns the file position of the last indexed batch whose base offset is at most {@code offset},
+     * or 0 if there is none. The batch containing {@code offset} starts there or later.
+     */
+    long lookup(long offset) {
+        MappedByteBuffer mmap = this.mmap;
+        int n = floorEntry(mmap, entries, offset - baseOffset);
+        return n < 0 ? 0 : mmap.getInt(n * ENTRY_SIZE + 4);
+    }
+}
@@ -0,0 +1,264 @@
+package storage;
+
+import network.FileRegion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The log of one partition: the segments in {@code <logDir>/<topic>-<partition>}, ordered by base
+ * offset.
+ *
+ * <p>Appends take the append lock, assign offsets by rewriting the batch headers in place and
+ * write all batches of a request with one positional write; records are never materialized.
+ * Readers never lock: the segment list is replaced on roll and the log end offset is published
+ * after the bytes are written, so a reader sees either the old or the new state.
+ */
+public class PartitionLog implements Closeable {
+    // partitionLeaderEpoch sits after baseOffset and batchLength and, unlike the rest of the header,
+    // is not covered by the CRC, so it can be stamped without recomputing the checksum.
+    private static final int PARTITION_LEADER_EPOCH_OFFSET = 12;
+    private static final int MAGIC_OFFSET = 16;
+    private static final byte CURRENT_MAGIC = 2;
+
+    private final Path dir;
+    private final LogConfig config;
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile List<LogSegment> segments;
+    private volatile long logEndOffset;
+    private volatile long flushedOffset;
+
+    private PartitionLog(Path dir, LogConfig config, List<LogSegment> segments, long logEndOffset) {
+        this.dir = dir;
+        this.config = config;
+        this.segments = segments;
+        this.logEndOffset = logEndOffset;
+        this.flushedOffset = logEndOffset;
+    }
+
+    /**
+     * Opens the segments in {@code dir}; only the last one is recovered, the others were complete when
+     * they rolled and keep their trimmed indexes.
+     */
+    public static PartitionLog open(Path dir, LogConfig config) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            // Zero-padded base offsets, so name order is offset order.
+            files = list.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+        List<LogSegment> segments = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            segments.add(LogSegment.open(files.get(i), config, i < files.size() - 1));
+        }
+        long cumulativeMaxTimestamp = -1;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            segments.get(i).onBecomeInactive(cumulativeMaxTimestamp);
+            cumulativeMaxTimestamp = segments.get(i).cumulativeMaxTimestamp();
+        }
+        long logEndOffset = segments.isEmpty() ? 0 : segments.getLast().recover() + 1;
+        return new PartitionLog(dir, config, List.copyOf(segments), logEndOffset);
+    }
+
+    public long logStartOffset() {
+        List<LogSegment> segments = this.segments;
+        return segments.isEmpty() ? 0 : segments.getFirst().baseOffset();
+    }
+
+    public long logEndOffset() {
+        return logEndOffset;
+    }
+
+    /** Everything below this offset has been forced to disk by {@link #flush}. */
+    public long flushedOffset() {
+        return flushedOffset;
+    }
+
+    /**
+     * Appends the record batches in {@code records}, assigning them consecutive offsets from the log
+     * end offset and stamping {@code leaderEpoch}. The buffer's batch headers are modified in place.
+     * Rolls to a new segment first if the batches would push the active one past the segment size.
+     *
+     * @return the offset assigned to the first record.
+     * @throws IllegalArgumentException if the buffer is not a sequence of complete v2 record batches.
+     */
+    public long append(ByteBuffer records, int leaderEpoch) throws IOException {
+        validate(records);
+        appendLock.lock();
+        try {
+            long baseOffset = logEndOffset;
+            long nextOffset = baseOffset;
+            int start = records.position();
+            for (int position = start; position < records.limit(); ) {
+                records.putLong(position, nextOffset);
+                records.putInt(position + PARTITION_LEADER_EPOCH_OFFSET, leaderEpoch);
+                nextOffset += records.getInt(position + LogSegment.LAST_OFFSET_DELTA_OFFSET) + 1;
+                position += LogSegment.LOG_OVERHEAD + records.getInt(position + 8);
+            }
+            activeSegment(records.remaining(), baseOffset).append(records);
+            logEndOffset = nextOffset;
+            return baseOffset;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Makes everything up to {@code offset} durable. Producers waiting for {@code acks=-1} queue on the
+     * flush lock while one fsync is running; the next one through forces everything appended so far,
+     * so the waiters behind it usually find their offsets already flushed and return without a
+     * second fsync.
+     */
+    public void flush(long offset) throws IOException {
+        if (flushedOffset >= offset) return;
+        flushLock.lock();
+        try {
+            if (flushedOffset >= offset) return;
+            long target = logEndOffset;
+            List<LogSegment> segments = this.segments;
+            for (int i = Math.max(0, floorSegment(segments, flushedOffset)); i < segments.size(); i++) {
+                segments.get(i).flush();
+            }
+            flushedOffset = target;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Reads whole batches starting with the one that contains {@code fetchOffset}. Only one segment
+     * is read per call, as Kafka does; the consumer continues in the next segment on its next fetch.
+     */
+    public FileRegion read(long fetchOffset, int maxBytes, boolean minOneBatch) throws IOException {
+        List<LogSegment> segments = this.segments;
+        for (int i = floorSegment(segments, fetchOffset); i >= 0 && i < segments.size(); i++) {
+            LogSegment segment = segments.get(i);
+            long position = segment.search(fetchOffset);
+            if (position >= 0) return segment.read(position, maxBytes, minOneBatch);
+        }
+        return FileRegion.EMPTY;
+    }
+
+    /**
+     * Finds the first record with a timestamp of at least {@code timestamp}. Sealed segments know the
+     * largest timestamp up to and including themselves, so the first segment that can hold a match
+     * is found by binary search; only that segment's time index and a few batches are read.
+     *
+     * @return the record's timestamp and offset, or {@code null} if every record is older.
+     */
+    public TimestampOffset offsetForTimestamp(long timestamp) throws IOException {
+        List<LogSegment> segments = this.segments;
+        int low = 0;
+        int high = segments.size() - 1;
+        int first = segments.size();
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).cumulativeMaxTimestamp() >= timestamp) {
+                first = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        for (int i = first; i < segments.size(); i++) {
+            TimestampOffset found = segments.get(i).findOffsetByTimestamp(timestamp);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    /**
+     * The largest timestamp in the log and the offset of the first record carrying it, or
+     * {@link TimestampOffset#UNKNOWN} for an empty log.
+     */
+    public TimestampOffset maxTimestamp() throws IOException {
+        List<LogSegment> segments = this.segments;
+        long max = -1;
+        for (LogSegment segment : segments) {
+            max = Math.max(max, segment.maxTimestampSoFar().timestamp());
+        }
+        if (max < 0) return TimestampOffset.UNKNOWN;
+        TimestampOffset found = offsetForTimestamp(max);
+        return found == null ? TimestampOffset.UNKNOWN : found;
+    }
+
+    /**
+     * Returns the segment to append {@code bytes} to, rolling a new one when the active segment would
+     * outgrow the segment size or its offset index is full. Holds the append lock.
+     */
+    private LogSegment activeSegment(int bytes, long nextOffset) throws IOException {
+        List<LogSegment> segments = this.segments;
+        if (!segments.isEmpty()) {
+            LogSegment active = segments.getLast();
+            if (active.sizeInBytes() == 0) return active;
+            if (active.sizeInBytes() + bytes <= config.segmentBytes() && !active.isIndexFull()) return active;
+            active.onBecomeInactive(segments.size() > 1
+                    ? segments.get(segments.size() - 2).cumulativeMaxTimestamp() : -1);
+        }
+        LogSegment rolled = LogSegment.create(dir, nextOffset, config);
+        List<LogSegment> next = new ArrayList<>(segments.size() + 1);
+        next.addAll(segments);
+        next.add(rolled);
+        this.segments = List.copyOf(next);
+        return rolled;
+    }
+
+    /** Checks that {@code records} holds complete v2 batches before any header is touched. */
+    private static void validate(ByteBuffer records) {
+        int position = records.position();
+        if (position == records.limit()) throw new IllegalArgumentException("No record batches");
+        while (position < records.limit()) {
+            if (records.limit() - position < LogSegment.RECORD_BATCH_OVERHEAD) {
+                throw new IllegalArgumentException("Truncated record batch header at " + position);
+            }
+            int batchLength = records.getInt(position + 8);
+            if (batchLength < LogSegment.RECORD_BATCH_OVERHEAD - LogSegment.LOG_OVERHEAD
+                    || batchLength > records.limit() - position - LogSegment.LOG_OVERHEAD) {
+                throw new IllegalArgumentException("Invalid record batch length " + batchLength + " at " + position);
+            }
+            if (records.get(position + MAGIC_OFFSET) != CURRENT_MAGIC) {
+                throw new IllegalArgumentException("Unsupported record batch magic " + records.get(position + MAGIC_OFFSET));
+            }
+            if (records.getInt(position + LogSegment.LAST_OFFSET_DELTA_OFFSET) < 0) {
+                throw new IllegalArgumentException("Negative last offset delta at " + position);
+            }
+            position += LogSegment.LOG_OVERHEAD + batchLength;
+        }
+    }
+
+    /** Index of the last segment whose base offset is at most {@code offset}. */
+    private static int floorSegment(List<LogSegment> segments, long offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        int floor = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).baseOffset() <= offset) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return floor;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (LogSegment segment : segments) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionLog{" + dir + ", " + segments.size() + " segments}";
+    }
+}
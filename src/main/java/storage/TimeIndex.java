@@ -0,0 +1,71 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * The sparse {@code <baseOffset>.timeindex} of a segment: 12-byte entries of a timestamp and the
+ * offset relative to the segment's base offset of the batch that first reached it. Entries are
+ * added alongside the offset index whenever the segment's max timestamp has grown, so every batch
+ * before an entry's offset has only smaller timestamps.
+ */
+class TimeIndex extends AbstractIndex {
+    private static final int ENTRY_SIZE = 12;
+
+    TimeIndex(Path path, long baseOffset, int maxIndexSize) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE);
+    }
+
+    TimeIndex(Path path, long baseOffset, int maxIndexSize, boolean sealed) throws IOException {
+        super(path, baseOffset, maxIndexSize, ENTRY_SIZE, sealed);
+    }
+
+    @Override
+    protected long keyAt(MappedByteBuffer mmap, int n) {
+        return mmap.getLong(n * ENTRY_SIZE);
+    }
+
+    /** One slot stays free for the final entry added when the segment rolls. */
+    @Override
+    boolean isFull() {
+        return entries >= maxEntries() - 1;
+    }
+
+    /** Adds an entry if {@code timestamp} is larger than the last one. Callers hold the append lock. */
+    void maybeAppend(long timestamp, long offset) {
+        if (!isFull()) write(timestamp, offset);
+    }
+
+    /** Adds the segment's max timestamp when it rolls, into the slot kept free for it. */
+    void appendFinal(long timestamp, long offset) {
+        if (entries < maxEntries()) write(timestamp, offset);
+    }
+
+    private void write(long timestamp, long offset) {
+        int count = entries;
+        if (count > 0 && timestamp <= keyAt(mmap, count - 1)) return;
+        mmap.putLong(count * ENTRY_SIZE, timestamp);
+        mmap.putInt(count * ENTRY_SIZE + 8, (int) (offset - baseOffset));
+        entries = count + 1;
+    }
+
+    /**
+     * Returns the offset to start scanning from for the first record with a timestamp of at least
+     * {@code timestamp}: the offset of the last entry at or below it, or the segment's base offset.
+     */
+    long lookup(long timestamp) {
+        MappedByteBuffer mmap = this.mmap;
+        int n = floorEntry(mmap, entries, timestamp);
+        return n < 0 ? baseOffset : baseOffset + mmap.getInt(n * ENTRY_SIZE + 8);
+    }
+
+    /** The last entry, or {@link TimestampOffset#UNKNOWN} if there is none. */
+    TimestampOffset lastEntry() {
+        MappedByteBuffer mmap = this.mmap;
+        int count = entries;
+        if (count == 0) return TimestampOffset.UNKNOWN;
+        int position = (count - 1) * ENTRY_SIZE;
+        return new TimestampOffset(mmap.getLong(position), baseOffset + mmap.getInt(position + 8));
+    }
+}
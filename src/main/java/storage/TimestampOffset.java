@@ -0,0 +1,6 @@
+package storage;
+
+/** A record timestamp and the offset it belongs to. */
+public record TimestampOffset(long timestamp, long offset) {
+    public static final TimestampOffset UNKNOWN = new TimestampOffset(-1, -1);
+}
@@ -0,0 +1,156 @@
+package utils;
+
+import logging.Logger;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-classed pool of response buffers. Requests are rounded up to the next power of two
+ * between {@value #MIN_CLASS_SIZE} bytes and the largest class; anything bigger is allocated
+ * unpooled. Each class keeps at most {@code bytesPerClass} worth of idle buffers.
+ *
+ * <p>Buffers are handed out as {@link PooledBuffer}s and must be released exactly once, normally
+ * by the {@code Send} that carries them after the socket write completes. With
+ * {@code -Dkafka.buffer.pool.debug=true} every acquisition records its call site, and buffers that
+ * are garbage collected without having been released are reported as leaks.
+ */
+public class BufferPool {
+    private static final Logger log = Logger.get(BufferPool.class);
+    private static final int MIN_CLASS_SHIFT = 6;
+    private static final int MIN_CLASS_SIZE = 1 << MIN_CLASS_SHIFT;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ArrayBlockingQueue<ByteBuffer>[] classes;
+    private final int maxClassSize;
+    private final boolean direct;
+    private final boolean debug;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder unpooled = new LongAdder();
+    private final LongAdder releases = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+
+    public BufferPool(int maxClassSize, int bytesPerClass, boolean direct, boolean debug) {
+        int classCount = Integer.numberOfTrailingZeros(Integer.highestOneBit(maxClassSize)) - MIN_CLASS_SHIFT + 1;
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        ArrayBlockingQueue<ByteBuffer>[] queues = new ArrayBlockingQueue[classCount];
+        this.classes = queues;
+        for (int i = 0; i < classCount; i++) {
+            int size = MIN_CLASS_SIZE << i;
+            classes[i] = new ArrayBlockingQueue<>(Math.max(2, bytesPerClass / size));
+        }
+        this.maxClassSize = MIN_CLASS_SIZE << (classCount - 1);
+        this.direct = direct;
+        this.debug = debug;
+    }
+
+    public static BufferPool fromConfig() {
+        return new BufferPool(Config.BUFFER_POOL_MAX_CLASS_SIZE, Config.BUFFER_POOL_BYTES_PER_CLASS,
+                Config.BUFFER_POOL_DIRECT, Config.BUFFER_POOL_DEBUG);
+    }
+
+    /**
+     * Logs the pool's counters every {@code intervalMs} from a daemon thread, skipping intervals in
+     * which no buffer was acquired. Does nothing if the interval is not positive.
+     */
+    public void reportEvery(long intervalMs) {
+        if (intervalMs <= 0) return;
+        Thread.ofPlatform().daemon().name("kafka-buffer-pool-stats").start(() -> {
+            long reported = -1;
+            while (true) {
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long acquired = hits() + misses() + unpooled();
+                if (acquired != reported) {
+                    log.info("{}", this);
+                    reported = acquired;
+                }
+            }
+        });
+    }
+
+    /** Returns a cleared buffer with at least {@code size} bytes of capacity, limited to {@code size}. */
+    public PooledBuffer acquire(int size) {
+        ByteBuffer buffer;
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            unpooled.increment();
+            buffer = allocate(size);
+        } else {
+            buffer = classes[sizeClass].poll();
+            if (buffer != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                buffer = allocate(MIN_CLASS_SIZE << sizeClass);
+            }
+        }
+        buffer.clear().limit(size);
+        PooledBuffer pooled = new PooledBuffer(this, buffer);
+        if (debug) pooled.track(CLEANER.register(pooled, new LeakReport(this, pooled.state(), new Throwable("Buffer of " + size + " bytes acquired here"))));
+        return pooled;
+    }
+
+    void release(ByteBuffer buffer) {
+        releases.increment();
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass >= 0 && (MIN_CLASS_SIZE << sizeClass) == buffer.capacity()) {
+            classes[sizeClass].offer(buffer); // dropped if the class is already full
+        }
+    }
+
+    private int sizeClass(int size) {
+        if (size > maxClassSize) return -1;
+        if (size <= MIN_CLASS_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long unpooled() {
+        return unpooled.sum();
+    }
+
+    public long leaks() {
+        return leaks.sum();
+    }
+
+    /** Buffers handed out and not released yet. */
+    public long outstanding() {
+        return hits.sum() + misses.sum() + unpooled.sum() - releases.sum();
+    }
+
+    @Override
+    public String toString() {
+        long hit = hits(), miss = misses();
+        return String.format("BufferPool{hits=%d, misses=%d, hitRate=%.1f%%, unpooled=%d, outstanding=%d, leaks=%d}",
+                hit, miss, hit + miss == 0 ? 0.0 : 100.0 * hit / (hit + miss), unpooled(), outstanding(), leaks());
+    }
+
+    /** Runs when a tracked {@link PooledBuffer} becomes unreachable, or when it is released. */
+    private record LeakReport(BufferPool pool, PooledBuffer.State state, Throwable site) implements Runnable {
+        @Override
+        public void run() {
+            if (state.released) return;
+            pool.leaks.increment();
+            log.error("LEAK: pooled buffer was garbage collected without being released. {}", pool, site);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire-format helpers shared by the request decoder and the response encoders.
+ */
+public class ByteUtils {
+
+    public static void writeUnsignedVarInt(int value, ByteBuffer buf) {
+        while ((value & 0xFFFFFF80) != 0L) {
+            byte b = (byte) ((value & 0x7F) | 0x80);
+            buf.put(b);
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    public static int sizeOfUnsignedVarInt(int value) {
+        int bytes = 1;
+        while ((value & 0xFFFFFF80) != 0L) {
+            bytes++;
+            value >>>= 7;
+        }
+        return bytes;
+    }
+
+    public static int readUnsignedVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) throw new IllegalArgumentException("Varint is too long");
+            b = buf.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /** Reads a zigzag-encoded signed varint, as used inside records. */
+    public static int readVarint(ByteBuffer buf) {
+        int value = readUnsignedVarInt(buf);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /** Reads a zigzag-encoded signed varlong, as used for record timestamp deltas. */
+    public static long readVarlong(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) throw new IllegalArgumentException("Varlong is too long");
+            b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Decodes {@code length} UTF-8 bytes at the buffer's position straight from its backing array
+     * and advances the position past them.
+     */
+    public static String readUtf8(ByteBuffer buf, int length) {
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buf.get(buf.position(), bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    /** Skips the tagged-field section of a flexible-version struct. */
+    public static void skipTaggedFields(ByteBuffer buf) {
+        int count = readUnsignedVarInt(buf);
+        for (int i = 0; i < count; i++) {
+            readUnsignedVarInt(buf); // tag
+            int size = readUnsignedVarInt(buf);
+            buf.position(buf.position() + size);
+        }
+    }
+
+    private ByteUtils() {}
+}
@@ -0,0 +1,61 @@
+package utils;
+
+/**
+ * Broker settings. Every value can be overridden with a {@code -D} system property,
+ * e.g. {@code -Dkafka.port=19092}.
+ */
+public class Config {
+    public static final int PORT = Integer.getInteger("kafka.port", 9092);
+
+    // Selector threads that own the client sockets. One is enough for thousands of idle connections.
+    public static final int NUM_NETWORK_THREADS = Integer.getInteger("kafka.num.network.threads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    // Holds the cluster metadata log and one <topic>-<partition> directory of segments per partition.
+    public static final String LOG_DIR = System.getProperty("kafka.log.dir", "/tmp/kraft-combined-logs");
+
+    // A partition rolls to a new segment file once the active one would grow past this size.
+    // Offset index entries hold 32-bit file positions, so segments stay below 2 GiB.
+    public static final int LOG_SEGMENT_BYTES = Integer.getInteger("kafka.log.segment.bytes", 1024 * 1024 * 1024);
+    // One offset index entry per this many bytes of log, in an index mapped at up to the max size.
+    public static final int LOG_INDEX_INTERVAL_BYTES = Integer.getInteger("kafka.log.index.interval.bytes", 4096);
+    public static final int LOG_INDEX_SIZE_MAX_BYTES = Integer.getInteger("kafka.log.index.size.max.bytes", 10 * 1024 * 1024);
+
+    // Threads decoding metadata log batches at startup; with 1 the log is decoded on the loading thread.
+    public static final int METADATA_LOAD_THREADS = Integer.getInteger("kafka.metadata.load.threads",
+            Runtime.getRuntime().availableProcessors());
+    // Startup writes a new metadata snapshot once it had to replay this many log records after the newest one.
+    public static final int METADATA_SNAPSHOT_INTERVAL_RECORDS =
+            Integer.getInteger("kafka.metadata.snapshot.interval.records", 100_000);
+    // How often the metadata log is checked for records appended since it was loaded.
+    public static final long METADATA_POLL_INTERVAL_MS = Long.getLong("kafka.metadata.poll.interval.ms", 500);
+    // Keeps topics and partitions in off-heap segments instead of objects, for clusters large enough to weigh on GC.
+    public static final boolean METADATA_OFF_HEAP = Boolean.getBoolean("kafka.metadata.off.heap");
+
+    public static final int ACCEPT_BACKLOG = Integer.getInteger("kafka.accept.backlog", 1024);
+
+    // Pipelined requests handled concurrently per connection before we stop reading from it.
+    // Real clients send up to 5 (max.in.flight.requests.per.connection).
+    public static final int MAX_INFLIGHT_REQUESTS_PER_CONNECTION =
+            Integer.getInteger("kafka.max.inflight.requests.per.connection", 5);
+
+    // Largest request frame we are willing to buffer for a single client.
+    public static final int MAX_REQUEST_SIZE = Integer.getInteger("kafka.max.request.size", 100 * 1024 * 1024);
+    // A connection's receive buffer is kept up to this size; one grown for a larger request is dropped after it.
+    public static final int FRAME_BUFFER_RETAIN_BYTES = Integer.getInteger("kafka.frame.buffer.retain.bytes", 256 * 1024);
+
+    // Most partitions one DescribeTopicPartitions response holds; clients page through the rest with its cursor.
+    public static final int MAX_REQUEST_PARTITION_SIZE_LIMIT =
+            Integer.getInteger("kafka.max.request.partition.size.limit", 2000);
+
+    // Response buffer pool: power-of-two size classes up to this size, and the idle bytes kept per class.
+    public static final int BUFFER_POOL_MAX_CLASS_SIZE = Integer.getInteger("kafka.buffer.pool.max.class.size", 1024 * 1024);
+    public static final int BUFFER_POOL_BYTES_PER_CLASS = Integer.getInteger("kafka.buffer.pool.bytes.per.class", 4 * 1024 * 1024);
+    public static final boolean BUFFER_POOL_DIRECT = Boolean.getBoolean("kafka.buffer.pool.direct");
+    // Records where every pooled buffer was acquired and reports the ones that are never released.
+    public static final boolean BUFFER_POOL_DEBUG = Boolean.getBoolean("kafka.buffer.pool.debug");
+    // How often the pool's hit, miss, unpooled and leak counts are logged; 0 turns the report off.
+    public static final long BUFFER_POOL_STATS_INTERVAL_MS = Long.getLong("kafka.buffer.pool.stats.interval.ms", 60_000);
+
+    private Config() {}
+}
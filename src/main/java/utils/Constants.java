@@ -14,5 +14,10 @@ public class Constants {
 
     public static final short unsupportedVersionErrorCode = 35;
     public static final short UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE = 3;
+    public static final short OFFSET_OUT_OF_RANGE_ERROR_CODE = 1;
+    public static final short CORRUPT_MESSAGE_ERROR_CODE = 2;
+    public static final short INVALID_REQUIRED_ACKS_ERROR_CODE = 21;
+    public static final short KAFKA_STORAGE_ERROR_CODE = 56;
+    public static final short UNKNOWN_TOPIC_ID_ERROR_CODE = 100;
 
 }
@@ -0,0 +1,43 @@
+package utils;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+
+/**
+ * A buffer on loan from a {@link BufferPool}. Release it exactly once, after the last read of its bytes.
+ */
+public final class PooledBuffer {
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final State state = new State();
+    private Cleaner.Cleanable leakCheck;
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public void release() {
+        if (state.released) throw new IllegalStateException("Pooled buffer released twice");
+        state.released = true;
+        if (leakCheck != null) leakCheck.clean();
+        pool.release(buffer);
+    }
+
+    void track(Cleaner.Cleanable leakCheck) {
+        this.leakCheck = leakCheck;
+    }
+
+    State state() {
+        return state;
+    }
+
+    // Kept apart from the PooledBuffer so the leak check does not keep it reachable.
+    static final class State {
+        volatile boolean released;
+    }
+}
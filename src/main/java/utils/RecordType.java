@@ -1,9 +1,43 @@
 package utils;
 
+/**
+ * The KRaft metadata record types, by the api key each record value starts with (after its frame
+ * version). Replay skips records of types missing here.
+ */
 public enum RecordType {
-    FEATURE_LEVEL_RECORD(12),
+    REGISTER_BROKER_RECORD(0),
+    UNREGISTER_BROKER_RECORD(1),
     TOPIC_RECORD(2),
-    PARTITION_RECORD(3);
+    PARTITION_RECORD(3),
+    CONFIG_RECORD(4),
+    PARTITION_CHANGE_RECORD(5),
+    ACCESS_CONTROL_ENTRY_RECORD(6),
+    REMOVE_ACCESS_CONTROL_ENTRY_RECORD(7),
+    FENCE_BROKER_RECORD(8),
+    UNFENCE_BROKER_RECORD(9),
+    REMOVE_TOPIC_RECORD(10),
+    USER_SCRAM_CREDENTIAL_RECORD(11),
+    FEATURE_LEVEL_RECORD(12),
+    CLIENT_QUOTA_RECORD(13),
+    PRODUCER_IDS_RECORD(14),
+    BROKER_REGISTRATION_CHANGE_RECORD(15),
+    REMOVE_USER_SCRAM_CREDENTIAL_RECORD(16),
+    DELEGATION_TOKEN_RECORD(17),
+    REMOVE_DELEGATION_TOKEN_RECORD(18),
+    NO_OP_RECORD(20),
+    ZK_MIGRATION_STATE_RECORD(21),
+    REGISTER_CONTROLLER_RECORD(22),
+    BEGIN_TRANSACTION_RECORD(23),
+    END_TRANSACTION_RECORD(24),
+    ABORT_TRANSACTION_RECORD(25);
+
+    private static final RecordType[] BY_TYPE = new RecordType[26];
+
+    static {
+        for (RecordType recordType : values()) {
+            BY_TYPE[recordType.type] = recordType;
+        }
+    }
 
     private final int type;
 
@@ -12,12 +46,14 @@ public enum RecordType {
     }
 
     public static RecordType fromType(int type) {
-        for(RecordType recordType: RecordType.values()) {
-            if(recordType.type == type) {
-                return recordType;
-            }
-        }
-        throw new IllegalArgumentException("Unknown type: " + type);
+        RecordType recordType = forType(type);
+        if (recordType == null) throw new IllegalArgumentException("Unknown type: " + type);
+        return recordType;
+    }
+
+    /** The record type with this api key, or null if it is not known. */
+    public static RecordType forType(int type) {
+        return type >= 0 && type < BY_TYPE.length ? BY_TYPE[type] : null;
     }
 
     public int getType() {
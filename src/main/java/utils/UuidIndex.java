@@ -0,0 +1,33 @@
+package utils;
+
+import java.util.UUID;
+
+/**
+ * Read access to values keyed on 128-bit ids, such as topic ids, by their two longs. Implemented
+ * by {@link UuidMap} and by the off-heap index of {@code dto.OffHeapMetadata}.
+ */
+public interface UuidIndex<V> {
+    V get(long mostSignificantBits, long leastSignificantBits);
+
+    default V get(UUID key) {
+        return key == null ? null : get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    default boolean containsKey(UUID key) {
+        return get(key) != null;
+    }
+
+    int size();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Hands every entry to {@code action}, in no particular order. */
+    void forEach(EntryConsumer<? super V> action);
+
+    @FunctionalInterface
+    interface EntryConsumer<V> {
+        void accept(long mostSignificantBits, long leastSignificantBits, V value);
+    }
+}
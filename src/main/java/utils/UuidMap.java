@@ -0,0 +1,163 @@
+package utils;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Open-addressing hash map keyed on 128-bit ids, such as topic ids. Keys are held as pairs of
+ * longs in one flat array and probed linearly, so a lookup hashes and compares the two longs in
+ * place: it allocates nothing and never dereferences a key object. Removal shifts the following
+ * entries back, so there are no tombstones.
+ *
+ * <p>Not thread-safe. A map that other threads can see, such as one in a published
+ * {@code MetadataCache}, must not be modified any more; {@link #copy} it and change the copy.
+ */
+public final class UuidMap<V> implements UuidIndex<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    // Slot i holds its key in keys[2i] and keys[2i + 1]; a null value marks an empty slot.
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public UuidMap() {
+        this(0);
+    }
+
+    public UuidMap(int expectedSize) {
+        // At most half full, so probe sequences stay short.
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1);
+        this.keys = new long[2 * capacity];
+        this.values = new Object[capacity];
+    }
+
+    private UuidMap(UuidMap<V> other) {
+        this.keys = other.keys.clone();
+        this.values = other.values.clone();
+        this.size = other.size;
+    }
+
+    /** A modifiable copy. Costs two array copies, which share the values with this map. */
+    public UuidMap<V> copy() {
+        return new UuidMap<>(this);
+    }
+
+    /** A modifiable copy of any index; a copy of a UuidMap is as cheap as {@link #copy}. */
+    public static <V> UuidMap<V> copyOf(UuidIndex<V> index) {
+        if (index instanceof UuidMap<V> map) return map.copy();
+        UuidMap<V> copy = new UuidMap<>(index.size());
+        index.forEach(copy::put);
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(long mostSignificantBits, long leastSignificantBits) {
+        int slot = find(mostSignificantBits, leastSignificantBits);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /** @return the previous value, or null. */
+    public V put(UUID key, V value) {
+        return put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long mostSignificantBits, long leastSignificantBits, V value) {
+        Objects.requireNonNull(value, "value");
+        if (2 * (size + 1) > values.length) resize(values.length * 2);
+        int mask = values.length - 1;
+        int slot = hash(mostSignificantBits, leastSignificantBits) & mask;
+        while (values[slot] != null) {
+            if (keys[2 * slot] == mostSignificantBits && keys[2 * slot + 1] == leastSignificantBits) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[2 * slot] = mostSignificantBits;
+        keys[2 * slot + 1] = leastSignificantBits;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /** @return the removed value, or null. */
+    public V remove(UUID key) {
+        return key == null ? null : remove(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long mostSignificantBits, long leastSignificantBits) {
+        int hole = find(mostSignificantBits, leastSignificantBits);
+        if (hole < 0) return null;
+        V removed = (V) values[hole];
+        int mask = values.length - 1;
+        // Move back every following entry of the run whose home slot is not between the hole and it.
+        for (int slot = (hole + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+            int home = hash(keys[2 * slot], keys[2 * slot + 1]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[2 * hole] = keys[2 * slot];
+                keys[2 * hole + 1] = keys[2 * slot + 1];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] != null) action.accept(keys[2 * slot], keys[2 * slot + 1], (V) values[slot]);
+        }
+    }
+
+    private int find(long mostSignificantBits, long leastSignificantBits) {
+        int mask = values.length - 1;
+        for (int slot = hash(mostSignificantBits, leastSignificantBits) & mask; values[slot] != null;
+             slot = (slot + 1) & mask) {
+            if (keys[2 * slot] == mostSignificantBits && keys[2 * slot + 1] == leastSignificantBits) return slot;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[2 * capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = hash(oldKeys[2 * i], oldKeys[2 * i + 1]) & mask;
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            keys[2 * slot] = oldKeys[2 * i];
+            keys[2 * slot + 1] = oldKeys[2 * i + 1];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Topic ids are random, but ids from tests and tools often differ in a few bits only, so mix.
+     * Also used by other indexes keyed on ids.
+     */
+    public static int hash(long mostSignificantBits, long leastSignificantBits) {
+        long h = (mostSignificantBits ^ Long.rotateLeft(leastSignificantBits, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
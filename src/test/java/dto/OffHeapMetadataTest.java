@@ -0,0 +1,163 @@
+package dto;
+
+import handlers.DescribeTopicPartitionsHandler;
+import org.junit.jupiter.api.Test;
+import processors.MetadataCacheBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapMetadataTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+    private static final UUID BAZ = new UUID(0x4000L << 48 | 3, 0x8000_0000_0000_0000L | 3);
+    private static final UUID QUX = new UUID(0x4000L << 48 | 4, 0x8000_0000_0000_0000L | 4);
+
+    @Test
+    void copyReadsLikeTheHeapCache() {
+        MetadataCache heap = cluster();
+        OffHeapMetadata store = OffHeapMetadata.copyOf(heap);
+        MetadataCache cache = store.cache();
+
+        assertSameTopics(heap, cache);
+        assertSame(store, OffHeapMetadata.of(cache));
+        assertNull(OffHeapMetadata.of(MetadataCache.EMPTY));
+        assertEquals("baz", cache.topicName(BAZ), "a topic without partitions keeps its name");
+        assertNull(cache.byUuid().get(BAZ));
+        assertTrue(cache.describeFragments().get("foo").isDirect());
+        assertTrue(cache.describeFragments().get("foo").isReadOnly());
+        assertEquals(heap.describeFragments().get("foo").remaining() + heap.describeFragments().get("bar").remaining(),
+                store.fragmentBytes());
+    }
+
+    @Test
+    void updateCopiesUnchangedTopicsAndWritesChangedOnes() {
+        MetadataCache heap = cluster();
+        OffHeapMetadata store = OffHeapMetadata.copyOf(heap);
+
+        MetadataCacheBuilder builder = new MetadataCacheBuilder(heap);
+        builder.visitRemoveTopic(FOO);
+        builder.visitPartition(partition(0, BAR, 3, 1));
+        builder.visitTopic("qux", QUX);
+        builder.visitPartition(partition(0, QUX, 1));
+        builder.visitPartition(partition(1, QUX, 2));
+        MetadataCache expected = builder.build(9);
+
+        OffHeapMetadata next = store.update(List.of(topic(expected, "bar", BAR), topic(expected, "qux", QUX)),
+                Set.of(FOO), 9);
+        assertSameTopics(expected, next.cache());
+        assertEquals(9, next.cache().lastOffset());
+        assertEquals("baz", next.cache().topicName(BAZ));
+        // The store it was built from is unchanged.
+        assertSameTopics(heap, store.cache());
+
+        // A topic renamed from the previous store keeps its partitions, copied as raw bytes.
+        List<PartitionData> bar = next.cache().byName().get("bar");
+        OffHeapMetadata renamed = next.update(List.of(new OffHeapMetadata.Topic(BAR, "bar2", bar,
+                DescribeTopicPartitionsHandler.encodeTopic("bar2", bar))), Set.of(), 10);
+        assertEquals(Set.of("bar2", "qux"), renamed.cache().byName().keySet());
+        assertEquals(expected.byName().get("bar"), renamed.cache().byName().get("bar2"));
+        assertEquals(expected.byName().get("qux"), renamed.cache().byName().get("qux"));
+        assertEquals("bar2", renamed.cache().topicName(BAR));
+    }
+
+    @Test
+    void updatesAcrossTablesMatchTheHeapCache() {
+        MetadataCache heap = cluster();
+        OffHeapMetadata store = OffHeapMetadata.copyOf(heap);
+
+        // Enough topics to spread the store over several tables, then changes to some of them.
+        for (int round = 0; round < 3; round++) {
+            MetadataCacheBuilder builder = new MetadataCacheBuilder(heap);
+            List<OffHeapMetadata.Topic> changed = new ArrayList<>();
+            Set<UUID> removed = new HashSet<>();
+            for (int n = 0; n < 400; n++) {
+                UUID topicId = new UUID(0x4000L << 48 | 100 + n, 0x8000_0000_0000_0000L | 100 + n);
+                if (round == 0) {
+                    builder.visitTopic("t" + n, topicId);
+                    builder.visitPartition(partition(0, topicId, n % 5 + 1));
+                    changed.add(new OffHeapMetadata.Topic(topicId, "t" + n, null, null));
+                } else if (n % 7 == round) {
+                    builder.visitRemoveTopic(topicId);
+                    removed.add(topicId);
+                } else if (n % 11 == round && heap.topicName(topicId) != null) {
+                    builder.visitPartition(partition(round, topicId, round + 1));
+                    changed.add(new OffHeapMetadata.Topic(topicId, "t" + n, null, null));
+                }
+            }
+            MetadataCache expected = builder.build(10 + round);
+            changed.replaceAll(topic -> topic(expected, topic.name(), topic.id()));
+
+            OffHeapMetadata next = store.update(changed, removed, 10 + round);
+            assertSameTopics(expected, next.cache());
+            assertSameTopics(heap, store.cache());
+            heap = expected;
+            store = next;
+        }
+
+        // Renamed topics move to the table of their new name.
+        List<OffHeapMetadata.Topic> renamed = new ArrayList<>();
+        for (int n = 0; n < 400; n += 3) {
+            UUID topicId = new UUID(0x4000L << 48 | 100 + n, 0x8000_0000_0000_0000L | 100 + n);
+            List<PartitionData> partitions = store.cache().byUuid().get(topicId);
+            if (partitions != null) renamed.add(new OffHeapMetadata.Topic(topicId, "r" + n, partitions, null));
+        }
+        MetadataCache cache = store.update(renamed, Set.of(), 13).cache();
+        assertEquals(heap.byName().size(), cache.byName().size());
+        for (OffHeapMetadata.Topic topic : renamed) {
+            String name = heap.topicName(topic.id());
+            assertNull(cache.byName().get(name));
+            assertEquals(heap.byName().get(name), cache.byName().get(topic.name()));
+            assertEquals(topic.name(), cache.topicName(topic.id()));
+        }
+    }
+
+    private static void assertSameTopics(MetadataCache expected, MetadataCache actual) {
+        assertEquals(expected.byName(), actual.byName());
+        assertEquals(expected.byName().keySet(), actual.byName().keySet());
+        assertEquals(expected.byUuid().size(), actual.byUuid().size());
+        expected.byUuid().forEach((mostSignificantBits, leastSignificantBits, partitions) ->
+                assertEquals(partitions, actual.byUuid().get(mostSignificantBits, leastSignificantBits)));
+        assertEquals(expected.topicNames().size(), actual.topicNames().size());
+        expected.topicNames().forEach((mostSignificantBits, leastSignificantBits, name) ->
+                assertEquals(name, actual.topicNames().get(mostSignificantBits, leastSignificantBits)));
+        assertEquals(expected.describeFragments().keySet(), actual.describeFragments().keySet());
+        for (Map.Entry<String, ByteBuffer> fragment : expected.describeFragments().entrySet()) {
+            assertEquals(fragment.getValue(), actual.describeFragments().get(fragment.getKey()));
+        }
+    }
+
+    /** foo with three partitions, bar with one, and baz, which has no partitions yet. */
+    private static MetadataCache cluster() {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        builder.visitTopic("foo", FOO);
+        builder.visitPartition(new PartitionData(0, FOO, new int[]{1, 2, 3}, new int[]{1, 2}, new int[]{3},
+                PartitionData.NO_REPLICAS, new long[]{1, 1, 2, 2, 3, 3}, 1, 4, 7));
+        builder.visitPartition(partition(1, FOO, 2, 3));
+        builder.visitPartition(new PartitionData(2, FOO, new int[]{3}, new int[]{3}, PartitionData.NO_REPLICAS,
+                new int[]{1}, PartitionData.NO_DIRECTORIES, 3, 0, 1));
+        builder.visitTopic("bar", BAR);
+        builder.visitPartition(partition(0, BAR, 1, 2));
+        builder.visitTopic("baz", BAZ);
+        return builder.build(5);
+    }
+
+    private static OffHeapMetadata.Topic topic(MetadataCache cache, String name, UUID topicId) {
+        return new OffHeapMetadata.Topic(topicId, name, cache.byUuid().get(topicId), cache.describeFragments().get(name));
+    }
+
+    private static PartitionData partition(int partitionId, UUID topicId, int... replicas) {
+        return new PartitionData(partitionId, topicId, replicas, replicas, PartitionData.NO_REPLICAS,
+                PartitionData.NO_REPLICAS, PartitionData.NO_DIRECTORIES, replicas[0], 0, 0);
+    }
+}
@@ -0,0 +1,170 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import network.Send;
+import org.junit.jupiter.api.Test;
+import processors.MetadataCacheBuilder;
+import protocol.message.ApiMessageType;
+import protocol.message.DescribeTopicPartitionsRequestData;
+import protocol.message.DescribeTopicPartitionsResponseData;
+import protocol.message.DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponsePartition;
+import protocol.message.DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic;
+import utils.BufferPool;
+import utils.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static utils.Constants.UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE;
+
+class DescribeTopicPartitionsHandlerTest {
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+
+    @Test
+    void pagesThroughTopicsInNameOrder() throws IOException {
+        MetadataCache cache = cache("b", 3, "a", 5, "c", 2);
+        DescribeTopicPartitionsHandler handler = new DescribeTopicPartitionsHandler(() -> cache, pool);
+        List<String> requested = List.of("c", "missing", "a", "b");
+
+        DescribeTopicPartitionsResponseData page = describe(handler, requested, 4, null);
+        assertEquals(List.of("a"), names(page));
+        assertEquals(List.of(0, 1, 2, 3), partitionIds(page.topics().get(0)));
+        assertCursor("a", 4, page);
+
+        page = describe(handler, requested, 4, page.nextCursor());
+        assertEquals(List.of("a", "b"), names(page));
+        assertEquals(List.of(4), partitionIds(page.topics().get(0)));
+        assertEquals(List.of(0, 1, 2), partitionIds(page.topics().get(1)));
+        assertCursor("c", 0, page);
+
+        page = describe(handler, requested, 4, page.nextCursor());
+        assertEquals(List.of("c", "missing"), names(page));
+        assertEquals(List.of(0, 1), partitionIds(page.topics().get(0)));
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE, page.topics().get(1).errorCode());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void wholeAndSplitTopicsDescribeTheSamePartitions() throws IOException {
+        MetadataCache cache = cache("a", 6);
+        DescribeTopicPartitionsHandler handler = new DescribeTopicPartitionsHandler(() -> cache, pool);
+
+        DescribeTopicPartitionsResponseTopic whole = describe(handler, List.of("a"), 100, null).topics().get(0);
+        List<DescribeTopicPartitionsResponsePartition> pieces = new ArrayList<>();
+        DescribeTopicPartitionsResponseData.Cursor cursor = null;
+        do {
+            DescribeTopicPartitionsResponseData page = describe(handler, List.of("a"), 4, cursor);
+            DescribeTopicPartitionsResponseTopic topic = page.topics().get(0);
+            assertEquals(whole.topicId(), topic.topicId());
+            pieces.addAll(topic.partitions());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertEquals(whole.partitions().toString(), pieces.toString());
+        DescribeTopicPartitionsResponsePartition last = whole.partitions().get(5);
+        assertEquals(3, last.leaderId());
+        assertArrayEquals(new int[]{3, 1, 2}, last.replicaNodes());
+    }
+
+    @Test
+    void cursorOnAMissingPartitionStartsAtTheNextOne() throws IOException {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        UUID topicId = topicId(0);
+        builder.visitTopic("a", topicId);
+        for (int p : new int[]{0, 2, 4, 6}) builder.visitPartition(partition(topicId, p));
+        MetadataCache cache = builder.build(0);
+        DescribeTopicPartitionsHandler handler = new DescribeTopicPartitionsHandler(() -> cache, pool);
+
+        DescribeTopicPartitionsResponseData page = describe(handler, List.of("a"), 2,
+                new DescribeTopicPartitionsResponseData.Cursor().setTopicName("a").setPartitionIndex(3));
+        assertEquals(List.of(4, 6), partitionIds(page.topics().get(0)));
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void limitIsAtLeastOneAndAtMostTheBrokerCap() throws IOException {
+        int cap = Config.MAX_REQUEST_PARTITION_SIZE_LIMIT;
+        MetadataCache cache = cache("a", 3, "big", cap + 10);
+        DescribeTopicPartitionsHandler handler = new DescribeTopicPartitionsHandler(() -> cache, pool);
+
+        DescribeTopicPartitionsResponseData page = describe(handler, List.of("a", "big"), 0, null);
+        assertEquals(List.of(0), partitionIds(page.topics().get(0)));
+        assertCursor("a", 1, page);
+
+        page = describe(handler, List.of("a", "big"), Integer.MAX_VALUE, null);
+        assertEquals(3, page.topics().get(0).partitions().size());
+        assertEquals(cap - 3, page.topics().get(1).partitions().size());
+        assertCursor("big", cap - 3, page);
+    }
+
+    private DescribeTopicPartitionsResponseData describe(DescribeTopicPartitionsHandler handler, List<String> topics,
+                                                         int limit, DescribeTopicPartitionsResponseData.Cursor cursor)
+            throws IOException {
+        DescribeTopicPartitionsRequestData body = new DescribeTopicPartitionsRequestData()
+                .setTopics(topics.stream()
+                        .map(name -> new DescribeTopicPartitionsRequestData.TopicRequest().setName(name))
+                        .toList())
+                .setResponsePartitionLimit(limit)
+                .setCursor(cursor == null ? null : new DescribeTopicPartitionsRequestData.Cursor()
+                        .setTopicName(cursor.topicName()).setPartitionIndex(cursor.partitionIndex()));
+        Send send = handler.handle(new KafkaRequest(0, 42, ApiMessageType.DESCRIBE_TOPIC_PARTITIONS.apiKey(),
+                (short) 0, "test", body));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (!send.completed()) send.writeTo(channel);
+        send.release();
+        ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(42, buf.getInt());
+        assertEquals(0, buf.get()); // response header tags
+        return new DescribeTopicPartitionsResponseData(buf, (short) 0);
+    }
+
+    /** Topics as alternating names and partition counts. */
+    private static MetadataCache cache(Object... topics) {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        for (int t = 0; t < topics.length; t += 2) {
+            UUID topicId = topicId(t);
+            builder.visitTopic((String) topics[t], topicId);
+            for (int p = (int) topics[t + 1] - 1; p >= 0; p--) builder.visitPartition(partition(topicId, p));
+        }
+        return builder.build(0);
+    }
+
+    private static PartitionData partition(UUID topicId, int partitionId) {
+        int leader = partitionId % 3 + 1;
+        int[] replicas = {leader, leader % 3 + 1, (leader + 1) % 3 + 1};
+        return new PartitionData(partitionId, topicId, replicas, Arrays.copyOf(replicas, 2), PartitionData.NO_REPLICAS,
+                PartitionData.NO_REPLICAS, PartitionData.NO_DIRECTORIES, leader, partitionId, 0);
+    }
+
+    private static UUID topicId(int topic) {
+        return new UUID(0x4000L << 48 | topic, 0x8000_0000_0000_0000L | topic);
+    }
+
+    private static List<String> names(DescribeTopicPartitionsResponseData page) {
+        return page.topics().stream().map(DescribeTopicPartitionsResponseTopic::name).toList();
+    }
+
+    private static List<Integer> partitionIds(DescribeTopicPartitionsResponseTopic topic) {
+        return topic.partitions().stream().map(DescribeTopicPartitionsResponsePartition::partitionIndex).toList();
+    }
+
+    private static void assertCursor(String topicName, int partitionIndex, DescribeTopicPartitionsResponseData page) {
+        assertEquals(topicName, page.nextCursor().topicName());
+        assertEquals(partitionIndex, page.nextCursor().partitionIndex());
+    }
+}
@@ -0,0 +1,205 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import network.Send;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import processors.MetadataCacheBuilder;
+import protocol.message.ApiMessageType;
+import protocol.message.FetchRequestData;
+import protocol.message.FetchRequestData.FetchPartition;
+import protocol.message.FetchRequestData.FetchTopic;
+import protocol.message.FetchResponseData;
+import storage.LogConfig;
+import storage.LogManager;
+import storage.PartitionLog;
+import utils.BufferPool;
+import utils.RecordBatchBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static utils.Constants.OFFSET_OUT_OF_RANGE_ERROR_CODE;
+import static utils.Constants.UNKNOWN_TOPIC_ID_ERROR_CODE;
+import static utils.Constants.UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE;
+
+class FetchHandlerTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+    @TempDir
+    Path dir;
+    private LogManager logManager;
+    private FetchHandler handler;
+    // Batches of foo-0 as they sit in the log: offsets 0-1, 2-4 and 5.
+    private byte[][] batches;
+    private byte[] barBatch;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logManager = new LogManager(dir, new LogConfig(1024 * 1024, 1, 4096));
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        builder.visitTopic("foo", FOO);
+        builder.visitPartition(partition(0, FOO));
+        builder.visitPartition(partition(1, FOO));
+        builder.visitTopic("bar", BAR);
+        builder.visitPartition(partition(0, BAR));
+        MetadataCache cache = builder.build(0);
+        handler = new FetchHandler(() -> cache, logManager, pool);
+
+        batches = new byte[][]{
+                bytes(new RecordBatchBuilder(0).add(100, value(1, 10)).add(101, value(2, 10)).build()),
+                bytes(new RecordBatchBuilder(2).add(102, value(3, 500)).add(103, value(4, 500))
+                        .add(104, value(5, 500)).build()),
+                bytes(new RecordBatchBuilder(5).add(105, value(6, 10)).build())};
+        PartitionLog log = logManager.getOrCreateLog("foo", 0);
+        for (byte[] batch : batches) log.append(ByteBuffer.wrap(batch.clone()), 0);
+        barBatch = bytes(new RecordBatchBuilder(0).add(100, value(7, 10)).build());
+        logManager.getOrCreateLog("bar", 0).append(ByteBuffer.wrap(barBatch.clone()), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logManager.close();
+    }
+
+    @Test
+    void offsetsOutsideTheLogAreOutOfRange() throws IOException {
+        Fetched fetched = fetch((short) 16, 1024 * 1024, topic(FOO, "foo",
+                partition(0, 7, 1024), partition(0, 6, 1024), partition(0, -1, 1024), partition(0, 2, 1024)));
+        List<FetchResponseData.PartitionData> partitions = fetched.response.responses().get(0).partitions();
+
+        assertEquals(OFFSET_OUT_OF_RANGE_ERROR_CODE, partitions.get(0).errorCode());
+        assertEquals(6, partitions.get(0).highWatermark());
+        assertEquals(0, partitions.get(1).errorCode(), "the log end offset is a valid, empty fetch");
+        assertEquals(6, partitions.get(1).highWatermark());
+        assertEquals(0, partitions.get(1).logStartOffset());
+        assertEquals(OFFSET_OUT_OF_RANGE_ERROR_CODE, partitions.get(2).errorCode());
+        assertEquals(0, partitions.get(3).errorCode());
+        assertTrue(fetched.contains(batches[1]), "a fetch inside the batch returns the whole batch");
+        assertFalse(fetched.contains(batches[0]));
+    }
+
+    @Test
+    void topicsAreNamedBeforeVersion13AndIdentifiedByIdFromIt() throws IOException {
+        Fetched byName = fetch((short) 12, 1024 * 1024,
+                topic(null, "foo", partition(0, 0, 1024 * 1024), partition(2, 0, 1024)),
+                topic(null, "baz", partition(0, 0, 1024)));
+        FetchResponseData.FetchableTopicResponse foo = byName.response.responses().get(0);
+        assertEquals("foo", foo.topic());
+        assertEquals(0, foo.partitions().get(0).errorCode());
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE, foo.partitions().get(1).errorCode());
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE,
+                byName.response.responses().get(1).partitions().get(0).errorCode());
+        for (byte[] batch : batches) assertTrue(byName.contains(batch));
+
+        UUID unknown = new UUID(0x4000L << 48 | 9, 0x8000_0000_0000_0000L | 9);
+        Fetched byId = fetch((short) 13, 1024 * 1024,
+                topic(BAR, null, partition(0, 0, 1024)),
+                topic(unknown, "foo", partition(0, 0, 1024)));
+        FetchResponseData.FetchableTopicResponse bar = byId.response.responses().get(0);
+        assertEquals(BAR, bar.topicId());
+        assertEquals("", bar.topic(), "v13 responses carry the id only");
+        assertEquals(0, bar.partitions().get(0).errorCode());
+        assertEquals(1, bar.partitions().get(0).highWatermark());
+        assertTrue(byId.contains(barBatch));
+        assertEquals(UNKNOWN_TOPIC_ID_ERROR_CODE, byId.response.responses().get(1).partitions().get(0).errorCode());
+        assertFalse(byId.contains(batches[0]), "the name is ignored from v13 on");
+    }
+
+    @Test
+    void oversizedFirstBatchIsReturnedWholeOnlyForTheFirstPartition() throws IOException {
+        int small = batches[0].length + 10;
+        assertTrue(batches[1].length > small);
+
+        // The first partition with data gets its first batch whatever the limits.
+        Fetched fetched = fetch((short) 16, small,
+                topic(FOO, "foo", partition(0, 2, 100), partition(1, 0, 1024)),
+                topic(BAR, "bar", partition(0, 0, 1024)));
+        assertTrue(fetched.contains(batches[1]));
+        assertFalse(fetched.contains(batches[2]), "batches after the oversized one stay within the limits");
+        assertEquals(0, fetched.response.responses().get(1).partitions().get(0).errorCode());
+        assertFalse(fetched.contains(barBatch), "the response limit is used up");
+
+        // Once a partition returned data, the others are held to the remaining bytes.
+        fetched = fetch((short) 16, small, topic(FOO, "foo", partition(0, 0, small), partition(0, 2, small)));
+        assertTrue(fetched.contains(batches[0]));
+        assertFalse(fetched.contains(batches[1]));
+
+        // A partition limit alone does not hold back the first batch either.
+        fetched = fetch((short) 16, 1024 * 1024, topic(FOO, "foo", partition(0, 2, 1)));
+        assertTrue(fetched.contains(batches[1]));
+        assertFalse(fetched.contains(batches[2]));
+    }
+
+    private Fetched fetch(short version, int maxBytes, FetchTopic... topics) throws IOException {
+        FetchRequestData body = new FetchRequestData().setMaxBytes(maxBytes).setTopics(List.of(topics));
+        Send send = handler.handle(new KafkaRequest(0, 42, ApiMessageType.FETCH.apiKey(), version, "test", body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (!send.completed()) send.writeTo(channel);
+        send.release();
+
+        byte[] wire = out.toByteArray();
+        ByteBuffer buf = ByteBuffer.wrap(wire);
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(42, buf.getInt());
+        if (version >= 12) assertEquals(0, buf.get()); // response header tags
+        FetchResponseData response = new FetchResponseData(buf, version);
+        assertFalse(buf.hasRemaining());
+        return new Fetched(response, wire);
+    }
+
+    /** A decoded response and the raw bytes it was read from, which hold the record data. */
+    private record Fetched(FetchResponseData response, byte[] wire) {
+        boolean contains(byte[] batch) {
+            for (int i = 0; i + batch.length <= wire.length; i++) {
+                if (Arrays.equals(wire, i, i + batch.length, batch, 0, batch.length)) return true;
+            }
+            return false;
+        }
+    }
+
+    private static FetchTopic topic(UUID topicId, String name, FetchPartition... partitions) {
+        FetchTopic topic = new FetchTopic().setPartitions(List.of(partitions));
+        if (topicId != null) topic.setTopicId(topicId);
+        if (name != null) topic.setTopic(name);
+        return topic;
+    }
+
+    private static FetchPartition partition(int partition, long fetchOffset, int maxBytes) {
+        return new FetchPartition().setPartition(partition).setFetchOffset(fetchOffset).setPartitionMaxBytes(maxBytes);
+    }
+
+    private static PartitionData partition(int partitionId, UUID topicId) {
+        return new PartitionData(partitionId, topicId, new int[]{1}, new int[]{1}, PartitionData.NO_REPLICAS,
+                PartitionData.NO_REPLICAS, PartitionData.NO_DIRECTORIES, 1, 0, 0);
+    }
+
+    private static byte[] value(int fill, int length) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) fill);
+        return value;
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+}
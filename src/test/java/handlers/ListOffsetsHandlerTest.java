@@ -0,0 +1,160 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import network.Send;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import processors.MetadataCacheBuilder;
+import protocol.message.ApiMessageType;
+import protocol.message.ListOffsetsRequestData;
+import protocol.message.ListOffsetsRequestData.ListOffsetsPartition;
+import protocol.message.ListOffsetsRequestData.ListOffsetsTopic;
+import protocol.message.ListOffsetsResponseData;
+import protocol.message.ListOffsetsResponseData.ListOffsetsPartitionResponse;
+import storage.LogConfig;
+import storage.LogManager;
+import storage.PartitionLog;
+import utils.BufferPool;
+import utils.RecordBatchBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static utils.Constants.UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE;
+
+class ListOffsetsHandlerTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final short VERSION = 9;
+    // One batch per segment.
+    private static final LogConfig CONFIG = new LogConfig(100, 1, 4096);
+
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+    @TempDir
+    Path dir;
+    private MetadataCache cache;
+    private LogManager logManager;
+    private ListOffsetsHandler handler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        builder.visitTopic("foo", FOO);
+        builder.visitPartition(partition(0));
+        builder.visitPartition(partition(1));
+        cache = builder.build(0);
+        open();
+
+        // Segment timestamps are not in order: the second one holds late records.
+        PartitionLog log = logManager.getOrCreateLog("foo", 0);
+        log.append(batch(1000, 1010, 1020), 0);
+        log.append(batch(900, 905, 910), 0);
+        log.append(batch(1100, 1110, 1120), 0);
+        log.append(batch(1050, 1060, 1070), 0);
+        try (Stream<Path> files = Files.list(dir.resolve("foo-0"))) {
+            assertEquals(4, files.filter(p -> p.toString().endsWith(".log")).count());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        logManager.close();
+    }
+
+    @Test
+    void specialTimestampsResolveToTheLogBoundaries() throws IOException {
+        List<ListOffsetsPartitionResponse> responses = listOffsets(0, -1, -2, -3, -4, -5, -6);
+
+        assertOffset(-1, 12, responses.get(0));
+        assertOffset(-1, 0, responses.get(1));
+        assertOffset(1120, 8, responses.get(2));
+        assertOffset(-1, 0, responses.get(3));
+        assertOffset(-1, -1, responses.get(4));
+        assertOffset(-1, -1, responses.get(5));
+        for (ListOffsetsPartitionResponse response : responses) assertEquals(0, response.errorCode());
+    }
+
+    @Test
+    void partitionWithoutALogIsAnEmptyLog() throws IOException {
+        List<ListOffsetsPartitionResponse> responses = listOffsets(1, -1, -2, -3, 1000);
+
+        assertOffset(-1, 0, responses.get(0));
+        assertOffset(-1, 0, responses.get(1));
+        assertOffset(-1, -1, responses.get(2));
+        assertOffset(-1, -1, responses.get(3));
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE, listOffsets(2, -1).get(0).errorCode());
+    }
+
+    @Test
+    void timestampLookupFindsTheFirstOffsetAtOrAfterIt() throws IOException {
+        for (int reopen = 0; reopen < 2; reopen++) {
+            List<ListOffsetsPartitionResponse> responses = listOffsets(0, 0, 905, 1015, 1040, 1065, 1115, 1121);
+
+            assertOffset(1000, 0, responses.get(0));
+            assertOffset(1000, 0, responses.get(1));
+            assertOffset(1020, 2, responses.get(2));
+            // Offset 9 has 1050, but offset 6 comes first with 1100.
+            assertOffset(1100, 6, responses.get(3));
+            assertOffset(1100, 6, responses.get(4));
+            assertOffset(1120, 8, responses.get(5));
+            assertOffset(-1, -1, responses.get(6));
+
+            // Sealed segments are searched through their read-only indexes after a restart.
+            logManager.close();
+            open();
+        }
+    }
+
+    private void open() {
+        logManager = new LogManager(dir, CONFIG);
+        handler = new ListOffsetsHandler(() -> cache, logManager, pool);
+    }
+
+    private List<ListOffsetsPartitionResponse> listOffsets(int partition, long... timestamps) throws IOException {
+        ListOffsetsTopic topic = new ListOffsetsTopic().setName("foo").setPartitions(
+                Arrays.stream(timestamps).mapToObj(timestamp -> new ListOffsetsPartition()
+                        .setPartitionIndex(partition).setTimestamp(timestamp)).toList());
+        ListOffsetsRequestData body = new ListOffsetsRequestData().setReplicaId(-1).setTopics(List.of(topic));
+        Send send = handler.handle(new KafkaRequest(0, 42, ApiMessageType.LIST_OFFSETS.apiKey(), VERSION, "test", body));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (!send.completed()) send.writeTo(channel);
+        send.release();
+
+        ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(42, buf.getInt());
+        assertEquals(0, buf.get()); // response header tags
+        return new ListOffsetsResponseData(buf, VERSION).topics().get(0).partitions();
+    }
+
+    private static void assertOffset(long timestamp, long offset, ListOffsetsPartitionResponse response) {
+        assertEquals(timestamp, response.timestamp(), "timestamp of " + response);
+        assertEquals(offset, response.offset(), "offset of " + response);
+        assertEquals(-1, response.leaderEpoch());
+    }
+
+    private static ByteBuffer batch(long... timestamps) {
+        RecordBatchBuilder batch = new RecordBatchBuilder(0);
+        for (long timestamp : timestamps) batch.add(timestamp, new byte[]{1});
+        return batch.build();
+    }
+
+    private static PartitionData partition(int partitionId) {
+        return new PartitionData(partitionId, FOO, new int[]{1}, new int[]{1}, PartitionData.NO_REPLICAS,
+                PartitionData.NO_REPLICAS, PartitionData.NO_DIRECTORIES, 1, 0, 0);
+    }
+}
@@ -0,0 +1,168 @@
+package handlers;
+
+import dto.KafkaRequest;
+import dto.MetadataCache;
+import dto.PartitionData;
+import network.Send;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import processors.MetadataCacheBuilder;
+import protocol.message.ApiMessageType;
+import protocol.message.ProduceRequestData;
+import protocol.message.ProduceRequestData.PartitionProduceData;
+import protocol.message.ProduceRequestData.TopicProduceData;
+import protocol.message.ProduceResponseData;
+import protocol.message.ProduceResponseData.PartitionProduceResponse;
+import storage.LogConfig;
+import storage.LogManager;
+import storage.PartitionLog;
+import utils.BufferPool;
+import utils.RecordBatchBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static utils.Constants.CORRUPT_MESSAGE_ERROR_CODE;
+import static utils.Constants.INVALID_REQUIRED_ACKS_ERROR_CODE;
+import static utils.Constants.UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE;
+
+class ProduceHandlerTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final short VERSION = 11;
+
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+    @TempDir
+    Path dir;
+    private LogManager logManager;
+    private ProduceHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        logManager = new LogManager(dir, new LogConfig(1024 * 1024, 1, 4096));
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        builder.visitTopic("foo", FOO);
+        builder.visitPartition(partition(0, 4));
+        builder.visitPartition(partition(1, 0));
+        MetadataCache cache = builder.build(0);
+        handler = new ProduceHandler(() -> cache, logManager, pool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logManager.close();
+    }
+
+    @Test
+    void acksZeroAppendsWithoutAResponse() throws IOException {
+        Send send = handler.handle(request((short) 0, 7, topic("foo", data(0, batch(2)))));
+        assertSame(Send.NONE, send);
+        assertEquals(2, logManager.log("foo", 0).logEndOffset());
+    }
+
+    @Test
+    void acksOneAnswersWithTheBaseOffsetsBeforeAnyFsync() throws IOException {
+        produce((short) 1, topic("foo", data(0, batch(2))));
+        List<PartitionProduceResponse> responses = produce((short) 1,
+                topic("foo", data(0, batch(3)), data(1, batch(1)), data(2, batch(1))),
+                topic("bar", data(0, batch(1))));
+
+        assertEquals(0, responses.get(0).errorCode());
+        assertEquals(2, responses.get(0).baseOffset());
+        assertEquals(0, responses.get(1).baseOffset());
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE, responses.get(2).errorCode());
+        assertEquals(-1, responses.get(2).baseOffset());
+        assertEquals(UNKNOWN_TOPIC_OR_PARTITION_ERROR_CODE, responses.get(3).errorCode());
+
+        PartitionLog log = logManager.log("foo", 0);
+        assertEquals(5, log.logEndOffset());
+        assertEquals(0, log.flushedOffset(), "acks=1 does not wait for the disk");
+        assertNull(logManager.log("foo", 2));
+    }
+
+    @Test
+    void acksAllFlushesEveryPartitionBeforeAnswering() throws IOException {
+        List<PartitionProduceResponse> responses = produce((short) -1,
+                topic("foo", data(0, batch(3)), data(1, batch(2))));
+
+        assertEquals(0, responses.get(0).errorCode());
+        assertEquals(0, responses.get(1).errorCode());
+        assertEquals(3, logManager.log("foo", 0).flushedOffset());
+        assertEquals(2, logManager.log("foo", 1).flushedOffset());
+    }
+
+    @Test
+    void invalidAcksAreRejectedWithoutAppending() throws IOException {
+        for (short acks : new short[]{2, -2}) {
+            List<PartitionProduceResponse> responses = produce(acks, topic("foo", data(0, batch(1)), data(1, batch(1))));
+            for (PartitionProduceResponse response : responses) {
+                assertEquals(INVALID_REQUIRED_ACKS_ERROR_CODE, response.errorCode());
+                assertEquals(-1, response.baseOffset());
+            }
+        }
+        assertNull(logManager.log("foo", 0));
+    }
+
+    @Test
+    void malformedBatchesAreRejectedPerPartition() throws IOException {
+        ByteBuffer torn = batch(2);
+        torn.limit(torn.limit() - 1);
+        List<PartitionProduceResponse> responses = produce((short) 1,
+                topic("foo", data(0, torn), data(1, batch(1))));
+
+        assertEquals(CORRUPT_MESSAGE_ERROR_CODE, responses.get(0).errorCode());
+        assertEquals(0, responses.get(1).errorCode());
+        assertEquals(0, logManager.log("foo", 0).logEndOffset());
+    }
+
+    /** Produces and returns the partition responses of all topics, in request order. */
+    private List<PartitionProduceResponse> produce(short acks, TopicProduceData... topics) throws IOException {
+        Send send = handler.handle(request(acks, 42, topics));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (!send.completed()) send.writeTo(channel);
+        send.release();
+
+        ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        assertEquals(42, buf.getInt());
+        assertEquals(0, buf.get()); // response header tags
+        ProduceResponseData response = new ProduceResponseData(buf, VERSION);
+        return response.responses().stream().flatMap(topic -> topic.partitionResponses().stream()).toList();
+    }
+
+    private static KafkaRequest request(short acks, int correlationId, TopicProduceData... topics) {
+        ProduceRequestData body = new ProduceRequestData().setAcks(acks).setTimeoutMs(1000)
+                .setTopicData(List.of(topics));
+        return new KafkaRequest(0, correlationId, ApiMessageType.PRODUCE.apiKey(), VERSION, "test", body);
+    }
+
+    private static TopicProduceData topic(String name, PartitionProduceData... partitions) {
+        return new TopicProduceData().setName(name).setPartitionData(List.of(partitions));
+    }
+
+    private static PartitionProduceData data(int partition, ByteBuffer records) {
+        return new PartitionProduceData().setIndex(partition).setRecords(records);
+    }
+
+    private static ByteBuffer batch(int records) {
+        RecordBatchBuilder batch = new RecordBatchBuilder(0);
+        for (int i = 0; i < records; i++) batch.add(1000 + i, new byte[]{(byte) i});
+        return batch.build();
+    }
+
+    private static PartitionData partition(int partitionId, int leaderEpoch) {
+        return new PartitionData(partitionId, FOO, new int[]{1}, new int[]{1}, PartitionData.NO_REPLICAS,
+                PartitionData.NO_REPLICAS, PartitionData.NO_DIRECTORIES, 1, leaderEpoch, 0);
+    }
+}
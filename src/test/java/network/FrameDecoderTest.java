@@ -0,0 +1,126 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+import utils.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameDecoderTest {
+    @Test
+    void framesSplitAcrossReadsAreAssembledInOneReusedBuffer() throws IOException {
+        byte[] stream = frames(frame(100, 1), frame(300, 2));
+        FrameDecoder decoder = new FrameDecoder();
+        Trickle channel = new Trickle(stream, 7);
+
+        ByteBuffer first = readFrame(decoder, channel);
+        assertFrame(100, 1, first);
+        ByteBuffer second = readFrame(decoder, channel);
+        assertFrame(300, 2, second);
+        assertSame(first.array(), second.array(), "small frames share the receive buffer");
+        assertThrows(EOFException.class, () -> decoder.read(channel));
+    }
+
+    @Test
+    void bufferGrownForALargeFrameIsDroppedAfterIt() throws IOException {
+        int large = Config.FRAME_BUFFER_RETAIN_BYTES + 1;
+        FrameDecoder decoder = new FrameDecoder();
+        ByteArrayInputStream in = new ByteArrayInputStream(frames(frame(large, 3), frame(10, 4), frame(20, 5)));
+
+        ByteBuffer frame = decoder.read(in);
+        assertFrame(large, 3, frame);
+        assertTrue(frame.capacity() > Config.FRAME_BUFFER_RETAIN_BYTES);
+
+        frame = decoder.read(in);
+        assertFrame(10, 4, frame);
+        assertEquals(512, frame.capacity(), "back to the initial capacity");
+        byte[] small = frame.array();
+        assertSame(small, decoder.read(in).array());
+    }
+
+    @Test
+    void trimKeepsAFrameThatIsStillBeingRead() throws IOException {
+        int large = Config.FRAME_BUFFER_RETAIN_BYTES + 1;
+        byte[] stream = frame(large, 6);
+        FrameDecoder decoder = new FrameDecoder();
+        Trickle channel = new Trickle(stream, stream.length / 2);
+
+        assertNull(decoder.read(channel));
+        decoder.trim();
+        assertFrame(large, 6, readFrame(decoder, channel));
+    }
+
+    @Test
+    void rejectsFramesLargerThanTheRequestLimit() {
+        ByteBuffer size = ByteBuffer.allocate(4).putInt(0, Config.MAX_REQUEST_SIZE + 1);
+        assertThrows(IOException.class, () -> new FrameDecoder().read(new ByteArrayInputStream(size.array())));
+        size.putInt(0, -1);
+        assertThrows(IOException.class, () -> new FrameDecoder().read(new ByteArrayInputStream(size.array())));
+    }
+
+    private static ByteBuffer readFrame(FrameDecoder decoder, ReadableByteChannel channel) throws IOException {
+        ByteBuffer frame;
+        while ((frame = decoder.read(channel)) == null) {
+        }
+        return frame;
+    }
+
+    private static void assertFrame(int size, int fill, ByteBuffer frame) {
+        assertEquals(size, frame.remaining());
+        for (int i = frame.position(); i < frame.limit(); i++) assertEquals((byte) fill, frame.get(i));
+    }
+
+    private static byte[] frame(int size, int fill) {
+        ByteBuffer frame = ByteBuffer.allocate(4 + size).putInt(size);
+        while (frame.hasRemaining()) frame.put((byte) fill);
+        return frame.array();
+    }
+
+    private static byte[] frames(byte[]... frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) out.writeBytes(frame);
+        return out.toByteArray();
+    }
+
+    /** A non-blocking channel that has at most {@code chunk} bytes available per read. */
+    private static final class Trickle implements ReadableByteChannel {
+        private final ReadableByteChannel in;
+        private final int chunk;
+
+        Trickle(byte[] bytes, int chunk) {
+            this.in = Channels.newChannel(new ByteArrayInputStream(bytes));
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int limit = dst.limit();
+            dst.limit(Math.min(limit, dst.position() + chunk));
+            try {
+                return in.read(dst);
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package network;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RecordBatchBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SendTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordBytesGoFromTheSegmentToTheSocketUnchanged() throws Exception {
+        // Enough batches that the socket takes the region over many partial transfers.
+        ByteBuffer[] batches = new ByteBuffer[128];
+        for (int i = 0; i < batches.length; i++) {
+            RecordBatchBuilder batch = new RecordBatchBuilder(i * 50L);
+            for (int r = 0; r < 50; r++) batch.add(1000 + r, value(i, r));
+            batches[i] = batch.build();
+        }
+        byte[] segment = bytes(RecordBatchBuilder.concat(batches));
+        Path file = dir.resolve("00000000000000000000.log");
+        Files.write(file, segment);
+        // The fetch starts at the second batch and stops short of the last one.
+        int start = batches[0].remaining();
+        int count = segment.length - start - batches[batches.length - 1].remaining();
+
+        // Size, correlation id and a stand-in for the partition metadata; the region follows, then tagged fields.
+        ByteBuffer header = ByteBuffer.allocate(16).putInt(12 + count + 1).putInt(7).putLong(count).flip();
+        ByteBuffer trailer = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             ServerSocketChannel server = ServerSocketChannel.open()) {
+            Send send = Send.builder().add(header).add(new FileRegion(channel, start, count)).add(trailer).build();
+            assertEquals(16 + count + 1, send.size());
+
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            SocketChannel client = SocketChannel.open();
+            client.setOption(StandardSocketOptions.SO_SNDBUF, 64 * 1024);
+            client.connect(server.getLocalAddress());
+            client.configureBlocking(false);
+            try (client; SocketChannel peer = server.accept()) {
+                send.writeTo(client);
+                assertFalse(send.completed(), "the socket cannot take the whole region at once");
+
+                CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> readAll(peer, send.size()));
+                while (!send.completed()) send.writeTo(client);
+                byte[] wire = received.get(30, TimeUnit.SECONDS);
+
+                ByteBuffer expected = ByteBuffer.allocate((int) send.size())
+                        .putInt(12 + count + 1).putInt(7).putLong(count).put(segment, start, count).put((byte) 0);
+                assertArrayEquals(expected.array(), wire);
+            }
+        }
+    }
+
+    @Test
+    void truncatedSegmentFailsTheSend() throws IOException {
+        Path file = dir.resolve("00000000000000000000.log");
+        Files.write(file, new byte[100]);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileRegion region = new FileRegion(channel, 50, 50);
+            channel.truncate(60);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            region.transferTo(target);
+            assertThrows(IOException.class, () -> region.transferTo(target));
+            assertEquals(10, out.size());
+        }
+    }
+
+    private static byte[] readAll(SocketChannel peer, long size) {
+        try (InputStream in = peer.socket().getInputStream()) {
+            return in.readNBytes((int) size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] value(int batch, int record) {
+        byte[] value = new byte[1000];
+        for (int i = 0; i < value.length; i++) value[i] = (byte) (batch * 31 + record * 7 + i);
+        return value;
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,160 @@
+package network;
+
+import dto.KafkaRequest;
+import handlers.ApiHandler;
+import logging.WireTracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import processors.RequestProcessor;
+import processors.ResponseProcessor;
+import protocol.MessageWriter;
+import protocol.message.ApiMessageType;
+import protocol.message.DescribeTopicPartitionsRequestData;
+import utils.BufferPool;
+import utils.Config;
+import utils.PooledBuffer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SocketServerTest {
+    private static final int MAX_IN_FLIGHT = Config.MAX_INFLIGHT_REQUESTS_PER_CONNECTION;
+
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+    private final BlockingQueue<Integer> started = new LinkedBlockingQueue<>();
+    private final Map<Integer, CountDownLatch> gates = new ConcurrentHashMap<>();
+    private SocketServer server;
+    private Socket socket;
+
+    @BeforeEach
+    void start() throws IOException {
+        ResponseProcessor responses = new ResponseProcessor(pool, List.of(new GatedHandler()));
+        server = new SocketServer(0, 1, 16, MAX_IN_FLIGHT, new RequestProcessor(), responses);
+        server.startup();
+        socket = new Socket();
+        socket.connect(new InetSocketAddress("localhost", server.boundPort()));
+        socket.setSoTimeout(5000);
+    }
+
+    @AfterEach
+    void stop() throws IOException, InterruptedException {
+        gates.values().forEach(CountDownLatch::countDown);
+        socket.close();
+        server.shutdown();
+        server.awaitShutdown();
+    }
+
+    @Test
+    void responsesFinishedOutOfOrderGoOutInRequestOrder() throws Exception {
+        send(1, 2, 3, 4, 5);
+        for (int i = 0; i < 5; i++) take(started);
+
+        for (int correlationId : new int[]{5, 3, 4, 2}) gate(correlationId).countDown();
+        socket.setSoTimeout(300);
+        assertThrows(SocketTimeoutException.class, () -> socket.getInputStream().read(),
+                "nothing is written while the first request is still being handled");
+
+        socket.setSoTimeout(5000);
+        gate(1).countDown();
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        for (int correlationId = 1; correlationId <= 5; correlationId++) assertEquals(correlationId, readResponse(in));
+    }
+
+    @Test
+    void readingPausesAtTheInFlightCap() throws Exception {
+        send(1, 2, 3, 4, 5, 6, 7);
+        for (int i = 0; i < MAX_IN_FLIGHT; i++) take(started);
+        assertNull(started.poll(300, TimeUnit.MILLISECONDS), "the rest wait until a response is written");
+
+        gate(2).countDown();
+        assertNull(started.poll(300, TimeUnit.MILLISECONDS), "a finished request behind the head keeps its slot");
+
+        gate(1).countDown();
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(1, readResponse(in));
+        assertEquals(2, readResponse(in));
+        assertEquals(Set.of(6, 7), Set.of(take(started), take(started)));
+
+        for (int correlationId = 3; correlationId <= 7; correlationId++) gate(correlationId).countDown();
+        for (int correlationId = 3; correlationId <= 7; correlationId++) assertEquals(correlationId, readResponse(in));
+    }
+
+    private void send(int... correlationIds) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        for (int correlationId : correlationIds) out.write(request(correlationId));
+        out.flush();
+    }
+
+    /** A DescribeTopicPartitions v0 request frame: header v2 with a client id and no tagged fields. */
+    private byte[] request(int correlationId) {
+        MessageWriter w = new MessageWriter(pool, 0, WireTracer.OFF);
+        new DescribeTopicPartitionsRequestData().write(w, (short) 0);
+        PooledBuffer encoded = w.completeBuffer();
+        ByteBuffer body = encoded.buffer();
+        body.getInt();
+
+        ByteBuffer frame = ByteBuffer.allocate(4 + 2 + 2 + 4 + 2 + 4 + 1 + body.remaining());
+        frame.putInt(frame.capacity() - 4)
+                .putShort(ApiMessageType.DESCRIBE_TOPIC_PARTITIONS.apiKey())
+                .putShort((short) 0)
+                .putInt(correlationId)
+                .putShort((short) 4).put(new byte[]{'t', 'e', 's', 't'})
+                .put((byte) 0)
+                .put(body);
+        encoded.release();
+        return frame.array();
+    }
+
+    private static int readResponse(DataInputStream in) throws IOException {
+        assertEquals(4, in.readInt());
+        return in.readInt();
+    }
+
+    private static int take(BlockingQueue<Integer> queue) throws InterruptedException {
+        Integer value = queue.poll(5, TimeUnit.SECONDS);
+        if (value == null) throw new AssertionError("timed out");
+        return value;
+    }
+
+    private CountDownLatch gate(int correlationId) {
+        return gates.computeIfAbsent(correlationId, id -> new CountDownLatch(1));
+    }
+
+    /** Answers with just the correlation id, once the test opens the request's gate. */
+    private final class GatedHandler implements ApiHandler {
+        @Override
+        public ApiMessageType apiType() {
+            return ApiMessageType.DESCRIBE_TOPIC_PARTITIONS;
+        }
+
+        @Override
+        public Send handle(KafkaRequest request) {
+            int correlationId = request.getCorrelationId();
+            started.add(correlationId);
+            try {
+                gate(correlationId).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Send.of(ByteBuffer.allocate(8).putInt(4).putInt(correlationId).flip());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package processors;
+
+import dto.MetadataCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RecordBatchBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static processors.MetadataRecords.*;
+
+class ClusterMetadataProcessorTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+
+    private final ClusterMetadataProcessor processor = new ClusterMetadataProcessor(1, Integer.MAX_VALUE);
+
+    @Test
+    void parallelReplayMatchesSequentialReplay() {
+        // Enough batches for several fork/join tasks, with transactions spanning task boundaries.
+        List<ByteBuffer> batches = new ArrayList<>();
+        long offset = 0;
+        for (int t = 0; t < 400; t++) {
+            UUID topicId = new UUID(0x4000L << 48 | 100 + t, 0x8000_0000_0000_0000L | t);
+            String name = String.format("topic-%03d", t);
+            if (t % 7 == 0) {
+                batches.add(batch(offset, beginTransaction(), topic(name, topicId)));
+                batches.add(batch(offset + 2, partition(0, topicId, 1, 2),
+                        t % 2 == 0 ? abortTransaction() : endTransaction()));
+                offset += 4;
+            } else {
+                batches.add(batch(offset, topic(name, topicId), partition(0, topicId, 1, 2)));
+                batches.add(controlBatch(offset + 2));
+                batches.add(batch(offset + 3, leaderChange(0, topicId, 2)));
+                offset += 4;
+            }
+        }
+        ByteBuffer log = RecordBatchBuilder.concat(batches.toArray(ByteBuffer[]::new));
+
+        MetadataCache sequential = replay(log);
+        MetadataCache parallel = replay(new ClusterMetadataProcessor(4, Integer.MAX_VALUE), log);
+
+        assertEquals(400 - 29, sequential.byName().size());
+        assertEquals(sequential.byName(), parallel.byName());
+        assertEquals(sequential.lastOffset(), parallel.lastOffset());
+        assertEquals(offset - 1, parallel.lastOffset());
+    }
+
+    @Test
+    void loadReturnsWhereFollowingTheLogContinues(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("00000000000000000000.log");
+        ByteBuffer first = batch(0, topic("foo", FOO), partition(0, FOO, 1));
+        ByteBuffer second = batch(3, beginTransaction(), topic("bar", BAR));
+        Files.write(log, bytes(RecordBatchBuilder.concat(first, controlBatch(2))));
+        Files.write(log, bytes(second.duplicate().limit(30)), StandardOpenOption.APPEND);
+
+        ClusterMetadataProcessor.LoadedMetadata loaded = processor.loadMetadataCache(log.toString());
+        assertEquals(Set.of("foo"), loaded.cache().byName().keySet());
+        assertEquals(first.remaining() + controlBatch(2).remaining(), loaded.position(), "before the torn batch");
+
+        // The rest of the batch opens a transaction; the position stays at the batch it began in.
+        Files.write(log, bytes(RecordBatchBuilder.concat(first, controlBatch(2), second)));
+        loaded = processor.loadMetadataCache(log.toString());
+        assertEquals(2, loaded.cache().lastOffset());
+        assertEquals(first.remaining() + controlBatch(2).remaining(), loaded.position());
+    }
+
+    private MetadataCache replay(ByteBuffer log) {
+        return replay(processor, log);
+    }
+
+    private static MetadataCache replay(ClusterMetadataProcessor processor, ByteBuffer log) {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        return builder.build(processor.replay(log, builder, 0).lastOffset());
+    }
+
+    static byte[] bytes(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
+    }
+}
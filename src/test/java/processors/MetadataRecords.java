@@ -0,0 +1,104 @@
+package processors;
+
+import utils.ByteUtils;
+import utils.RecordBatchBuilder;
+import utils.RecordType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/** Encodes KRaft metadata record values and batches of them, for replay tests. */
+final class MetadataRecords {
+    private MetadataRecords() {
+    }
+
+    static ByteBuffer batch(long baseOffset, byte[]... values) {
+        RecordBatchBuilder builder = new RecordBatchBuilder(baseOffset);
+        for (byte[] value : values) builder.add(1_700_000_000_000L, value);
+        return builder.build();
+    }
+
+    /** A leader change control batch; its record is not a metadata record. */
+    static ByteBuffer controlBatch(long baseOffset) {
+        return new RecordBatchBuilder(baseOffset).attributes(RecordBatchBuilder.CONTROL)
+                .add(1_700_000_000_000L, new byte[]{0, 0, 0, 2}, new byte[]{0, 0, 0, 0, 0, 1, 0, 0, 0, 7})
+                .build();
+    }
+
+    static byte[] topic(String name, UUID topicId) {
+        ByteBuffer value = header(RecordType.TOPIC_RECORD, 0);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteUtils.writeUnsignedVarInt(bytes.length + 1, value);
+        value.put(bytes);
+        putUuid(topicId, value);
+        return end(value);
+    }
+
+    static byte[] removeTopic(UUID topicId) {
+        ByteBuffer value = header(RecordType.REMOVE_TOPIC_RECORD, 0);
+        putUuid(topicId, value);
+        return end(value);
+    }
+
+    /** A v0 partition record with every replica in sync and the first one leading. */
+    static byte[] partition(int partitionId, UUID topicId, int... replicas) {
+        ByteBuffer value = header(RecordType.PARTITION_RECORD, 0);
+        value.putInt(partitionId);
+        putUuid(topicId, value);
+        putIntArray(replicas, value);
+        putIntArray(replicas, value);
+        putIntArray(new int[0], value);
+        putIntArray(new int[0], value);
+        value.putInt(replicas[0]).putInt(0).putInt(0);
+        return end(value);
+    }
+
+    /** A partition change that moves leadership to {@code leader}. */
+    static byte[] leaderChange(int partitionId, UUID topicId, int leader) {
+        ByteBuffer value = header(RecordType.PARTITION_CHANGE_RECORD, 0);
+        value.putInt(partitionId);
+        putUuid(topicId, value);
+        ByteUtils.writeUnsignedVarInt(1, value);
+        ByteUtils.writeUnsignedVarInt(1, value); // tag 1: leader
+        ByteUtils.writeUnsignedVarInt(4, value);
+        value.putInt(leader);
+        return Arrays.copyOf(value.array(), value.position());
+    }
+
+    /** The transaction name is an optional tagged field, left out. */
+    static byte[] beginTransaction() {
+        return end(header(RecordType.BEGIN_TRANSACTION_RECORD, 0));
+    }
+
+    static byte[] endTransaction() {
+        return end(header(RecordType.END_TRANSACTION_RECORD, 0));
+    }
+
+    static byte[] abortTransaction() {
+        return end(header(RecordType.ABORT_TRANSACTION_RECORD, 0));
+    }
+
+    private static ByteBuffer header(RecordType type, int version) {
+        ByteBuffer value = ByteBuffer.allocate(256);
+        ByteUtils.writeUnsignedVarInt(1, value); // frame version
+        ByteUtils.writeUnsignedVarInt(type.getType(), value);
+        ByteUtils.writeUnsignedVarInt(version, value);
+        return value;
+    }
+
+    private static byte[] end(ByteBuffer value) {
+        ByteUtils.writeUnsignedVarInt(0, value); // tagged fields
+        return Arrays.copyOf(value.array(), value.position());
+    }
+
+    private static void putUuid(UUID id, ByteBuffer value) {
+        value.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static void putIntArray(int[] values, ByteBuffer value) {
+        ByteUtils.writeUnsignedVarInt(values.length + 1, value);
+        for (int v : values) value.putInt(v);
+    }
+}
@@ -0,0 +1,91 @@
+package processors;
+
+import dto.MetadataCache;
+import dto.PartitionData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataSnapshotTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void retentionOnlyDeletesTheBrokersOwnSnapshots() throws IOException {
+        Set<String> foreign = Set.of("00000000000000000010-0000000001.checkpoint", "00000000000000000003.checkpoint",
+                "00000000000000000000.log", "leader-epoch-checkpoint", "1.kms", "00000000000000000001.kms.tmp");
+        for (String name : foreign) Files.write(dir.resolve(name), new byte[]{1, 2, 3});
+
+        MetadataCache cache = cache();
+        for (long lastOffset : new long[]{4, 9, 19}) MetadataSnapshot.write(dir, cache, lastOffset);
+
+        assertEquals(union(foreign, Set.of("00000000000000000010.kms", "00000000000000000020.kms")), files());
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        assertEquals(20, MetadataSnapshot.loadLatest(dir, builder, 19));
+        assertEquals(cache.byName(), builder.build(19).byName());
+    }
+
+    @Test
+    void snapshotsPastTheEndOfTheLogAreDeleted() throws IOException {
+        MetadataCache cache = cache();
+        MetadataSnapshot.write(dir, cache, 4);
+        MetadataSnapshot.write(dir, cache, 19);
+
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        assertEquals(5, MetadataSnapshot.loadLatest(dir, builder, 10));
+        assertEquals(Set.of("foo", "bar"), builder.build(4).byName().keySet());
+        assertEquals(Set.of("00000000000000000005.kms"), files());
+
+        assertEquals(0, MetadataSnapshot.loadLatest(dir, new MetadataCacheBuilder(), -1));
+        assertTrue(files().isEmpty());
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToAnOlderOne() throws IOException {
+        MetadataCache cache = cache();
+        MetadataSnapshot.write(dir, cache, 4);
+        Path newest = MetadataSnapshot.write(dir, cache, 9);
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(newest, bytes);
+
+        assertEquals(5, MetadataSnapshot.loadLatest(dir, new MetadataCacheBuilder(), 9));
+        assertTrue(Files.exists(newest));
+    }
+
+    private static MetadataCache cache() {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        builder.visitTopic("foo", FOO);
+        builder.visitTopic("bar", BAR);
+        for (int p = 0; p < 3; p++) {
+            builder.visitPartition(new PartitionData(p, FOO, new int[]{1, 2}, new int[]{1}, PartitionData.NO_REPLICAS,
+                    PartitionData.NO_REPLICAS, new long[]{7, 8, 9, 10}, 1, p, p + 1));
+        }
+        builder.visitPartition(new PartitionData(0, BAR, new int[]{3}, new int[]{3}, PartitionData.NO_REPLICAS,
+                new int[]{4}, PartitionData.NO_DIRECTORIES, 3, 0, 0));
+        return builder.build(0);
+    }
+
+    private Set<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).collect(Collectors.toSet());
+        }
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        return Stream.concat(a.stream(), b.stream()).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,110 @@
+package processors;
+
+import dto.MetadataCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.Config;
+import utils.RecordBatchBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static processors.ClusterMetadataProcessorTest.bytes;
+import static processors.MetadataRecords.*;
+
+class MetadataTailerTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+    private static final UUID BAZ = new UUID(0x4000L << 48 | 3, 0x8000_0000_0000_0000L | 3);
+
+    @TempDir
+    Path dir;
+    private MetadataTailer tailer;
+
+    @AfterEach
+    void close() {
+        if (tailer != null) tailer.close();
+    }
+
+    @Test
+    void transactionOpenAtStartupIsAppliedWhenItEnds() throws IOException {
+        Path log = dir.resolve("00000000000000000000.log");
+        write(log, batch(0, topic("foo", FOO), partition(0, FOO, 1)), batch(2, beginTransaction(), topic("bar", BAR)));
+        tailer = start(log);
+        assertEquals(Set.of("foo"), tailer.get().byName().keySet());
+
+        append(log, batch(4, partition(0, BAR, 2), endTransaction()));
+        tailer.poll();
+        assertEquals(Set.of("foo", "bar"), tailer.get().byName().keySet());
+        assertEquals(5, tailer.get().lastOffset());
+
+        append(log, batch(6, partition(1, BAR, 1)));
+        tailer.poll();
+        assertEquals(2, tailer.get().byName().get("bar").size());
+        assertEquals(6, tailer.get().lastOffset());
+    }
+
+    @Test
+    void shrunkLogIsReloadedAndFollowedFromItsEnd() throws IOException {
+        Path log = dir.resolve("00000000000000000000.log");
+        write(log, batch(0, topic("foo", FOO), partition(0, FOO, 1), topic("bar", BAR), partition(0, BAR, 2)));
+        tailer = start(log);
+        assertEquals(Set.of("foo", "bar"), tailer.get().byName().keySet());
+
+        write(log, batch(0, topic("baz", BAZ)));
+        tailer.poll();
+        assertEquals(Set.of(), tailer.get().byName().keySet(), "baz has no partitions yet");
+        assertEquals(0, tailer.get().lastOffset());
+
+        append(log, batch(1, partition(0, BAZ, 3)));
+        tailer.poll();
+        assertEquals(Set.of("baz"), tailer.get().byName().keySet());
+        assertEquals(1, tailer.get().lastOffset());
+    }
+
+    @Test
+    void unchangedTopicsAreSharedWithThePreviousCache() throws IOException {
+        assumeFalse(Config.METADATA_OFF_HEAP, "an off-heap cache hands out views");
+        Path log = dir.resolve("00000000000000000000.log");
+        write(log, batch(0, topic("foo", FOO), partition(0, FOO, 1), topic("bar", BAR), partition(0, BAR, 2, 1)));
+        tailer = start(log);
+        MetadataCache before = tailer.get();
+
+        append(log, batch(4, leaderChange(0, BAR, 1)));
+        tailer.poll();
+        MetadataCache after = tailer.get();
+
+        assertNotSame(before, after);
+        assertSame(before.byName().get("foo"), after.byName().get("foo"));
+        assertSame(before.byUuid().get(FOO), after.byUuid().get(FOO));
+        assertSame(before.describeFragments().get("foo"), after.describeFragments().get("foo"));
+        assertNotSame(before.byName().get("bar"), after.byName().get("bar"));
+        assertEquals(1, after.byName().get("bar").get(0).leader());
+        assertEquals(2, before.byName().get("bar").get(0).leader(), "the previous cache is left as it was");
+    }
+
+    private static MetadataTailer start(Path log) {
+        // Polls are driven by the test; the thread sleeps until close.
+        MetadataTailer tailer = new MetadataTailer(log, new ClusterMetadataProcessor(1, Integer.MAX_VALUE), 3_600_000);
+        tailer.start();
+        return tailer;
+    }
+
+    private static void write(Path log, ByteBuffer... batches) throws IOException {
+        Files.write(log, bytes(RecordBatchBuilder.concat(batches)));
+    }
+
+    private static void append(Path log, ByteBuffer... batches) throws IOException {
+        Files.write(log, bytes(RecordBatchBuilder.concat(batches)), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,96 @@
+package processors;
+
+import dto.MetadataCache;
+import dto.PartitionData;
+import org.junit.jupiter.api.Test;
+import utils.RecordBatchBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static processors.MetadataRecords.*;
+
+class MetadataTransactionTest {
+    private static final UUID FOO = new UUID(0x4000L << 48 | 1, 0x8000_0000_0000_0000L | 1);
+    private static final UUID BAR = new UUID(0x4000L << 48 | 2, 0x8000_0000_0000_0000L | 2);
+    private static final UUID BAZ = new UUID(0x4000L << 48 | 3, 0x8000_0000_0000_0000L | 3);
+
+    private final ClusterMetadataProcessor processor = new ClusterMetadataProcessor(1, Integer.MAX_VALUE);
+
+    @Test
+    void committedTransactionIsAppliedAtItsEnd() {
+        MetadataCache cache = replay(RecordBatchBuilder.concat(
+                batch(0, topic("foo", FOO), partition(0, FOO, 1, 2)),
+                batch(2, beginTransaction(), topic("bar", BAR), partition(0, BAR, 2, 3)),
+                batch(5, partition(1, BAR, 3, 1), leaderChange(0, FOO, 2), endTransaction())));
+
+        assertEquals(Set.of("foo", "bar"), cache.byName().keySet());
+        assertEquals(List.of(0, 1), partitionIds(cache.byName().get("bar")));
+        assertEquals(2, cache.byName().get("foo").get(0).leader());
+        assertEquals(1, cache.byName().get("foo").get(0).leaderEpoch());
+        assertEquals(7, cache.lastOffset());
+    }
+
+    @Test
+    void abortedTransactionIsDropped() {
+        MetadataCache cache = replay(RecordBatchBuilder.concat(
+                batch(0, topic("foo", FOO), partition(0, FOO, 1, 2)),
+                batch(2, beginTransaction(), topic("bar", BAR), partition(0, BAR, 2, 3), removeTopic(FOO)),
+                batch(6, abortTransaction(), topic("baz", BAZ), partition(0, BAZ, 3))));
+
+        assertEquals(Set.of("foo", "baz"), cache.byName().keySet());
+        assertNull(cache.byUuid().get(BAR));
+        assertEquals(8, cache.lastOffset());
+    }
+
+    @Test
+    void openTransactionIsLeftOutAndAppliedOnceItEnds() {
+        ByteBuffer committed = batch(0, topic("foo", FOO), partition(0, FOO, 1));
+        ByteBuffer opened = batch(2, leaderChange(0, FOO, 1), beginTransaction(), topic("bar", BAR));
+        MetadataCache cache = replay(RecordBatchBuilder.concat(committed, opened));
+
+        assertEquals(Set.of("foo"), cache.byName().keySet());
+        assertEquals(1, cache.byName().get("foo").get(0).leaderEpoch());
+        assertEquals(2, cache.lastOffset(), "the cache ends before the transaction");
+
+        // Replaying from the offset after the cache re-reads the transaction from its start.
+        ByteBuffer log = RecordBatchBuilder.concat(committed, opened,
+                batch(5, partition(0, BAR, 2), endTransaction()));
+        MetadataCacheBuilder builder = new MetadataCacheBuilder(cache);
+        long lastOffset = processor.replay(log, builder, cache.lastOffset() + 1).lastOffset();
+        MetadataCache next = builder.build(lastOffset);
+
+        assertEquals(Set.of("foo", "bar"), next.byName().keySet());
+        assertEquals(1, next.byName().get("foo").get(0).leaderEpoch());
+        assertEquals(6, next.lastOffset());
+    }
+
+    @Test
+    void controlBatchesAreSkippedButCountTowardsTheLastOffset() {
+        ClusterMetadataProcessor.BatchPositions batches = processor.replay(RecordBatchBuilder.concat(
+                controlBatch(0),
+                batch(1, topic("foo", FOO), partition(0, FOO, 1)),
+                controlBatch(3)), new MetadataCacheBuilder(), 0);
+
+        assertEquals(1, batches.count());
+        assertEquals(3, batches.lastOffset());
+
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        assertEquals(0, processor.replay(controlBatch(0), builder, 0).lastOffset());
+        assertTrue(builder.isEmpty());
+    }
+
+    private MetadataCache replay(ByteBuffer log) {
+        MetadataCacheBuilder builder = new MetadataCacheBuilder();
+        return builder.build(processor.replay(log, builder, 0).lastOffset());
+    }
+
+    private static List<Integer> partitionIds(List<PartitionData> partitions) {
+        return partitions.stream().map(PartitionData::partitionId).toList();
+    }
+}
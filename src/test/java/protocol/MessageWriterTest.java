@@ -0,0 +1,130 @@
+package protocol;
+
+import logging.WireTracer;
+import network.FileRegion;
+import network.Send;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.BufferPool;
+import utils.ByteUtils;
+import utils.PooledBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageWriterTest {
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+
+    @Test
+    void patchesTheSizeAfterGrowingPastTheHint() {
+        MessageWriter w = new MessageWriter(pool, 0, WireTracer.OFF);
+        for (int i = 0; i < 1000; i++) w.putInt(i);
+        PooledBuffer done = w.completeBuffer();
+        ByteBuffer buf = done.buffer();
+        assertEquals(4 + 4000, buf.remaining());
+        assertEquals(4000, buf.getInt());
+        for (int i = 0; i < 1000; i++) assertEquals(i, buf.getInt());
+        done.release();
+    }
+
+    @Test
+    void shortLengthPrefixIsPatchedInPlace() {
+        MessageWriter w = new MessageWriter(pool, 64, WireTracer.OFF);
+        int mark = w.beginLengthPrefix();
+        w.putBytes(new byte[]{1, 2, 3});
+        w.endLengthPrefix(mark);
+        w.putByte((byte) 9);
+        assertArrayEquals(new byte[]{3, 1, 2, 3, 9}, body(w.completeBuffer()));
+    }
+
+    @Test
+    void longLengthPrefixWidensTheVarintAndShiftsTheValue() {
+        byte[] value = sequence(300);
+        MessageWriter w = new MessageWriter(pool, 0, WireTracer.OFF);
+        w.putByte((byte) 7);
+        int mark = w.beginLengthPrefix();
+        w.putBytes(value);
+        w.endLengthPrefix(mark);
+        w.putByte((byte) 9);
+
+        ByteBuffer expected = ByteBuffer.allocate(1 + 2 + 300 + 1).put((byte) 7);
+        ByteUtils.writeUnsignedVarInt(300, expected);
+        expected.put(value).put((byte) 9);
+        assertArrayEquals(expected.array(), body(w.completeBuffer()));
+    }
+
+    @Test
+    void widenedPrefixGrowsAFullBuffer() {
+        // Size, prefix and value fill a 256-byte buffer exactly, so the wider prefix needs a bigger one.
+        MessageWriter w = new MessageWriter(pool, 0, WireTracer.OFF);
+        int mark = w.beginLengthPrefix();
+        w.putBytes(sequence(251));
+        w.endLengthPrefix(mark);
+        w.putByte((byte) 9);
+
+        byte[] body = body(w.completeBuffer());
+        assertEquals(2 + 251 + 1, body.length);
+        assertEquals((byte) 0xFB, body[0]);
+        assertEquals(1, body[1]);
+        assertArrayEquals(sequence(251), Arrays.copyOfRange(body, 2, 253));
+        assertEquals(9, body[253]);
+    }
+
+    @Test
+    void regionsAndFragmentsAreSentBetweenTheBufferedBytes(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("records");
+        Files.write(file, sequence(500));
+        ByteBuffer small = MessageWriter.encodeFragment(f -> f.putBytes(new byte[]{4, 5, 6}));
+        ByteBuffer large = MessageWriter.encodeFragment(f -> f.putBytes(sequence(2000)));
+        try (FileChannel channel = FileChannel.open(file)) {
+            MessageWriter w = new MessageWriter(pool, 16, WireTracer.OFF);
+            w.putShort((short) 1);
+            w.putRegion(new FileRegion(channel, 100, 200));
+            w.putFragment(small);
+            w.putFragment(large);
+            w.putByte((byte) 2);
+            assertThrows(IllegalStateException.class, () -> new MessageWriter(pool, 0, WireTracer.OFF)
+                    .putRegion(new FileRegion(channel, 0, 1)).completeBuffer());
+
+            Send send = w.complete();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            while (!send.completed()) send.writeTo(target);
+            send.release();
+
+            ByteBuffer expected = ByteBuffer.allocate(4 + 2 + 200 + 3 + 2000 + 1);
+            expected.putInt(expected.capacity() - 4).putShort((short) 1)
+                    .put(sequence(500), 100, 200).put(new byte[]{4, 5, 6}).put(sequence(2000)).put((byte) 2);
+            assertEquals(expected.capacity(), send.size());
+            assertArrayEquals(expected.array(), out.toByteArray());
+        }
+        assertEquals(3, small.remaining());
+        assertEquals(2000, large.remaining());
+    }
+
+    private static byte[] body(PooledBuffer done) {
+        ByteBuffer buf = done.buffer();
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        byte[] body = new byte[buf.remaining()];
+        buf.get(body);
+        done.release();
+        return body;
+    }
+
+    private static byte[] sequence(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) bytes[i] = (byte) i;
+        return bytes;
+    }
+}
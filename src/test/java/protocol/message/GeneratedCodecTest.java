@@ -0,0 +1,203 @@
+package protocol.message;
+
+import logging.WireTracer;
+import org.junit.jupiter.api.Test;
+import protocol.ApiMessage;
+import protocol.MessageWriter;
+import utils.BufferPool;
+import utils.PooledBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeneratedCodecTest {
+    private static final UUID TOPIC_ID = new UUID(0x4000_0000_0000_0091L, 0x8000_0000_0000_0091L);
+
+    private final BufferPool pool = new BufferPool(64 * 1024, 1024 * 1024, false, false);
+
+    @Test
+    void fetchRequestRoundTripsAtEveryVersion() {
+        for (short version = FetchRequestData.LOWEST_SUPPORTED_VERSION;
+             version <= FetchRequestData.HIGHEST_SUPPORTED_VERSION; version++) {
+            byte[] bytes = encode(fetchRequest(), version);
+            FetchRequestData decoded = new FetchRequestData(ByteBuffer.wrap(bytes), version);
+            assertArrayEquals(bytes, encode(decoded, version), "version " + version);
+
+            FetchRequestData.FetchTopic topic = decoded.topics().get(0);
+            FetchRequestData.FetchPartition partition = topic.partitions().get(0);
+            assertEquals(version <= 12 ? "foo" : "", topic.topic());
+            assertEquals(version >= 13 ? TOPIC_ID : ApiMessage.ZERO_UUID, topic.topicId());
+            assertEquals(version <= 14 ? 3 : -1, decoded.replicaId());
+            assertEquals(version >= 7 ? 11 : 0, decoded.sessionId());
+            assertEquals(version >= 11 ? "rack-a" : "", decoded.rackId());
+            assertEquals(version >= 12 ? "cluster" : null, decoded.clusterId());
+            assertEquals(version >= 15 ? 8L : -1L,
+                    decoded.replicaState() == null ? -1L : decoded.replicaState().replicaEpoch());
+            assertEquals(version >= 9 ? 5 : -1, partition.currentLeaderEpoch());
+            assertEquals(100L, partition.fetchOffset());
+            assertEquals(version >= 7 ? 1 : 0, decoded.forgottenTopicsData().size());
+        }
+    }
+
+    @Test
+    void apiVersionsSwitchesToCompactEncodingAtVersionThree() {
+        ApiVersionsResponseData response = new ApiVersionsResponseData()
+                .setErrorCode((short) 35)
+                .setThrottleTimeMs(7)
+                .setApiKeys(List.of(
+                        new ApiVersionsResponseData.ApiVersion().setApiKey((short) 18).setMinVersion((short) 0).setMaxVersion((short) 4),
+                        new ApiVersionsResponseData.ApiVersion().setApiKey((short) 75).setMinVersion((short) 0).setMaxVersion((short) 0)));
+
+        // Error code, an int32 array length and three shorts per key; v1 adds the throttle time.
+        assertEquals(2 + 4 + 2 * 6, encode(response, (short) 0).length);
+        assertEquals(2 + 4 + 2 * 6 + 4, encode(response, (short) 1).length);
+        // Compact array length, a tag byte per key, the throttle time and the message's tag byte.
+        assertEquals(2 + 1 + 2 * 7 + 4 + 1, encode(response, (short) 3).length);
+
+        for (short version = 0; version <= ApiVersionsResponseData.HIGHEST_SUPPORTED_VERSION; version++) {
+            byte[] bytes = encode(response, version);
+            ApiVersionsResponseData decoded = new ApiVersionsResponseData(ByteBuffer.wrap(bytes), version);
+            assertEquals(35, decoded.errorCode());
+            assertEquals(version >= 1 ? 7 : 0, decoded.throttleTimeMs());
+            assertEquals(2, decoded.apiKeys().size());
+            assertEquals(75, decoded.apiKeys().get(1).apiKey());
+            assertArrayEquals(bytes, encode(decoded, version));
+        }
+
+        ApiVersionsRequestData request = new ApiVersionsRequestData()
+                .setClientSoftwareName("bmk").setClientSoftwareVersion("1");
+        assertEquals(0, encode(request, (short) 2).length);
+        ApiVersionsRequestData decoded = new ApiVersionsRequestData(ByteBuffer.wrap(encode(request, (short) 3)), (short) 3);
+        assertEquals("bmk", decoded.clientSoftwareName());
+        assertEquals("1", decoded.clientSoftwareVersion());
+    }
+
+    @Test
+    void produceRecordsAreCopiedOutOfTheRequestBuffer() {
+        byte[] records = {1, 2, 3, 4, 5};
+        ProduceRequestData request = new ProduceRequestData()
+                .setTransactionalId(null)
+                .setAcks((short) -1)
+                .setTimeoutMs(1500)
+                .setTopicData(List.of(new ProduceRequestData.TopicProduceData().setName("foo")
+                        .setPartitionData(List.of(new ProduceRequestData.PartitionProduceData()
+                                .setIndex(2).setRecords(ByteBuffer.wrap(records))))));
+
+        for (short version : new short[]{3, 8, 9, 11}) {
+            ByteBuffer buf = ByteBuffer.wrap(encode(request, version));
+            ProduceRequestData decoded = new ProduceRequestData(buf, version);
+            assertFalse(buf.hasRemaining());
+            Arrays.fill(buf.array(), (byte) 0);
+
+            assertNull(decoded.transactionalId());
+            ProduceRequestData.PartitionProduceData partition = decoded.topicData().get(0).partitionData().get(0);
+            assertEquals(2, partition.index());
+            byte[] copied = new byte[partition.records().remaining()];
+            partition.records().duplicate().get(copied);
+            assertArrayEquals(records, copied);
+        }
+    }
+
+    @Test
+    void unknownTaggedFieldsAreSkipped() {
+        byte[] known = encode(new DescribeTopicPartitionsResponseData().setThrottleTimeMs(1), (short) 0);
+        // Replace the trailing empty tag section with one unknown tag carrying three bytes.
+        byte[] tagged = Arrays.copyOf(known, known.length + 5);
+        System.arraycopy(new byte[]{1, 42, 3, 9, 9, 9}, 0, tagged, known.length - 1, 6);
+
+        DescribeTopicPartitionsResponseData decoded =
+                new DescribeTopicPartitionsResponseData(ByteBuffer.wrap(tagged), (short) 0);
+        assertEquals(1, decoded.throttleTimeMs());
+        assertNull(decoded.nextCursor());
+        assertArrayEquals(known, encode(decoded, (short) 0));
+    }
+
+    @Test
+    void nullNonNullableArrayIsRejectedOnRead() {
+        byte[] bytes = encode(new ApiVersionsResponseData().setApiKeys(null), (short) 0);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ApiVersionsResponseData(ByteBuffer.wrap(bytes), (short) 0));
+    }
+
+    @Test
+    void preEncodedStructsMatchFieldByFieldEncoding() {
+        DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic topic = describeTopic();
+        ByteBuffer fragment = MessageWriter.encodeFragment(w -> topic.write(w, (short) 0));
+        DescribeTopicPartitionsResponseData.Cursor cursor = new DescribeTopicPartitionsResponseData.Cursor()
+                .setTopicName("foo").setPartitionIndex(1);
+
+        byte[] expected = encode(new DescribeTopicPartitionsResponseData()
+                .setTopics(List.of(describeTopic())).setNextCursor(cursor), (short) 0);
+        byte[] actual = encode(new DescribeTopicPartitionsResponseData()
+                .setTopics(List.of(new DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic()
+                        .setEncoded(fragment, (short) 0)))
+                .setNextCursor(cursor), (short) 0);
+        assertArrayEquals(expected, actual);
+
+        DescribeTopicPartitionsResponseData decoded =
+                new DescribeTopicPartitionsResponseData(ByteBuffer.wrap(actual), (short) 0);
+        assertEquals(describeTopic().toString(), decoded.topics().get(0).toString());
+        assertEquals("foo", decoded.nextCursor().topicName());
+        assertEquals(1, decoded.nextCursor().partitionIndex());
+        assertTrue(fragment.hasRemaining());
+    }
+
+    private byte[] encode(ApiMessage message, short version) {
+        MessageWriter w = new MessageWriter(pool, 0, WireTracer.OFF);
+        message.write(w, version);
+        PooledBuffer done = w.completeBuffer();
+        ByteBuffer buf = done.buffer();
+        assertEquals(buf.remaining() - 4, buf.getInt());
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        done.release();
+        return bytes;
+    }
+
+    private static FetchRequestData fetchRequest() {
+        return new FetchRequestData()
+                .setClusterId("cluster")
+                .setReplicaId(3)
+                .setReplicaState(new FetchRequestData.ReplicaState().setReplicaId(3).setReplicaEpoch(8))
+                .setMaxWaitMs(500)
+                .setMinBytes(1)
+                .setMaxBytes(50 * 1024 * 1024)
+                .setIsolationLevel((byte) 1)
+                .setSessionId(11)
+                .setSessionEpoch(2)
+                .setTopics(List.of(new FetchRequestData.FetchTopic()
+                        .setTopic("foo")
+                        .setTopicId(TOPIC_ID)
+                        .setPartitions(List.of(new FetchRequestData.FetchPartition()
+                                .setPartition(0)
+                                .setCurrentLeaderEpoch(5)
+                                .setFetchOffset(100)
+                                .setLastFetchedEpoch(4)
+                                .setLogStartOffset(0)
+                                .setPartitionMaxBytes(1024 * 1024)))))
+                .setForgottenTopicsData(List.of(new FetchRequestData.ForgottenTopic()
+                        .setTopic("bar").setTopicId(TOPIC_ID).setPartitions(new int[]{1, 2})))
+                .setRackId("rack-a");
+    }
+
+    private static DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic describeTopic() {
+        return new DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponseTopic()
+                .setName("foo")
+                .setTopicId(TOPIC_ID)
+                .setPartitions(List.of(new DescribeTopicPartitionsResponseData.DescribeTopicPartitionsResponsePartition()
+                        .setPartitionIndex(0)
+                        .setLeaderId(1)
+                        .setLeaderEpoch(3)
+                        .setReplicaNodes(new int[]{1, 2, 3})
+                        .setIsrNodes(new int[]{1, 2})));
+    }
+}
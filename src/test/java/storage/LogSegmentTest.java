@@ -0,0 +1,179 @@
+package storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RecordBatchBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LogSegmentTest {
+    // An index entry for every batch after the first.
+    private static final LogConfig CONFIG = new LogConfig(1024 * 1024, 1, 4096);
+    private static final int RECORDS_PER_BATCH = 3;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void searchAndTimestampLookupsStartFromTheIndexes() throws IOException {
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            long[] positions = appendBatches(segment, 0, 5);
+
+            assertEquals(positions[0], segment.search(0));
+            assertEquals(positions[2], segment.search(6));
+            assertEquals(positions[2], segment.search(8));
+            assertEquals(positions[4], segment.search(14));
+            assertEquals(-1, segment.search(15));
+
+            assertEquals(new TimestampOffset(1_080, 8), segment.findOffsetByTimestamp(1_075));
+            assertEquals(new TimestampOffset(1_000, 0), segment.findOffsetByTimestamp(0));
+            assertNull(segment.findOffsetByTimestamp(1_141));
+            assertEquals(new TimestampOffset(1_140, 12), segment.maxTimestampSoFar());
+        }
+    }
+
+    @Test
+    void recoverTruncatesAPartiallyWrittenBatch() throws IOException {
+        Path log;
+        long validSize;
+        long[] positions;
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            positions = appendBatches(segment, 0, 3);
+            validSize = segment.sizeInBytes();
+            log = dir.resolve("00000000000000000000.log");
+        }
+        ByteBuffer torn = batch(9).limit(40);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(torn);
+        }
+
+        try (LogSegment segment = LogSegment.open(log, CONFIG)) {
+            assertEquals(validSize + 40, segment.sizeInBytes());
+            assertEquals(8, segment.recover());
+            assertEquals(validSize, segment.sizeInBytes());
+            assertEquals(validSize, Files.size(log));
+            assertEquals(positions[2], segment.search(7));
+            assertEquals(new TimestampOffset(1_080, 6), segment.maxTimestampSoFar());
+
+            segment.append(batch(9));
+            assertEquals(validSize, segment.search(9));
+            assertEquals(new TimestampOffset(1_110, 11), segment.findOffsetByTimestamp(1_105));
+        }
+    }
+
+    @Test
+    void openRecoversASegmentWithOnlyATornBatch() throws IOException {
+        Path log = dir.resolve("00000000000000000050.log");
+        try (LogSegment segment = LogSegment.create(dir, 50, CONFIG)) {
+            assertEquals(49, segment.recover());
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(batch(50).limit(20));
+        }
+
+        try (LogSegment segment = LogSegment.open(log, CONFIG)) {
+            assertEquals(0, segment.sizeInBytes());
+            assertEquals(0, Files.size(log));
+            assertEquals(-1, segment.search(50));
+        }
+    }
+
+    @Test
+    void openRebuildsAMissingIndex() throws IOException {
+        long[] positions;
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            positions = appendBatches(segment, 0, 4);
+            segment.onBecomeInactive(-1);
+        }
+        Files.delete(dir.resolve("00000000000000000000.index"));
+
+        try (LogSegment segment = LogSegment.open(dir.resolve("00000000000000000000.log"), CONFIG)) {
+            assertEquals(positions[3], segment.search(10));
+            assertEquals(positions[1], segment.search(3));
+            assertEquals(new TimestampOffset(1_110, 11), segment.findOffsetByTimestamp(1_101));
+        }
+    }
+
+    @Test
+    void sealedSegmentMapsItsIndexesWithoutGrowingThem() throws IOException {
+        long[] positions;
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            positions = appendBatches(segment, 0, 4);
+            segment.onBecomeInactive(-1);
+        }
+        Path index = dir.resolve("00000000000000000000.index");
+        Path timeIndex = dir.resolve("00000000000000000000.timeindex");
+        assertEquals(3 * 8, Files.size(index));
+        assertEquals(3 * 12, Files.size(timeIndex));
+
+        try (LogSegment segment = LogSegment.open(dir.resolve("00000000000000000000.log"), CONFIG, true)) {
+            assertEquals(3 * 8, Files.size(index), "not mapped at the maximum size");
+            assertEquals(3 * 12, Files.size(timeIndex));
+            assertEquals(positions[2], segment.search(8));
+            assertEquals(new TimestampOffset(1_110, 11), segment.findOffsetByTimestamp(1_101));
+            assertEquals(new TimestampOffset(1_110, 9), segment.maxTimestampSoFar());
+        }
+        assertEquals(3 * 8, Files.size(index));
+    }
+
+    @Test
+    void sealedSegmentRebuildsADamagedIndex() throws IOException {
+        long[] positions;
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            positions = appendBatches(segment, 0, 4);
+        }
+        // A crash before the roll leaves the index at its mapped size, zero-filled past the entries.
+        Path index = dir.resolve("00000000000000000000.index");
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.WRITE)) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(4096));
+        }
+
+        try (LogSegment segment = LogSegment.open(dir.resolve("00000000000000000000.log"), CONFIG, true)) {
+            assertEquals(positions[3], segment.search(10));
+            segment.onBecomeInactive(-1);
+            assertEquals(3 * 8, Files.size(index));
+        }
+    }
+
+    @Test
+    void readReturnsWholeBatchesWithinTheLimit() throws IOException {
+        try (LogSegment segment = LogSegment.create(dir, 0, CONFIG)) {
+            long[] positions = appendBatches(segment, 0, 3);
+            long batchSize = positions[1] - positions[0];
+
+            assertEquals(2 * batchSize, segment.read(0, (int) (2 * batchSize + 5), false).count());
+            assertEquals(0, segment.read(positions[1], (int) batchSize - 1, false).count());
+            assertEquals(batchSize, segment.read(positions[1], (int) batchSize - 1, true).count());
+            assertEquals(batchSize, segment.read(positions[2], Integer.MAX_VALUE, false).count());
+        }
+    }
+
+    /** Appends {@code count} batches from {@code baseOffset}; returns their file positions. */
+    private static long[] appendBatches(LogSegment segment, long baseOffset, int count) throws IOException {
+        long[] positions = new long[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = segment.sizeInBytes();
+            segment.append(batch(baseOffset + (long) i * RECORDS_PER_BATCH));
+        }
+        return positions;
+    }
+
+    /** Records at offset o are stamped 1000 + 10 * o. */
+    private static ByteBuffer batch(long baseOffset) {
+        RecordBatchBuilder builder = new RecordBatchBuilder(baseOffset);
+        for (int i = 0; i < RECORDS_PER_BATCH; i++) {
+            long offset = baseOffset + i;
+            builder.add(1_000 + 10 * offset, ("v" + offset).getBytes());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,84 @@
+package storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffsetIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void lookupReturnsTheLastEntryAtOrBeforeTheOffset() throws IOException {
+        try (OffsetIndex index = new OffsetIndex(dir.resolve("00000000000000000100.index"), 100, 1024)) {
+            index.append(110, 500);
+            index.append(120, 1000);
+            index.append(135, 1700);
+
+            assertEquals(0, index.lookup(100));
+            assertEquals(0, index.lookup(109));
+            assertEquals(500, index.lookup(110));
+            assertEquals(500, index.lookup(119));
+            assertEquals(1000, index.lookup(134));
+            assertEquals(1700, index.lookup(135));
+            assertEquals(1700, index.lookup(Long.MAX_VALUE / 2));
+        }
+    }
+
+    @Test
+    void appendsThatDoNotIncreaseTheOffsetAreIgnored() throws IOException {
+        try (OffsetIndex index = new OffsetIndex(dir.resolve("00000000000000000000.index"), 0, 1024)) {
+            index.append(10, 100);
+            index.append(10, 200);
+            index.append(5, 300);
+            assertEquals(100, index.lookup(10));
+            assertEquals(0, index.lookup(9));
+        }
+    }
+
+    @Test
+    void fullIndexIgnoresFurtherEntries() throws IOException {
+        try (OffsetIndex index = new OffsetIndex(dir.resolve("00000000000000000000.index"), 0, 20)) {
+            index.append(1, 10);
+            assertFalse(index.isFull());
+            index.append(2, 20);
+            assertTrue(index.isFull());
+            index.append(3, 30);
+            assertEquals(20, index.lookup(3));
+        }
+    }
+
+    @Test
+    void entriesSurviveCloseAndReopen() throws IOException {
+        Path path = dir.resolve("00000000000000000050.index");
+        try (OffsetIndex index = new OffsetIndex(path, 50, 1024)) {
+            index.append(60, 100);
+            index.append(70, 200);
+        }
+        assertEquals(16, Files.size(path));
+        try (OffsetIndex index = new OffsetIndex(path, 50, 1024)) {
+            assertFalse(index.isEmpty());
+            assertEquals(200, index.lookup(75));
+            index.append(80, 300);
+            assertEquals(300, index.lookup(80));
+        }
+    }
+
+    @Test
+    void unsortedFileComesBackEmpty() throws IOException {
+        Path path = dir.resolve("00000000000000000000.index");
+        Files.write(path, ByteBuffer.allocate(16).putInt(20).putInt(100).putInt(10).putInt(200).array());
+        try (OffsetIndex index = new OffsetIndex(path, 0, 1024)) {
+            assertTrue(index.isEmpty());
+            assertEquals(0, index.lookup(20));
+        }
+    }
+}
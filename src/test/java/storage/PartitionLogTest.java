@@ -0,0 +1,103 @@
+package storage;
+
+import network.FileRegion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import utils.RecordBatchBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PartitionLogTest {
+    // Rolls after every two of the batches below.
+    private static final LogConfig CONFIG = new LogConfig(450, 1, 4096);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void baseOffsetsContinueAcrossSegmentRolls() throws IOException {
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            for (int i = 0; i < 5; i++) assertEquals(3L * i, log.append(batch(3), 7));
+            assertEquals(15, log.logEndOffset());
+
+            assertEquals(List.of("00000000000000000000.log", "00000000000000000006.log", "00000000000000000012.log"),
+                    segmentFiles());
+            for (long offset = 0; offset < 15; offset += 3) {
+                ByteBuffer batch = read(log, offset);
+                assertEquals(offset, batch.getLong(0), "base offset stamped on disk");
+                assertEquals(7, batch.getInt(12), "partition leader epoch stamped on disk");
+            }
+        }
+    }
+
+    @Test
+    void appendOfSeveralBatchesStampsEachOne() throws IOException {
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            ByteBuffer records = RecordBatchBuilder.concat(batch(2), batch(1));
+            assertEquals(0, log.append(records, 0));
+            assertEquals(3, log.logEndOffset());
+            assertEquals(2, read(log, 2).getLong(0));
+        }
+    }
+
+    @Test
+    void reopenedLogContinuesAtItsEndOffset() throws IOException {
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            for (int i = 0; i < 5; i++) log.append(batch(3), 0);
+            log.flush(log.logEndOffset());
+        }
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            assertEquals(0, log.logStartOffset());
+            assertEquals(15, log.logEndOffset());
+            assertEquals(15, log.flushedOffset());
+            assertEquals(15, log.append(batch(2), 0));
+            assertEquals(12, read(log, 14).getLong(0));
+        }
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            assertEquals(17, log.logEndOffset());
+            assertEquals(15, read(log, 16).getLong(0));
+        }
+    }
+
+    @Test
+    void incompleteBatchesAreRejectedBeforeAnythingIsWritten() throws IOException {
+        try (PartitionLog log = PartitionLog.open(dir, CONFIG)) {
+            log.append(batch(1), 0);
+            ByteBuffer torn = RecordBatchBuilder.concat(batch(1), batch(1));
+            torn.limit(torn.limit() - 1);
+            assertThrows(IllegalArgumentException.class, () -> log.append(torn, 0));
+            assertEquals(1, log.logEndOffset());
+            assertEquals(1, log.append(batch(1), 0));
+        }
+    }
+
+    private static ByteBuffer batch(int records) {
+        RecordBatchBuilder batch = new RecordBatchBuilder(0);
+        for (int i = 0; i < records; i++) batch.add(1000 + i, new byte[40]);
+        return batch.build();
+    }
+
+    /** The first batch a fetch at {@code offset} returns, read through its file region. */
+    private static ByteBuffer read(PartitionLog log, long offset) throws IOException {
+        FileRegion region = log.read(offset, 1, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (!region.completed()) region.transferTo(Channels.newChannel(out));
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).filter(name -> name.endsWith(".log")).sorted().toList();
+        }
+    }
+}
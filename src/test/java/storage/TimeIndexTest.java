@@ -0,0 +1,50 @@
+package storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void lookupReturnsTheOffsetOfTheLastEntryAtOrBeforeTheTimestamp() throws IOException {
+        try (TimeIndex index = new TimeIndex(dir.resolve("00000000000000000100.timeindex"), 100, 1200)) {
+            assertEquals(TimestampOffset.UNKNOWN, index.lastEntry());
+            index.maybeAppend(1_000, 105);
+            index.maybeAppend(2_000, 112);
+            index.maybeAppend(2_000, 118);
+            index.maybeAppend(1_500, 120);
+
+            assertEquals(100, index.lookup(999));
+            assertEquals(105, index.lookup(1_000));
+            assertEquals(105, index.lookup(1_999));
+            assertEquals(112, index.lookup(2_000));
+            assertEquals(112, index.lookup(Long.MAX_VALUE));
+            assertEquals(new TimestampOffset(2_000, 112), index.lastEntry());
+        }
+    }
+
+    @Test
+    void lastSlotIsKeptForTheFinalEntry() throws IOException {
+        try (TimeIndex index = new TimeIndex(dir.resolve("00000000000000000000.timeindex"), 0, 36)) {
+            index.maybeAppend(10, 1);
+            index.maybeAppend(20, 2);
+            assertTrue(index.isFull());
+            index.maybeAppend(30, 3);
+            assertEquals(new TimestampOffset(20, 2), index.lastEntry());
+
+            index.appendFinal(40, 4);
+            assertEquals(new TimestampOffset(40, 4), index.lastEntry());
+            assertEquals(4, index.lookup(45));
+            index.appendFinal(50, 5);
+            assertEquals(new TimestampOffset(40, 4), index.lastEntry());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/** Builds v2 record batches, the on-disk and wire format of partition and metadata logs, for tests. */
+public final class RecordBatchBuilder {
+    public static final short TRANSACTIONAL = 0x10;
+    public static final short CONTROL = 0x20;
+
+    private final long baseOffset;
+    private final List<Long> timestamps = new ArrayList<>();
+    private final List<byte[]> keys = new ArrayList<>();
+    private final List<byte[]> values = new ArrayList<>();
+    private short attributes;
+    private long producerId = -1;
+
+    public RecordBatchBuilder(long baseOffset) {
+        this.baseOffset = baseOffset;
+    }
+
+    public RecordBatchBuilder attributes(short attributes) {
+        this.attributes = attributes;
+        return this;
+    }
+
+    public RecordBatchBuilder producerId(long producerId) {
+        this.producerId = producerId;
+        return this;
+    }
+
+    public RecordBatchBuilder add(long timestamp, byte[] value) {
+        return add(timestamp, null, value);
+    }
+
+    public RecordBatchBuilder add(long timestamp, byte[] key, byte[] value) {
+        timestamps.add(timestamp);
+        keys.add(key);
+        values.add(value);
+        return this;
+    }
+
+    public ByteBuffer build() {
+        long baseTimestamp = timestamps.isEmpty() ? -1 : timestamps.get(0);
+        long maxTimestamp = timestamps.stream().mapToLong(Long::longValue).max().orElse(-1);
+        ByteBuffer records = ByteBuffer.allocate(64 * 1024);
+        for (int i = 0; i < values.size(); i++) {
+            ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+            record.put((byte) 0);
+            writeVarlong(timestamps.get(i) - baseTimestamp, record);
+            writeVarlong(i, record);
+            writeBytes(keys.get(i), record);
+            writeBytes(values.get(i), record);
+            writeVarlong(0, record); // headers
+            record.flip();
+            writeVarlong(record.remaining(), records);
+            records.put(record);
+        }
+        records.flip();
+
+        ByteBuffer batch = ByteBuffer.allocate(61 + records.remaining());
+        batch.putLong(baseOffset).putInt(batch.capacity() - 12).putInt(0).put((byte) 2).putInt(0)
+                .putShort(attributes).putInt(Math.max(values.size() - 1, 0)).putLong(baseTimestamp)
+                .putLong(maxTimestamp).putLong(producerId).putShort((short) -1).putInt(-1)
+                .putInt(values.size()).put(records);
+        CRC32C crc = new CRC32C();
+        crc.update(batch.slice(21, batch.capacity() - 21));
+        batch.putInt(17, (int) crc.getValue());
+        return batch.flip();
+    }
+
+    /** Concatenates batches, the way they sit in a segment. */
+    public static ByteBuffer concat(ByteBuffer... batches) {
+        int size = 0;
+        for (ByteBuffer batch : batches) size += batch.remaining();
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (ByteBuffer batch : batches) out.put(batch.duplicate());
+        return out.flip();
+    }
+
+    private static void writeBytes(byte[] bytes, ByteBuffer buf) {
+        if (bytes == null) {
+            writeVarlong(-1, buf);
+        } else {
+            writeVarlong(bytes.length, buf);
+            buf.put(bytes);
+        }
+    }
+
+    private static void writeVarlong(long value, ByteBuffer buf) {
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+}
@@ -0,0 +1,157 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UuidMapTest {
+    // A new map has 16 slots and holds 7 entries before it doubles.
+    private static final int MASK = 15;
+
+    @Test
+    void putGetAndReplace() {
+        UuidMap<String> map = new UuidMap<>();
+        UUID foo = UUID.randomUUID();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(foo, "foo"));
+        assertNull(map.put(new UUID(0, 0), "zero"));
+        assertEquals("foo", map.put(foo, "foo2"));
+
+        assertEquals(2, map.size());
+        assertEquals("foo2", map.get(foo));
+        assertEquals("foo2", map.get(foo.getMostSignificantBits(), foo.getLeastSignificantBits()));
+        assertEquals("zero", map.get(new UUID(0, 0)));
+        assertNull(map.get(UUID.randomUUID()));
+        assertNull(map.get(null));
+        assertFalse(map.containsKey(UUID.randomUUID()));
+        assertThrows(NullPointerException.class, () -> map.put(foo, null));
+    }
+
+    @Test
+    void collidingKeysProbeIntoTheFollowingSlotsAndWrapAround() {
+        // Four keys homed in the last slot and two in the first: one run across the end of the table.
+        List<UUID> last = keysWithHome(MASK, 4);
+        List<UUID> first = keysWithHome(0, 2);
+        UuidMap<UUID> map = new UuidMap<>();
+        for (UUID key : last) map.put(key, key);
+        for (UUID key : first) map.put(key, key);
+
+        for (UUID key : last) assertEquals(key, map.get(key));
+        for (UUID key : first) assertEquals(key, map.get(key));
+        assertNull(map.get(keysWithHome(MASK, 5).get(4)), "a missing key ends its probe at the empty slot");
+    }
+
+    @Test
+    void removalShiftsTheRestOfTheRunBack() {
+        List<UUID> last = keysWithHome(MASK, 3);
+        List<UUID> first = keysWithHome(0, 2);
+        List<UUID> second = keysWithHome(1, 1);
+        List<UUID> all = new ArrayList<>(last);
+        all.addAll(first);
+        all.addAll(second);
+
+        // Every removal order of the run leaves the remaining keys reachable.
+        for (int removedFirst = 0; removedFirst < all.size(); removedFirst++) {
+            UuidMap<UUID> map = new UuidMap<>();
+            for (UUID key : all) map.put(key, key);
+            List<UUID> remaining = new ArrayList<>(all);
+            for (int i = 0; i < all.size(); i++) {
+                UUID removed = remaining.remove((removedFirst + i) % remaining.size());
+                assertEquals(removed, map.remove(removed));
+                assertNull(map.remove(removed));
+                assertNull(map.get(removed));
+                assertEquals(remaining.size(), map.size());
+                for (UUID key : remaining) assertEquals(key, map.get(key), "after removing " + removed);
+            }
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    void behavesLikeAHashMapThroughResizesAndRemovals() {
+        SplittableRandom random = new SplittableRandom(7);
+        // Ids that differ in a few low bits only, like the ones tools generate.
+        UUID[] pool = new UUID[3000];
+        for (int i = 0; i < pool.length; i++) pool[i] = new UUID(0x4000L << 48 | i >> 4, 0x8000_0000_0000_0000L | i);
+        UuidMap<Integer> map = new UuidMap<>();
+        Map<UUID, Integer> expected = new HashMap<>();
+
+        for (int op = 0; op < 200_000; op++) {
+            UUID key = pool[random.nextInt(pool.length)];
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, op), map.put(key, op));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        Map<UUID, Integer> visited = new HashMap<>();
+        map.forEach((msb, lsb, value) -> assertNull(visited.put(new UUID(msb, lsb), value)));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        UuidMap<String> map = new UuidMap<>(100);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(UUID.randomUUID());
+            map.put(keys.get(i), "v" + i);
+        }
+        UuidMap<String> copy = map.copy();
+        copy.remove(keys.get(0));
+        copy.put(keys.get(1), "changed");
+        copy.put(UUID.randomUUID(), "new");
+
+        assertEquals(100, map.size());
+        assertEquals("v0", map.get(keys.get(0)));
+        assertEquals("v1", map.get(keys.get(1)));
+        assertEquals(100, copy.size());
+        assertNull(copy.get(keys.get(0)));
+
+        UuidMap<String> fromIndex = UuidMap.copyOf(readOnly(map));
+        assertEquals(100, fromIndex.size());
+        for (int i = 0; i < 100; i++) assertEquals("v" + i, fromIndex.get(keys.get(i)));
+    }
+
+    /** Keys whose home slot in a new map is {@code slot}. */
+    private static List<UUID> keysWithHome(int slot, int count) {
+        List<UUID> keys = new ArrayList<>();
+        for (long i = 0; keys.size() < count; i++) {
+            UUID key = new UUID(0x4000L << 48, i);
+            if ((UuidMap.hash(key.getMostSignificantBits(), key.getLeastSignificantBits()) & MASK) == slot) keys.add(key);
+        }
+        return keys;
+    }
+
+    /** The map seen through the interface only, so {@link UuidMap#copyOf} takes the generic path. */
+    private static <V> UuidIndex<V> readOnly(UuidMap<V> map) {
+        return new UuidIndex<>() {
+            @Override
+            public V get(long mostSignificantBits, long leastSignificantBits) {
+                return map.get(mostSignificantBits, leastSignificantBits);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+
+            @Override
+            public void forEach(EntryConsumer<? super V> action) {
+                map.forEach(action);
+            }
+        };
+    }
+}